@@ -0,0 +1,217 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+import java.util.Arrays;
+
+/*
+ *  Foreground (value > 0) of an image, one bit per pixel and band.
+ *
+ *	description:	Bits are packed 64 to a long, in the order of the pixels
+ *					row by row, and band by band within a pixel; the unused
+ *					bits of the last word are 0. A 10-megapixel band takes
+ *					1.2 MB. The binary pixel measures count the bits of
+ *					a AND b, a OR b, ... a word at a time with Long.bitCount:
+ *
+ *					Dice:		2 |a and b| / (|a or b| + |a and b|)
+ *					Jaccard:	|a and b| / |a or b|
+ *					TEE:		|a and b| / |b|
+ *					TET:		|a and b| / |a|
+ *
+ *					each 1 when its denominator is 0, as in MathOpsE. A mask is
+ *					not modified once built, so one mask of a reference image
+ *					can be compared against many.
+ */
+public class BinaryMask {
+
+	private static final MathOpsE ops = new MathOpsE();
+	static {
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+	}
+
+	private final int rows;
+	private final int cols;
+	private final int bands;
+	private final long[] words;
+	private final long cardinality;
+
+	BinaryMask(int rows, int cols, int bands, long[] words) {
+		this.rows = rows;
+		this.cols = cols;
+		this.bands = bands;
+		this.words = words;
+		long n = 0;
+		for (int w = 0; w < words.length; w++)
+			n += Long.bitCount(words[w]);
+		this.cardinality = n;
+	}
+
+	// the pixels of img with a value > 0
+	public static BinaryMask of(ImageData img) throws Exception {
+		if (img == null)
+			throw new SingularityTreatmentException(
+					"BinaryMask: first argument null value");
+		int rows = img.getNumRows();
+		int cols = img.getNumCols();
+		int bands = img.getNumBands();
+		long size = (long) rows * cols * bands;
+		long[] words = new long[(int) ((size + 63) >>> 6)];
+		PixelBuffer buffer = img.getBuffer();
+		if (buffer != null && buffer.getType() == PixelBuffer.Type.BIT
+				&& buffer.getOffset() == 0 && buffer.isContiguous()) {
+			// the same bits, already packed
+			System.arraycopy((long[]) buffer.getArray(), 0, words, 0,
+					words.length);
+			return new BinaryMask(rows, cols, bands, words);
+		}
+		// x * 0 is NaN for NaN and both infinities, 0 (or -0) otherwise
+		double bad = 0d;
+		long bit = 0;
+		double[] p = new double[cols * bands];
+		for (int i = 0; i < rows; i++) {
+			img.getRow(i, p);
+			for (int x = 0; x < p.length; x++, bit++) {
+				bad += p[x] * 0d;
+				if (p[x] > 0d)
+					words[(int) (bit >>> 6)] |= 1L << bit;
+			}
+		}
+		if (bad != 0d) {
+			for (int i = 0; i < rows; i++) {
+				img.getRow(i, p);
+				for (int x = 0; x < p.length; x += bands)
+					ops.chkargs("BinaryMask", Arrays.copyOfRange(p, x, x + bands));
+			}
+		}
+		return new BinaryMask(rows, cols, bands, words);
+	}
+
+	public int getNumRows() {
+		return rows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	public int getNumBands() {
+		return bands;
+	}
+
+	// the packed bits, shared and not to be modified
+	public long[] getWords() {
+		return words;
+	}
+
+	// pixels in the mask
+	public long cardinality() {
+		return cardinality;
+	}
+
+	// pixels in both masks
+	public long andCount(BinaryMask other) throws Exception {
+		long[] b = check(other);
+		long n = 0;
+		for (int w = 0; w < words.length; w++)
+			n += Long.bitCount(words[w] & b[w]);
+		return n;
+	}
+
+	// pixels in either mask
+	public long orCount(BinaryMask other) throws Exception {
+		long[] b = check(other);
+		long n = 0;
+		for (int w = 0; w < words.length; w++)
+			n += Long.bitCount(words[w] | b[w]);
+		return n;
+	}
+
+	// pixels in this mask and not in other
+	public long andNotCount(BinaryMask other) throws Exception {
+		long[] b = check(other);
+		long n = 0;
+		for (int w = 0; w < words.length; w++)
+			n += Long.bitCount(words[w] & ~b[w]);
+		return n;
+	}
+
+	public double dice(BinaryMask other) throws Exception {
+		long overlap = andCount(other);
+		return dice(overlap, cardinality + other.cardinality - overlap);
+	}
+
+	public double jaccard(BinaryMask other) throws Exception {
+		long overlap = andCount(other);
+		return jaccard(overlap, cardinality + other.cardinality - overlap);
+	}
+
+	// total error rate evaluation, other being the evaluated mask
+	public double totalErrorRateEvaluation(BinaryMask other) throws Exception {
+		return ratio(andCount(other), other.cardinality);
+	}
+
+	// total error rate test, this being the tested mask
+	public double totalErrorRateTest(BinaryMask other) throws Exception {
+		return ratio(andCount(other), cardinality);
+	}
+
+	// the formulas of MathOpsE, from the counts of the overlap and union
+	static double dice(long overlap, long union) throws Exception {
+		if (union == 0)
+			return 1.0d;
+		return ops.quotient(2.0d * overlap, (double) union + overlap);
+	}
+
+	static double jaccard(long overlap, long union) throws Exception {
+		if (union == 0)
+			return 1.0d;
+		return ops.quotient(overlap, union);
+	}
+
+	static double ratio(long overlap, long count) throws Exception {
+		return (count == 0) ? 1.0d : ops.quotient(overlap, count);
+	}
+
+	private long[] check(BinaryMask other) throws Exception {
+		if (other == null)
+			throw new SingularityTreatmentException(
+					"BinaryMask: second argument null value");
+		checkSize(rows, cols, bands, other.rows, other.cols, other.bands);
+		return other.words;
+	}
+
+	// images compared pixel by pixel must have the same shape
+	static void checkSize(ImageData img1, ImageData img2) throws Exception {
+		checkSize(img1.getNumRows(), img1.getNumCols(), img1.getNumBands(),
+				img2.getNumRows(), img2.getNumCols(), img2.getNumBands());
+	}
+
+	static void checkSize(int rows1, int cols1, int bands1, int rows2,
+			int cols2, int bands2) throws Exception {
+		if (rows1 != rows2)
+			throw new ImageCompatibilityException(
+					"Features must have the same height");
+		if (cols1 != cols2)
+			throw new ImageCompatibilityException(
+					"Features must have the same width");
+		if (bands1 != bands2)
+			throw new ImageCompatibilityException(
+					"Features must have the same number of bands");
+	}
+}
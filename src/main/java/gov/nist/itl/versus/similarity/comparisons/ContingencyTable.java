@@ -0,0 +1,589 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+import java.util.Arrays;
+
+/*
+ *  Label co-occurrence (contingency) table of two label images, from which
+ *  all the pixel-based segmentation measures are derived.
+ *
+ *	description:	Cell (i, j) counts the pixels labelled i in the first image
+ *					and j in the second, a label being the pixel value truncated
+ *					to an int as in the MathOpsE pixel measures. The same pass
+ *					over the pixels counts the foreground (value > 0) of each
+ *					image and their overlap, used by Dice, Jaccard, TEE and TET.
+ *
+ *					Every measure is then computed from the table alone, with the
+ *					same operations, in the same order, as the pixel_measure_*
+ *					methods of MathOpsE, which now use this class; scoring a pair
+ *					of images with all of them takes one pass over the pixels:
+ *
+ *					ContingencyTable t = ContingencyTable.of(img1, img2);
+ *					double ari = t.adjustedRandIndex(), vi = t.variationOfInformation();
+ *
+ *					The table is kept dense, (largest label + 1) cells per side,
+ *					while that is at most DENSE_CELLS cells. Past that, e.g. for
+ *					16-bit instance masks with labels up to 65535, only the label
+ *					pairs that occur are counted, in a primitive hash map (see
+ *					LabelCounts), with the count of every label of each image:
+ *					memory then grows with the number of label pairs and not
+ *					with the product of the largest labels. The sums of counts
+ *					are exact either way, so the measures do not depend on the
+ *					form of the table.
+ *
+ *					The labeled measures compare the binary image of each label
+ *					in turn; forLabel() gives the 2 x 2 table of one label from
+ *					the row, column and diagonal counts, so that the scores of
+ *					all the labels come from the same single pass.
+ */
+public class ContingencyTable {
+
+	private static final MathOpsE ops = new MathOpsE();
+	static {
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+	}
+
+	private static final int INITIAL_LABELS = 16;
+
+	// largest dense table, in cells
+	public final static int DENSE_CELLS = 1 << 22;
+
+	private final int numRows;
+	private final int numCols;
+	// dense: row-major, stride columns; null when sparse
+	private final int[] cells;
+	private final int stride;
+	// sparse: the label pairs, and the labels of each image
+	private final LabelCounts pairs;
+	private final LabelCounts rows;
+	private final LabelCounts cols;
+	private final long total;
+	// pixels with value > 0 in the first image, the second, and both
+	private final long foreground1;
+	private final long foreground2;
+	private final long overlap;
+	// why the labels could not be counted, null if they were
+	private final String labelError;
+
+	private ContingencyTable(int numRows, int numCols, int[] cells,
+			int stride, LabelCounts pairs, long total, long foreground1,
+			long foreground2, long overlap, String labelError) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.cells = cells;
+		this.stride = stride;
+		this.pairs = pairs;
+		if (pairs != null) {
+			rows = new LabelCounts();
+			cols = new LabelCounts();
+			for (int i = 0; i < pairs.capacity(); i++) {
+				long key = pairs.keyAt(i);
+				if (key >= 0L) {
+					rows.add(LabelCounts.first(key), pairs.countAt(i));
+					cols.add(LabelCounts.second(key), pairs.countAt(i));
+				}
+			}
+		} else {
+			rows = null;
+			cols = null;
+		}
+		this.total = total;
+		this.foreground1 = foreground1;
+		this.foreground2 = foreground2;
+		this.overlap = overlap;
+		this.labelError = labelError;
+	}
+
+	/*
+	 * Counts the labels of two images of the same size, pixel by pixel and
+	 * band by band, in one pass.
+	 */
+	public static ContingencyTable of(ImageData img1, ImageData img2)
+			throws Exception {
+		if (img1 == null)
+			throw new SingularityTreatmentException(
+					"ContingencyTable: first argument null value");
+		if (img2 == null)
+			throw new SingularityTreatmentException(
+					"ContingencyTable: second argument null value");
+		BinaryMask.checkSize(img1, img2);
+		int rows = img1.getNumRows();
+		double[] p = new double[img1.getNumCols() * img1.getNumBands()];
+		double[] q = new double[p.length];
+
+		Counter counter = new Counter();
+		long fg1 = 0;
+		long fg2 = 0;
+		long both = 0;
+		// x * 0 is NaN for NaN and both infinities, 0 (or -0) otherwise
+		double bad = 0d;
+		for (int i = 0; i < rows; i++) {
+			img1.getRow(i, p);
+			img2.getRow(i, q);
+			for (int x = 0; x < p.length; x++) {
+				double v1 = p[x];
+				double v2 = q[x];
+				bad += v1 * 0d + v2 * 0d;
+				counter.add((int) v1, (int) v2);
+				if (v1 > 0d) {
+					fg1++;
+					if (v2 > 0d)
+						both++;
+				}
+				if (v2 > 0d)
+					fg2++;
+			}
+		}
+		if (bad != 0d)
+			locate(img1, img2);
+		return counter.table(fg1, fg2, both);
+	}
+
+	/*
+	 * Counts the labels of two label maps of the same size; the foreground
+	 * of a map is its labels > 0.
+	 */
+	public static ContingencyTable of(LabelMap map1, LabelMap map2)
+			throws Exception {
+		if (map1 == null)
+			throw new SingularityTreatmentException(
+					"ContingencyTable: first argument null value");
+		if (map2 == null)
+			throw new SingularityTreatmentException(
+					"ContingencyTable: second argument null value");
+		BinaryMask.checkSize(map1.getNumRows(), map1.getNumCols(),
+				map1.getNumBands(), map2.getNumRows(), map2.getNumCols(),
+				map2.getNumBands());
+		Counter counter = new Counter();
+		long fg1 = 0;
+		long fg2 = 0;
+		long both = 0;
+		for (int x = 0, n = map1.size(); x < n; x++) {
+			int l1 = map1.get(x);
+			int l2 = map2.get(x);
+			counter.add(l1, l2);
+			if (l1 > 0) {
+				fg1++;
+				if (l2 > 0)
+					both++;
+			}
+			if (l2 > 0)
+				fg2++;
+		}
+		return counter.table(fg1, fg2, both);
+	}
+
+	// the label pairs of one pass, dense until the table grows too large
+	private static final class Counter {
+		private int rowsCap = INITIAL_LABELS;
+		private int colsCap = INITIAL_LABELS;
+		private int[] cells = new int[rowsCap * colsCap];
+		private LabelCounts pairs = null;
+		private int max1 = 0;
+		private int max2 = 0;
+		private long total = 0;
+		private String labelError = null;
+
+		void add(int l1, int l2) {
+			total++;
+			if (l1 < 0 || l2 < 0) {
+				labelError = "ContingencyTable: negative label "
+						+ Math.min(l1, l2);
+			} else if (l1 == Integer.MAX_VALUE || l2 == Integer.MAX_VALUE) {
+				labelError = "ContingencyTable: label " + Integer.MAX_VALUE
+						+ " or more";
+			} else if (labelError == null) {
+				if (cells != null && (l1 >= rowsCap || l2 >= colsCap)) {
+					int r = (l1 >= rowsCap) ? grow(rowsCap, l1) : rowsCap;
+					int c = (l2 >= colsCap) ? grow(colsCap, l2) : colsCap;
+					if ((long) r * c <= DENSE_CELLS) {
+						int[] grown = new int[r * c];
+						for (int x = 0; x <= max1; x++)
+							System.arraycopy(cells, x * colsCap, grown, x * c,
+									max2 + 1);
+						cells = grown;
+						rowsCap = r;
+						colsCap = c;
+					} else {
+						pairs = sparse(cells, colsCap, max1, max2);
+						cells = null;
+					}
+				}
+				if (cells != null)
+					cells[l1 * colsCap + l2]++;
+				else
+					pairs.add(LabelCounts.pair(l1, l2), 1L);
+				max1 = (l1 > max1) ? l1 : max1;
+				max2 = (l2 > max2) ? l2 : max2;
+			}
+		}
+
+		ContingencyTable table(long fg1, long fg2, long both) {
+			return new ContingencyTable(max1 + 1, max2 + 1, cells, colsCap,
+					pairs, total, fg1, fg2, both, labelError);
+		}
+	}
+
+	// the cells of a dense table that are not 0
+	private static LabelCounts sparse(int[] cells, int stride, int max1,
+			int max2) {
+		LabelCounts pairs = new LabelCounts();
+		for (int i = 0; i <= max1; i++)
+			for (int j = 0; j <= max2; j++)
+				if (cells[i * stride + j] != 0)
+					pairs.add(LabelCounts.pair(i, j), cells[i * stride + j]);
+		return pairs;
+	}
+
+	// whether the table is kept as the label pairs that occur
+	public boolean isSparse() {
+		return pairs != null;
+	}
+
+	// capacity for label, at least doubling
+	private static int grow(int capacity, int label) {
+		long c = Math.max(2L * capacity, label + 1L);
+		return (int) Math.min(c, Integer.MAX_VALUE);
+	}
+
+	// throws the exception of MathOpsE for the first value not finite
+	private static void locate(ImageData img1, ImageData img2)
+			throws Exception {
+		int bands = img1.getNumBands();
+		double[] p = new double[img1.getNumCols() * bands];
+		double[] q = new double[p.length];
+		for (int i = 0; i < img1.getNumRows(); i++) {
+			img1.getRow(i, p);
+			img2.getRow(i, q);
+			for (int x = 0; x < p.length; x += bands) {
+				ops.chkargs("ContingencyTable", Arrays.copyOfRange(p, x, x + bands));
+				ops.chkargs("ContingencyTable", Arrays.copyOfRange(q, x, x + bands));
+			}
+		}
+	}
+
+	// labels of the first image: its largest label + 1
+	public int getNumRows() {
+		return numRows;
+	}
+
+	// labels of the second image: its largest label + 1
+	public int getNumCols() {
+		return numCols;
+	}
+
+	// pixels labelled i in the first image and j in the second
+	public long getCount(int i, int j) throws Exception {
+		chklabels();
+		if (i < 0 || i >= numRows || j < 0 || j >= numCols)
+			throw new MathCompatibilityException("ContingencyTable: cell ("
+					+ i + ", " + j + ") not in " + numRows + " x " + numCols);
+		if (pairs != null)
+			return pairs.get(LabelCounts.pair(i, j));
+		return cells[i * stride + j];
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	/*
+	 * Whether every label was counted: not when a pixel value truncates to
+	 * a negative label, or the labels are too large for the table. Only the
+	 * foreground measures (Dice, Jaccard, TEE, TET) are available otherwise.
+	 */
+	public boolean hasLabels() {
+		return labelError == null;
+	}
+
+	private void chklabels() throws Exception {
+		if (labelError != null)
+			throw new MathCompatibilityException(labelError);
+	}
+
+	// sum of n (n - 1) / 2 over the cells, as MathOpsE.gaussSum(Double[])
+	private double pairs() throws Exception {
+		if (pairs != null)
+			return pairs(pairs);
+		double s = 0d;
+		for (int i = 0; i < numRows; i++)
+			for (int j = 0, o = i * stride; j < numCols; j++) {
+				double n = cells[o + j];
+				s += n * (n - 1d);
+			}
+		return ops.quotient(s, 2d);
+	}
+
+	// sum of n (n - 1) / 2 over the counts of a sparse table
+	private static double pairs(LabelCounts counts) throws Exception {
+		double s = 0d;
+		for (int i = 0; i < counts.capacity(); i++) {
+			if (counts.keyAt(i) >= 0L) {
+				double n = counts.countAt(i);
+				s += n * (n - 1d);
+			}
+		}
+		return ops.quotient(s, 2d);
+	}
+
+	private double rowPairs() throws Exception {
+		if (rows != null)
+			return pairs(rows);
+		double s = 0d;
+		for (int i = 0; i < numRows; i++) {
+			double n = 0d;
+			for (int j = 0, o = i * stride; j < numCols; j++)
+				n += cells[o + j];
+			s += n * (n - 1d);
+		}
+		return ops.quotient(s, 2d);
+	}
+
+	private double colPairs() throws Exception {
+		if (cols != null)
+			return pairs(cols);
+		double s = 0d;
+		for (int j = 0; j < numCols; j++) {
+			double n = 0d;
+			for (int i = 0; i < numRows; i++)
+				n += cells[i * stride + j];
+			s += n * (n - 1d);
+		}
+		return ops.quotient(s, 2d);
+	}
+
+	public double adjustedRandIndex() throws Exception {
+		chklabels();
+		double n = total;
+		double nij = pairs();
+		double a2 = rowPairs();
+		double b2 = colPairs();
+		double n2 = (n * (n - 1)) / 2;
+		double d1 = ops.quotient(a2 * b2, n2);
+		double numerator = nij - d1;
+		double denom = (0.5 * (a2 + b2)) - d1;
+		if (numerator == 0d && denom == 0d)
+			return 1.0d; // takes care of single color images
+		double ari = ops.quotient(numerator, denom);
+		if (ari <= Double.MIN_VALUE)
+			return 0.0d; // takes care of small negative values
+		return ari;
+	}
+
+	public double randIndex() throws Exception {
+		chklabels();
+		double n = total;
+		double n2 = (n * (n - 1)) / 2;
+		return 1 + (((2 * pairs()) - rowPairs() - colPairs()) / n2);
+	}
+
+	// the foreground measures, as computed by BinaryMask
+	public double dice() throws Exception {
+		return BinaryMask.dice(overlap, foreground1 + foreground2 - overlap);
+	}
+
+	public double jaccard() throws Exception {
+		return BinaryMask.jaccard(overlap, foreground1 + foreground2 - overlap);
+	}
+
+	// total error rate evaluation: overlap over the foreground of the second
+	public double totalErrorRateEvaluation() throws Exception {
+		return BinaryMask.ratio(overlap, foreground2);
+	}
+
+	// total error rate test: overlap over the foreground of the first
+	public double totalErrorRateTest() throws Exception {
+		return BinaryMask.ratio(overlap, foreground1);
+	}
+
+	/*
+	 * The table of the binary images of one label, 1 where a pixel has the
+	 * label and 0 elsewhere (ImageData.match), taken from the counts of this
+	 * table: the same table as of(match(img1, label), match(img2, label)).
+	 */
+	public ContingencyTable forLabel(int label) throws Exception {
+		chklabels();
+		if (label < 0)
+			throw new MathCompatibilityException(
+					"ContingencyTable: negative label " + label);
+		long r = (label < numRows) ? rowCount(label) : 0L;
+		long c = (label < numCols) ? colCount(label) : 0L;
+		long n = (label < numRows && label < numCols) ? getCount(label, label)
+				: 0L;
+		int[] binary = { (int) (total - r - c + n), (int) (c - n),
+				(int) (r - n), (int) n };
+		return new ContingencyTable((r > 0) ? 2 : 1, (c > 0) ? 2 : 1, binary,
+				2, null, total, r, c, n, null);
+	}
+
+	/*
+	 * The tables of the labels 0 .. numLabels - 1, all from one pass over
+	 * the images; one pass per label when a label is negative, as then only
+	 * the binary images can be counted.
+	 */
+	public static ContingencyTable[] perLabel(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		ContingencyTable table = of(img1, img2);
+		ContingencyTable[] tables = new ContingencyTable[numLabels];
+		for (int l = 0; l < numLabels; l++)
+			tables[l] = table.hasLabels() ? table.forLabel(l) : of(
+					binary(img1, l), binary(img2, l));
+		return tables;
+	}
+
+	/*
+	 * The tables of the labels 0 .. numLabels - 1 of two label maps, or of
+	 * the given labels, from one pass; a MathCompatibilityException when a
+	 * label of either map is negative, as forLabel() throws.
+	 */
+	public static ContingencyTable[] perLabel(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		int[] labels = new int[numLabels];
+		for (int l = 0; l < numLabels; l++)
+			labels[l] = l;
+		return perLabel(map1, map2, labels);
+	}
+
+	public static ContingencyTable[] perLabel(LabelMap map1, LabelMap map2,
+			int[] labels) throws Exception {
+		ContingencyTable table = of(map1, map2);
+		ContingencyTable[] tables = new ContingencyTable[labels.length];
+		for (int l = 0; l < labels.length; l++)
+			tables[l] = table.forLabel(labels[l]);
+		return tables;
+	}
+
+	// as ImageData.match, into a new image: match writes into its argument
+	private static ImageData binary(ImageData img, int label)
+			throws Exception {
+		PixelBuffer r = PixelBuffer.allocate(PixelBuffer.Type.BIT,
+				img.getNumRows(), img.getNumCols(), img.getNumBands());
+		double[] p = new double[img.getNumCols() * img.getNumBands()];
+		for (int i = 0, x = 0; i < img.getNumRows(); i++) {
+			img.getRow(i, p);
+			for (int d = 0; d < p.length; d++, x++)
+				if ((int) p[d] == label)
+					r.set(x, 1d);
+		}
+		return new ImageData(r);
+	}
+
+	// pixels labelled i in the first image
+	private long rowCount(int i) {
+		if (rows != null)
+			return rows.get(i);
+		long n = 0;
+		for (int j = 0, o = i * stride; j < numCols; j++)
+			n += cells[o + j];
+		return n;
+	}
+
+	// pixels labelled j in the second image
+	private long colCount(int j) {
+		if (cols != null)
+			return cols.get(j);
+		long n = 0;
+		for (int i = 0; i < numRows; i++)
+			n += cells[i * stride + j];
+		return n;
+	}
+
+	/*
+	 * Mutual information of the two labelings, in nats:
+	 * sum of p(i, j) ln(p(i, j) / (p(i) p(j))).
+	 */
+	public double mutualInformation() throws Exception {
+		chklabels();
+		if (total == 0)
+			return 0d;
+		double n = total;
+		double mi = 0d;
+		if (pairs != null) {
+			for (int i = 0; i < pairs.capacity(); i++) {
+				long key = pairs.keyAt(i);
+				if (key >= 0L) {
+					double c = pairs.countAt(i);
+					double a = rows.get(LabelCounts.first(key));
+					double b = cols.get(LabelCounts.second(key));
+					mi += c / n * Math.log(c * n / (a * b));
+				}
+			}
+			return Math.max(0d, mi);
+		}
+		double[] colSums = colSums();
+		for (int i = 0; i < numRows; i++) {
+			double a = 0d;
+			for (int j = 0, o = i * stride; j < numCols; j++)
+				a += cells[o + j];
+			for (int j = 0, o = i * stride; j < numCols; j++) {
+				int c = cells[o + j];
+				if (c != 0)
+					mi += c / n * Math.log(c * n / (a * colSums[j]));
+			}
+		}
+		return Math.max(0d, mi);
+	}
+
+	/*
+	 * Variation of information, in nats: H(first) + H(second) - 2 I, 0 for
+	 * the same segmentation up to the naming of the labels.
+	 */
+	public double variationOfInformation() throws Exception {
+		chklabels();
+		if (total == 0)
+			return 0d;
+		double n = total;
+		double h = 0d;
+		if (pairs != null) {
+			h = entropy(rows, n) + entropy(cols, n);
+		} else {
+			for (int i = 0; i < numRows; i++) {
+				double a = 0d;
+				for (int j = 0, o = i * stride; j < numCols; j++)
+					a += cells[o + j];
+				h -= entropyTerm(a / n);
+			}
+			double[] colSums = colSums();
+			for (int j = 0; j < numCols; j++)
+				h -= entropyTerm(colSums[j] / n);
+		}
+		return Math.max(0d, h - 2d * mutualInformation());
+	}
+
+	private static double entropy(LabelCounts counts, double n) {
+		double h = 0d;
+		for (int i = 0; i < counts.capacity(); i++)
+			if (counts.keyAt(i) >= 0L)
+				h -= entropyTerm(counts.countAt(i) / n);
+		return h;
+	}
+
+	private static double entropyTerm(double p) {
+		return (p > 0d) ? p * Math.log(p) : 0d;
+	}
+
+	private double[] colSums() {
+		double[] sums = new double[numCols];
+		for (int i = 0; i < numRows; i++)
+			for (int j = 0, o = i * stride; j < numCols; j++)
+				sums[j] += cells[o + j];
+		return sums;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+
+/*
+ *  The measurements between every pair of n histograms.
+ *
+ *	description:	For a symmetric measure only the upper triangle (diagonal
+ *					included) is kept, packed row by row: row i holds columns
+ *					i..n-1, so that (i, j) with i <= j is at
+ *					i * n - i * (i - 1) / 2 + (j - i), and get(j, i) returns the
+ *					same value. For other measures all n * n values are kept, row
+ *					by row. Either way getValues() is in the order in which
+ *					DistanceMatrixEngine emits its rows.
+ */
+public class DistanceMatrix {
+
+	private final int n;
+	private final boolean symmetric;
+	private final double[] values;
+
+	public DistanceMatrix(int n, boolean symmetric) throws Exception {
+		long size = size(n, symmetric);
+		if (n < 0 || size > Integer.MAX_VALUE)
+			throw new MathCompatibilityException("DistanceMatrix: " + n
+					+ " histograms do not fit in an array");
+		this.n = n;
+		this.symmetric = symmetric;
+		this.values = new double[(int) size];
+	}
+
+	// number of values kept for n histograms
+	public static long size(int n, boolean symmetric) {
+		return symmetric ? (long) n * (n + 1) / 2 : (long) n * n;
+	}
+
+	// position of (i, j) in the packed upper triangle, for i <= j
+	public static long index(int n, int i, int j) {
+		return (long) i * n - (long) i * (i - 1) / 2 + (j - i);
+	}
+
+	public int getSize() {
+		return n;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	/*
+	 * The packed values. The array is shared, not copied.
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	public double get(int i, int j) {
+		if (!symmetric)
+			return values[i * n + j];
+		return (i <= j) ? values[(int) index(n, i, j)]
+				: values[(int) index(n, j, i)];
+	}
+
+	/*
+	 * Stores values[from..to-1] of row i, as emitted by DistanceMatrixEngine.
+	 */
+	void setRow(int i, double[] row, int from, int to) {
+		int offset = symmetric ? (int) index(n, i, from) : i * n + from;
+		System.arraycopy(row, from, values, offset, to - from);
+	}
+
+	// the packed values, in order, as 8-byte doubles
+	public void writeTo(DataOutput out) throws IOException {
+		for (int k = 0; k < values.length; k++)
+			out.writeDouble(values[k]);
+	}
+}
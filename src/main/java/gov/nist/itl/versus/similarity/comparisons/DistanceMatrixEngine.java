@@ -0,0 +1,217 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.io.DataOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.KDivergenceMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.KullbackLeiblerMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.NeymanChiSquaredMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.PearsonChiSquaredMeasure;
+
+/*
+ *  Computes a histogram measure between every pair of a list of descriptors.
+ *
+ *	description:	Each descriptor is prepared (normalized) once and stored in a
+ *					HistogramMatrix. The rows are then processed in bands: the
+ *					columns of a band are cut into tiles of about TILE_VALUES
+ *					bins, small enough to stay in cache while every row of the
+ *					band is compared against them with the row-range compare()
+ *					of the measure. Tiles run as separate tasks on the executor,
+ *					if one is set. For a symmetric measure only the columns
+ *					j >= i of row i are computed, which halves the work.
+ *
+ *					When a band is done its rows are handed to a RowListener in
+ *					order, so that the packed result (see DistanceMatrix) can be
+ *					written out band by band, without holding the whole matrix
+ *					in memory.
+ *
+ *					Entry (i, j) is measure.compare(P_i, P_j) for the prepared
+ *					descriptors P_i = PreparedHistogram.of(descriptor i), with
+ *					i <= j when the measure is symmetric.
+ */
+public class DistanceMatrixEngine {
+
+	// bins per column tile: 256 KB of candidates
+	public final static int TILE_VALUES = 1 << 15;
+
+	// measurements held for a band of rows: 32 MB
+	public final static int BAND_VALUES = 1 << 22;
+
+	// fewest columns per tile
+	public final static int MIN_TILE = 16;
+
+	// histogram measures for which compare(P, Q) and compare(Q, P) differ
+	private static final Set<Class<?>> ASYMMETRIC = new HashSet<Class<?>>(
+			Arrays.<Class<?>> asList(KullbackLeiblerMeasure.class,
+					KDivergenceMeasure.class, PearsonChiSquaredMeasure.class,
+					NeymanChiSquaredMeasure.class));
+
+	/*
+	 * Receives the rows of the matrix, in row order. values[from..to-1] are
+	 * the measurements of row i against columns from..to-1 (from is i for a
+	 * symmetric measure, 0 otherwise); the array is reused once the call
+	 * returns.
+	 */
+	public interface RowListener {
+		public void row(int i, double[] values, int from, int to)
+				throws Exception;
+	}
+
+	private final HistogramMeasure measure;
+	private boolean symmetric;
+	private ExecutorService executor;
+
+	public DistanceMatrixEngine(HistogramMeasure measure) throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"DistanceMatrixEngine: null measure");
+		this.measure = measure;
+		this.symmetric = isSymmetric(measure);
+	}
+
+	// whether compare(P, Q) equals compare(Q, P) for the measure
+	public static boolean isSymmetric(Measure measure) {
+		return !ASYMMETRIC.contains(measure.getClass());
+	}
+
+	public HistogramMeasure getMeasure() {
+		return measure;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	/*
+	 * Whether only the upper triangle is computed; set to false to compute
+	 * compare(j, i) separately from compare(i, j).
+	 */
+	public void setSymmetric(boolean symmetric) {
+		this.symmetric = symmetric;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/*
+	 * The pool the tiles run on; null (the default) runs them on the calling
+	 * thread.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public DistanceMatrix compute(List<? extends Descriptor> descriptors)
+			throws Exception {
+		PreparedHistogram[] histograms = prepare(descriptors);
+		final DistanceMatrix matrix = new DistanceMatrix(histograms.length,
+				symmetric);
+		compute(histograms, new RowListener() {
+			public void row(int i, double[] values, int from, int to) {
+				matrix.setRow(i, values, from, to);
+			}
+		});
+		return matrix;
+	}
+
+	/*
+	 * Computes the matrix row band by row band, handing every row to the
+	 * listener, on the calling thread and in row order.
+	 */
+	public void compute(List<? extends Descriptor> descriptors,
+			RowListener listener) throws Exception {
+		if (listener == null)
+			throw new SingularityTreatmentException(
+					"DistanceMatrixEngine: null listener");
+		compute(prepare(descriptors), listener);
+	}
+
+	/*
+	 * A listener writing the rows as 8-byte doubles: the stream holds the
+	 * values of DistanceMatrix.getValues(), in the same order.
+	 */
+	public static RowListener writer(final DataOutput out) {
+		return new RowListener() {
+			public void row(int i, double[] values, int from, int to)
+					throws Exception {
+				for (int j = from; j < to; j++)
+					out.writeDouble(values[j]);
+			}
+		};
+	}
+
+	private PreparedHistogram[] prepare(List<? extends Descriptor> descriptors)
+			throws Exception {
+		if (descriptors == null)
+			throw new SingularityTreatmentException(
+					"DistanceMatrixEngine: null descriptors");
+		PreparedHistogram[] histograms = new PreparedHistogram[descriptors
+				.size()];
+		for (int i = 0; i < histograms.length; i++)
+			histograms[i] = PreparedHistogram.of(descriptors.get(i));
+		return histograms;
+	}
+
+	private void compute(final PreparedHistogram[] histograms,
+			RowListener listener) throws Exception {
+		int n = histograms.length;
+		if (n == 0)
+			return;
+		final HistogramMatrix candidates = HistogramMatrix.of(histograms);
+		final boolean upper = symmetric;
+		int tile = Math.max(MIN_TILE, TILE_VALUES
+				/ Math.max(1, candidates.getNumBins()));
+		int band = Math.max(1, Math.min(tile, BAND_VALUES / n));
+		final double[][] rows = new double[Math.min(band, n)][n];
+
+		for (int b0 = 0; b0 < n; b0 += band) {
+			final int first = b0;
+			final int last = Math.min(n, b0 + band);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int t0 = upper ? first : 0; t0 < n; t0 += tile) {
+				final int start = t0;
+				final int end = Math.min(n, t0 + tile);
+				tasks.add(new Callable<Void>() {
+					public Void call() throws Exception {
+						for (int i = first; i < last; i++) {
+							int from = upper ? Math.max(i, start) : start;
+							if (from < end)
+								measure.compare(histograms[i], candidates, from,
+										end, rows[i - first]);
+						}
+						return null;
+					}
+				});
+			}
+			HistogramBatch.run(tasks, executor);
+			for (int i = first; i < last; i++)
+				listener.row(i, rows[i - first], upper ? i : 0, n);
+		}
+	}
+}
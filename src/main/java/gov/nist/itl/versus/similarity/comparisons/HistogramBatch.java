@@ -0,0 +1,185 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramKernel;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+
+/*
+ *  Compares a query against the rows of a HistogramMatrix on several threads.
+ *
+ *	description:	Splits the rows into blocks of about BLOCK_VALUES bins and
+ *					hands each block to the range compare() method of the measure
+ *					on an ExecutorService. Every task writes its own slice of the
+ *					result array, so the results are the same as those of the
+ *					sequential compare(PreparedHistogram, HistogramMatrix).
+ *
+ *					Blocks are much smaller than rows / threads, so that threads
+ *					finishing early pick up the remaining blocks.
+ */
+public class HistogramBatch {
+
+	// bins per task: 2 MB of candidates
+	public final static int BLOCK_VALUES = 1 << 18;
+
+	// fewest rows per task
+	public final static int MIN_BLOCK_ROWS = 64;
+
+	/*
+	 * Compares query with every row of candidates, splitting the rows over
+	 * executor; sequential when executor is null or there is a single block.
+	 */
+	public static double[] compare(final HistogramMeasure measure,
+			final PreparedHistogram query, final HistogramMatrix candidates,
+			ExecutorService executor) throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"HistogramBatch: null measure");
+		if (candidates == null)
+			throw new SingularityTreatmentException(
+					"HistogramBatch: null candidates");
+		int rows = candidates.getNumRows();
+		final double[] result = new double[rows];
+		int block = blockRows(candidates.getNumBins());
+		if (executor == null || rows <= block) {
+			measure.compare(query, candidates, 0, rows, result);
+			return result;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int from = 0; from < rows; from += block) {
+			final int start = from;
+			final int end = Math.min(rows, from + block);
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					measure.compare(query, candidates, start, end, result);
+					return null;
+				}
+			});
+		}
+		run(tasks, executor);
+		return result;
+	}
+
+	/*
+	 * As compare(measure, query, candidates, executor), on a pool of the
+	 * given number of threads that is shut down before returning.
+	 */
+	public static double[] compare(HistogramMeasure measure,
+			PreparedHistogram query, HistogramMatrix candidates, int threads)
+			throws Exception {
+		if (threads <= 1)
+			return compare(measure, query, candidates, (ExecutorService) null);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			return compare(measure, query, candidates, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * Compares query with every row of candidates, in order: the
+	 * compare(PreparedHistogram, HistogramMatrix) method of a measure.
+	 */
+	public static double[] compare(HistogramMeasure measure,
+			PreparedHistogram query, HistogramMatrix candidates)
+			throws Exception {
+		return compare(measure, query, candidates, (ExecutorService) null);
+	}
+
+	/*
+	 * The range compare() of a measure without a HistogramMatrix kernel in
+	 * MathOpsE: kernel on query and each of rows from..to-1, read in turn
+	 * into the same array. The query was validated when it was prepared and
+	 * the rows when they were stored (see HistogramMatrix.set()), so the
+	 * kernel runs on a TRUSTED copy of ops; an override set for the measure
+	 * with MathOpsE.setMeasureValidationPolicy() still applies.
+	 */
+	public static void compareRows(HistogramKernel kernel, MathOpsE ops,
+			PreparedHistogram query, HistogramMatrix candidates, int from,
+			int to, double[] result) throws Exception {
+		if (query == null)
+			throw new SingularityTreatmentException(
+					"HistogramBatch: null query");
+		if (candidates == null)
+			throw new SingularityTreatmentException(
+					"HistogramBatch: null candidates");
+		if (result == null)
+			throw new SingularityTreatmentException(
+					"HistogramBatch: null result array");
+		if (query.getNumBins() != candidates.getNumBins())
+			throw new ImageCompatibilityException(
+					"Features must have the same length");
+		if (from < 0 || from > to || to > candidates.getNumRows()
+				|| to > result.length)
+			throw new MathCompatibilityException("HistogramBatch: rows ["
+					+ from + ", " + to + ") not in the "
+					+ candidates.getNumRows() + " rows or the "
+					+ result.length + " results");
+		MathOpsE trusted = new MathOpsE();
+		trusted.setValidationPolicy(ValidationPolicy.TRUSTED);
+		trusted.setVectorKernels(ops.getVectorKernels());
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			PreparedHistogram candidate = candidates.getRow(r, row);
+			row = candidate.getBins();
+			result[r] = kernel.measure(trusted, query, candidate);
+		}
+	}
+
+	/*
+	 * Runs the tasks on executor, or in order on the calling thread when it
+	 * is null, and waits for all of them. Rethrows the exception of the
+	 * first failed task after cancelling the others.
+	 */
+	static void run(List<Callable<Void>> tasks, ExecutorService executor)
+			throws Exception {
+		if (executor == null) {
+			for (Callable<Void> task : tasks)
+				task.call();
+			return;
+		}
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (Callable<Void> task : tasks)
+			futures.add(executor.submit(task));
+		try {
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (ExecutionException e) {
+			for (Future<Void> future : futures)
+				future.cancel(true);
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+
+	// rows per task for rows of numBins bins
+	static int blockRows(int numBins) {
+		return Math.max(MIN_BLOCK_ROWS, BLOCK_VALUES / Math.max(1, numBins));
+	}
+}
@@ -0,0 +1,519 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.PixelHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.RGBHistogramDescriptor;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+
+/*
+ *  File of prepared histograms, memory-mapped, so that descriptors extracted
+ *  once are not extracted again on every run.
+ *
+ *	description:	A little-endian file of fixed-width records, all of the
+ *					same number of bins:
+ *
+ *					header (64 bytes):	magic "VHST", version, bins, flags,
+ *										rows, rows indexed
+ *					record:				id, kind, bands, total, bins
+ *										(8 + 4 + 4 + 8 + 8 * bins bytes)
+ *					index:				the ids of the records, in order
+ *
+ *					The bins are the normalized bins of PreparedHistogram, and
+ *					the total its raw count; kind and bands tell the descriptor
+ *					they came from. The record of row r starts at byte
+ *					64 + r * (24 + 8 * bins), so the id index only maps ids to
+ *					rows. It is written after the last record on close() and
+ *					read in one piece on open(); a file not closed is opened
+ *					by reading the ids from the records instead.
+ *
+ *					Records are read through mapped segments of at most 1 GB:
+ *					opening a store maps the file and reads the ids, and the
+ *					bins are only paged in when compared against. The batch
+ *					kernels of MathOpsE work on double[], so compare() and
+ *					search() copy blocks of rows from the mapping into a
+ *					reused array (a bulk copy, nothing is parsed) and give
+ *					them as a HistogramMatrix to the measure or to
+ *					HistogramKnnSearcher.
+ *
+ *					Reads may run concurrently; add() and close() may not run
+ *					while the store is read.
+ */
+public class HistogramFileStore {
+
+	public enum Kind {
+		PREPARED, GRAYSCALE, RGB, PIXEL
+	}
+
+	private static final int MAGIC = 0x54534856; // "VHST"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_HEADER = 24;
+	private static final int FLAG_NEGATIVE = 1;
+
+	// largest mapped segment, in bytes
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	// bins copied per block by compare() and search()
+	public final static int BLOCK_BINS = 1 << 18;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final boolean writable;
+	private final int numBins;
+	private final int recordSize;
+	private final int segmentRows;
+	private int numRows;
+	private int flags;
+	private long[] ids;
+	private final Map<Long, Integer> index = new HashMap<Long, Integer>();
+	private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	private volatile int mappedRows;
+	private boolean dirty;
+
+	private HistogramFileStore(File file, boolean writable, int numBins)
+			throws Exception {
+		this.file = file;
+		this.writable = writable;
+		this.raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		this.channel = raf.getChannel();
+		this.numBins = numBins;
+		this.recordSize = RECORD_HEADER + 8 * numBins;
+		this.segmentRows = (int) Math.max(1L, SEGMENT_SIZE / recordSize);
+		this.ids = new long[16];
+	}
+
+	// creates an empty store of histograms of numBins bins, replacing file
+	public static HistogramFileStore create(File file, int numBins)
+			throws Exception {
+		if (file == null)
+			throw new SingularityTreatmentException(
+					"HistogramFileStore: null file");
+		if (numBins <= 0 || numBins > (Integer.MAX_VALUE - RECORD_HEADER) / 8)
+			throw new MathCompatibilityException("HistogramFileStore: "
+					+ numBins + " bins");
+		HistogramFileStore store = new HistogramFileStore(file, true, numBins);
+		store.raf.setLength(0);
+		store.dirty = true;
+		store.writeHeader(false);
+		return store;
+	}
+
+	/*
+	 * Opens an existing store, read-only unless writable is set, in which case
+	 * add() appends to it.
+	 */
+	public static HistogramFileStore open(File file, boolean writable)
+			throws Exception {
+		if (file == null)
+			throw new SingularityTreatmentException(
+					"HistogramFileStore: null file");
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			in.getChannel().read(header, 0);
+		} finally {
+			in.close();
+		}
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC)
+			throw new SWIndependenceException("HistogramFileStore: "
+					+ file.getPath() + " is not a histogram store");
+		if (header.getInt(4) != VERSION)
+			throw new SWIndependenceException("HistogramFileStore: version "
+					+ header.getInt(4) + " of " + file.getPath()
+					+ " is not supported");
+		int numBins = header.getInt(8);
+		if (numBins <= 0 || numBins > (Integer.MAX_VALUE - RECORD_HEADER) / 8)
+			throw new SWIndependenceException("HistogramFileStore: "
+					+ file.getPath() + " has " + numBins + " bins");
+		HistogramFileStore store = new HistogramFileStore(file, writable,
+				numBins);
+		try {
+			store.load(header.getInt(12), header.getLong(16), header
+					.getLong(24));
+		} catch (Exception e) {
+			store.raf.close();
+			throw e;
+		}
+		return store;
+	}
+
+	private void load(int flags, long rows, long indexed) throws Exception {
+		long size = channel.size();
+		if (rows < 0 || rows > Integer.MAX_VALUE
+				|| HEADER_SIZE + rows * recordSize > size)
+			throw new SWIndependenceException("HistogramFileStore: "
+					+ file.getPath() + " is truncated");
+		this.flags = flags;
+		this.numRows = (int) rows;
+		this.ids = new long[Math.max(16, numRows)];
+		long end = HEADER_SIZE + rows * recordSize;
+		if (indexed == rows && end + 8 * rows <= size) {
+			// the index after the last record
+			ByteBuffer b = ByteBuffer.allocate(8 * numRows).order(
+					ByteOrder.LITTLE_ENDIAN);
+			while (b.hasRemaining())
+				channel.read(b, end + b.position());
+			b.flip();
+			b.asLongBuffer().get(ids, 0, numRows);
+		} else {
+			// not closed: the ids of the records
+			for (int r = 0; r < numRows; r++)
+				ids[r] = segment(r).getLong(position(r));
+		}
+		for (int r = 0; r < numRows; r++)
+			if (index.put(ids[r], r) != null)
+				throw new SWIndependenceException("HistogramFileStore: id "
+						+ ids[r] + " stored twice in " + file.getPath());
+	}
+
+	private void writeHeader(boolean indexed) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(numBins).putInt(flags);
+		header.putLong(numRows).putLong(indexed ? numRows : -1L);
+		header.position(0);
+		write(header, 0);
+	}
+
+	private void write(ByteBuffer b, long position) throws IOException {
+		while (b.hasRemaining())
+			position += channel.write(b, position);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	// whether no bin is negative
+	public boolean isNonNegative() {
+		return (flags & FLAG_NEGATIVE) == 0;
+	}
+
+	/*
+	 * Appends the histogram of d (any descriptor PreparedHistogram.of()
+	 * accepts) under id and returns its row.
+	 */
+	public int add(long id, Descriptor d) throws Exception {
+		if (!writable)
+			throw new SWIndependenceException("HistogramFileStore: "
+					+ file.getPath() + " is open read-only");
+		PreparedHistogram h = PreparedHistogram.of(d);
+		if (h.getNumBins() != numBins)
+			throw new MathCompatibilityException("HistogramFileStore: "
+					+ h.getNumBins() + " bins in a store of " + numBins);
+		if (index.containsKey(id))
+			throw new MathCompatibilityException("HistogramFileStore: id "
+					+ id + " already stored");
+		if (numRows == Integer.MAX_VALUE)
+			throw new MathCompatibilityException("HistogramFileStore: "
+					+ file.getPath() + " is full");
+		Kind kind = Kind.PREPARED;
+		int bands = 1;
+		if (d instanceof RGBHistogramDescriptor) {
+			kind = Kind.RGB;
+			bands = ((RGBHistogramDescriptor) d).getNumBands();
+		} else if (d instanceof PixelHistogramDescriptor) {
+			kind = Kind.PIXEL;
+			bands = ((PixelHistogramDescriptor) d).getNumBands();
+		} else if (d instanceof GrayscaleHistogramDescriptor)
+			kind = Kind.GRAYSCALE;
+
+		double[] bins = h.getBins();
+		ByteBuffer b = ByteBuffer.allocate(recordSize).order(
+				ByteOrder.LITTLE_ENDIAN);
+		b.putLong(id).putInt(kind.ordinal()).putInt(bands).putDouble(
+				h.getTotal());
+		b.asDoubleBuffer().put(bins);
+		b.position(0);
+		if (!dirty) {
+			// the index after the last record is about to be overwritten
+			dirty = true;
+			writeHeader(false);
+		}
+		write(b, HEADER_SIZE + (long) numRows * recordSize);
+		for (int i = 0; i < numBins; i++)
+			if (bins[i] < 0d)
+				flags |= FLAG_NEGATIVE;
+		if (numRows == ids.length)
+			ids = Arrays.copyOf(ids, 2 * numRows);
+		ids[numRows] = id;
+		index.put(id, numRows);
+		numRows++;
+		writeHeader(false);
+		return numRows - 1;
+	}
+
+	/*
+	 * Writes the index and the header, and releases the file. A store not
+	 * closed after add() can still be opened, by reading its ids from the
+	 * records.
+	 */
+	public void close() throws Exception {
+		try {
+			if (writable && dirty) {
+				ByteBuffer b = ByteBuffer.allocate(8 * numRows).order(
+						ByteOrder.LITTLE_ENDIAN);
+				b.asLongBuffer().put(ids, 0, numRows);
+				long end = HEADER_SIZE + (long) numRows * recordSize;
+				write(b, end);
+				raf.setLength(end + 8L * numRows);
+				writeHeader(true);
+				channel.force(true);
+				dirty = false;
+			}
+		} finally {
+			segments = new MappedByteBuffer[0];
+			mappedRows = 0;
+			raf.close();
+		}
+	}
+
+	// the row of id, or -1 if it is not stored
+	public int indexOf(long id) {
+		Integer r = index.get(id);
+		return (r == null) ? -1 : r;
+	}
+
+	// the byte offset of the record of id in the file, or -1
+	public long getOffset(long id) {
+		int r = indexOf(id);
+		return (r < 0) ? -1L : HEADER_SIZE + (long) r * recordSize;
+	}
+
+	public long getId(int r) throws Exception {
+		chkrow(r);
+		return ids[r];
+	}
+
+	public Kind getKind(int r) throws Exception {
+		chkrow(r);
+		return Kind.values()[segment(r).getInt(position(r) + 8)];
+	}
+
+	public int getNumBands(int r) throws Exception {
+		chkrow(r);
+		return segment(r).getInt(position(r) + 12);
+	}
+
+	// row r as a prepared histogram over a copy of its bins
+	public PreparedHistogram getRow(int r) throws Exception {
+		chkrow(r);
+		MappedByteBuffer s = segment(r);
+		int p = position(r);
+		double[] bins = new double[numBins];
+		bins(s, p).get(bins);
+		return PreparedHistogram.ofNormalized(bins, s.getDouble(p + 16));
+	}
+
+	// the histogram stored under id
+	public PreparedHistogram get(long id) throws Exception {
+		int r = indexOf(id);
+		if (r < 0)
+			throw new MathCompatibilityException("HistogramFileStore: no id "
+					+ id);
+		return getRow(r);
+	}
+
+	// a copy of rows from..to-1, e.g. to build an index over them
+	public HistogramMatrix getMatrix(int from, int to) throws Exception {
+		chkrange(from, to);
+		return fill(new double[(to - from) * numBins], new double[to - from],
+				from, to);
+	}
+
+	public double[] compare(HistogramMeasure measure, PreparedHistogram query)
+			throws Exception {
+		double[] result = new double[numRows];
+		compare(measure, query, 0, numRows, result);
+		return result;
+	}
+
+	/*
+	 * Measures query against rows from..to-1 into result[from..to-1], as
+	 * measure.compare(query, getMatrix(from, to)) would.
+	 */
+	public void compare(HistogramMeasure measure, PreparedHistogram query,
+			int from, int to, double[] result) throws Exception {
+		check(measure, query);
+		chkrange(from, to);
+		if (result == null || result.length < to)
+			throw new MathCompatibilityException(
+					"HistogramFileStore: result shorter than " + to);
+		int size = blockRows(to - from);
+		double[] data = new double[size * numBins];
+		double[] totals = new double[size];
+		double[] values = new double[size];
+		for (int r = from; r < to; r += size) {
+			int end = Math.min(to, r + size);
+			measure.compare(query, fill(data, totals, r, end), 0, end - r,
+					values);
+			System.arraycopy(values, 0, result, r, end - r);
+		}
+	}
+
+	/*
+	 * The k stored rows closest to query, closest first, as
+	 * HistogramKnnSearcher would find them over getMatrix(0, getNumRows()).
+	 */
+	public HistogramKnnSearcher.Result search(HistogramMeasure measure,
+			PreparedHistogram query, int k) throws Exception {
+		check(measure, query);
+		if (k < 1)
+			throw new MathCompatibilityException("HistogramFileStore: k = "
+					+ k + ", at least 1 neighbour must be asked for");
+		boolean similarity = HistogramKnnSearcher.isSimilarity(measure);
+		NeighbourHeap heap = new NeighbourHeap(Math.min(k, numRows));
+		int size = blockRows(numRows);
+		double[] data = new double[size * numBins];
+		double[] totals = new double[size];
+		int measured = 0;
+		int abandoned = 0;
+		for (int r = 0; r < numRows; r += size) {
+			int end = Math.min(numRows, r + size);
+			HistogramKnnSearcher.Result found = new HistogramKnnSearcher(
+					measure, fill(data, totals, r, end)).search(query, k);
+			int[] rows = found.getIndices();
+			double[] values = found.getValues();
+			for (int i = 0; i < rows.length; i++)
+				heap.offer(similarity ? -values[i] : values[i], r + rows[i]);
+			measured += found.getMeasured();
+			abandoned += found.getAbandoned();
+		}
+		return heap.result(similarity, measured, abandoned);
+	}
+
+	private void check(HistogramMeasure measure, PreparedHistogram query)
+			throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"HistogramFileStore: null measure");
+		if (query == null)
+			throw new SingularityTreatmentException(
+					"HistogramFileStore: null query");
+		// Check feature lengths, they must be equal
+		if (query.getNumBins() != numBins)
+			throw new ImageCompatibilityException(
+					"Features must have the same length");
+	}
+
+	// rows per block when copying up to rows rows
+	private int blockRows(int rows) {
+		return Math.max(1, Math.min(rows, BLOCK_BINS / numBins));
+	}
+
+	/*
+	 * Copies rows from..to-1 into the start of data and totals, and returns a
+	 * matrix over them.
+	 */
+	private HistogramMatrix fill(double[] data, double[] totals, int from,
+			int to) throws Exception {
+		for (int r = from, off = 0; r < to; r++, off += numBins) {
+			MappedByteBuffer s = segment(r);
+			int p = position(r);
+			totals[r - from] = s.getDouble(p + 16);
+			bins(s, p).get(data, off, numBins);
+		}
+		return new HistogramMatrix(to - from, numBins, data, totals,
+				!isNonNegative());
+	}
+
+	// the bins of the record at p of s
+	private DoubleBuffer bins(MappedByteBuffer s, int p) {
+		ByteBuffer b = s.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		b.position(p + RECORD_HEADER);
+		return b.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+	}
+
+	// position of the record of row r in its segment
+	private int position(int r) {
+		return (r % segmentRows) * recordSize;
+	}
+
+	/*
+	 * The mapped segment holding row r, mapping the rows added since.
+	 * map() publishes segments before mappedRows, so mappedRows is read
+	 * first: the segments read after it cover at least that many rows. The
+	 * length check catches the empty segments of a closed store.
+	 */
+	private MappedByteBuffer segment(int r) throws IOException {
+		int rows = mappedRows;
+		MappedByteBuffer[] s = segments;
+		int i = r / segmentRows;
+		if (r >= rows || i >= s.length)
+			s = map();
+		return s[i];
+	}
+
+	private synchronized MappedByteBuffer[] map() throws IOException {
+		int rows = numRows;
+		int count = (rows + segmentRows - 1) / segmentRows;
+		MappedByteBuffer[] s = Arrays.copyOf(segments, count);
+		for (int i = 0; i < count; i++) {
+			int first = i * segmentRows;
+			int n = Math.min(segmentRows, rows - first);
+			if (s[i] != null && s[i].capacity() == n * recordSize)
+				continue;
+			s[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE
+					+ (long) first * recordSize, (long) n * recordSize);
+			s[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+		segments = s;
+		mappedRows = rows;
+		return s;
+	}
+
+	private void chkrow(int r) throws Exception {
+		if (r < 0 || r >= numRows)
+			throw new MathCompatibilityException("HistogramFileStore: row "
+					+ r + " not in [0, " + numRows + ")");
+	}
+
+	private void chkrange(int from, int to) throws Exception {
+		if (from < 0 || to > numRows || from > to)
+			throw new MathCompatibilityException("HistogramFileStore: rows "
+					+ from + ".." + to + " out of 0.." + numRows);
+	}
+}
@@ -0,0 +1,377 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/*
+ *  Finds the k rows of a HistogramMatrix closest to a query histogram.
+ *
+ *	description:	Keeps the k best candidates seen so far in a bounded heap.
+ *					For the measures whose value only grows as bins are added
+ *					(city block, Euclidean, squared Euclidean, Chebyshev and the
+ *					chi-squared family), a candidate is abandoned as soon as its
+ *					partial sum exceeds the value of the current k-th best one.
+ *					The partial sums visit the bins in decreasing order of query
+ *					mass, where the largest terms usually are, so that most
+ *					candidates are abandoned after a few bins. A candidate that
+ *					is not abandoned is measured with the measure itself, so the
+ *					values returned are exactly those of measure.compare().
+ *
+ *					Abandoning needs bins that are not negative; otherwise, and
+ *					for all other measures, every candidate is measured. For the
+ *					similarity measures (intersection, cosine, ...) the largest
+ *					values are the closest.
+ */
+public class HistogramKnnSearcher {
+
+	/*
+	 * Relative margin on the k-th best value before a partial sum abandons a
+	 * candidate: the partial sums add in another order than the measure, so
+	 * they may round differently.
+	 */
+	public final static double SLACK = 1e-9;
+
+	// a partial sum is compared with the bound every CHECK_MASK + 1 bins
+	private final static int CHECK_MASK = 7;
+
+	/*
+	 * How a measure folds its per-bin terms: value = scale(sum of terms), or
+	 * the largest term for CHEBYSHEV.
+	 */
+	private enum Monotone {
+		CITY_BLOCK, SQUARED_EUCLIDEAN, EUCLIDEAN, CHEBYSHEV, PEARSON, NEYMAN,
+		SQUARED_CHI, PROBABILISTIC_SYMMETRIC_CHI, DIVERGENCE, CLARK,
+		ADDITIVE_SYMMETRIC_CHI;
+
+		// the largest sum of terms for which the value is at most t
+		double bound(double t) {
+			switch (this) {
+			case EUCLIDEAN:
+			case CLARK:
+				return t * t;
+			case PROBABILISTIC_SYMMETRIC_CHI:
+			case DIVERGENCE:
+				return t / 2.0d;
+			default:
+				return t;
+			}
+		}
+	}
+
+	private static final Map<Class<?>, Monotone> MONOTONE = new HashMap<Class<?>, Monotone>();
+	static {
+		MONOTONE.put(CityBlockL1Measure.class, Monotone.CITY_BLOCK);
+		MONOTONE.put(SquaredEuclideanMeasure.class, Monotone.SQUARED_EUCLIDEAN);
+		MONOTONE.put(EuclideanL2Measure.class, Monotone.EUCLIDEAN);
+		MONOTONE.put(ChebyshevLInfMeasure.class, Monotone.CHEBYSHEV);
+		MONOTONE.put(PearsonChiSquaredMeasure.class, Monotone.PEARSON);
+		MONOTONE.put(NeymanChiSquaredMeasure.class, Monotone.NEYMAN);
+		MONOTONE.put(SquaredChiSquaredMeasure.class, Monotone.SQUARED_CHI);
+		MONOTONE.put(ProbabilisticSymmetricChiSquaredMeasure.class,
+				Monotone.PROBABILISTIC_SYMMETRIC_CHI);
+		MONOTONE.put(DivergenceMeasure.class, Monotone.DIVERGENCE);
+		MONOTONE.put(ClarkMeasure.class, Monotone.CLARK);
+		MONOTONE.put(AdditiveSymmetricChiSquaredMeasure.class,
+				Monotone.ADDITIVE_SYMMETRIC_CHI);
+	}
+
+	// histogram measures for which larger values are closer
+	private static final Set<Class<?>> SIMILARITY = new HashSet<Class<?>>(
+			Arrays.<Class<?>> asList(IntersectionMeasure.class,
+					CzekanowskiMeasure.class, MotykaMeasure.class,
+					KulczynskiSMeasure.class, RuzickaMeasure.class,
+					InnerProductMeasure.class, HarmonicMeanMeasure.class,
+					CosineMeasure.class, KumarHassebrookPCEMeasure.class,
+					JaccardMeasure.class, DiceMeasure.class,
+					FidelityMeasure.class, SquaredChordMeasure.class));
+
+	/*
+	 * The k nearest candidates, closest first: row indices in the matrix and
+	 * their measurements. Ties are broken by row index.
+	 */
+	public static class Result {
+		private final int[] indices;
+		private final double[] values;
+		private final int measured;
+		private final int abandoned;
+
+		Result(int[] indices, double[] values, int measured, int abandoned) {
+			this.indices = indices;
+			this.values = values;
+			this.measured = measured;
+			this.abandoned = abandoned;
+		}
+
+		public int[] getIndices() {
+			return indices;
+		}
+
+		public double[] getValues() {
+			return values;
+		}
+
+		// candidates measured in full
+		public int getMeasured() {
+			return measured;
+		}
+
+		/*
+		 * candidates never measured in full: abandoned on their partial sum,
+		 * or pruned by an index
+		 */
+		public int getAbandoned() {
+			return abandoned;
+		}
+
+		// share of the candidates not measured in full
+		public double getPruningRatio() {
+			int total = measured + abandoned;
+			return (total == 0) ? 0d : (double) abandoned / total;
+		}
+	}
+
+	private final HistogramMeasure measure;
+	private final HistogramMatrix candidates;
+	private final Monotone monotone;
+	private final boolean similarity;
+	private boolean earlyAbandoning = true;
+
+	public HistogramKnnSearcher(HistogramMeasure measure,
+			HistogramMatrix candidates) throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"HistogramKnnSearcher: null measure");
+		if (candidates == null)
+			throw new SingularityTreatmentException(
+					"HistogramKnnSearcher: null candidates");
+		this.measure = measure;
+		this.candidates = candidates;
+		this.monotone = MONOTONE.get(measure.getClass());
+		this.similarity = isSimilarity(measure);
+	}
+
+	// whether larger values of the measure are closer
+	public static boolean isSimilarity(Measure measure) {
+		return SIMILARITY.contains(measure.getClass());
+	}
+
+	// whether the measure can abandon candidates on a partial sum
+	public static boolean isMonotone(Measure measure) {
+		return MONOTONE.containsKey(measure.getClass());
+	}
+
+	public HistogramMeasure getMeasure() {
+		return measure;
+	}
+
+	public HistogramMatrix getCandidates() {
+		return candidates;
+	}
+
+	public boolean getEarlyAbandoning() {
+		return earlyAbandoning;
+	}
+
+	// set to false to measure every candidate, e.g. for comparisons
+	public void setEarlyAbandoning(boolean enabled) {
+		earlyAbandoning = enabled;
+	}
+
+	public Result search(PreparedHistogram query, int k) throws Exception {
+		if (query == null)
+			throw new SingularityTreatmentException(
+					"HistogramKnnSearcher: null query");
+		// Check feature lengths, they must be equal
+		if (query.getNumBins() != candidates.getNumBins())
+			throw new ImageCompatibilityException(
+					"Features must have the same length");
+		if (k < 1)
+			throw new MathCompatibilityException("HistogramKnnSearcher: k = "
+					+ k + ", at least 1 neighbour must be asked for");
+		int rows = candidates.getNumRows();
+		NeighbourHeap heap = new NeighbourHeap(Math.min(k, rows));
+		double[] p = query.getBins();
+
+		if (monotone == null || !earlyAbandoning
+				|| !candidates.isNonNegative() || !nonNegative(p)) {
+			double[] values = measure.compare(query, candidates);
+			for (int r = 0; r < rows; r++)
+				heap.offer(key(values[r]), r);
+			return heap.result(similarity, rows, 0);
+		}
+
+		// bins by decreasing query mass
+		int n = p.length;
+		int[] order = order(p);
+		double[] po = new double[n];
+		for (int i = 0; i < n; i++)
+			po[i] = p[order[i]];
+		double[] q = candidates.getData();
+		double[] values = new double[rows];
+		int measured = 0;
+		int abandoned = 0;
+		for (int r = 0, off = 0; r < rows; r++, off += n) {
+			if (heap.isFull()) {
+				double bound = monotone.bound(heap.worstKey()) * (1.0d + SLACK);
+				if (exceeds(monotone, po, order, q, off, bound)) {
+					abandoned++;
+					continue;
+				}
+			}
+			measure.compare(query, candidates, r, r + 1, values);
+			measured++;
+			heap.offer(key(values[r]), r);
+		}
+		return heap.result(similarity, measured, abandoned);
+	}
+
+	// heap keys: smaller is closer
+	private double key(double value) {
+		return similarity ? -value : value;
+	}
+
+	private static boolean nonNegative(double[] p) {
+		for (int i = 0; i < p.length; i++)
+			if (p[i] < 0d)
+				return false;
+		return true;
+	}
+
+	// bin indices by decreasing value of p
+	private static int[] order(double[] p) {
+		int n = p.length;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			// non-negative doubles order as their bits; largest first
+			keys[i] = (~Double.doubleToLongBits(p[i]) & 0x7fffffff00000000L)
+					| i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++)
+			order[i] = (int) (keys[i] & 0xffffffffL);
+		return order;
+	}
+
+	/*
+	 * Whether the sum of the terms of row off of q exceeds bound, looking at
+	 * the bins in the given order and stopping as soon as it does. The terms
+	 * follow the zero rules of MathOpsE.quotient().
+	 */
+	private static boolean exceeds(Monotone kind, double[] p, int[] order,
+			double[] q, int off, double bound) {
+		int n = p.length;
+		double s = 0d;
+		switch (kind) {
+		case CITY_BLOCK:
+			for (int i = 0; i < n; i++) {
+				s += Math.abs(p[i] - q[off + order[i]]);
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case SQUARED_EUCLIDEAN:
+		case EUCLIDEAN:
+			for (int i = 0; i < n; i++) {
+				double d = p[i] - q[off + order[i]];
+				s += d * d;
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case CHEBYSHEV:
+			for (int i = 0; i < n; i++)
+				if (Math.abs(p[i] - q[off + order[i]]) > bound)
+					return true;
+			return false;
+		case PEARSON:
+			for (int i = 0; i < n; i++) {
+				double b = q[off + order[i]];
+				double d = p[i] - b;
+				s += ratio(d * d, b);
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case NEYMAN:
+			for (int i = 0; i < n; i++) {
+				double d = p[i] - q[off + order[i]];
+				s += ratio(d * d, p[i]);
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case SQUARED_CHI:
+		case PROBABILISTIC_SYMMETRIC_CHI:
+			for (int i = 0; i < n; i++) {
+				double b = q[off + order[i]];
+				double d = p[i] - b;
+				s += ratio(d * d, p[i] + b);
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case DIVERGENCE:
+			for (int i = 0; i < n; i++) {
+				double b = q[off + order[i]];
+				double d = p[i] - b;
+				double t = p[i] + b;
+				s += ratio(d * d, t * t);
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case CLARK:
+			for (int i = 0; i < n; i++) {
+				double b = q[off + order[i]];
+				double c = ratio(Math.abs(p[i] - b), p[i] + b);
+				s += c * c;
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		case ADDITIVE_SYMMETRIC_CHI:
+			for (int i = 0; i < n; i++) {
+				double b = q[off + order[i]];
+				double d = p[i] - b;
+				s += ratio(d * d * (p[i] + b), p[i] * b);
+				if ((i & CHECK_MASK) == CHECK_MASK && s > bound)
+					return true;
+			}
+			break;
+		}
+		return s > bound;
+	}
+
+	// a / b with the 0/0 and x/0 rules of MathOpsE.quotient()
+	private static double ratio(double a, double b) {
+		if (Math.abs(b) <= Double.MIN_VALUE)
+			return (Math.abs(a) <= Double.MIN_VALUE) ? 0d : Double.MAX_VALUE;
+		return a / b;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CosineMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+
+/*
+ *  Locality-sensitive hashing index over the rows of a HistogramMatrix, for
+ *  approximate nearest neighbour searches.
+ *
+ *	description:	Every table hashes a histogram x with hashLength functions
+ *					and keeps the rows by their combined hash, so that close
+ *					histograms likely share a bucket in at least one table:
+ *
+ *					city block:	floor((a . x + b) / width), a of Cauchy
+ *								components (1-stable)
+ *					Euclidean:	floor((a . x + b) / width), a of Gaussian
+ *								components (2-stable)
+ *					cosine:		floor((a . x / |x| + b) / width), a of Gaussian
+ *								components
+ *
+ *					with b uniform in [0, width). For cosine the histograms are
+ *					hashed as unit vectors, between which the Euclidean distance
+ *					is sqrt(2 (1 - cosine)): sign hashes would put most
+ *					histograms, all in the positive orthant, in one bucket.
+ *
+ *					A search gathers the rows of the query's bucket in every
+ *					table and re-ranks them with the measure itself, so the
+ *					values returned are exactly those of measure.compare(); rows
+ *					sharing no bucket with the query are missed. More tables find
+ *					more neighbours and a longer hash fewer false candidates.
+ *
+ *					Buckets are kept as sorted (32-bit bucket hash, row) pairs,
+ *					8 bytes per row and table.
+ */
+public class HistogramLshIndex {
+
+	// tables and hash length used when none are given
+	public final static int DEFAULT_TABLES = 16;
+	public final static int DEFAULT_HASH_LENGTH = 12;
+
+	// random row pairs measured to pick a default bucket width
+	public final static int WIDTH_SAMPLES = 100;
+
+	private enum Family {
+		CITY_BLOCK, EUCLIDEAN, COSINE
+	}
+
+	private static final Map<Class<?>, Family> FAMILY = new HashMap<Class<?>, Family>();
+	static {
+		FAMILY.put(CityBlockL1Measure.class, Family.CITY_BLOCK);
+		FAMILY.put(EuclideanL2Measure.class, Family.EUCLIDEAN);
+		FAMILY.put(CosineMeasure.class, Family.COSINE);
+	}
+
+	private final HistogramMeasure measure;
+	private final HistogramMatrix candidates;
+	private final Family family;
+	private final boolean similarity;
+	private final int tables;
+	private final int hashLength;
+	private final double width;
+	// per table: hashLength projections of numBins components, and offsets
+	private final double[][] projections;
+	private final double[][] offsets;
+	// per table: (bucket << 32) | row, sorted
+	private final long[][] buckets;
+
+	public HistogramLshIndex(HistogramMeasure measure,
+			HistogramMatrix candidates) throws Exception {
+		this(measure, candidates, DEFAULT_TABLES, DEFAULT_HASH_LENGTH, 0d,
+				new Random(1));
+	}
+
+	/*
+	 * width is the bucket width of the hashes; 0 picks the median distance
+	 * between random pairs of rows.
+	 */
+	public HistogramLshIndex(HistogramMeasure measure,
+			HistogramMatrix candidates, int tables, int hashLength,
+			double width, Random random) throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"HistogramLshIndex: null measure");
+		if (candidates == null)
+			throw new SingularityTreatmentException(
+					"HistogramLshIndex: null candidates");
+		if (!isSupported(measure))
+			throw new MathCompatibilityException("HistogramLshIndex: no hash for "
+					+ measure.getName());
+		if (tables < 1 || hashLength < 1)
+			throw new MathCompatibilityException("HistogramLshIndex: "
+					+ tables + " tables of " + hashLength
+					+ " hashes, at least 1 of each is needed");
+		if (Double.isNaN(width) || Double.isInfinite(width) || width < 0d)
+			throw new MathCompatibilityException("HistogramLshIndex: width = "
+					+ width);
+		this.measure = measure;
+		this.candidates = candidates;
+		this.family = FAMILY.get(measure.getClass());
+		this.similarity = HistogramKnnSearcher.isSimilarity(measure);
+		this.tables = tables;
+		this.hashLength = hashLength;
+		this.width = (width > 0d) ? width : defaultWidth(random);
+
+		int n = candidates.getNumBins();
+		projections = new double[tables][hashLength * n];
+		offsets = new double[tables][hashLength];
+		for (int t = 0; t < tables; t++) {
+			for (int j = 0; j < projections[t].length; j++)
+				projections[t][j] = (family == Family.CITY_BLOCK) ? Math
+						.tan(Math.PI * (random.nextDouble() - 0.5d)) : random
+						.nextGaussian();
+			for (int h = 0; h < hashLength; h++)
+				offsets[t][h] = random.nextDouble() * this.width;
+		}
+
+		int rows = candidates.getNumRows();
+		double[] data = candidates.getData();
+		buckets = new long[tables][rows];
+		for (int t = 0; t < tables; t++) {
+			for (int r = 0; r < rows; r++)
+				buckets[t][r] = ((long) bucket(t, data, r * n) << 32) | r;
+			Arrays.sort(buckets[t]);
+		}
+	}
+
+	// whether the index has a hash family for the measure
+	public static boolean isSupported(Measure measure) {
+		return FAMILY.containsKey(measure.getClass());
+	}
+
+	public HistogramMeasure getMeasure() {
+		return measure;
+	}
+
+	public int getTables() {
+		return tables;
+	}
+
+	public int getHashLength() {
+		return hashLength;
+	}
+
+	public double getWidth() {
+		return width;
+	}
+
+	private double defaultWidth(Random random) throws Exception {
+		int rows = candidates.getNumRows();
+		if (rows < 2)
+			return 1d;
+		double[] sample = new double[WIDTH_SAMPLES];
+		for (int s = 0; s < sample.length; s++) {
+			int a = random.nextInt(rows);
+			int b = random.nextInt(rows);
+			double v = measure.compare(candidates.getRow(a),
+					candidates.getRow(b)).getValue();
+			sample[s] = (family == Family.COSINE) ? Math.sqrt(Math.max(0d,
+					2d * (1d - v))) : v;
+		}
+		Arrays.sort(sample);
+		double median = sample[sample.length / 2];
+		return (median > 0d) ? median : 1d;
+	}
+
+	// the bucket of the histogram at x[off..off+numBins-1] in table t
+	private int bucket(int t, double[] x, int off) {
+		int n = candidates.getNumBins();
+		double[] a = projections[t];
+		double scale = 1d;
+		if (family == Family.COSINE) {
+			double norm = 0d;
+			for (int i = 0; i < n; i++)
+				norm += x[off + i] * x[off + i];
+			if (norm > 0d)
+				scale = 1d / Math.sqrt(norm);
+		}
+		long h = 0xcbf29ce484222325L;
+		for (int j = 0, p = 0; j < hashLength; j++, p += n) {
+			double dot = 0d;
+			for (int i = 0; i < n; i++)
+				dot += a[p + i] * x[off + i];
+			long v = (long) Math.floor((dot * scale + offsets[t][j]) / width);
+			h = (h ^ v) * 0x100000001b3L;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/*
+	 * The rows sharing a bucket with query in some table, in increasing
+	 * order.
+	 */
+	public int[] candidates(PreparedHistogram query) throws Exception {
+		check(query);
+		double[] q = query.getBins();
+		int[] found = new int[16];
+		int count = 0;
+		for (int t = 0; t < tables; t++) {
+			long key = (long) bucket(t, q, 0) << 32;
+			long[] b = buckets[t];
+			// first entry of the bucket: rows are non-negative
+			int i = Arrays.binarySearch(b, key);
+			if (i < 0)
+				i = -i - 1;
+			for (; i < b.length && (b[i] & 0xffffffff00000000L) == key; i++) {
+				if (count == found.length)
+					found = Arrays.copyOf(found, 2 * count);
+				found[count++] = (int) b[i];
+			}
+		}
+		Arrays.sort(found, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; i++)
+			if (unique == 0 || found[i] != found[unique - 1])
+				found[unique++] = found[i];
+		return Arrays.copyOf(found, unique);
+	}
+
+	/*
+	 * The k closest of the candidate rows, closest first. getMeasured() of
+	 * the result counts the rows re-ranked.
+	 */
+	public HistogramKnnSearcher.Result search(PreparedHistogram query, int k)
+			throws Exception {
+		if (k < 1)
+			throw new MathCompatibilityException("HistogramLshIndex: k = " + k
+					+ ", at least 1 neighbour must be asked for");
+		int[] rows = candidates(query);
+		NeighbourHeap heap = new NeighbourHeap(Math.min(k, rows.length));
+		for (int i = 0; i < rows.length; i++) {
+			double v = measure.compare(query, candidates.getRow(rows[i]))
+					.getValue();
+			heap.offer(similarity ? -v : v, rows[i]);
+		}
+		return heap.result(similarity, rows.length, candidates.getNumRows()
+				- rows.length);
+	}
+
+	private void check(PreparedHistogram query) throws Exception {
+		if (query == null)
+			throw new SingularityTreatmentException(
+					"HistogramLshIndex: null query");
+		// Check feature lengths, they must be equal
+		if (query.getNumBins() != candidates.getNumBins())
+			throw new ImageCompatibilityException(
+					"Features must have the same length");
+	}
+}
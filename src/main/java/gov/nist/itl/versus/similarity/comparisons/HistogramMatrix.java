@@ -0,0 +1,257 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.List;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+/*
+ *  A set of normalized histograms of the same length, stored row-major.
+ *
+ *	description:	Row r holds the bins of one prepared histogram at
+ *					[r * numBins, (r + 1) * numBins) of a single double[], so
+ *					that comparing a query against every row walks the
+ *					candidates once, in memory order. Rows are validated in full
+ *					when they are stored; the batch kernels of MathOpsE then only
+ *					validate the query.
+ *
+ *					Compare a query against the rows with the
+ *					compare(PreparedHistogram, HistogramMatrix) method of the
+ *					histogram measures, or with HistogramBatch to split the rows
+ *					over several threads.
+ */
+public class HistogramMatrix {
+
+	// rows are always validated in full when they are stored
+	private static final MathOpsE ops = new MathOpsE();
+	static {
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+	}
+
+	private final int numRows;
+	private final int numBins;
+	private final double[] data;
+	private final double[] totals;
+	private volatile boolean negative;
+
+	// lazily computed per-row invariants
+	private volatile double[] l2Norms;
+
+	/*
+	 * An empty matrix of numRows rows of numBins bins, filled with set().
+	 */
+	public HistogramMatrix(int numRows, int numBins) throws Exception {
+		if (numRows < 0 || numBins < 0)
+			throw new MathCompatibilityException(
+					"HistogramMatrix: negative number of rows or bins");
+		if ((long) numRows * numBins > Integer.MAX_VALUE)
+			throw new MathCompatibilityException("HistogramMatrix: "
+					+ numRows + " x " + numBins + " bins do not fit in an array");
+		this.numRows = numRows;
+		this.numBins = numBins;
+		this.data = new double[numRows * numBins];
+		this.totals = new double[numRows];
+	}
+
+	/*
+	 * A matrix over the given row-major normalized bins: data.length must be a
+	 * multiple of numBins. The array is kept, not copied.
+	 */
+	public HistogramMatrix(int numBins, double[] data) throws Exception {
+		ops.chkargs("HistogramMatrix", data);
+		if (numBins <= 0 || data.length % numBins != 0)
+			throw new MathCompatibilityException("HistogramMatrix: "
+					+ data.length + " values are not rows of " + numBins
+					+ " bins");
+		this.numBins = numBins;
+		this.numRows = data.length / numBins;
+		this.data = data;
+		this.totals = new double[numRows];
+		for (int r = 0, off = 0; r < numRows; r++, off += numBins) {
+			double t = 0;
+			for (int i = 0; i < numBins; i++) {
+				t += data[off + i];
+				if (data[off + i] < 0d)
+					negative = true;
+			}
+			totals[r] = t;
+		}
+	}
+
+	public static HistogramMatrix of(List<PreparedHistogram> histograms)
+			throws Exception {
+		if (histograms == null)
+			throw new SingularityTreatmentException(
+					"HistogramMatrix: first argument null value");
+		return of(histograms.toArray(new PreparedHistogram[histograms.size()]));
+	}
+
+	public static HistogramMatrix of(PreparedHistogram... histograms)
+			throws Exception {
+		if (histograms == null)
+			throw new SingularityTreatmentException(
+					"HistogramMatrix: first argument null value");
+		if (histograms.length == 0)
+			throw new MathCompatibilityException(
+					"HistogramMatrix: no histograms");
+		HistogramMatrix m = new HistogramMatrix(histograms.length,
+				histograms[0].getNumBins());
+		for (int r = 0; r < histograms.length; r++)
+			m.set(r, histograms[r]);
+		return m;
+	}
+
+	/*
+	 * Stores the bins of a prepared histogram as row r. Not to be called
+	 * while the matrix is being compared against.
+	 */
+	public void set(int r, PreparedHistogram h) throws Exception {
+		if (h == null)
+			throw new SingularityTreatmentException(
+					"HistogramMatrix: second argument null value");
+		chkrow(r);
+		if (h.getNumBins() != numBins)
+			throw new MathCompatibilityException("HistogramMatrix: row of "
+					+ h.getNumBins() + " bins in a matrix of " + numBins);
+		double[] bins = h.getBins();
+		ops.chkargs("HistogramMatrix", bins);
+		for (int i = 0; i < numBins; i++)
+			if (bins[i] < 0d)
+				negative = true;
+		System.arraycopy(bins, 0, data, r * numBins, numBins);
+		totals[r] = h.getTotal();
+		l2Norms = null;
+	}
+
+	/*
+	 * Exchanges rows a and b; for indexes that rearrange their own copy of a
+	 * matrix.
+	 */
+	void swapRows(int a, int b) {
+		if (a == b)
+			return;
+		for (int i = 0, oa = a * numBins, ob = b * numBins; i < numBins; i++) {
+			double t = data[oa + i];
+			data[oa + i] = data[ob + i];
+			data[ob + i] = t;
+		}
+		double t = totals[a];
+		totals[a] = totals[b];
+		totals[b] = t;
+		l2Norms = null;
+	}
+
+	// a copy of rows from..to-1
+	public HistogramMatrix copyRows(int from, int to) throws Exception {
+		if (from < 0 || to > numRows || from > to)
+			throw new MathCompatibilityException("HistogramMatrix: rows "
+					+ from + ".." + to + " out of 0.." + numRows);
+		HistogramMatrix m = new HistogramMatrix(to - from, numBins);
+		System.arraycopy(data, from * numBins, m.data, 0, m.data.length);
+		System.arraycopy(totals, from, m.totals, 0, to - from);
+		m.negative = negative;
+		return m;
+	}
+
+	/*
+	 * A matrix over the first numRows rows of data, with the given totals;
+	 * for stores that fill blocks of rows themselves. The arrays are kept,
+	 * not copied or checked.
+	 */
+	HistogramMatrix(int numRows, int numBins, double[] data, double[] totals,
+			boolean negative) {
+		this.numRows = numRows;
+		this.numBins = numBins;
+		this.data = data;
+		this.totals = totals;
+		this.negative = negative;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	/*
+	 * The row-major bins. The array is shared, not copied, and must not be
+	 * modified.
+	 */
+	public double[] getData() {
+		return data;
+	}
+
+	// index of the first bin of row r in getData()
+	public int getOffset(int r) {
+		return r * numBins;
+	}
+
+	// whether no bin is negative
+	public boolean isNonNegative() {
+		return !negative;
+	}
+
+	/*
+	 * Copies the bins of row r into row (allocated when null or too short)
+	 * and returns it.
+	 */
+	public double[] copyRow(int r, double[] row) throws Exception {
+		chkrow(r);
+		if (row == null || row.length != numBins)
+			row = new double[numBins];
+		System.arraycopy(data, r * numBins, row, 0, numBins);
+		return row;
+	}
+
+	// row r as a prepared histogram over a copy of its bins
+	public PreparedHistogram getRow(int r) throws Exception {
+		return getRow(r, null);
+	}
+
+	// row r as a prepared histogram over row, reused as copyRow() does
+	PreparedHistogram getRow(int r, double[] row) throws Exception {
+		return PreparedHistogram.ofNormalized(copyRow(r, row), totals[r]);
+	}
+
+	/*
+	 * sqrt(sum of P^2) per row, as PreparedHistogram.getL2Norm() computes
+	 * it for the same bins.
+	 */
+	public double[] getL2Norms() throws Exception {
+		double[] norms = l2Norms;
+		if (norms == null) {
+			norms = new double[numRows];
+			for (int r = 0, off = 0; r < numRows; r++, off += numBins) {
+				double d = 0d;
+				for (int i = 0; i < numBins; i++)
+					d = ops.accumulate(d, data[off + i] * data[off + i]);
+				norms[r] = Math.sqrt(d);
+			}
+			l2Norms = norms;
+		}
+		return norms;
+	}
+
+	private void chkrow(int r) throws Exception {
+		if (r < 0 || r >= numRows)
+			throw new MathCompatibilityException("HistogramMatrix: row " + r
+					+ " not in [0, " + numRows + ")");
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JeffreysMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JensenDifferenceMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.KullbackLeiblerMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.TopsoeMeasure;
+
+/*
+ *  Pivot table (LAESA) prefilter for k nearest neighbour searches under an
+ *  expensive histogram measure.
+ *
+ *	description:	Keeps the city block (L1) distances of every row of a
+ *					HistogramMatrix to a few pivot rows, picked farthest first.
+ *					For a query, max over the pivots of |L1(q, pivot) - L1(x,
+ *					pivot)| is a lower bound of L1(q, x), got without reading the
+ *					bins of x. Candidates are measured with the expensive measure
+ *					in increasing order of that bound.
+ *
+ *					For normalized histograms the Shannon-family measures are
+ *					bounded below by L1 (Pinsker's inequality): Kullback-Leibler
+ *					>= L1^2 / 2, Jeffreys >= L1^2, Topsoe >= L1^2 / 4 and Jensen
+ *					difference >= L1^2 / 8. With a recall target of 1 (the
+ *					default) the search stops once that bound exceeds the k-th
+ *					best measurement, and the neighbours are exactly those of a
+ *					full scan. With a lower target it stops after the number of
+ *					candidates that, on a sample of the stored rows used as
+ *					queries, found that share of the true neighbours.
+ *
+ *					Other measures may be filtered too, but only with a recall
+ *					target: without a bound, the exact search measures every row.
+ *					Similarity measures, such as Cosine, keep their largest
+ *					values, as in HistogramKnnSearcher.
+ */
+public class HistogramPivotFilter {
+
+	// pivots used when none are given
+	public final static int DEFAULT_PIVOTS = 16;
+
+	// stored rows searched to calibrate a recall target
+	public final static int CALIBRATION_QUERIES = 32;
+
+	// margin on the bound, for the rounding of the measurements
+	public final static double SLACK = 1e-9;
+
+	// measure >= factor * L1^2 for normalized histograms
+	private static final Map<Class<?>, Double> BOUND = new HashMap<Class<?>, Double>();
+	static {
+		BOUND.put(KullbackLeiblerMeasure.class, 0.5d);
+		BOUND.put(JeffreysMeasure.class, 1.0d);
+		BOUND.put(TopsoeMeasure.class, 0.25d);
+		BOUND.put(JensenDifferenceMeasure.class, 0.125d);
+	}
+
+	// keeps the high 32 bits of a lower bound, which round it down
+	private static final long BOUND_MASK = 0xffffffff00000000L;
+
+	private static final CityBlockL1Measure pivotMeasure = new CityBlockL1Measure();
+
+	private final HistogramMeasure measure;
+	private final HistogramMatrix candidates;
+	private final double factor;
+	private final boolean similarity;
+	private final PreparedHistogram[] pivots;
+	private final int[] pivotRows;
+	// L1 distances, pivot by pivot
+	private final double[][] table;
+	private volatile double recall = 1.0d;
+	private final Map<Integer, Integer> shortlists = new HashMap<Integer, Integer>();
+
+	public HistogramPivotFilter(HistogramMeasure measure,
+			HistogramMatrix candidates) throws Exception {
+		this(measure, candidates, DEFAULT_PIVOTS, new Random(1));
+	}
+
+	public HistogramPivotFilter(HistogramMeasure measure,
+			HistogramMatrix candidates, int numPivots, Random random)
+			throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"HistogramPivotFilter: null measure");
+		if (candidates == null)
+			throw new SingularityTreatmentException(
+					"HistogramPivotFilter: null candidates");
+		if (numPivots < 1)
+			throw new MathCompatibilityException(
+					"HistogramPivotFilter: at least 1 pivot is needed, not "
+							+ numPivots);
+		this.measure = measure;
+		this.candidates = candidates;
+		Double f = BOUND.get(measure.getClass());
+		this.factor = (f != null && normalized(candidates)) ? f : 0d;
+		this.similarity = HistogramKnnSearcher.isSimilarity(measure);
+
+		// farthest first: every pivot is the row farthest from those before
+		int rows = candidates.getNumRows();
+		int count = Math.min(numPivots, rows);
+		pivots = new PreparedHistogram[count];
+		pivotRows = new int[count];
+		table = new double[count][];
+		double[] nearest = new double[rows];
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+		int next = (rows == 0) ? 0 : random.nextInt(rows);
+		for (int p = 0; p < count; p++) {
+			pivotRows[p] = next;
+			pivots[p] = candidates.getRow(next);
+			table[p] = pivotMeasure.compare(pivots[p], candidates);
+			for (int r = 0; r < rows; r++)
+				nearest[r] = Math.min(nearest[r], table[p][r]);
+			for (int r = 0; r < rows; r++)
+				if (nearest[r] > nearest[next])
+					next = r;
+		}
+	}
+
+	/*
+	 * Whether the search can stop on a bound for the measure, so that a
+	 * recall target of 1 does not measure every row.
+	 */
+	public static boolean isBounded(Measure measure) {
+		return BOUND.containsKey(measure.getClass());
+	}
+
+	// non-negative rows summing to 1, for which the bounds hold
+	private static boolean normalized(HistogramMatrix m) {
+		if (!m.isNonNegative())
+			return false;
+		double[] data = m.getData();
+		int n = m.getNumBins();
+		for (int r = 0, off = 0; r < m.getNumRows(); r++, off += n) {
+			double s = 0d;
+			for (int i = 0; i < n; i++)
+				s += data[off + i];
+			if (Math.abs(s - 1d) > MathOpsE.EPSILON)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean normalized(double[] p) {
+		double s = 0d;
+		for (int i = 0; i < p.length; i++) {
+			if (p[i] < 0d)
+				return false;
+			s += p[i];
+		}
+		return Math.abs(s - 1d) <= MathOpsE.EPSILON;
+	}
+
+	public HistogramMeasure getMeasure() {
+		return measure;
+	}
+
+	public HistogramMatrix getCandidates() {
+		return candidates;
+	}
+
+	// rows of the candidates used as pivots
+	public int[] getPivotRows() {
+		return pivotRows.clone();
+	}
+
+	public double getRecallTarget() {
+		return recall;
+	}
+
+	/*
+	 * The expected share of the true k nearest neighbours a search finds; 1
+	 * (the default) for exact searches.
+	 */
+	public synchronized void setRecallTarget(double target) throws Exception {
+		if (!(target > 0d && target <= 1d))
+			throw new MathCompatibilityException(
+					"HistogramPivotFilter: recall target " + target
+							+ " not in (0, 1]");
+		recall = target;
+		shortlists.clear();
+	}
+
+	/*
+	 * The k rows closest to query, closest first. getMeasured() of the result
+	 * counts the rows measured with the expensive measure and
+	 * getPruningRatio() the share left out.
+	 */
+	public HistogramKnnSearcher.Result search(PreparedHistogram query, int k)
+			throws Exception {
+		if (query == null)
+			throw new SingularityTreatmentException(
+					"HistogramPivotFilter: null query");
+		// Check feature lengths, they must be equal
+		if (query.getNumBins() != candidates.getNumBins())
+			throw new ImageCompatibilityException(
+					"Features must have the same length");
+		if (k < 1)
+			throw new MathCompatibilityException("HistogramPivotFilter: k = "
+					+ k + ", at least 1 neighbour must be asked for");
+		int limit = (recall < 1d) ? shortlist(k) : Integer.MAX_VALUE;
+		return search(query, k, order(query, -1), limit);
+	}
+
+	/*
+	 * The rows other than exclude, as (lower bound rounded down, row) in
+	 * increasing order.
+	 */
+	private long[] order(PreparedHistogram query, int exclude) throws Exception {
+		int rows = candidates.getNumRows();
+		double[] lower = new double[rows];
+		for (int p = 0; p < pivots.length; p++) {
+			double dq = pivotMeasure.compare(query, pivots[p]).getValue();
+			double[] t = table[p];
+			for (int r = 0; r < rows; r++)
+				lower[r] = Math.max(lower[r], Math.abs(dq - t[r]));
+		}
+		long[] keys = new long[(exclude < 0) ? rows : rows - 1];
+		for (int r = 0, i = 0; r < rows; r++)
+			if (r != exclude)
+				keys[i++] = (Double.doubleToLongBits(lower[r]) & BOUND_MASK)
+						| r;
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private HistogramKnnSearcher.Result search(PreparedHistogram query,
+			int k, long[] keys, int limit) throws Exception {
+		NeighbourHeap heap = new NeighbourHeap(Math.min(k, keys.length));
+		double f = normalized(query.getBins()) ? factor : 0d;
+		double[] values = new double[candidates.getNumRows()];
+		int measured = 0;
+		for (int i = 0; i < keys.length && measured < limit; i++) {
+			if (f > 0d && heap.isFull()) {
+				double lower = Double.longBitsToDouble(keys[i] & BOUND_MASK);
+				double kth = heap.worstKey();
+				if (f * lower * lower > kth + SLACK * (1d + Math.abs(kth)))
+					break;
+			}
+			int r = (int) keys[i];
+			measure.compare(query, candidates, r, r + 1, values);
+			measured++;
+			heap.offer(similarity ? -values[r] : values[r], r);
+		}
+		return heap.result(similarity, measured, keys.length - measured);
+	}
+
+	/*
+	 * Candidates to measure for the recall target with k neighbours:
+	 * calibrated on stored rows used as queries, each left out of its own
+	 * search.
+	 */
+	private synchronized int shortlist(int k) throws Exception {
+		Integer cached = shortlists.get(k);
+		if (cached != null)
+			return cached;
+		int rows = candidates.getNumRows();
+		int size = rows;
+		if (rows > k + 1) {
+			Random random = new Random(k);
+			int queries = Math.min(CALIBRATION_QUERIES, rows);
+			int[] positions = new int[queries * k];
+			int count = 0;
+			for (int s = 0; s < queries; s++) {
+				int row = random.nextInt(rows);
+				PreparedHistogram query = candidates.getRow(row);
+				long[] keys = order(query, row);
+				int[] truth = search(query, k, keys, Integer.MAX_VALUE)
+						.getIndices();
+				Arrays.sort(truth);
+				for (int i = 0; i < keys.length; i++)
+					if (Arrays.binarySearch(truth, (int) keys[i]) >= 0)
+						positions[count++] = i;
+			}
+			Arrays.sort(positions, 0, count);
+			int needed = (int) Math.ceil(recall * count);
+			size = Math.max(k, positions[Math.max(0, needed - 1)] + 1);
+		}
+		shortlists.put(k, size);
+		return size;
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.ChebyshevLInfMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.HellingerMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JensenShannonMeasure;
+
+/*
+ *  Vantage-point tree over the rows of a HistogramMatrix, for the histogram
+ *  measures that are metrics.
+ *
+ *	description:	Every node picks one of its histograms as vantage point and
+ *					splits the others at the median of their distances to it:
+ *					the nearer half goes to the inner subtree, the farther half
+ *					to the outer one, and each subtree keeps the smallest and
+ *					largest of these distances. Since the distance satisfies the
+ *					triangle inequality, a query at distance d from the vantage
+ *					point can only have neighbours within tau of it in a subtree
+ *					whose range of distances meets [d - tau, d + tau]; the other
+ *					subtrees are skipped unmeasured. Small subtrees are kept as
+ *					HistogramMatrix leaves measured with the batch compare().
+ *
+ *					The metric is the measure itself for city block, Euclidean,
+ *					Chebyshev and Hellinger, and the square root of the
+ *					Jensen-Shannon divergence. Values returned are exactly those
+ *					of measure.compare(); pruning allows for rounding in them, so
+ *					the neighbours found are those of a full scan.
+ *
+ *					The tree is built once and is not modified by searches, which
+ *					may run concurrently.
+ */
+public class HistogramVpTree {
+
+	// largest subtree kept as a leaf
+	public final static int LEAF_SIZE = 32;
+
+	/*
+	 * Relative margin on the triangle inequality, for the rounding of the
+	 * measurements.
+	 */
+	public final static double SLACK = 1e-9;
+
+	/*
+	 * How a metric measure gives the distance: the value, or its square root.
+	 * error is an absolute margin for measures computed through a difference
+	 * of nearly equal sums (1 - Bhattacharyya coefficient, Jensen-Shannon),
+	 * whose rounding is not relative to the result.
+	 */
+	private enum Metric {
+		VALUE(0d), HELLINGER(1e-6), SQRT(1e-6);
+
+		private final double error;
+
+		private Metric(double error) {
+			this.error = error;
+		}
+
+		double distance(double value) {
+			return (this == SQRT) ? Math.sqrt(Math.max(0d, value)) : value;
+		}
+	}
+
+	private static final Map<Class<?>, Metric> METRIC = new HashMap<Class<?>, Metric>();
+	static {
+		METRIC.put(EuclideanL2Measure.class, Metric.VALUE);
+		METRIC.put(CityBlockL1Measure.class, Metric.VALUE);
+		METRIC.put(ChebyshevLInfMeasure.class, Metric.VALUE);
+		METRIC.put(HellingerMeasure.class, Metric.HELLINGER);
+		METRIC.put(JensenShannonMeasure.class, Metric.SQRT);
+	}
+
+	private static class Node {
+		// internal node
+		PreparedHistogram vantage;
+		int row;
+		double innerLow, innerHigh, outerLow, outerHigh;
+		Node inner, outer;
+		// leaf
+		HistogramMatrix leaf;
+		int[] rows;
+	}
+
+	private final HistogramMeasure measure;
+	private final Metric metric;
+	private final int numRows;
+	private final int numBins;
+	private final Node root;
+
+	// random vantage points from a fixed seed, so that builds are repeatable
+	public HistogramVpTree(HistogramMeasure measure, HistogramMatrix candidates)
+			throws Exception {
+		this(measure, candidates, new Random(1));
+	}
+
+	public HistogramVpTree(HistogramMeasure measure,
+			HistogramMatrix candidates, Random random) throws Exception {
+		if (measure == null)
+			throw new SingularityTreatmentException(
+					"HistogramVpTree: null measure");
+		if (candidates == null)
+			throw new SingularityTreatmentException(
+					"HistogramVpTree: null candidates");
+		if (!isMetric(measure))
+			throw new MathCompatibilityException("HistogramVpTree: "
+					+ measure.getName()
+					+ " does not satisfy the triangle inequality");
+		this.measure = measure;
+		this.metric = METRIC.get(measure.getClass());
+		this.numRows = candidates.getNumRows();
+		this.numBins = candidates.getNumBins();
+
+		// the tree rearranges a copy of the rows so that subtrees are
+		// contiguous
+		int[] ids = new int[numRows];
+		for (int r = 0; r < numRows; r++)
+			ids[r] = r;
+		HistogramMatrix points = candidates.copyRows(0, numRows);
+		this.root = (numRows == 0) ? null : build(points, ids, 0, numRows,
+				new double[numRows], random);
+	}
+
+	/*
+	 * Whether the tree can index the measure: whether the measure, or its
+	 * square root, satisfies the triangle inequality.
+	 */
+	public static boolean isMetric(Measure measure) {
+		return METRIC.containsKey(measure.getClass());
+	}
+
+	public HistogramMeasure getMeasure() {
+		return measure;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	/*
+	 * The k rows closest to query, closest first, as HistogramKnnSearcher
+	 * would find them. getAbandoned() of the result counts the rows in pruned
+	 * subtrees.
+	 */
+	public HistogramKnnSearcher.Result search(PreparedHistogram query, int k)
+			throws Exception {
+		check(query);
+		if (k < 1)
+			throw new MathCompatibilityException("HistogramVpTree: k = " + k
+					+ ", at least 1 neighbour must be asked for");
+		NeighbourHeap heap = new NeighbourHeap(Math.min(k, numRows));
+		int measured = (root == null) ? 0 : search(root, query, heap,
+				Double.POSITIVE_INFINITY);
+		return heap.result(false, measured, numRows - measured);
+	}
+
+	/*
+	 * The rows whose measurement against query is at most radius, closest
+	 * first.
+	 */
+	public HistogramKnnSearcher.Result range(PreparedHistogram query,
+			double radius) throws Exception {
+		check(query);
+		if (Double.isNaN(radius) || radius < 0d)
+			throw new MathCompatibilityException("HistogramVpTree: radius = "
+					+ radius);
+		NeighbourHeap heap = NeighbourHeap.unbounded();
+		int measured = (root == null) ? 0 : search(root, query, heap, radius);
+		return heap.result(false, measured, numRows - measured);
+	}
+
+	private void check(PreparedHistogram query) throws Exception {
+		if (query == null)
+			throw new SingularityTreatmentException(
+					"HistogramVpTree: null query");
+		// Check feature lengths, they must be equal
+		if (query.getNumBins() != numBins)
+			throw new ImageCompatibilityException(
+					"Features must have the same length");
+	}
+
+	private Node build(HistogramMatrix points, int[] ids, int from, int to,
+			double[] dist, Random random) throws Exception {
+		Node node = new Node();
+		if (to - from <= LEAF_SIZE) {
+			node.leaf = points.copyRows(from, to);
+			node.rows = new int[to - from];
+			System.arraycopy(ids, from, node.rows, 0, to - from);
+			return node;
+		}
+		swapRows(points, ids, dist, from, from + random.nextInt(to - from));
+		node.vantage = points.getRow(from);
+		node.row = ids[from];
+		measure.compare(node.vantage, points, from + 1, to, dist);
+		for (int r = from + 1; r < to; r++)
+			dist[r] = metric.distance(dist[r]);
+
+		// inner: [from + 1, mid), outer: [mid, to)
+		int mid = from + 1 + (to - from - 1) / 2;
+		select(points, ids, dist, from + 1, to - 1, mid);
+		node.innerLow = node.outerLow = Double.POSITIVE_INFINITY;
+		node.innerHigh = node.outerHigh = Double.NEGATIVE_INFINITY;
+		for (int r = from + 1; r < mid; r++) {
+			node.innerLow = Math.min(node.innerLow, dist[r]);
+			node.innerHigh = Math.max(node.innerHigh, dist[r]);
+		}
+		for (int r = mid; r < to; r++) {
+			node.outerLow = Math.min(node.outerLow, dist[r]);
+			node.outerHigh = Math.max(node.outerHigh, dist[r]);
+		}
+		if (mid > from + 1)
+			node.inner = build(points, ids, from + 1, mid, dist, random);
+		node.outer = build(points, ids, mid, to, dist, random);
+		return node;
+	}
+
+	/*
+	 * Reorders rows lo..hi so that row k has the distance it would have in
+	 * sorted order, with no larger distance before it (quickselect).
+	 */
+	private void select(HistogramMatrix points, int[] ids, double[] dist,
+			int lo, int hi, int k) throws Exception {
+		while (lo < hi) {
+			double pivot = dist[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (dist[i] < pivot)
+					i++;
+				while (dist[j] > pivot)
+					j--;
+				if (i <= j)
+					swapRows(points, ids, dist, i++, j--);
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	private void swapRows(HistogramMatrix points, int[] ids, double[] dist,
+			int a, int b) throws Exception {
+		if (a == b)
+			return;
+		points.swapRows(a, b);
+		int id = ids[a];
+		ids[a] = ids[b];
+		ids[b] = id;
+		double d = dist[a];
+		dist[a] = dist[b];
+		dist[b] = d;
+	}
+
+	/*
+	 * Offers the rows of the subtree within reach to heap and returns the
+	 * number measured. For a bounded heap the reach shrinks to the k-th best
+	 * distance once the heap is full; radius bounds it otherwise.
+	 */
+	private int search(Node node, PreparedHistogram query, NeighbourHeap heap,
+			double radius) throws Exception {
+		if (node.leaf != null) {
+			double[] values = measure.compare(query, node.leaf);
+			for (int i = 0; i < values.length; i++)
+				if (values[i] <= radius)
+					heap.offer(values[i], node.rows[i]);
+			return values.length;
+		}
+		double value = measure.compare(query, node.vantage).getValue();
+		if (value <= radius)
+			heap.offer(value, node.row);
+		int measured = 1;
+		double d = metric.distance(value);
+
+		// the nearer subtree first, so that the reach shrinks sooner
+		boolean innerFirst = d < node.outerLow;
+		for (int pass = 0; pass < 2; pass++) {
+			boolean inner = (pass == 0) == innerFirst;
+			Node child = inner ? node.inner : node.outer;
+			if (child == null)
+				continue;
+			double tau = metric.distance(heap.isFull() ? heap.worstKey()
+					: radius);
+			tau += SLACK * (d + tau) + metric.error;
+			double low = inner ? node.innerLow : node.outerLow;
+			double high = inner ? node.innerHigh : node.outerHigh;
+			if (d + tau >= low && d - tau <= high)
+				measured += search(child, query, heap, radius);
+		}
+		return measured;
+	}
+}
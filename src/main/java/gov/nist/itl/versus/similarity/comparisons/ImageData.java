@@ -33,8 +33,10 @@ import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.*;
 
 public class ImageData
 {
-  // internal data structures to mirror input from received features
+  // internal data structures to mirror input from received features:
+  // either the arrays of the features, or a flat buffer (see PixelBuffer)
 	private double[][][] values;
+	private PixelBuffer buffer;
 	private int rows = 0;
 	private int cols = 0;
 	private int bands = 0;
@@ -61,7 +63,31 @@ public class ImageData
 		}
 	}
 	
-	public void setValues( double[][][] values ) { this.values = values; }
+	/*
+	 * An image over a flat buffer of one primitive type: a segmentation mask
+	 * as PixelBuffer.Type.BIT, an 8-bit label image as BYTE.
+	 */
+	public ImageData(PixelBuffer buffer) {
+		setBuffer(buffer);
+	}
+	
+	public void setValues( double[][][] values ) { this.values = values; this.buffer = null; }
+	public void setBuffer( PixelBuffer buffer ) 
+	{ 
+		this.buffer = buffer; 
+		this.values = null;
+		this.rows = buffer.getNumRows();
+		this.cols = buffer.getNumCols();
+		this.bands = buffer.getNumBands();
+	}
+	
+	// the flat buffer, null when the image is over double[][][] arrays
+	public PixelBuffer getBuffer() { return buffer; }
+	
+	public PixelBuffer.Type getType() 
+	{ 
+		return (buffer != null) ? buffer.getType() : PixelBuffer.Type.DOUBLE; 
+	}
 	public void setRows( int rows ) { this.rows = rows; }
 	public void setCols( int cols ) { this.cols = cols; }
 	public void setBands( int bands ) { this.bands = bands; }
@@ -74,24 +100,28 @@ public class ImageData
 		if ( cols != a.getNumCols() ) return false;
 		if ( bands != a.getNumBands() ) return false;
 		
-		double[][][] avals = a.getValues();
-		int len1 = values.length;
-		int len2 = values[0].length;
-		int len3 = values[0][0].length;
-		for (int i=0; i < len1; i++)
-			for (int j=0; j < len2; j++)
-				for (int k=0; k < len3; k++)
-					if ( values[i][j][k] != avals[i][j][k] )
-						return false;
+		double[] row = new double[getNumCols() * getNumBands()];
+		double[] arow = new double[row.length];
+		for (int i=0; i < getNumRows(); i++) {
+			getRow(i, row);
+			a.getRow(i, arow);
+			for (int x=0; x < row.length; x++)
+				if ( row[x] != arow[x] )
+					return false;
+		}
 		return true;
 	}
 	
   // methods	
   
+	// an image over the same arrays or buffer: the pixels are not copied
 	public ImageData clone()
 	{
 		ImageData o = new ImageData();
-		o.setValues( values );
+		if ( buffer != null ) 
+			o.setBuffer( buffer );
+		else
+			o.setValues( values );
 		o.setRows( rows );
 		o.setCols( cols );
 		o.setBands( bands );
@@ -99,10 +129,82 @@ public class ImageData
 		return o;
 	}  
   
+	/*
+	 * The values as arrays: the arrays of the image, or for an image over a
+	 * buffer a new copy of its values at every call, the buffer being kept.
+	 * Writes into the copy are not seen by the image: use set() to write
+	 * and getRow() to read a buffer without the 8 bytes per value of arrays.
+	 */
 	public double[][][] getValues() {
+		if ( buffer != null ) 
+			return buffer.toArray();
 		return values;
 	}
 	
+	/*
+	 * Views: images over the pixels of this one, with no copy, for scans in
+	 * another order or over a part of the image. A write through set() on
+	 * either image is seen by the other, as is a write into the arrays of
+	 * getValues() of an image over arrays. A view is over a buffer, so its
+	 * getValues() is a copy (see getValues()).
+	 * 
+	 * region		numRows x numCols pixels from (row, col) on
+	 * band			one band, as an image of 1 band
+	 * transpose	rows and columns swapped, so that getRow(i) is column i
+	 * 				(column-major order, as img2ArrayColumnMajor)
+	 * flatten		all the pixels as a single row (row-major order, as
+	 * 				img2Array); a view only of contiguous pixels, else a
+	 * 				MathCompatibilityException
+	 */
+	public ImageData region( int row, int col, int numRows, int numCols ) throws Exception
+	{
+		return view( pixels().region(row, col, numRows, numCols) );
+	}
+	
+	public ImageData band( int band ) throws Exception
+	{
+		return view( pixels().band(band) );
+	}
+	
+	public ImageData transpose() throws Exception
+	{
+		return view( pixels().transpose() );
+	}
+	
+	public ImageData flatten() throws Exception
+	{
+		return view( pixels().flatten() );
+	}
+	
+	// the buffer of the image, or its arrays as one
+	private PixelBuffer pixels() throws Exception
+	{
+		if ( buffer != null ) 
+			return buffer;
+		return PixelBuffer.wrap(values);
+	}
+	
+	private static ImageData view( PixelBuffer b ) 
+	{
+		return new ImageData(b);
+	}
+	
+	/*
+	 * Copies the cols * bands values of a row, band by band within a pixel,
+	 * into dst.
+	 */
+	public void getRow( int row, double[] dst ) 
+	{
+		if ( buffer != null ) {
+			buffer.getRow(row, dst);
+			return;
+		}
+		double[][] r = values[row];
+		for (int j=0, d=0; j < r.length; j++)
+			for (int k=0; k < r[j].length; k++)
+				dst[d++] = r[j][k];
+	}
+	
 	public int[][][] getIntValues() 
 	{
 		int[][][] v = new int[rows][cols][bands];
@@ -117,12 +219,17 @@ public class ImageData
 	}
 	
 	public double getValue(int row, int col, int band) {
+		if ( buffer != null ) 
+			return buffer.get(row, col, band);
 		return values[row][col][band];
 	}
 	
 	public void set( int row, int col, int band, double value ) 
 	{
-		values[row][col][band] = value;
+		if ( buffer != null ) 
+			buffer.set(row, col, band, value);
+		else
+			values[row][col][band] = value;
 	}
 	
 	public void set( int row, int col, int band, int value ) 
@@ -131,18 +238,24 @@ public class ImageData
 	}
 
 	public int getInt(int row, int col, int band) {
-			return (int)values[row][col][band];
+			return (int)getValue(row, col, band);
 	}
 	
 	public int getNumBands() {
+		if ( buffer != null ) 
+			return buffer.getNumBands();
 		return values[0][0].length;
 	}
 	
 	public int getHeight() {
+		if ( buffer != null ) 
+			return buffer.getNumRows();
 		return values.length;
 	}
 	
 	public int getWidth() {
+		if ( buffer != null ) 
+			return buffer.getNumCols();
 		return values[0].length;
 	}
 	
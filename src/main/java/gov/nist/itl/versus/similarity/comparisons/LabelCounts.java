@@ -0,0 +1,121 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.Arrays;
+
+/*
+ *  Counts by non-negative long key: a label, or a pair of labels packed as
+ *  (first << 32) | second.
+ *
+ *	description:	Open addressing with linear probing over primitive arrays,
+ *					at most half full, so that memory grows with the number of
+ *					keys counted and not with their largest value. Slots are
+ *					visited with capacity(), keyAt() and countAt(); empty slots
+ *					have the key -1.
+ */
+class LabelCounts {
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private long[] counts;
+	private int size;
+	private int mask;
+
+	LabelCounts() {
+		this(16);
+	}
+
+	LabelCounts(int expected) {
+		int capacity = 16;
+		while (capacity < 2L * expected && capacity < (1 << 30))
+			capacity <<= 1;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		counts = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	static long pair(int first, int second) {
+		return ((long) first << 32) | second;
+	}
+
+	static int first(long pair) {
+		return (int) (pair >>> 32);
+	}
+
+	static int second(long pair) {
+		return (int) pair;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		int i = (int) (h ^ (h >>> 32)) & mask;
+		while (keys[i] != EMPTY && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	void add(long key, long n) {
+		int i = slot(key);
+		if (keys[i] == EMPTY) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+				i = slot(key);
+			}
+			keys[i] = key;
+			size++;
+		}
+		counts[i] += n;
+	}
+
+	long get(long key) {
+		int i = slot(key);
+		return (keys[i] == EMPTY) ? 0L : counts[i];
+	}
+
+	int size() {
+		return size;
+	}
+
+	int capacity() {
+		return keys.length;
+	}
+
+	long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	long countAt(int slot) {
+		return counts[slot];
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldCounts = counts;
+		keys = new long[2 * oldKeys.length];
+		Arrays.fill(keys, EMPTY);
+		counts = new long[keys.length];
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				counts[j] = oldCounts[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ *  The pixels of each label of a segmented image, from one pass over it.
+ *
+ *	description:	A label is the pixel value truncated to an int, as in
+ *					ImageData.match. Only the labels present are indexed, each
+ *					as a bit set of its pixel positions in the layout of
+ *					BinaryMask (row by row, band by band within a pixel): an
+ *					image with 3 labels takes 3 bits per pixel, where the 256
+ *					planes of getLabels() took 256 doubles.
+ *
+ *					getPlane() makes the binary image of one label, as
+ *					ImageData.match would, only when it is asked for; getMask()
+ *					shares the bits with no copy.
+ */
+public class LabelIndex {
+
+	// labels 0 .. SMALL - 1 are found by index, the others by hashing
+	private static final int SMALL = 256;
+
+	private final int rows;
+	private final int cols;
+	private final int bands;
+	private final int[] labels;
+	private final long[][] words;
+	private final long[] counts;
+
+	private LabelIndex(int rows, int cols, int bands, int[] labels,
+			long[][] words) {
+		this.rows = rows;
+		this.cols = cols;
+		this.bands = bands;
+		this.labels = labels;
+		this.words = words;
+		this.counts = new long[labels.length];
+		for (int l = 0; l < labels.length; l++)
+			for (int w = 0; w < words[l].length; w++)
+				counts[l] += Long.bitCount(words[l][w]);
+	}
+
+	public static LabelIndex of(ImageData img) throws Exception {
+		if (img == null)
+			throw new SingularityTreatmentException(
+					"LabelIndex: first argument null value");
+		int rows = img.getNumRows();
+		int cols = img.getNumCols();
+		int bands = img.getNumBands();
+		int numWords = (int) (((long) rows * cols * bands + 63) >>> 6);
+		long[][] small = new long[SMALL][];
+		Map<Integer, long[]> others = new HashMap<Integer, long[]>();
+		long bit = 0;
+		double[] p = new double[cols * bands];
+		for (int i = 0; i < rows; i++) {
+			img.getRow(i, p);
+			for (int x = 0; x < p.length; x++, bit++) {
+				int l = (int) p[x];
+				long[] w;
+				if (l >= 0 && l < SMALL) {
+					w = small[l];
+					if (w == null)
+						w = small[l] = new long[numWords];
+				} else {
+					w = others.get(l);
+					if (w == null) {
+						w = new long[numWords];
+						others.put(l, w);
+					}
+				}
+				w[(int) (bit >>> 6)] |= 1L << bit;
+			}
+		}
+
+		int n = others.size();
+		for (int l = 0; l < SMALL; l++)
+			if (small[l] != null)
+				n++;
+		int[] labels = new int[n];
+		n = 0;
+		for (int l = 0; l < SMALL; l++)
+			if (small[l] != null)
+				labels[n++] = l;
+		for (Integer l : others.keySet())
+			labels[n++] = l;
+		Arrays.sort(labels);
+		long[][] words = new long[labels.length][];
+		for (int l = 0; l < labels.length; l++)
+			words[l] = (labels[l] >= 0 && labels[l] < SMALL) ? small[labels[l]]
+					: others.get(labels[l]);
+		return new LabelIndex(rows, cols, bands, labels, words);
+	}
+
+	public int getNumRows() {
+		return rows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	public int getNumBands() {
+		return bands;
+	}
+
+	// the labels present, in increasing order
+	public int[] getLabels() {
+		return labels.clone();
+	}
+
+	// pixels with the label
+	public long getCount(int label) {
+		int l = Arrays.binarySearch(labels, label);
+		return (l < 0) ? 0L : counts[l];
+	}
+
+	// the pixels with the label, sharing the bits of the index
+	public BinaryMask getMask(int label) {
+		int l = Arrays.binarySearch(labels, label);
+		long[] w = (l < 0) ? new long[(int) (((long) rows * cols * bands + 63) >>> 6)]
+				: words[l];
+		return new BinaryMask(rows, cols, bands, w);
+	}
+
+	/*
+	 * The binary image of the label, 1 where a pixel has it and 0 elsewhere,
+	 * as ImageData.match on the segmented image; a new image every call,
+	 * kept in a BIT buffer until its getValues() is asked for.
+	 */
+	public ImageData getPlane(int label) {
+		long[] w = new long[(int) (((long) rows * cols * bands + 63) >>> 6)];
+		int l = Arrays.binarySearch(labels, label);
+		if (l >= 0)
+			System.arraycopy(words[l], 0, w, 0, w.length);
+		return new ImageData(PixelBuffer.bits(rows, cols, bands, w));
+	}
+}
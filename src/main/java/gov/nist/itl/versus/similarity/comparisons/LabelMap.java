@@ -0,0 +1,210 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/*
+ *  The labels of a segmented image in the narrowest array that holds them.
+ *
+ *	description:	A label is the pixel value truncated to an int, as in
+ *					ImageData.match. Labels 0 .. 255 are kept in a byte per
+ *					pixel, 0 .. 65535 in a short and any other in an int, in
+ *					the order of the pixels row by row and band by band, with
+ *					the sorted list of the labels present and their counts.
+ *					A 2k x 2k image of 8-bit labels takes 4 MB, where its 256
+ *					label planes took 8 GB of doubles; ContingencyTable reads
+ *					the map with no conversion to an image.
+ */
+public class LabelMap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// largest label range counted by index, the others by hashing
+	private static final int DENSE_RANGE = 1 << 24;
+
+	private final int rows;
+	private final int cols;
+	private final int bands;
+	// one of the three, by largest label
+	private final byte[] bytes;
+	private final short[] shorts;
+	private final int[] ints;
+	private final int[] labels;
+	private final long[] counts;
+
+	private LabelMap(int rows, int cols, int bands, byte[] bytes,
+			short[] shorts, int[] ints, int[] labels, long[] counts) {
+		this.rows = rows;
+		this.cols = cols;
+		this.bands = bands;
+		this.bytes = bytes;
+		this.shorts = shorts;
+		this.ints = ints;
+		this.labels = labels;
+		this.counts = counts;
+	}
+
+	public static LabelMap of(ImageData img) throws Exception {
+		if (img == null)
+			throw new SingularityTreatmentException(
+					"LabelMap: first argument null value");
+		int rows = img.getNumRows();
+		int cols = img.getNumCols();
+		int bands = img.getNumBands();
+		long size = (long) rows * cols * bands;
+		if (size > Integer.MAX_VALUE)
+			throw new SingularityTreatmentException("LabelMap: " + size
+					+ " pixels, more than an array holds");
+
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		double[] p = new double[cols * bands];
+		for (int i = 0; i < rows; i++) {
+			img.getRow(i, p);
+			for (int x = 0; x < p.length; x++) {
+				int l = (int) p[x];
+				min = (l < min) ? l : min;
+				max = (l > max) ? l : max;
+			}
+		}
+
+		int n = (int) size;
+		byte[] bytes = null;
+		short[] shorts = null;
+		int[] ints = null;
+		if (min >= 0 && max <= 0xff)
+			bytes = new byte[n];
+		else if (min >= 0 && max <= 0xffff)
+			shorts = new short[n];
+		else
+			ints = new int[n];
+		boolean dense = (long) max - min < DENSE_RANGE;
+		long[] dcounts = dense ? new long[max - min + 1] : null;
+		LabelCounts hcounts = dense ? null : new LabelCounts();
+		int x = 0;
+		for (int i = 0; i < rows; i++) {
+			img.getRow(i, p);
+			for (int d = 0; d < p.length; d++, x++) {
+				int l = (int) p[d];
+				if (bytes != null)
+					bytes[x] = (byte) l;
+				else if (shorts != null)
+					shorts[x] = (short) l;
+				else
+					ints[x] = l;
+				if (dense)
+					dcounts[l - min]++;
+				else
+					hcounts.add(l & 0xffffffffL, 1L);
+			}
+		}
+
+		int[] labels;
+		long[] counts;
+		if (dense) {
+			int present = 0;
+			for (int l = 0; l < dcounts.length; l++)
+				if (dcounts[l] != 0)
+					present++;
+			labels = new int[present];
+			counts = new long[present];
+			present = 0;
+			for (int l = 0; l < dcounts.length; l++) {
+				if (dcounts[l] != 0) {
+					labels[present] = min + l;
+					counts[present++] = dcounts[l];
+				}
+			}
+		} else {
+			labels = new int[hcounts.size()];
+			int present = 0;
+			for (int s = 0; s < hcounts.capacity(); s++)
+				if (hcounts.keyAt(s) >= 0L)
+					labels[present++] = (int) hcounts.keyAt(s);
+			Arrays.sort(labels);
+			counts = new long[labels.length];
+			for (int l = 0; l < labels.length; l++)
+				counts[l] = hcounts.get(labels[l] & 0xffffffffL);
+		}
+		return new LabelMap(rows, cols, bands, bytes, shorts, ints, labels,
+				counts);
+	}
+
+	public int getNumRows() {
+		return rows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	public int getNumBands() {
+		return bands;
+	}
+
+	// pixels times bands
+	public int size() {
+		return rows * cols * bands;
+	}
+
+	// bytes per label: 1, 2 or 4
+	public int getBytesPerLabel() {
+		return (bytes != null) ? 1 : (shorts != null) ? 2 : 4;
+	}
+
+	// label at a position, row by row and band by band within a pixel
+	public int get(int index) {
+		if (bytes != null)
+			return bytes[index] & 0xff;
+		if (shorts != null)
+			return shorts[index] & 0xffff;
+		return ints[index];
+	}
+
+	public int get(int row, int col, int band) {
+		return get((row * cols + col) * bands + band);
+	}
+
+	// the labels present, in increasing order
+	public int[] getLabels() {
+		return labels.clone();
+	}
+
+	public int getMaxLabel() {
+		return labels[labels.length - 1];
+	}
+
+	// pixels with the label
+	public long getCount(int label) {
+		int l = Arrays.binarySearch(labels, label);
+		return (l < 0) ? 0L : counts[l];
+	}
+
+	// the labels as the pixel values of a new image
+	public ImageData toImageData() {
+		double[][][] v = new double[rows][cols][bands];
+		int x = 0;
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				for (int k = 0; k < bands; k++, x++)
+					v[i][j][k] = get(x);
+		return new ImageData(v);
+	}
+}
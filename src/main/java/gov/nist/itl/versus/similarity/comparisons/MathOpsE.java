@@ -32,17 +32,116 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
 import edu.illinois.ncsa.versus.descriptor.impl.PixelHistogramDescriptor;
 import edu.illinois.ncsa.versus.descriptor.impl.RGBHistogramDescriptor;
 import gov.nist.itl.versus.similarity.comparisons.exception.HWIndependenceException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
 
 public class MathOpsE {
 
 	public final static double EPSILON = 0.0000001;
 
+	// largest integer Minkowski order computed by repeated multiplication
+	public final static int MINKOWSKI_MAX_INTEGER_P = 64;
+
+	// policy new instances start with, see setDefaultValidationPolicy()
+	private static volatile ValidationPolicy defaultValidationPolicy = ValidationPolicy.STRICT;
+
+	// overrides by measure (method) name, shared by all instances
+	private static final ConcurrentHashMap<String, ValidationPolicy> measurePolicies = new ConcurrentHashMap<String, ValidationPolicy>();
+
+	// policy of this instance
+	private volatile ValidationPolicy validationPolicy = defaultValidationPolicy;
+
+	// lane-parallel kernels, off unless the system property below is "true"
+	private static volatile boolean defaultVectorKernels = Boolean
+			.getBoolean("gov.nist.itl.versus.similarity.vectorKernels");
+	private volatile boolean vectorKernels = defaultVectorKernels;
+
+	public static ValidationPolicy getDefaultValidationPolicy() {
+		return defaultValidationPolicy;
+	}
+
+	public static void setDefaultValidationPolicy(ValidationPolicy policy) {
+		if (policy == null)
+			throw new IllegalArgumentException("validation policy is null");
+		defaultValidationPolicy = policy;
+	}
+
+	/*
+	 * Overrides the policy of every instance for one measure, e.g.
+	 * "histogram_measure_euclidean", including the instances the Measure
+	 * classes create; a null policy removes the override.
+	 */
+	public static void setMeasureValidationPolicy(String measureName,
+			ValidationPolicy policy) {
+		if (policy == null)
+			measurePolicies.remove(measureName);
+		else
+			measurePolicies.put(measureName, policy);
+	}
+
+	public static ValidationPolicy getMeasureValidationPolicy(String measureName) {
+		return measurePolicies.get(measureName);
+	}
+
+	public static boolean getDefaultVectorKernels() {
+		return defaultVectorKernels;
+	}
+
+	public static void setDefaultVectorKernels(boolean enabled) {
+		defaultVectorKernels = enabled;
+	}
+
+	public boolean getVectorKernels() {
+		return vectorKernels;
+	}
+
+	/*
+	 * Enables the lane-parallel kernels (see VectorKernels) for Euclidean,
+	 * City Block, Squared Euclidean, Intersection and Inner Product. They add in a different order than the scalar kernels, so
+	 * results may differ in the last bits; short histograms and non-finite
+	 * sums always go through the scalar kernels.
+	 */
+	public void setVectorKernels(boolean enabled) {
+		vectorKernels = enabled;
+	}
+
+	// whether the lane-parallel kernel is used for n bins
+	private boolean useVectorKernels(int n) {
+		return vectorKernels && n >= VectorKernels.MIN_LENGTH;
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return validationPolicy;
+	}
+
+	/*
+	 * Sets how this instance validates its arguments: at the entry of each
+	 * double[] measure kernel, and in the array checks of the element-wise
+	 * primitives (sub, abs, div, sum...) used by the Double[] methods.
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		if (policy == null)
+			throw new IllegalArgumentException("validation policy is null");
+		validationPolicy = policy;
+	}
+
+	/*
+	 * Policy this instance uses for the given measure: the override set for
+	 * it if there is one, the policy of this instance otherwise.
+	 */
+	public ValidationPolicy getValidationPolicy(String measureName) {
+		if (measurePolicies.isEmpty())
+			return validationPolicy;
+		ValidationPolicy policy = measurePolicies.get(measureName);
+		return (policy != null) ? policy : validationPolicy;
+	}
+
 	/*
 	 * - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 	 * Histogram-based measures. - - - - - - - - - - - - - - - - - - - - - - - -
@@ -70,14 +169,98 @@ public class MathOpsE {
 	// eqn #1
 	public Double histogram_measure_euclidean(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_euclidean", P, Q);
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = abs(D3);
-		Double[] D5 = square(D4);
-		Double d6 = sum(D5);
-		Double d7 = sqrt(d6);
-		chkresult("histogram_measure_euclidean", d7);
-		return d7;
+		return histogram_measure_euclidean(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #1 (double[] kernel)
+	public double histogram_measure_euclidean(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_euclidean", P, Q);
+		int n = P.length;
+		double d1 = useVectorKernels(n) ? VectorKernels.sumSquaredDifference(
+				P, Q) : Double.NaN;
+		if (!VectorKernels.usable(d1)) {
+			d1 = 0d;
+			for (int i = 0; i < n; i++) {
+				double a = Math.abs(P[i] - Q[i]);
+				d1 = accumulate(d1, a * a);
+			}
+		}
+		double d2 = Math.sqrt(d1);
+		chkresult("histogram_measure_euclidean", d2);
+		return d2;
+	}
+
+	// eqn #1 (int[] count kernel: raw counts, normalized once at the end)
+	public double histogram_measure_euclidean(int[] P, int[] Q)
+			throws Exception {
+		long[] w = countWeights("histogram_measure_euclidean", P, Q);
+		if (w == null)
+			return histogram_measure_euclidean(normalizeCounts(P),
+					normalizeCounts(Q));
+		long wp = w[0], wq = w[1];
+		double d1 = 0d;
+		for (int i = 0; i < P.length; i++) {
+			double a = P[i] * wp - Q[i] * wq;
+			d1 += a * a;
+		}
+		double d2 = Math.sqrt(d1) / w[2];
+		chkresult("histogram_measure_euclidean", d2);
+		return d2;
+	}
+
+	// eqn #1 (HistogramMatrix kernel: P against rows from..to-1 of Q)
+	public void histogram_measure_euclidean(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_euclidean", P, Q, from, to, result);
+		double[] q = Q.getData();
+		int n = p.length;
+		boolean plain = plainSums(p, Q);
+		double[] row = null;
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++) {
+					double a = Math.abs(p[i] - q[off + i]);
+					d1 += a * a;
+				}
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = Math.sqrt(d1);
+					continue;
+				}
+			}
+			// negative bins, saturated sums and the lane-parallel kernels take
+			// the pairwise path
+			row = Q.copyRow(r, row);
+			result[r] = histogram_measure_euclidean(p, row);
+		}
+	}
+
+	// eqn #1 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_euclidean(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_euclidean", P, Q, from, to, result);
+		int n = p.length;
+		boolean plain = nonNegative(p) && !useVectorKernels(n);
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++) {
+					double a = Math.abs(p[i] - row[i]);
+					d1 += a * a;
+				}
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = Math.sqrt(d1);
+					continue;
+				}
+			}
+			result[r] = histogram_measure_euclidean(p, row);
+		}
 	}
 
 	/*
@@ -100,12 +283,91 @@ public class MathOpsE {
 	// eqn #2
 	public Double histogram_measure_city_block(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_city_block", P, Q);
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double d3 = sum(D2);
-		chkresult("histogram_measure_city_block", d3);
-		return d3;
+		return histogram_measure_city_block(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #2 (double[] kernel)
+	public double histogram_measure_city_block(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_city_block", P, Q);
+		int n = P.length;
+		double d1 = useVectorKernels(n) ? VectorKernels.sumAbsDifference(P, Q)
+				: Double.NaN;
+		if (!VectorKernels.usable(d1)) {
+			d1 = 0d;
+			for (int i = 0; i < n; i++)
+				d1 = accumulate(d1, Math.abs(P[i] - Q[i]));
+		}
+		chkresult("histogram_measure_city_block", d1);
+		return d1;
+	}
+
+	// eqn #2 (int[] count kernel: raw counts, normalized once at the end)
+	public double histogram_measure_city_block(int[] P, int[] Q)
+			throws Exception {
+		long[] w = countWeights("histogram_measure_city_block", P, Q);
+		if (w == null)
+			return histogram_measure_city_block(normalizeCounts(P),
+					normalizeCounts(Q));
+		long wp = w[0], wq = w[1];
+		long d1 = 0;
+		for (int i = 0; i < P.length; i++) {
+			long a = P[i] * wp - Q[i] * wq;
+			d1 += (a < 0) ? -a : a;
+		}
+		double d2 = (double) d1 / w[2];
+		chkresult("histogram_measure_city_block", d2);
+		return d2;
+	}
+
+	// eqn #2 (HistogramMatrix kernel: P against rows from..to-1 of Q)
+	public void histogram_measure_city_block(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_city_block", P, Q, from, to, result);
+		double[] q = Q.getData();
+		int n = p.length;
+		boolean plain = plainSums(p, Q);
+		double[] row = null;
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++)
+					d1 += Math.abs(p[i] - q[off + i]);
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = d1;
+					continue;
+				}
+			}
+			// negative bins, saturated sums and the lane-parallel kernels take
+			// the pairwise path
+			row = Q.copyRow(r, row);
+			result[r] = histogram_measure_city_block(p, row);
+		}
+	}
+
+	// eqn #2 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_city_block(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_city_block", P, Q, from, to, result);
+		int n = p.length;
+		boolean plain = nonNegative(p) && !useVectorKernels(n);
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++)
+					d1 += Math.abs(p[i] - row[i]);
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = d1;
+					continue;
+				}
+			}
+			result[r] = histogram_measure_city_block(p, row);
+		}
 	}
 
 	/*
@@ -128,14 +390,101 @@ public class MathOpsE {
 	// eqn #3
 	public Double histogram_measure_minkowski(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_minkowski", P, Q);
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double[] D3 = cube(D2);
-		Double d4 = sum(D3);
-		Double d5 = cbrt(d4);
-		chkresult("histogram_measure_minkowski", d5);
-		return d5;
+		return histogram_measure_minkowski(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #3 (double[] kernel)
+	public double histogram_measure_minkowski(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_minkowski", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = Math.abs(P[i] - Q[i]);
+			d1 = accumulate(d1, a * a * a);
+		}
+		double d2 = Math.cbrt(d1);
+		chkresult("histogram_measure_minkowski", d2);
+		return d2;
+	}
+
+	// eqn #3 with order p
+	public Double histogram_measure_minkowski(Double[] P, Double[] Q, double p)
+			throws Exception {
+		return histogram_measure_minkowski(toPrimitive(P), toPrimitive(Q), p);
+	}
+
+	/*
+	 * Minkowski distance of order p: (sum |P-Q|^p)^(1/p), for any p > 0
+	 * including fractional p and p = POSITIVE_INFINITY (max |P-Q|).
+	 * p = 1, 2 and 3 and other integer p up to MINKOWSKI_MAX_INTEGER_P take
+	 * dedicated paths without pow(); p = 3 gives the same results as
+	 * histogram_measure_minkowski(P, Q). Other p use
+	 * histogram_measure_minkowski_pow().
+	 */
+	public double histogram_measure_minkowski(double[] P, double[] Q, double p)
+			throws Exception {
+		chkorder("histogram_measure_minkowski", p);
+		if (p == 3.0d)
+			return histogram_measure_minkowski(P, Q);
+		validate("histogram_measure_minkowski", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		double d2;
+		if (p == Double.POSITIVE_INFINITY) {
+			d1 = (n == 0) ? 0d : Math.abs(P[0] - Q[0]);
+			for (int i = 1; i < n; i++) {
+				double a = Math.abs(P[i] - Q[i]);
+				d1 = (a > d1) ? a : d1;
+			}
+			d2 = d1;
+		} else if (p == 1.0d) {
+			for (int i = 0; i < n; i++)
+				d1 = accumulate(d1, Math.abs(P[i] - Q[i]));
+			d2 = d1;
+		} else if (p == 2.0d) {
+			for (int i = 0; i < n; i++) {
+				double a = P[i] - Q[i];
+				d1 = accumulate(d1, a * a);
+			}
+			d2 = Math.sqrt(d1);
+		} else if (p == Math.rint(p) && p <= MINKOWSKI_MAX_INTEGER_P) {
+			int k = (int) p;
+			for (int i = 0; i < n; i++)
+				d1 = accumulate(d1, power(Math.abs(P[i] - Q[i]), k));
+			d2 = Math.pow(d1, 1.0d / p);
+		} else {
+			return histogram_measure_minkowski_pow(P, Q, p);
+		}
+		chkresult("histogram_measure_minkowski", d2);
+		return d2;
+	}
+
+	/*
+	 * Minkowski distance of order p through Math.pow() for every bin: the
+	 * general path of histogram_measure_minkowski(P, Q, p), for finite p > 0.
+	 */
+	public double histogram_measure_minkowski_pow(double[] P, double[] Q,
+			double p) throws Exception {
+		chkorder("histogram_measure_minkowski_pow", p);
+		if (p == Double.POSITIVE_INFINITY)
+			throw new MathCompatibilityException(
+					"histogram_measure_minkowski_pow: order must be finite");
+		validate("histogram_measure_minkowski_pow", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, Math.pow(Math.abs(P[i] - Q[i]), p));
+		double d2 = Math.pow(d1, 1.0d / p);
+		chkresult("histogram_measure_minkowski_pow", d2);
+		return d2;
+	}
+
+	// the order of a Minkowski distance must be a number > 0
+	private void chkorder(String methodName, double p) throws Exception {
+		if (!(p > 0d))
+			throw new MathCompatibilityException(methodName
+					+ ": order p must be > 0, got " + p);
 	}
 
 	/*
@@ -158,12 +507,78 @@ public class MathOpsE {
 	// eqn #4
 	public Double histogram_measure_chebyshev(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_chebyshev", P, Q);
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double d3 = max(D2);
-		chkresult("histogram_measure_chebyshev", d3);
-		return d3;
+		return histogram_measure_chebyshev(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #4 (double[] kernel)
+	public double histogram_measure_chebyshev(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_chebyshev", P, Q);
+		int n = P.length;
+		double d1 = (n == 0) ? 0d : Math.abs(P[0] - Q[0]);
+		for (int i = 1; i < n; i++) {
+			double a = Math.abs(P[i] - Q[i]);
+			d1 = (a > d1) ? a : d1;
+		}
+		chkresult("histogram_measure_chebyshev", d1);
+		return d1;
+	}
+
+	// eqn #4 (int[] count kernel: raw counts, normalized once at the end)
+	public double histogram_measure_chebyshev(int[] P, int[] Q)
+			throws Exception {
+		long[] w = countWeights("histogram_measure_chebyshev", P, Q);
+		if (w == null)
+			return histogram_measure_chebyshev(normalizeCounts(P),
+					normalizeCounts(Q));
+		long wp = w[0], wq = w[1];
+		long d1 = 0;
+		for (int i = 0; i < P.length; i++) {
+			long a = P[i] * wp - Q[i] * wq;
+			a = (a < 0) ? -a : a;
+			d1 = (a > d1) ? a : d1;
+		}
+		double d2 = (double) d1 / w[2];
+		chkresult("histogram_measure_chebyshev", d2);
+		return d2;
+	}
+
+	// eqn #4 (HistogramMatrix kernel: P against rows from..to-1 of Q)
+	public void histogram_measure_chebyshev(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_chebyshev", P, Q, from, to, result);
+		double[] q = Q.getData();
+		int n = p.length;
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			double d1 = (n == 0) ? 0d : Math.abs(p[0] - q[off]);
+			for (int i = 1; i < n; i++) {
+				double a = Math.abs(p[i] - q[off + i]);
+				d1 = (a > d1) ? a : d1;
+			}
+			chkresult("histogram_measure_chebyshev", d1);
+			result[r] = d1;
+		}
+	}
+
+	// eqn #4 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_chebyshev(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_chebyshev", P, Q, from, to, result);
+		int n = p.length;
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			double d1 = (n == 0) ? 0d : Math.abs(p[0] - row[0]);
+			for (int i = 1; i < n; i++) {
+				double a = Math.abs(p[i] - row[i]);
+				d1 = (a > d1) ? a : d1;
+			}
+			chkresult("histogram_measure_chebyshev", d1);
+			result[r] = d1;
+		}
 	}
 
 	/*
@@ -186,18 +601,24 @@ public class MathOpsE {
 	// eqn #5
 	public Double histogram_measure_sorensen(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_sorensen", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double d3 = sum(D2);
-		// bottom
-		Double[] D4 = add(P, Q);
-		Double d5 = sum(D4);
+		return histogram_measure_sorensen(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #5 (double[] kernel)
+	public double histogram_measure_sorensen(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_sorensen", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, Math.abs(P[i] - Q[i]));
+			d2 = accumulate(d2, P[i] + Q[i]);
+		}
 		// combine
-		Double d6 = div(d3, d5);
-		chkresult("histogram_measure_sorensen", d6);
-		return d6;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_sorensen", d3);
+		return d3;
 	}
 
 	/*
@@ -220,43 +641,48 @@ public class MathOpsE {
 	// eqn #7
 	public Double histogram_measure_gower(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_gower", P, Q);
-		// reciprocal term
-		Double d1 = (double) P.length;
-		Double d2 = reciprocal1(d1);
+		return histogram_measure_gower(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #7 (double[] kernel)
+	public double histogram_measure_gower(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_gower", P, Q);
+		int n = P.length;
+		// reciprocal term
+		double d1 = quotient(1d, (double) n);
 		// sum term
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = abs(D3);
-		Double d5 = sum(D4);
-
+		double d2 = 0d;
+		for (int i = 0; i < n; i++)
+			d2 = accumulate(d2, Math.abs(P[i] - Q[i]));
 		// combine
-		Double d6 = mult(d2, d5);
-		chkresult("histogram_measure_gower", d6);
-		return d6;
+		double d3 = d1 * d2;
+		chkresult("histogram_measure_gower", d3);
+		return d3;
 	}
 
 	// eqn #6
 	public Double histogram_measure_gower2(Double[] P, Double[] Q, Double[] R)
 			throws Exception {
-		chkargs("histogram_measure_gower2", P, Q);
-		chkargs("histogram_measure_gower2", Q, R);
+		return histogram_measure_gower2(toPrimitive(P), toPrimitive(Q), toPrimitive(R));
+	}
 
+	// eqn #6 (double[] kernel)
+	public double histogram_measure_gower2(double[] P, double[] Q, double[] R)
+			throws Exception {
+		validate("histogram_measure_gower2", P, Q);
+		validate("histogram_measure_gower2", Q, R);
+		int n = P.length;
 		// right-most term
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double[] D3 = div(D2, R);
-		Double d4 = sum(D3);
-
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, quotient(Math.abs(P[i] - Q[i]), R[i]));
 		// reciprocal term
-		Double d5 = (double) P.length;
-		Double d6 = reciprocal1(d5);
-
+		double d2 = quotient(1d, (double) n);
 		// combine
-		Double d7 = mult(d6, d4);
-
-		chkresult("histogram_measure_gower2", d7);
-		return d7;
+		double d3 = d2 * d1;
+		chkresult("histogram_measure_gower2", d3);
+		return d3;
 	}
 
 	/*
@@ -279,18 +705,24 @@ public class MathOpsE {
 	// eqn #8
 	public Double histogram_measure_soergel(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_soergel", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double d3 = sum(D2);
-		// bottom
-		Double[] D4 = max(P, Q);
-		Double d5 = sum(D4);
+		return histogram_measure_soergel(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #8 (double[] kernel)
+	public double histogram_measure_soergel(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_soergel", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, Math.abs(P[i] - Q[i]));
+			d2 = accumulate(d2, (P[i] > Q[i]) ? P[i] : Q[i]);
+		}
 		// combine
-		Double d6 = div(d3, d5);
-		chkresult("histogram_measure_soergel", d6);
-		return d6;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_soergel", d3);
+		return d3;
 	}
 
 	/*
@@ -313,18 +745,30 @@ public class MathOpsE {
 	// eqn #9
 	public Double histogram_measure_kulczynski(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_kulczynski", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double d3 = sum(D2);
-		// bottom
-		Double[] D4 = min(P, Q);
-		Double d5 = sum(D4);
+		return histogram_measure_kulczynski(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #9 (double[] kernel)
+	public double histogram_measure_kulczynski(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_kulczynski", P, Q);
+		return histogram_measure_kulczynski_unchecked(P, Q);
+	}
+
+	// eqn #9, for arguments the caller has already validated
+	private double histogram_measure_kulczynski_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, Math.abs(P[i] - Q[i]));
+			d2 = accumulate(d2, (P[i] < Q[i]) ? P[i] : Q[i]);
+		}
 		// combine
-		Double d6 = div(d3, d5);
-		chkresult("histogram_measure_kulczynski", d6);
-		return d6;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_kulczynski", d3);
+		return d3;
 	}
 
 	/*
@@ -347,18 +791,19 @@ public class MathOpsE {
 	// eqn #10
 	public Double histogram_measure_canberra(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_canberra", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		// bottom
-		Double[] D3 = add(P, Q);
-		// combine
-		Double[] D4 = div(D2, D3);
-		Double d5 = sum(D4);
+		return histogram_measure_canberra(toPrimitive(P), toPrimitive(Q));
+	}
 
-		chkresult("histogram_measure_canberra", d5);
-		return d5;
+	// eqn #10 (double[] kernel)
+	public double histogram_measure_canberra(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_canberra", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, quotient(Math.abs(P[i] - Q[i]), P[i] + Q[i]));
+		chkresult("histogram_measure_canberra", d1);
+		return d1;
 	}
 
 	/*
@@ -381,17 +826,19 @@ public class MathOpsE {
 	// eqn #11
 	public Double histogram_measure_lorentzian(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_lorentzian", P, Q);
-		// inner-term
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double[] D3 = mkConstArray(P.length, 1d);
-		Double[] D4 = add(D3, D2);
-		Double[] D5 = ln(D4);
-		// combine
-		Double d6 = sum(D5);
-		chkresult("histogram_measure_lorentzian", d6);
-		return d6;
+		return histogram_measure_lorentzian(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #11 (double[] kernel)
+	public double histogram_measure_lorentzian(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_lorentzian", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, naturalLog(1d + Math.abs(P[i] - Q[i])));
+		chkresult("histogram_measure_lorentzian", d1);
+		return d1;
 	}
 
 	/*
@@ -414,49 +861,184 @@ public class MathOpsE {
 	// eqn #12
 	public Double histogram_measure_intersection_IS(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_intersection_IS", P, Q);
-		Double[] D1 = min(P, Q);
-		Double d2 = sum(D1);
+		return histogram_measure_intersection_IS(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #12 (double[] kernel)
+	public double histogram_measure_intersection_IS(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_intersection_IS", P, Q);
+		return histogram_measure_intersection_IS_unchecked(P, Q);
+	}
+
+	// eqn #12, for arguments the caller has already validated
+	private double histogram_measure_intersection_IS_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = useVectorKernels(n) ? VectorKernels.sumMin(P, Q)
+				: Double.NaN;
+		if (!VectorKernels.usable(d1)) {
+			d1 = 0d;
+			for (int i = 0; i < n; i++)
+				d1 = accumulate(d1, (P[i] < Q[i]) ? P[i] : Q[i]);
+		}
+		// check if the value is larger than 1
+		if (d1 > 1.0) {
+			d1 = 1.0;
+		}
+		chkresult("histogram_measure_intersection_IS", d1);
+		return d1;
+	}
+
+	// eqn #12 (int[] count kernel: raw counts, normalized once at the end)
+	public double histogram_measure_intersection_IS(int[] P, int[] Q)
+			throws Exception {
+		long[] w = countWeights("histogram_measure_intersection_IS", P, Q);
+		if (w == null)
+			return histogram_measure_intersection_IS(normalizeCounts(P),
+					normalizeCounts(Q));
+		long wp = w[0], wq = w[1];
+		long d1 = 0;
+		for (int i = 0; i < P.length; i++) {
+			long a = P[i] * wp;
+			long b = Q[i] * wq;
+			d1 += (a < b) ? a : b;
+		}
+		double d2 = (double) d1 / w[2];
 		// check if the value is larger than 1
-		if( d2.compareTo( new Double(1.0)) > 0  ){
-			d2 = new Double(1.0);
+		if (d2 > 1.0) {
+			d2 = 1.0;
 		}
 		chkresult("histogram_measure_intersection_IS", d2);
 		return d2;
 	}
 
+	// eqn #12 (HistogramMatrix kernel: P against rows from..to-1 of Q)
+	public void histogram_measure_intersection_IS(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_intersection_IS", P, Q, from, to, result);
+		double[] q = Q.getData();
+		int n = p.length;
+		boolean plain = plainSums(p, Q);
+		double[] row = null;
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			if (plain) {
+				// Math.min differs from the ternary only for -0 and NaN,
+				// which leave the sum as it is or were rejected
+				double d1 = 0d;
+				for (int i = 0; i < n; i++)
+					d1 += Math.min(p[i], q[off + i]);
+				if (d1 < Double.MAX_VALUE) {
+					// check if the value is larger than 1
+					result[r] = (d1 > 1.0) ? 1.0 : d1;
+					continue;
+				}
+			}
+			// negative bins, saturated sums and the lane-parallel kernels take
+			// the pairwise path
+			row = Q.copyRow(r, row);
+			result[r] = histogram_measure_intersection_IS(p, row);
+		}
+	}
+
+	// eqn #12 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_intersection_IS(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_intersection_IS", P, Q, from, to, result);
+		int n = p.length;
+		boolean plain = nonNegative(p) && !useVectorKernels(n);
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++)
+					d1 += Math.min(p[i], row[i]);
+				if (d1 < Double.MAX_VALUE) {
+					// check if the value is larger than 1
+					result[r] = (d1 > 1.0) ? 1.0 : d1;
+					continue;
+				}
+			}
+			result[r] = histogram_measure_intersection_IS(p, row);
+		}
+	}
+
+	// eqn #12 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_intersection_IS(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_intersection_IS", P, Q);
+		return histogram_measure_intersection_IS(u[0], u[1]);
+	}
+
+	// eqn #12 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_intersection_IS(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_intersection_IS", P, Q))
+			return histogram_measure_intersection_IS(P.getSparse(), Q.getSparse());
+		return histogram_measure_intersection_IS(P.getBins(), Q.getBins());
+	}
+
 	// eqn #13.1
 	public Double histogram_measure_intersection_dNonIS(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_intersection_dNonIS", P, Q);
-		Double d1 = histogram_measure_intersection_IS(P, Q);
+		return histogram_measure_intersection_dNonIS(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #13.1 (double[] kernel)
+	public double histogram_measure_intersection_dNonIS(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_intersection_dNonIS", P, Q);
+		double d1 = histogram_measure_intersection_IS_unchecked(P, Q);
 		// Case of normalized histograms
-		if (d1 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, P.length) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, Q.length) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-		Double d2 = sub(1.0d, d1);
+		double d2 = 1.0d - d1;
 		chkresult("histogram_measure_intersection_dNonIS", d2);
 		return d2;
 	}
 
+	// eqn #13.1 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_intersection_dNonIS(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_intersection_dNonIS", P, Q);
+		return histogram_measure_intersection_dNonIS(u[0], u[1]);
+	}
+
+	// eqn #13.1 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_intersection_dNonIS(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_intersection_dNonIS", P, Q))
+			return histogram_measure_intersection_dNonIS(P.getSparse(), Q.getSparse());
+		return histogram_measure_intersection_dNonIS(P.getBins(), Q.getBins());
+	}
+
 	// eqn #13.2
 	public Double histogram_measure_intersection_dNonIS2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_intersection_dNonIS2", P, Q);
-		// reciprocal term
-		Double d1 = 2.0d;
-		Double d2 = reciprocal1(d1);
+		return histogram_measure_intersection_dNonIS2(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #13.2 (double[] kernel)
+	public double histogram_measure_intersection_dNonIS2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_intersection_dNonIS2", P, Q);
+		int n = P.length;
+		// reciprocal term
+		double d1 = quotient(1d, 2.0d);
 		// sum term
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = abs(D3);
-		Double d5 = sum(D4);
-
+		double d2 = 0d;
+		for (int i = 0; i < n; i++)
+			d2 = accumulate(d2, Math.abs(P[i] - Q[i]));
 		// combine
-		Double d6 = mult(d2, d5);
-		chkresult("histogram_measure_intersection_dNonIS2", d6);
-		return d6;
+		double d3 = d1 * d2;
+		chkresult("histogram_measure_intersection_dNonIS2", d3);
+		return d3;
 	}
 
 	/*
@@ -479,36 +1061,57 @@ public class MathOpsE {
 	// eqn #15
 	public Double histogram_measure_wave_hedges(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_wave_hedges", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		// bottom
-		Double[] D3 = max(P, Q);
-		// combine
-		Double[] D4 = div(D2, D3);
-		Double d5 = sum(D4);
-		chkresult("histogram_measure_wave_hedges", d5);
-		return d5;
+		return histogram_measure_wave_hedges(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #15 (double[] kernel)
+	public double histogram_measure_wave_hedges(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_wave_hedges", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double max = (P[i] > Q[i]) ? P[i] : Q[i];
+			d1 = accumulate(d1, quotient(Math.abs(P[i] - Q[i]), max));
+		}
+		chkresult("histogram_measure_wave_hedges", d1);
+		return d1;
+	}
+
+	// eqn #15 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_wave_hedges(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_wave_hedges", P, Q);
+		return histogram_measure_wave_hedges(u[0], u[1]);
+	}
+
+	// eqn #15 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_wave_hedges(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_wave_hedges", P, Q))
+			return histogram_measure_wave_hedges(P.getSparse(), Q.getSparse());
+		return histogram_measure_wave_hedges(P.getBins(), Q.getBins());
 	}
 
 	// eqn #14
 	public Double histogram_measure_wave_hedges_dWH(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_wave_hedges_dWH", P, Q);
-		// top
-		Double[] D1 = min(P, Q);
-		// bottom
-		Double[] D2 = max(P, Q);
-		// combine: term1
-		Double[] D3 = div(D1, D2);
-		// combine: term2
-		Double[] D4 = mkConstArray(P.length, 1.0d);
-		Double[] D5 = sub(D4, D3);
-		// combine
-		Double d6 = sum(D5);
-		chkresult("histogram_measure_wave_hedges_dWH", d6);
-		return d6;
+		return histogram_measure_wave_hedges_dWH(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #14 (double[] kernel)
+	public double histogram_measure_wave_hedges_dWH(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_wave_hedges_dWH", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double min = (P[i] < Q[i]) ? P[i] : Q[i];
+			double max = (P[i] > Q[i]) ? P[i] : Q[i];
+			d1 = accumulate(d1, 1.0d - quotient(min, max));
+		}
+		chkresult("histogram_measure_wave_hedges_dWH", d1);
+		return d1;
 	}
 
 	/*
@@ -531,51 +1134,104 @@ public class MathOpsE {
 	// eqn #16
 	public Double histogram_measure_czekanowski(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_czekanowski", P, Q);
-		// top
-		Double[] D1 = min(P, Q);
-		Double d2 = sum(D1);
-		Double d3 = mult(2.0d, d2);
-		// bottom
-		Double[] D4 = add(P, Q);
-		Double d5 = sum(D4);
-		// combine
-		Double d6 = div(d3, d5);
-		chkresult("histogram_measure_czekanowski", d6);
-		return d6;
+		return histogram_measure_czekanowski(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #16 (double[] kernel)
+	public double histogram_measure_czekanowski(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_czekanowski", P, Q);
+		return histogram_measure_czekanowski_unchecked(P, Q);
+	}
+
+	// eqn #16, for arguments the caller has already validated
+	private double histogram_measure_czekanowski_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, (P[i] < Q[i]) ? P[i] : Q[i]);
+			d2 = accumulate(d2, P[i] + Q[i]);
+		}
+		// combine
+		double d3 = quotient(2.0d * d1, d2);
+		chkresult("histogram_measure_czekanowski", d3);
+		return d3;
+	}
+
+	// eqn #16 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_czekanowski(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_czekanowski", P, Q);
+		return histogram_measure_czekanowski(u[0], u[1]);
+	}
+
+	// eqn #16 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_czekanowski(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_czekanowski", P, Q))
+			return histogram_measure_czekanowski(P.getSparse(), Q.getSparse());
+		return histogram_measure_czekanowski(P.getBins(), Q.getBins());
 	}
 
 	// eqn #17.1
 	public Double histogram_measure_czekanowski_dCze(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_czekanowski_dCze", P, Q);
+		return histogram_measure_czekanowski_dCze(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #17.1 (double[] kernel)
+	public double histogram_measure_czekanowski_dCze(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_czekanowski_dCze", P, Q);
+		double d1 = histogram_measure_czekanowski_unchecked(P, Q);
 		// Case of normalized histograms
-		Double d1 = histogram_measure_czekanowski(P, Q);
-		if (d1 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, P.length) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, Q.length) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-		Double d2 = sub(1.0d, d1);
+		double d2 = 1.0d - d1;
 		chkresult("histogram_measure_czekanowski_dCze", d2);
 		return d2;
 	}
 
+	// eqn #17.1 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_czekanowski_dCze(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_czekanowski_dCze", P, Q);
+		return histogram_measure_czekanowski_dCze(u[0], u[1]);
+	}
+
+	// eqn #17.1 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_czekanowski_dCze(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_czekanowski_dCze", P, Q))
+			return histogram_measure_czekanowski_dCze(P.getSparse(), Q.getSparse());
+		return histogram_measure_czekanowski_dCze(P.getBins(), Q.getBins());
+	}
+
 	// eqn #17.2
 	public Double histogram_measure_czekanowski_dCze2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_czekanowski_dCze2", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = abs(D1);
-		Double d3 = sum(D2);
-		// bottom
-		Double[] D4 = add(P, Q);
-		Double d5 = sum(D4);
-		// combine
-		Double d6 = div(d3, d5);
+		return histogram_measure_czekanowski_dCze2(toPrimitive(P), toPrimitive(Q));
+	}
 
-		chkresult("histogram_measure_czekanowski_dCze2", d6);
-		return d6;
+	// eqn #17.2 (double[] kernel)
+	public double histogram_measure_czekanowski_dCze2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_czekanowski_dCze2", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, Math.abs(P[i] - Q[i]));
+			d2 = accumulate(d2, P[i] + Q[i]);
+		}
+		// combine
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_czekanowski_dCze2", d3);
+		return d3;
 	}
 
 	/*
@@ -598,48 +1254,104 @@ public class MathOpsE {
 	// eqn #18
 	public Double histogram_measure_motyka(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_motyka", P, Q);
-		// top
-		Double[] D1 = min(P, Q);
-		Double d2 = sum(D1);
-		// bottom
-		Double[] D3 = add(P, Q);
-		Double d4 = sum(D3);
+		return histogram_measure_motyka(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #18 (double[] kernel)
+	public double histogram_measure_motyka(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_motyka", P, Q);
+		return histogram_measure_motyka_unchecked(P, Q);
+	}
+
+	// eqn #18, for arguments the caller has already validated
+	private double histogram_measure_motyka_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, (P[i] < Q[i]) ? P[i] : Q[i]);
+			d2 = accumulate(d2, P[i] + Q[i]);
+		}
 		// combine
-		Double d5 = div(d2, d4);
-		chkresult("histogram_measure_motyka", d5);
-		return d5;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_motyka", d3);
+		return d3;
+	}
+
+	// eqn #18 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_motyka(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_motyka", P, Q);
+		return histogram_measure_motyka(u[0], u[1]);
+	}
+
+	// eqn #18 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_motyka(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_motyka", P, Q))
+			return histogram_measure_motyka(P.getSparse(), Q.getSparse());
+		return histogram_measure_motyka(P.getBins(), Q.getBins());
 	}
 
 	// eqn #19.1
 	public Double histogram_measure_motyka_dMot(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_motyka_dMot", P, Q);
-		Double d1 = histogram_measure_motyka(P, Q);
+		return histogram_measure_motyka_dMot(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #19.1 (double[] kernel)
+	public double histogram_measure_motyka_dMot(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_motyka_dMot", P, Q);
+		double d1 = histogram_measure_motyka_unchecked(P, Q);
 		// Case of normalized histograms
-		if (d1 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, P.length) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, Q.length) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-		Double d2 = sub(1.0d, d1);
+		double d2 = 1.0d - d1;
 		chkresult("histogram_measure_motyka_dMot", d2);
 		return d2;
 	}
 
+	// eqn #19.1 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_motyka_dMot(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_motyka_dMot", P, Q);
+		return histogram_measure_motyka_dMot(u[0], u[1]);
+	}
+
+	// eqn #19.1 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_motyka_dMot(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_motyka_dMot", P, Q))
+			return histogram_measure_motyka_dMot(P.getSparse(), Q.getSparse());
+		return histogram_measure_motyka_dMot(P.getBins(), Q.getBins());
+	}
+
 	// eqn #19.2
 	public Double histogram_measure_motyka_dMot2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_motyka_dMot2", P, Q);
-		// top
-		Double[] D1 = max(P, Q);
-		Double d2 = sum(D1);
-		// bottom
-		Double[] D3 = add(P, Q);
-		Double d4 = sum(D3);
+		return histogram_measure_motyka_dMot2(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #19.2 (double[] kernel)
+	public double histogram_measure_motyka_dMot2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_motyka_dMot2", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, (P[i] > Q[i]) ? P[i] : Q[i]);
+			d2 = accumulate(d2, P[i] + Q[i]);
+		}
 		// combine
-		Double d5 = div(d2, d4);
-		chkresult("histogram_measure_motyka_dMot2", d5);
-		return d5;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_motyka_dMot2", d3);
+		return d3;
 	}
 
 	/*
@@ -662,28 +1374,55 @@ public class MathOpsE {
 	// eqn #20.1
 	public Double histogram_measure_kulczynski_s(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_kulczynski_s", P, Q);
-		Double d1 = histogram_measure_kulczynski(P, Q);
-		Double d2 = reciprocal1(d1);
+		return histogram_measure_kulczynski_s(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #20.1 (double[] kernel)
+	public double histogram_measure_kulczynski_s(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_kulczynski_s", P, Q);
+		double d1 = histogram_measure_kulczynski_unchecked(P, Q);
+		double d2 = quotient(1d, d1);
 		chkresult("histogram_measure_kulczynski_s", d2);
 		return d2;
 	}
 
+	// eqn #20.1 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_kulczynski_s(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_kulczynski_s", P, Q);
+		return histogram_measure_kulczynski_s(u[0], u[1]);
+	}
+
+	// eqn #20.1 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_kulczynski_s(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_kulczynski_s", P, Q))
+			return histogram_measure_kulczynski_s(P.getSparse(), Q.getSparse());
+		return histogram_measure_kulczynski_s(P.getBins(), Q.getBins());
+	}
+
 	// eqn #20.2
 	public Double histogram_measure_kulczynski_s2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_kulczynski_s2", P, Q);
-		// top
-		Double[] D1 = min(P, Q);
-		Double d2 = sum(D1);
-		// bottom
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = abs(D3);
-		Double d5 = sum(D4);
+		return histogram_measure_kulczynski_s2(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #20.2 (double[] kernel)
+	public double histogram_measure_kulczynski_s2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_kulczynski_s2", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, (P[i] < Q[i]) ? P[i] : Q[i]);
+			d2 = accumulate(d2, Math.abs(P[i] - Q[i]));
+		}
 		// combine
-		Double d6 = div(d2, d5);
-		chkresult("histogram_measure_kulczynski_s2", d6);
-		return d6;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_kulczynski_s2", d3);
+		return d3;
 	}
 
 	/*
@@ -705,17 +1444,39 @@ public class MathOpsE {
 
 	public Double histogram_measure_ruzicka(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_ruzicka", P, Q);
-		// top
-		Double[] D1 = min(P, Q);
-		Double d2 = sum(D1);
-		// bottom
-		Double[] D3 = max(P, Q);
-		Double d4 = sum(D3);
+		return histogram_measure_ruzicka(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// double[] kernel
+	public double histogram_measure_ruzicka(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_ruzicka", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, (P[i] < Q[i]) ? P[i] : Q[i]);
+			d2 = accumulate(d2, (P[i] > Q[i]) ? P[i] : Q[i]);
+		}
 		// combine
-		Double d5 = div(d2, d4);
-		chkresult("histogram_measure_ruzicka", d5);
-		return d5;
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_ruzicka", d3);
+		return d3;
+	}
+
+	// SparseHistogram kernel, over the bins non-zero in P or Q
+	public double histogram_measure_ruzicka(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_ruzicka", P, Q);
+		return histogram_measure_ruzicka(u[0], u[1]);
+	}
+
+	// PreparedHistogram kernel, sparse when both histograms are
+	public double histogram_measure_ruzicka(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_ruzicka", P, Q))
+			return histogram_measure_ruzicka(P.getSparse(), Q.getSparse());
+		return histogram_measure_ruzicka(P.getBins(), Q.getBins());
 	}
 
 	/*
@@ -738,57 +1499,71 @@ public class MathOpsE {
 	// eqn #23
 	public Double histogram_measure_tanimoto(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_tanimoto", P, Q);
-
-		// bottom
-		Double[] D1 = max(P, Q);
-		Double d2 = sum(D1);
-
-		// top
-		// term2: right-top
-		Double[] D3 = min(P, Q);
-		// term3: left-top
-		Double[] D4 = max(P, Q);
-		// combine top
-		Double[] D5 = sub(D4, D3);
-		Double d6 = sum(D5);
+		return histogram_measure_tanimoto(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #23 (double[] kernel)
+	public double histogram_measure_tanimoto(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_tanimoto", P, Q);
+		int n = P.length;
+		double d1 = 0d; // top
+		double d2 = 0d; // bottom
+		for (int i = 0; i < n; i++) {
+			double min = (P[i] < Q[i]) ? P[i] : Q[i];
+			double max = (P[i] > Q[i]) ? P[i] : Q[i];
+			d1 = accumulate(d1, max - min);
+			d2 = accumulate(d2, max);
+		}
 		// combine
-		Double d7 = div(d6, d2);
+		double d3 = quotient(d1, d2);
+		chkresult("histogram_measure_tanimoto", d3);
+		return d3;
+	}
 
-		chkresult("histogram_measure_tanimoto", d7);
-		return d7;
+	// eqn #23 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_tanimoto(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_tanimoto", P, Q);
+		return histogram_measure_tanimoto(u[0], u[1]);
+	}
+
+	// eqn #23 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_tanimoto(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_tanimoto", P, Q))
+			return histogram_measure_tanimoto(P.getSparse(), Q.getSparse());
+		return histogram_measure_tanimoto(P.getBins(), Q.getBins());
 	}
 
 	// eqn #22
 	public Double histogram_measure_tanimoto2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_tanimoto2", P, Q);
+		return histogram_measure_tanimoto2(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #22 (double[] kernel)
+	public double histogram_measure_tanimoto2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_tanimoto2", P, Q);
+		int n = P.length;
+		double d1 = 0d; // sum of min(P,Q)
+		double d2 = 0d; // sum of Q
+		double d3 = 0d; // sum of P
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, (P[i] < Q[i]) ? P[i] : Q[i]);
+			d2 = accumulate(d2, Q[i]);
+			d3 = accumulate(d3, P[i]);
+		}
+		double d4 = d3 + d2;
 		// bottom
-		Double[] D1 = min(P, Q);
-		Double d2 = sum(D1);
-
-		Double d3 = sum(Q);
-		Double d4 = sum(P);
-		Double d5 = add(d4, d3);
-		Double d6 = sub(d5, d2);
-
+		double d5 = d4 - d1;
 		// top
-		Double[] D7 = min(P, Q);
-		Double d8 = sum(D7);
-		Double d9 = mult(2.0d, d8);
-
-		Double d10 = sum(Q);
-		Double d11 = sum(P);
-		Double d12 = add(d11, d10);
-		Double d13 = sub(d12, d9);
-
+		double d6 = d4 - 2.0d * d1;
 		// combine
-		Double d14 = div(d13, d6);
-
-		chkresult("histogram_measure_tanimoto2", d14);
-		return d14;
+		double d7 = quotient(d6, d5);
+		chkresult("histogram_measure_tanimoto2", d7);
+		return d7;
 	}
 
 	/*
@@ -811,11 +1586,73 @@ public class MathOpsE {
 	// eqn #24
 	public Double histogram_measure_inner_product(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_inner_product", P, Q);
-		Double[] D1 = mult(P, Q);
-		Double d2 = sum(D1);
-		chkresult("histogram_measure_inner_product", d2);
-		return d2;
+		return histogram_measure_inner_product(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #24 (double[] kernel)
+	public double histogram_measure_inner_product(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_inner_product", P, Q);
+		int n = P.length;
+		double d1 = useVectorKernels(n) ? VectorKernels.sumProduct(P, Q)
+				: Double.NaN;
+		if (!VectorKernels.usable(d1)) {
+			d1 = 0d;
+			for (int i = 0; i < n; i++)
+				d1 = accumulate(d1, P[i] * Q[i]);
+		}
+		chkresult("histogram_measure_inner_product", d1);
+		return d1;
+	}
+
+	// eqn #24 (HistogramMatrix kernel: P against rows from..to-1 of Q)
+	public void histogram_measure_inner_product(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_inner_product", P, Q, from, to, result);
+		double[] q = Q.getData();
+		int n = p.length;
+		boolean plain = plainSums(p, Q);
+		double[] row = null;
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++)
+					d1 += p[i] * q[off + i];
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = d1;
+					continue;
+				}
+			}
+			// negative bins, saturated sums and the lane-parallel kernels take
+			// the pairwise path
+			row = Q.copyRow(r, row);
+			result[r] = histogram_measure_inner_product(p, row);
+		}
+	}
+
+	// eqn #24 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_inner_product(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_inner_product", P, Q, from, to, result);
+		int n = p.length;
+		boolean plain = nonNegative(p) && !useVectorKernels(n);
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++)
+					d1 += p[i] * row[i];
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = d1;
+					continue;
+				}
+			}
+			result[r] = histogram_measure_inner_product(p, row);
+		}
 	}
 
 	/*
@@ -838,22 +1675,25 @@ public class MathOpsE {
 	// eqn #25
 	public Double histogram_measure_harmonic_mean(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_harmonic_mean", P, Q);
-		// top
-		Double[] D1 = mult(P, Q);
-		// bottom
-		Double[] D2 = add(P, Q);
-		// term1: combine
-		Double[] D3 = div(D1, D2);
+		return histogram_measure_harmonic_mean(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #25 (double[] kernel)
+	public double histogram_measure_harmonic_mean(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_harmonic_mean", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, quotient(P[i] * Q[i], P[i] + Q[i]));
 		// combine
-		Double d4 = sum(D3);
-		Double d5 = mult(2.0d, d4);
+		double d2 = 2.0d * d1;
 		// check if the value is larger than 1
-		if( d5.compareTo( new Double(1.0)) > 0  ){
-			d5 = new Double(1.0);
+		if (d2 > 1.0) {
+			d2 = 1.0;
 		}
-		chkresult("histogram_measure_harmonic_mean", d5);
-		return d5;
+		chkresult("histogram_measure_harmonic_mean", d2);
+		return d2;
 	}
 
 	/*
@@ -876,26 +1716,145 @@ public class MathOpsE {
 	// eqn #26
 	public Double histogram_measure_cosine(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_cosine", P, Q);
+		return histogram_measure_cosine(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #26 (double[] kernel)
+	public double histogram_measure_cosine(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_cosine", P, Q);
+		int n = P.length;
+		double d1 = 0d; // sum of P^2
+		double d2 = 0d; // sum of Q^2
+		double d3 = 0d; // sum of P*Q
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, P[i] * P[i]);
+			d2 = accumulate(d2, Q[i] * Q[i]);
+			d3 = accumulate(d3, P[i] * Q[i]);
+		}
 		// bottom
-		Double[] D1 = square(P);
-		Double d2 = sum(D1);
-		Double d3 = sqrt(d2);
+		double d4 = Math.sqrt(d1) * Math.sqrt(d2);
+		// combine
+		double d5 = quotient(d3, d4);
+		chkresult("histogram_measure_cosine", d5);
+		return d5;
+	}
 
-		Double[] D3 = square(Q);
-		Double d4 = sum(D3);
-		Double d5 = sqrt(d4);
-		// bottom terms: combine
-		Double d6 = mult(d3, d5);
+	// eqn #26 (int[] count kernel: the normalization cancels out)
+	public double histogram_measure_cosine(int[] P, int[] Q) throws Exception {
+		chkcounts("histogram_measure_cosine", P, Q);
+		int n = P.length;
+		double d1 = 0d; // sum of P^2
+		double d2 = 0d; // sum of Q^2
+		double d3 = 0d; // sum of P*Q
+		long tp = 0, tq = 0;
+		for (int i = 0; i < n; i++) {
+			long p = P[i];
+			long q = Q[i];
+			d1 += p * p;
+			d2 += q * q;
+			d3 += p * q;
+			tp += p;
+			tq += q;
+		}
+		// the scale only cancels out when both totals are positive
+		if (tp <= 0 || tq <= 0)
+			return histogram_measure_cosine(normalizeCounts(P),
+					normalizeCounts(Q));
+		// bottom
+		double d4 = Math.sqrt(d1) * Math.sqrt(d2);
+		// combine
+		double d5 = quotient(d3, d4);
+		chkresult("histogram_measure_cosine", d5);
+		return d5;
+	}
 
-		// top
-		Double[] D7 = mult(P, Q);
-		Double d8 = sum(D7);
+	// eqn #26 (PreparedHistogram kernel, L2 norms kept by the histograms)
+	public double histogram_measure_cosine(PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		validate("histogram_measure_cosine", P, Q);
+		double[] p = P.getBins();
+		double[] q = Q.getBins();
+		int n = p.length;
+		double d3 = 0d; // sum of P*Q
+		for (int i = 0; i < n; i++)
+			d3 = accumulate(d3, p[i] * q[i]);
+		// bottom
+		double d4 = P.getL2Norm() * Q.getL2Norm();
 		// combine
-		Double d9 = div(d8, d6);
-		
-		chkresult("histogram_measure_cosine", d9);
-		return d9;
+		double d5 = quotient(d3, d4);
+		chkresult("histogram_measure_cosine", d5);
+		return d5;
+	}
+
+	// eqn #26 (HistogramMatrix kernel: P against rows from..to-1 of Q, with
+	// the L2 norms kept by P and Q)
+	public void histogram_measure_cosine(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_cosine", P, Q, from, to, result);
+		double[] q = Q.getData();
+		double[] norms = Q.getL2Norms();
+		double norm = P.getL2Norm();
+		int n = p.length;
+		boolean plain = Q.isNonNegative() && nonNegative(p);
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			double d3 = 0d; // sum of P*Q
+			if (plain) {
+				for (int i = 0; i < n; i++)
+					d3 += p[i] * q[off + i];
+			}
+			if (!plain || d3 >= Double.MAX_VALUE) {
+				// with the saturation rules of the pairwise kernel
+				d3 = 0d;
+				for (int i = 0; i < n; i++)
+					d3 = accumulate(d3, p[i] * q[off + i]);
+			}
+			// bottom
+			double d4 = norm * norms[r];
+			// combine
+			double d5 = quotient(d3, d4);
+			chkresult("histogram_measure_cosine", d5);
+			result[r] = d5;
+		}
+	}
+
+	// eqn #26 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_cosine(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_cosine", P, Q, from, to, result);
+		double norm = P.getL2Norm();
+		int n = p.length;
+		boolean plain = nonNegative(p);
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			double d3 = 0d; // sum of P*Q
+			double d2 = 0d; // sum of Q^2
+			if (plain) {
+				for (int i = 0; i < n; i++) {
+					d3 += p[i] * row[i];
+					d2 += row[i] * row[i];
+				}
+			}
+			if (!plain || d3 >= Double.MAX_VALUE || d2 >= Double.MAX_VALUE) {
+				// with the saturation rules of the pairwise kernel
+				d3 = 0d;
+				d2 = 0d;
+				for (int i = 0; i < n; i++) {
+					d3 = accumulate(d3, p[i] * row[i]);
+					d2 = accumulate(d2, row[i] * row[i]);
+				}
+			}
+			// bottom
+			double d4 = norm * Math.sqrt(d2);
+			// combine
+			double d5 = quotient(d3, d4);
+			chkresult("histogram_measure_cosine", d5);
+			result[r] = d5;
+		}
 	}
 
 	/*
@@ -918,8 +1877,6 @@ public class MathOpsE {
 	// eqn #27
 	public Double histogram_measure_kumar_hassebrook_pce(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_kumar_hassebrook_pce", P, Q);
-
 		// NOTE: The implementation of this measure has been commented out and
 		// replaced with a constant NaN result
 		// due to the fact that the source paper
@@ -944,7 +1901,17 @@ public class MathOpsE {
 		 * 
 		 * // combine Double d11 = div(d10, d8);
 		 */
-		Double d11 = Double.NaN;
+		return histogram_measure_kumar_hassebrook_pce(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #27 (double[] kernel)
+	public double histogram_measure_kumar_hassebrook_pce(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_kumar_hassebrook_pce", P, Q);
+
+		// NOTE: constant NaN result, see
+		// histogram_measure_kumar_hassebrook_pce(Double[], Double[]).
+		double d11 = Double.NaN;
 
 		chkresult("histogram_measure_kumar_hassebrook_pce", d11);
 		return d11;
@@ -970,47 +1937,53 @@ public class MathOpsE {
 	// eqn #28
 	public Double histogram_measure_jaccard(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_jaccard", P, Q);
-
-		// bottom right-most term
-		Double[] D1 = mult(P, Q);
-		Double d2 = sum(D1);
-
-		// bottom middle term
-		Double[] D3 = square(Q);
-		Double d4 = sum(D3);
-
-		// bottom left term
-		Double[] D5 = square(P);
-		Double d6 = sum(D5);
-		// combine left and middle
-		Double d7 = add(d6, d4);
-
-		// bottom: combine
-		Double d8 = sub(d7, d2);
+		return histogram_measure_jaccard(toPrimitive(P), toPrimitive(Q));
+	}
 
-		// top
-		Double[] D9 = mult(P, Q);
-		Double d10 = sum(D9);
+	// eqn #28 (double[] kernel)
+	public double histogram_measure_jaccard(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_jaccard", P, Q);
+		return histogram_measure_jaccard_unchecked(P, Q);
+	}
 
+	// eqn #28, for arguments the caller has already validated
+	private double histogram_measure_jaccard_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = 0d; // sum of P*Q
+		double d2 = 0d; // sum of Q^2
+		double d3 = 0d; // sum of P^2
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, P[i] * Q[i]);
+			d2 = accumulate(d2, Q[i] * Q[i]);
+			d3 = accumulate(d3, P[i] * P[i]);
+		}
+		// bottom
+		double d4 = (d3 + d2) - d1;
 		// combine
-		Double d11 = div(d10, d8);
-
-		chkresult("histogram_measure_jaccard", d11);
-		return d11;
+		double d5 = quotient(d1, d4);
+		chkresult("histogram_measure_jaccard", d5);
+		return d5;
 	}
 
 	// eqn #39.1 (a.k.a., #29.1, was misnamed in paper)
 	public Double histogram_measure_jaccard_dJac1(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_jaccard_dJac1", P, Q);
-		Double d1 = histogram_measure_jaccard(P, Q);
+		return histogram_measure_jaccard_dJac1(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #39.1 (a.k.a., #29.1, was misnamed in paper) (double[] kernel)
+	public double histogram_measure_jaccard_dJac1(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_jaccard_dJac1", P, Q);
+		double d1 = histogram_measure_jaccard_unchecked(P, Q);
 		// Case of normalized histograms
-		if (d1 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, P.length) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, Q.length) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-		Double d2 = sub(1.0d, d1);
+		double d2 = 1.0d - d1;
 		chkresult("histogram_measure_jaccard_dJac1", d2);
 		return d2;
 	}
@@ -1018,36 +1991,31 @@ public class MathOpsE {
 	// eqn #39.2 (a.k.a., #29.2, was misnamed in paper)
 	public Double histogram_measure_jaccard_dJac2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_jaccard_dJac2", P, Q);
-
-		// bottom right-most term
-		Double[] D1 = mult(P, Q);
-		Double d2 = sum(D1);
-
-		// bottom middle term
-		Double[] D3 = square(Q);
-		Double d4 = sum(D3);
-
-		// bottom left term
-		Double[] D5 = square(P);
-		Double d6 = sum(D5);
-
-		// combine left and middle
-		Double d7 = add(d6, d4);
-
-		// bottom: combine
-		Double d8 = sub(d7, d2);
-
-		// top
-		Double[] D9 = sub(P, Q);
-		Double[] D10 = square(D9);
-		Double d11 = sum(D10);
+		return histogram_measure_jaccard_dJac2(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #39.2 (a.k.a., #29.2, was misnamed in paper) (double[] kernel)
+	public double histogram_measure_jaccard_dJac2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_jaccard_dJac2", P, Q);
+		int n = P.length;
+		double d1 = 0d; // sum of P*Q
+		double d2 = 0d; // sum of Q^2
+		double d3 = 0d; // sum of P^2
+		double d4 = 0d; // sum of (P-Q)^2
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, P[i] * Q[i]);
+			d2 = accumulate(d2, Q[i] * Q[i]);
+			d3 = accumulate(d3, P[i] * P[i]);
+			d4 = accumulate(d4, a * a);
+		}
+		// bottom
+		double d5 = (d3 + d2) - d1;
 		// combine
-		Double d12 = div(d11, d8);
-
-		chkresult("histogram_measure_jaccard_dJac2", d12);
-		return d12;
+		double d6 = quotient(d4, d5);
+		chkresult("histogram_measure_jaccard_dJac2", d6);
+		return d6;
 	}
 
 	/*
@@ -1070,37 +2038,51 @@ public class MathOpsE {
 	// eqn #40 (a.k.a., #30, was misnamed in paper)
 	public Double histogram_measure_dice(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_dice", P, Q);
-		// bottom
-		Double[] D1 = square(Q);
-		Double d2 = sum(D1);
-		Double[] D3 = square(P);
-		Double d4 = sum(D3);
-		Double d5 = add(d4, d2);
+		return histogram_measure_dice(toPrimitive(P), toPrimitive(Q));
+	}
 
-		// top
-		Double[] D6 = mult(P, Q);
-		Double d7 = sum(D6);
-		Double d8 = mult(2.0d, d7);
+	// eqn #40 (a.k.a., #30, was misnamed in paper) (double[] kernel)
+	public double histogram_measure_dice(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_dice", P, Q);
+		return histogram_measure_dice_unchecked(P, Q);
+	}
 
+	// eqn #40 (a.k.a., #30, was misnamed in paper), for arguments the caller has already validated
+	private double histogram_measure_dice_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = 0d; // sum of Q^2
+		double d2 = 0d; // sum of P^2
+		double d3 = 0d; // sum of P*Q
+		for (int i = 0; i < n; i++) {
+			d1 = accumulate(d1, Q[i] * Q[i]);
+			d2 = accumulate(d2, P[i] * P[i]);
+			d3 = accumulate(d3, P[i] * Q[i]);
+		}
 		// combine
-		Double d9 = div(d8, d5);
-		chkresult("histogram_measure_dice", d9);
-		return d9;
+		double d4 = quotient(2.0d * d3, d2 + d1);
+		chkresult("histogram_measure_dice", d4);
+		return d4;
 	}
 
 	// eqn #31.1
 	public Double histogram_measure_dice_dDice1(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_dice_dDice1", P, Q);
-		Double d1 = histogram_measure_dice(P, Q);
+		return histogram_measure_dice_dDice1(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #31.1 (double[] kernel)
+	public double histogram_measure_dice_dDice1(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_dice_dDice1", P, Q);
+		double d1 = histogram_measure_dice_unchecked(P, Q);
 		// Case of normalized histograms
-		if (d1 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, P.length) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, Q.length) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-
-		Double d2 = sub(1.0d, d1);
+		double d2 = 1.0d - d1;
 		chkresult("histogram_measure_dice_dDice1", d2);
 		return d2;
 	}
@@ -1108,23 +2090,27 @@ public class MathOpsE {
 	// eqn #31.2
 	public Double histogram_measure_dice_dDice2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_dice_dDice2", P, Q);
-		// bottom
-		Double[] D1 = square(Q);
-		Double d2 = sum(D1);
-		Double[] D3 = square(P);
-		Double d4 = sum(D3);
-		Double d5 = add(d4, d2);
-
-		// top
-		Double[] D6 = sub(P, Q);
-		Double[] D7 = square(D6);
-		Double d8 = sum(D7);
+		return histogram_measure_dice_dDice2(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #31.2 (double[] kernel)
+	public double histogram_measure_dice_dDice2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_dice_dDice2", P, Q);
+		int n = P.length;
+		double d1 = 0d; // sum of Q^2
+		double d2 = 0d; // sum of P^2
+		double d3 = 0d; // sum of (P-Q)^2
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, Q[i] * Q[i]);
+			d2 = accumulate(d2, P[i] * P[i]);
+			d3 = accumulate(d3, a * a);
+		}
 		// combine
-		Double d9 = div(d8, d5);
-		chkresult("histogram_measure_dice_dDice2", d9);
-		return d9;
+		double d4 = quotient(d3, d2 + d1);
+		chkresult("histogram_measure_dice_dDice2", d4);
+		return d4;
 	}
 
 	/*
@@ -1147,16 +2133,23 @@ public class MathOpsE {
 	// eqn #32
 	public Double histogram_measure_fidelity(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_fidelity", P, Q);
-		Double[] D1 = mult(P, Q);
-		Double[] D2 = sqrt(D1);
-		Double d3 = sum(D2);
+		return histogram_measure_fidelity(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #32 (double[] kernel)
+	public double histogram_measure_fidelity(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_fidelity", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, Math.sqrt(P[i] * Q[i]));
 		// check if the value is larger than 1
-		if( d3.compareTo( new Double(1.0)) > 0  ){
-			d3 = new Double(1.0);
+		if (d1 > 1.0) {
+			d1 = 1.0;
 		}
-		chkresult("histogram_measure_fidelity", d3);
-		return d3;
+		chkresult("histogram_measure_fidelity", d1);
+		return d1;
 	}
 
 	/*
@@ -1179,19 +2172,25 @@ public class MathOpsE {
 	// eqn #33
 	public Double histogram_measure_bhattacharyya(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_bhattacharyya", P, Q);
-		Double[] D1 = mult(P, Q);
-		Double[] D2 = sqrt(D1);
-		Double d3 = sum(D2);
+		return histogram_measure_bhattacharyya(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #33 (double[] kernel)
+	public double histogram_measure_bhattacharyya(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_bhattacharyya", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, Math.sqrt(P[i] * Q[i]));
 		// Case of normalized histograms
-		if (d3 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, n) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, n) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-		Double d4 = ln(d3);
-		Double d5 = mult(-1.0d, d4);
-		chkresult("histogram_measure_bhattacharyya", d5);
-		return d5;
+		double d2 = -1.0d * naturalLog(d1);
+		chkresult("histogram_measure_bhattacharyya", d2);
+		return d2;
 	}
 
 	/*
@@ -1214,44 +2213,57 @@ public class MathOpsE {
 	// eqn #35
 	public Double histogram_measure_hellinger(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_hellinger", P, Q);
-		// right-most inner term
-		Double[] D1 = mult(P, Q);
-		Double[] D2 = sqrt(D1);
-		Double d3 = sum(D2);
+		return histogram_measure_hellinger(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #35 (double[] kernel)
+	public double histogram_measure_hellinger(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_hellinger", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, Math.sqrt(P[i] * Q[i]));
 		// Case of normalized histograms
-		if (d3 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		if (d1 > 1 && Math.abs(sum(P, n) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, n) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-
-		// inside sqrt
-		Double d4 = sub(1d, d3);
-
 		// combine
-		Double d5 = sqrt(d4);
-		Double d6 = mult(2.0d, d5);
-
-		chkresult("histogram_measure_hellinger", d6);
-		return d6;
+		double d2 = 2.0d * Math.sqrt(1d - d1);
+		chkresult("histogram_measure_hellinger", d2);
+		return d2;
 	}
 
 	// eqn #34
 	public Double histogram_measure_hellinger_dH2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_hellinger_dH2", P, Q);
-		// inner sum
-		Double[] D1 = sqrt(Q);
-		Double[] D2 = sqrt(P);
-		Double[] D3 = sub(D2, D1);
-		Double[] D4 = square(D3);
-		Double d5 = sum(D4);
-		// mult by 2
-		Double d6 = mult(2.0d, d5);
-		// combine
-		Double d7 = sqrt(d6);
-		chkresult("histogram_measure_hellinger_dH2", d7);
-		return d7;
+		return histogram_measure_hellinger_dH2(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #34 (double[] kernel)
+	public double histogram_measure_hellinger_dH2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_hellinger_dH2", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = Math.sqrt(P[i]) - Math.sqrt(Q[i]);
+			d1 = accumulate(d1, a * a);
+		}
+		double d2 = Math.sqrt(2.0d * d1);
+		chkresult("histogram_measure_hellinger_dH2", d2);
+		return d2;
+	}
+
+	// eqn #34 (PreparedHistogram kernel, sqrt(P) kept by the histograms)
+	public double histogram_measure_hellinger_dH2(PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		validate("histogram_measure_hellinger_dH2", P, Q);
+		double d1 = sumSquaredDifference(P.getSqrt(), Q.getSqrt());
+		double d2 = Math.sqrt(2.0d * d1);
+		chkresult("histogram_measure_hellinger_dH2", d2);
+		return d2;
 	}
 
 	/*
@@ -1274,34 +2286,56 @@ public class MathOpsE {
 	// eqn #37
 	public Double histogram_measure_matusita(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_matusita", P, Q);
-		Double[] D1 = mult(P, Q);
-		Double[] D2 = sqrt(D1);
-		Double d3 = sum(D2);
-		// Case of normalized histograms
-		if (d3 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON
-				&& Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) {
+		return histogram_measure_matusita(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #37 (double[] kernel)
+	public double histogram_measure_matusita(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_matusita", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, Math.sqrt(P[i] * Q[i]));
+		// Case of normalized histograms
+		if (d1 > 1 && Math.abs(sum(P, n) - 1) < MathOpsE.EPSILON
+				&& Math.abs(sum(Q, n) - 1) < MathOpsE.EPSILON) {
 			return 0.0;
 		}
-		Double d4 = mult(2.0d, d3);
-		Double d5 = sub(2.0d, d4);
-		Double d6 = sqrt(d5);
-		chkresult("histogram_measure_matusita", d6);
-		return d6;
+		double d2 = Math.sqrt(2.0d - 2.0d * d1);
+		chkresult("histogram_measure_matusita", d2);
+		return d2;
 	}
 
 	// eqn #36
 	public Double histogram_measure_matusita_dM2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_matusita_dM2", P, Q);
-		Double[] D1 = sqrt(Q);
-		Double[] D2 = sqrt(P);
-		Double[] D3 = sub(D2, D1);
-		Double[] D4 = square(D3);
-		Double d5 = sum(D4);
-		Double d6 = sqrt(d5);
-		chkresult("histogram_measure_matusita_dM2", d6);
-		return d6;
+		return histogram_measure_matusita_dM2(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #36 (double[] kernel)
+	public double histogram_measure_matusita_dM2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_matusita_dM2", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = Math.sqrt(P[i]) - Math.sqrt(Q[i]);
+			d1 = accumulate(d1, a * a);
+		}
+		double d2 = Math.sqrt(d1);
+		chkresult("histogram_measure_matusita_dM2", d2);
+		return d2;
+	}
+
+	// eqn #36 (PreparedHistogram kernel, sqrt(P) kept by the histograms)
+	public double histogram_measure_matusita_dM2(PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		validate("histogram_measure_matusita_dM2", P, Q);
+		double d1 = sumSquaredDifference(P.getSqrt(), Q.getSqrt());
+		double d2 = Math.sqrt(d1);
+		chkresult("histogram_measure_matusita_dM2", d2);
+		return d2;
 	}
 
 	/*
@@ -1324,26 +2358,61 @@ public class MathOpsE {
 	// eqn #38
 	public Double histogram_measure_squared_chord(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_squared_chord", P, Q);
-		Double[] D1 = sqrt(P);
-		Double[] D2 = sqrt(Q);
-		Double[] D3 = sub(D1, D2);
-		Double[] D4 = square(D3);
-		Double d5 = sum(D4);
-		chkresult("histogram_measure_squared_chord", d5);
-		return d5;
+		return histogram_measure_squared_chord(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #38 (double[] kernel)
+	public double histogram_measure_squared_chord(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_squared_chord", P, Q);
+		return histogram_measure_squared_chord_unchecked(P, Q);
+	}
+
+	// eqn #38 (PreparedHistogram kernel, sqrt(P) kept by the histograms)
+	public double histogram_measure_squared_chord(PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		validate("histogram_measure_squared_chord", P, Q);
+		double d1 = sumSquaredDifference(P.getSqrt(), Q.getSqrt());
+		chkresult("histogram_measure_squared_chord", d1);
+		return d1;
+	}
+
+	// eqn #38, for arguments the caller has already validated
+	private double histogram_measure_squared_chord_unchecked(double[] P, double[] Q)
+			throws Exception {
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = Math.sqrt(P[i]) - Math.sqrt(Q[i]);
+			d1 = accumulate(d1, a * a);
+		}
+		chkresult("histogram_measure_squared_chord", d1);
+		return d1;
 	}
 
 	// eqn #39.1
 	public Double histogram_measure_squared_chord_Ssqc1(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_squared_chord_Ssqc1", P, Q);
-		Double d1 = histogram_measure_squared_chord(P, Q);
-		// Case of normalized histograms
-		/*
-		 * if (d1 > 1 && Math.abs(sum(P) - 1) < MathOpsE.EPSILON &&
-		 * Math.abs(sum(Q) - 1) < MathOpsE.EPSILON) { return 0.0; }
-		 */Double d2 = sub(1.0d, d1);
+		return histogram_measure_squared_chord_Ssqc1(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #39.1 (double[] kernel)
+	public double histogram_measure_squared_chord_Ssqc1(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_squared_chord_Ssqc1", P, Q);
+		double d1 = histogram_measure_squared_chord_unchecked(P, Q);
+		double d2 = 1.0d - d1;
+		chkresult("histogram_measure_squared_chord_Ssqc1", d2);
+		return d2;
+	}
+
+	// eqn #39.1 (PreparedHistogram kernel, sqrt(P) kept by the histograms)
+	public double histogram_measure_squared_chord_Ssqc1(PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		validate("histogram_measure_squared_chord_Ssqc1", P, Q);
+		double d1 = sumSquaredDifference(P.getSqrt(), Q.getSqrt());
+		chkresult("histogram_measure_squared_chord", d1);
+		double d2 = 1.0d - d1;
 		chkresult("histogram_measure_squared_chord_Ssqc1", d2);
 		return d2;
 	}
@@ -1351,20 +2420,20 @@ public class MathOpsE {
 	// eqn #39.2
 	public Double histogram_measure_squared_chord_Ssqc2(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_squared_chord_Ssqc2", P, Q);
-		Double[] D1 = mkConstArray(P.length, 1.0d);
-
-		Double[] D2 = mult(P, Q);
-		Double[] D3 = sqrt(D2);
-
-		Double[] D4 = sub(D3, D1);
-
-		Double d5 = sum(D4);
-
-		Double d6 = mult(2.0d, d5);
+		return histogram_measure_squared_chord_Ssqc2(toPrimitive(P), toPrimitive(Q));
+	}
 
-		chkresult("histogram_measure_squared_chord_Ssqc2", d6);
-		return d6;
+	// eqn #39.2 (double[] kernel)
+	public double histogram_measure_squared_chord_Ssqc2(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_squared_chord_Ssqc2", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, Math.sqrt(P[i] * Q[i]) - 1.0d);
+		double d2 = 2.0d * d1;
+		chkresult("histogram_measure_squared_chord_Ssqc2", d2);
+		return d2;
 	}
 
 	/*
@@ -1388,12 +2457,79 @@ public class MathOpsE {
 	// eqn #40
 	public Double histogram_measure_squared_euclidean(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_squared_euclidean", P, Q);
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = square(D1);
-		Double d3 = sum(D2);
-		chkresult("histogram_measure_squared_euclidean", d3);
-		return d3;
+		return histogram_measure_squared_euclidean(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #40 (double[] kernel)
+	public double histogram_measure_squared_euclidean(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_squared_euclidean", P, Q);
+		int n = P.length;
+		double d1 = useVectorKernels(n) ? VectorKernels.sumSquaredDifference(
+				P, Q) : Double.NaN;
+		if (!VectorKernels.usable(d1)) {
+			d1 = 0d;
+			for (int i = 0; i < n; i++) {
+				double a = P[i] - Q[i];
+				d1 = accumulate(d1, a * a);
+			}
+		}
+		chkresult("histogram_measure_squared_euclidean", d1);
+		return d1;
+	}
+
+	// eqn #40 (HistogramMatrix kernel: P against rows from..to-1 of Q)
+	public void histogram_measure_squared_euclidean(PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = batch("histogram_measure_squared_euclidean", P, Q, from, to, result);
+		double[] q = Q.getData();
+		int n = p.length;
+		boolean plain = plainSums(p, Q);
+		double[] row = null;
+		for (int r = from, off = from * n; r < to; r++, off += n) {
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++) {
+					double a = p[i] - q[off + i];
+					d1 += a * a;
+				}
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = d1;
+					continue;
+				}
+			}
+			// negative bins, saturated sums and the lane-parallel kernels take
+			// the pairwise path
+			row = Q.copyRow(r, row);
+			result[r] = histogram_measure_squared_euclidean(p, row);
+		}
+	}
+
+	// eqn #40 (QuantizedHistogramStore kernel: P against rows from..to-1 of Q,
+	// as read back)
+	public void histogram_measure_squared_euclidean(PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		double[] p = quantized("histogram_measure_squared_euclidean", P, Q, from, to, result);
+		int n = p.length;
+		boolean plain = nonNegative(p) && !useVectorKernels(n);
+		double[] row = null;
+		for (int r = from; r < to; r++) {
+			row = Q.decode(r, row);
+			if (plain) {
+				double d1 = 0d;
+				for (int i = 0; i < n; i++) {
+					double a = p[i] - row[i];
+					d1 += a * a;
+				}
+				if (d1 < Double.MAX_VALUE) {
+					result[r] = d1;
+					continue;
+				}
+			}
+			result[r] = histogram_measure_squared_euclidean(p, row);
+		}
 	}
 
 	/*
@@ -1417,15 +2553,21 @@ public class MathOpsE {
 	// eqn #41
 	public Double histogram_measure_pearson_chiSquared(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_pearson_chiSquared", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = square(D1);
-		// combine
-		Double[] D3 = div(D2, Q);
-		Double d4 = sum(D3);
-		chkresult("histogram_measure_pearson_chiSquared", d4);
-		return d4;
+		return histogram_measure_pearson_chiSquared(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #41 (double[] kernel)
+	public double histogram_measure_pearson_chiSquared(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_pearson_chiSquared", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, quotient(a * a, Q[i]));
+		}
+		chkresult("histogram_measure_pearson_chiSquared", d1);
+		return d1;
 	}
 
 	/*
@@ -1449,15 +2591,21 @@ public class MathOpsE {
 	// eqn #42
 	public Double histogram_measure_neyman_chiSquared(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_neyman_chiSquared", P, Q);
-		// top
-		Double[] D1 = sub(P, Q);
-		Double[] D2 = square(D1);
-		// combine
-		Double[] D3 = div(D2, P);
-		Double d4 = sum(D3);
-		chkresult("histogram_measure_neyman_chiSquared", d4);
-		return d4;
+		return histogram_measure_neyman_chiSquared(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #42 (double[] kernel)
+	public double histogram_measure_neyman_chiSquared(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_neyman_chiSquared", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, quotient(a * a, P[i]));
+		}
+		chkresult("histogram_measure_neyman_chiSquared", d1);
+		return d1;
 	}
 
 	/*
@@ -1481,17 +2629,21 @@ public class MathOpsE {
 	// eqn #43
 	public Double histogram_measure_squared_chiSquared(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_squared_chiSquared", P, Q);
-		// bottom
-		Double[] D1 = add(P, Q);
-		// top
-		Double[] D2 = sub(P, Q);
-		Double[] D3 = square(D2);
-		// combine
-		Double[] D4 = div(D3, D1);
-		Double d5 = sum(D4);
-		chkresult("histogram_measure_squared_chiSquared", d5);
-		return d5;
+		return histogram_measure_squared_chiSquared(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #43 (double[] kernel)
+	public double histogram_measure_squared_chiSquared(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_squared_chiSquared", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, quotient(a * a, P[i] + Q[i]));
+		}
+		chkresult("histogram_measure_squared_chiSquared", d1);
+		return d1;
 	}
 
 	/*
@@ -1515,18 +2667,22 @@ public class MathOpsE {
 	// eqn #44
 	public Double histogram_measure_probabilistic_symmetric_chiSquared(
 			Double[] P, Double[] Q) throws Exception {
-		chkargs("histogram_measure_probabilistic_symmetric_chiSquared", P, Q);
-		// bottom
-		Double[] D1 = add(P, Q);
-		// top
-		Double[] D2 = sub(P, Q);
-		Double[] D3 = square(D2);
-		// combine
-		Double[] D4 = div(D3, D1);
-		Double d5 = sum(D4);
-		Double d6 = mult(2.0d, d5);
-		chkresult("histogram_measure_probabilistic_symmetric_chiSquared", d6);
-		return d6;
+		return histogram_measure_probabilistic_symmetric_chiSquared(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #44 (double[] kernel)
+	public double histogram_measure_probabilistic_symmetric_chiSquared(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_probabilistic_symmetric_chiSquared", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, quotient(a * a, P[i] + Q[i]));
+		}
+		double d2 = 2.0d * d1;
+		chkresult("histogram_measure_probabilistic_symmetric_chiSquared", d2);
+		return d2;
 	}
 
 	/*
@@ -1549,19 +2705,23 @@ public class MathOpsE {
 	// eqn #45
 	public Double histogram_measure_divergence(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_divergence", P, Q);
-		// bottom
-		Double[] D1 = add(P, Q);
-		Double[] D2 = square(D1);
-		// top
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = square(D3);
-		// combine
-		Double[] D5 = div(D4, D2);
-		Double d6 = sum(D5);
-		Double d7 = mult(2.0d, d6);
-		chkresult("histogram_measure_divergence", d7);
-		return d7;
+		return histogram_measure_divergence(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #45 (double[] kernel)
+	public double histogram_measure_divergence(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_divergence", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			double b = P[i] + Q[i];
+			d1 = accumulate(d1, quotient(a * a, b * b));
+		}
+		double d2 = 2.0d * d1;
+		chkresult("histogram_measure_divergence", d2);
+		return d2;
 	}
 
 	/*
@@ -1584,19 +2744,22 @@ public class MathOpsE {
 	// eqn #46
 	public Double histogram_measure_clark(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_clark", P, Q);
-		// top
-		Double[] D1 = add(P, Q);
-		Double[] D2 = sub(P, Q);
-		Double[] D3 = abs(D2);
-		// bottom
-		Double[] D5 = div(D3, D1);
-		// combine
-		Double[] D6 = square(D5);
-		Double d7 = sum(D6);
-		Double d8 = sqrt(d7);
-		chkresult("histogram_measure_clark", d8);
-		return d8;
+		return histogram_measure_clark(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #46 (double[] kernel)
+	public double histogram_measure_clark(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_clark", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = quotient(Math.abs(P[i] - Q[i]), P[i] + Q[i]);
+			d1 = accumulate(d1, a * a);
+		}
+		double d2 = Math.sqrt(d1);
+		chkresult("histogram_measure_clark", d2);
+		return d2;
 	}
 
 	/*
@@ -1620,21 +2783,21 @@ public class MathOpsE {
 	// eqn #47
 	public Double histogram_measure_additive_symmetric_chiSquared(Double[] P,
 			Double[] Q) throws Exception {
-		chkargs("histogram_measure_additive_symmetric_chiSquared", P, Q);
-		// bottom
-		Double[] D1 = mult(P, Q);
-		// top right term
-		Double[] D2 = add(P, Q);
-		// top left term
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = square(D3);
-		// top combine
-		Double[] D5 = mult(D4, D2);
-		// combine
-		Double[] D6 = div(D5, D1);
-		Double d7 = sum(D6);
-		chkresult("histogram_measure_additive_symmetric_chiSquared", d7);
-		return d7;
+		return histogram_measure_additive_symmetric_chiSquared(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #47 (double[] kernel)
+	public double histogram_measure_additive_symmetric_chiSquared(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_additive_symmetric_chiSquared", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = P[i] - Q[i];
+			d1 = accumulate(d1, quotient(a * a * (P[i] + Q[i]), P[i] * Q[i]));
+		}
+		chkresult("histogram_measure_additive_symmetric_chiSquared", d1);
+		return d1;
 	}
 
 	/*
@@ -1657,14 +2820,34 @@ public class MathOpsE {
 	// eqn #48
 	public Double histogram_measure_kullback_leibler(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_kullback_leibler", P, Q);
-		// right-most term
-		Double[] D1 = div(P, Q);
-		// combine
-		Double[] D3 = a_Ln_b(P, D1);
-		Double d4 = sum(D3);
-		chkresult("histogram_measure_kullback_leibler", d4);
-		return d4;
+		return histogram_measure_kullback_leibler(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #48 (double[] kernel)
+	public double histogram_measure_kullback_leibler(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_kullback_leibler", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, aLnB(P[i], quotient(P[i], Q[i])));
+		chkresult("histogram_measure_kullback_leibler", d1);
+		return d1;
+	}
+
+	// eqn #48 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_kullback_leibler(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_kullback_leibler", P, Q);
+		return histogram_measure_kullback_leibler(u[0], u[1]);
+	}
+
+	// eqn #48 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_kullback_leibler(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_kullback_leibler", P, Q))
+			return histogram_measure_kullback_leibler(P.getSparse(), Q.getSparse());
+		return histogram_measure_kullback_leibler(P.getBins(), Q.getBins());
 	}
 
 	/*
@@ -1687,15 +2870,36 @@ public class MathOpsE {
 	// eqn #49
 	public Double histogram_measure_jeffreys(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_jeffreys", P, Q);
-		// right-most term
-		Double[] D1 = div(P, Q);
-		// combine
-		Double[] D3 = sub(P, Q);
-		Double[] D4 = a_Ln_b(D3, D1);
-		Double d5 = sum(D4);
-		chkresult("histogram_measure_jeffreys", d5);
-		return d5;
+		return histogram_measure_jeffreys(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #49 (double[] kernel)
+	public double histogram_measure_jeffreys(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_jeffreys", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double a = checked("sub", P[i] - Q[i]);
+			d1 = accumulate(d1, aLnB(a, quotient(P[i], Q[i])));
+		}
+		chkresult("histogram_measure_jeffreys", d1);
+		return d1;
+	}
+
+	// eqn #49 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_jeffreys(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_jeffreys", P, Q);
+		return histogram_measure_jeffreys(u[0], u[1]);
+	}
+
+	// eqn #49 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_jeffreys(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_jeffreys", P, Q))
+			return histogram_measure_jeffreys(P.getSparse(), Q.getSparse());
+		return histogram_measure_jeffreys(P.getBins(), Q.getBins());
 	}
 
 	/*
@@ -1718,19 +2922,19 @@ public class MathOpsE {
 	// eqn #50
 	public Double histogram_measure_k_divergence(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_k_divergence", P, Q);
-		// bottom
-		Double[] D1 = add(P, Q);
-		// top
-		Double[] D2 = mkConstArray(P.length, 2.0d);
-		Double[] D3 = mult(D2, P);
-		// right-most term: combine
-		Double[] D4 = div(D3, D1);
-		// combine
-		Double[] D6 = a_Ln_b(P, D4);
-		Double d7 = sum(D6);
-		chkresult("histogram_measure_k_divergence", d7);
-		return d7;
+		return histogram_measure_k_divergence(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #50 (double[] kernel)
+	public double histogram_measure_k_divergence(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_k_divergence", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++)
+			d1 = accumulate(d1, aLnB(P[i], quotient(2.0d * P[i], P[i] + Q[i])));
+		chkresult("histogram_measure_k_divergence", d1);
+		return d1;
 	}
 
 	/*
@@ -1753,35 +2957,41 @@ public class MathOpsE {
 	// eqn #51
 	public Double histogram_measure_topsoe(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_topsoe", P, Q);
-		// right-most term
-		// bottom
-		Double[] D1 = add(P, Q);
-		// top
-		Double[] D2 = mkConstArray(Q.length, 2.0d);
-		Double[] D3 = mult(D2, Q);
-		// combine
-		Double[] D4 = div(D3, D1);
-		// finish right-most term
-		Double[] D6 = a_Ln_b(Q, D4);
+		return histogram_measure_topsoe(toPrimitive(P), toPrimitive(Q));
+	}
 
-		// left-most term
-		// bottom
-		Double[] D7 = add(P, Q);
-		// top
-		Double[] D8 = mkConstArray(P.length, 2.0d);
-		Double[] D9 = mult(D8, P);
-		// combine
-		Double[] D10 = div(D9, D7);
-		// finish left-most term
-		Double[] D12 = a_Ln_b(P, D10);
+	// eqn #51 (double[] kernel)
+	public double histogram_measure_topsoe(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_topsoe", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double m = P[i] + Q[i];
+			// right-most term
+			double r = aLnB(Q[i], quotient(2.0d * Q[i], m));
+			// left-most term
+			double l = aLnB(P[i], quotient(2.0d * P[i], m));
+			// combine left and right terms
+			d1 = accumulate(d1, l + r);
+		}
+		chkresult("histogram_measure_topsoe", d1);
+		return d1;
+	}
 
-		// combine left and right terms
-		Double[] D13 = add(D12, D6);
-		// combine
-		Double d14 = sum(D13);
-		chkresult("histogram_measure_topsoe", d14);
-		return d14;
+	// eqn #51 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_topsoe(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_topsoe", P, Q);
+		return histogram_measure_topsoe(u[0], u[1]);
+	}
+
+	// eqn #51 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_topsoe(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_topsoe", P, Q))
+			return histogram_measure_topsoe(P.getSparse(), Q.getSparse());
+		return histogram_measure_topsoe(P.getBins(), Q.getBins());
 	}
 
 	/*
@@ -1804,39 +3014,40 @@ public class MathOpsE {
 	// eqn #52
 	public Double histogram_measure_jensen_shannon(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_jensen_shannon", P, Q);
-		// right-most term: sum Q * ln( 2Q / P+Q )
-		// bottom
-		Double[] D1 = add(P, Q);
-		// top
-		Double[] D2 = mkConstArray(Q.length, 2.0d);
-		Double[] D3 = mult(D2, Q);
-		// combine
-		Double[] D4 = div(D3, D1);
-		Double[] D6 = a_Ln_b(Q, D4);
-		Double d7 = sum(D6);
-
-		// left-most term: sum P * ln( 2P / P+Q )
-		// bottom
-		Double[] D7 = add(P, Q);
-		// top
-		Double[] D8 = mkConstArray(P.length, 2.0d);
-		Double[] D9 = mult(D8, P);
-		// combine
-		Double[] D10 = div(D9, D7);
-		Double[] D12 = a_Ln_b(P, D10);
-		Double d12 = sum(D12);
-
-		// add them
-		Double d13 = add(d12, d7);
+		return histogram_measure_jensen_shannon(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #52 (double[] kernel)
+	public double histogram_measure_jensen_shannon(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_jensen_shannon", P, Q);
+		int n = P.length;
+		double d1 = 0d; // sum Q * ln( 2Q / P+Q )
+		double d2 = 0d; // sum P * ln( 2P / P+Q )
+		for (int i = 0; i < n; i++) {
+			double m = P[i] + Q[i];
+			d1 = accumulate(d1, aLnB(Q[i], quotient(2.0d * Q[i], m)));
+			d2 = accumulate(d2, aLnB(P[i], quotient(2.0d * P[i], m)));
+		}
 		// combine
-		Double d14 = div(1.0d, 2.0d);
+		double d3 = quotient(1.0d, 2.0d) * (d2 + d1);
+		chkresult("histogram_measure_jensen_shannon", d3);
+		return d3;
+	}
 
-		Double d15 = mult(d14, d13);
+	// eqn #52 (SparseHistogram kernel, over the bins non-zero in P or Q)
+	public double histogram_measure_jensen_shannon(SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		double[][] u = union("histogram_measure_jensen_shannon", P, Q);
+		return histogram_measure_jensen_shannon(u[0], u[1]);
+	}
 
-		chkresult("histogram_measure_jensen_shannon", d15);
-		return d15;
+	// eqn #52 (PreparedHistogram kernel, sparse when both histograms are)
+	public double histogram_measure_jensen_shannon(PreparedHistogram P, PreparedHistogram Q)
+			throws Exception {
+		if (useSparse("histogram_measure_jensen_shannon", P, Q))
+			return histogram_measure_jensen_shannon(P.getSparse(), Q.getSparse());
+		return histogram_measure_jensen_shannon(P.getBins(), Q.getBins());
 	}
 
 	/*
@@ -1859,36 +3070,47 @@ public class MathOpsE {
 	// eqn #53
 	public Double histogram_measure_jensen_difference(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_jensen_difference", P, Q);
-		// right-most term: ln*((P+Q)/2))
-		Double[] D1 = mkConstArray(Q.length, 2.0d);
-		Double[] D2 = add(P, Q);
-		Double[] D3 = div(D2, D1);
-		Double[] D4 = a_Ln_b(D3, D3);
-
-		// left-most term
-		Double[] D9 = mkConstArray(Q.length, 2.0d);
-
-		// Q*ln Q
-		Double[] D11 = a_Ln_b(Q, Q);// mult(Q, D10);
-
-		// P*ln P
-		Double[] D13 = a_Ln_b(P, P); // mult(P, D12);
-
-		// add them
-		Double[] D14 = add(D13, D11);
-
-		// full first term: (P*ln P + Q*ln Q)/2
-		Double[] D15 = div(D14, D9);
-
-		// first term - last combined term
-		Double[] D16 = sub(D15, D4);
-
-		// final term: summation of last
-		Double d17 = sum(D16);
+		return histogram_measure_jensen_difference(toPrimitive(P), toPrimitive(Q));
+	}
 
-		chkresult("histogram_measure_jensen_difference", d17);
-		return d17;
+	// eqn #53 (double[] kernel)
+	public double histogram_measure_jensen_difference(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_jensen_difference", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			// right-most term: ln*((P+Q)/2))
+			double m = quotient(P[i] + Q[i], 2.0d);
+			double r = aLnB(m, m);
+			// left-most term: (P*ln P + Q*ln Q)/2
+			double l = quotient(aLnB(P[i], P[i]) + aLnB(Q[i], Q[i]), 2.0d);
+			d1 = accumulate(d1, l - r);
+		}
+		chkresult("histogram_measure_jensen_difference", d1);
+		return d1;
+	}
+
+	// eqn #53 (PreparedHistogram kernel, P*ln P kept by the histograms)
+	public double histogram_measure_jensen_difference(PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		validate("histogram_measure_jensen_difference", P, Q);
+		double[] p = P.getBins();
+		double[] q = Q.getBins();
+		double[] pLnP = P.getPLnP();
+		double[] qLnQ = Q.getPLnP();
+		int n = p.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			// right-most term: ln*((P+Q)/2))
+			double m = quotient(p[i] + q[i], 2.0d);
+			double r = aLnB(m, m);
+			// left-most term: (P*ln P + Q*ln Q)/2
+			double l = quotient(pLnP[i] + qLnQ[i], 2.0d);
+			d1 = accumulate(d1, l - r);
+		}
+		chkresult("histogram_measure_jensen_difference", d1);
+		return d1;
 	}
 
 	/*
@@ -1911,29 +3133,25 @@ public class MathOpsE {
 	// eqn #54
 	public Double histogram_measure_taneja_difference(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_taneja_difference", P, Q);
-		// right-most term: 2 * sqrt(P*Q)
-		// bottom
-		Double[] D1 = mult(P, Q);
-		Double[] D2 = sqrt(D1);
-		Double[] D3 = mkConstArray(P.length, 2.0d);
-		Double[] D4 = mult(D3, D2);
-		// top
-		Double[] D5 = add(P, Q);
-		// combine
-		Double[] D6 = div(D5, D4);
-
-		// left-most term
-		// top
-		Double[] D8 = add(P, Q);
-		Double[] D9 = mkConstArray(Q.length, 2.0d);
-		// combine
-		Double[] D10 = div(D8, D9);
-		Double[] D11 = a_Ln_b(D10, D6);
-		Double d12 = sum(D11);
+		return histogram_measure_taneja_difference(toPrimitive(P), toPrimitive(Q));
+	}
 
-		chkresult("histogram_measure_taneja_difference", d12);
-		return d12;
+	// eqn #54 (double[] kernel)
+	public double histogram_measure_taneja_difference(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_taneja_difference", P, Q);
+		int n = P.length;
+		double d1 = 0d;
+		for (int i = 0; i < n; i++) {
+			double m = P[i] + Q[i];
+			// right-most term: (P+Q) / (2 * sqrt(P*Q))
+			double r = quotient(m, 2.0d * Math.sqrt(P[i] * Q[i]));
+			// left-most term: (P+Q) / 2
+			double l = quotient(m, 2.0d);
+			d1 = accumulate(d1, aLnB(l, r));
+		}
+		chkresult("histogram_measure_taneja_difference", d1);
+		return d1;
 	}
 
 	/*
@@ -1956,28 +3174,25 @@ public class MathOpsE {
 	// eqn #55
 	public Double histogram_measure_kumar_johnson_difference(Double[] P,
 			Double[] Q) throws Exception {
-		chkargs("histogram_measure_kumar_johnson_difference", P, Q);
-		// bottom: 2 * ((P*Q)^(3/2))
-		Double[] D1 = mult(P, Q);
-		Double d2 = div(3.0d, 2.0d);
-		Double[] D2 = mkConstArray(P.length, d2);
-		Double[] D3 = pow(D1, D2);
-		Double[] D4 = mkConstArray(P.length, 2.0d);
-		Double[] D5 = mult(D4, D3);
-
-		// top: (P^2 - Q^2)^2
-		Double[] D6 = square(Q);
-		Double[] D7 = square(P);
-		Double[] D8 = sub(D7, D6);
-		Double[] D9 = square(D8);
-
-		// divide: top / bottom
-		Double[] D10 = div(D9, D5);
-
-		// final sum
-		Double d11 = sum(D10);
-		chkresult("histogram_measure_kumar_johnson_difference", d11);
-		return d11;
+		return histogram_measure_kumar_johnson_difference(toPrimitive(P), toPrimitive(Q));
+	}
+
+	// eqn #55 (double[] kernel)
+	public double histogram_measure_kumar_johnson_difference(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_kumar_johnson_difference", P, Q);
+		int n = P.length;
+		double d1 = quotient(3.0d, 2.0d);
+		double d2 = 0d;
+		for (int i = 0; i < n; i++) {
+			// bottom: 2 * ((P*Q)^(3/2))
+			double b = 2.0d * Math.pow(P[i] * Q[i], d1);
+			// top: (P^2 - Q^2)^2
+			double t = P[i] * P[i] - Q[i] * Q[i];
+			d2 = accumulate(d2, quotient(t * t, b));
+		}
+		chkresult("histogram_measure_kumar_johnson_difference", d2);
+		return d2;
 	}
 
 	/*
@@ -2000,33 +3215,25 @@ public class MathOpsE {
 	// eqn #56
 	public Double histogram_measure_avg_difference(Double[] P, Double[] Q)
 			throws Exception {
-		chkargs("histogram_measure_avg_difference", P, Q);
-		// bottom term: 2
-		Double d1 = 2.0d;
-
-		// top term: sum(|P-Q| + max(|P-Q|)
-		// max(|P-Q|)
-		Double[] D2 = sub(P, Q);
-		Double[] D3 = abs(D2);
-		Double d4 = max(D3);
-		// Double[] D4 = mkConstArray(P.length, d4);
-
-		// |P-Q|
-		Double[] D5 = sub(P, Q);
-		Double[] D6 = abs(D5);
-
-		// |P-Q| + max(|P-Q|)
-		// Double[] D7 = add(D6, D4);
-		Double d7 = sum(D6);
-
-		// top term
-		// Double d8 = sum(D7);
-		Double d8 = add(d4, d7);
+		return histogram_measure_avg_difference(toPrimitive(P), toPrimitive(Q));
+	}
 
+	// eqn #56 (double[] kernel)
+	public double histogram_measure_avg_difference(double[] P, double[] Q)
+			throws Exception {
+		validate("histogram_measure_avg_difference", P, Q);
+		int n = P.length;
+		double d1 = (n == 0) ? 0d : Math.abs(P[0] - Q[0]); // max(|P-Q|)
+		double d2 = 0d; // sum(|P-Q|)
+		for (int i = 0; i < n; i++) {
+			double a = Math.abs(P[i] - Q[i]);
+			d1 = (a > d1) ? a : d1;
+			d2 = accumulate(d2, a);
+		}
 		// final term = top/bottom
-		Double d9 = div(d8, d1);
-		chkresult("histogram_measure_avg_difference", d9);
-		return d9;
+		double d3 = quotient(d1 + d2, 2.0d);
+		chkresult("histogram_measure_avg_difference", d3);
+		return d3;
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -2050,126 +3257,33 @@ public class MathOpsE {
 			throws Exception {
 
 		chkargs("pixel_measure_ari", img1, img2);
-		ImageData op = new ImageData();
+		// one pass over both images, see ContingencyTable
+		ContingencyTable table = ContingencyTable.of(img1, img2);
 
-		Double[] im1 = img2ArrayColumnMajor(img1); // NOTE: Column-major matrix
-													// traversal mimics Matlab
-													// traversal pattern.
-		Double[] im2 = img2ArrayColumnMajor(img2);
+		Double ARI = ari(table);
 
-		// We've assumed that images are identical in size at the application
-		// level.
-		// Ergo,
-		int imgSize = im1.length;
+		chkresult("pixel_measure_ari", ARI);
 
-		Double[] im1PVS = uniqueValues(im1); // unique pixelValueSpace for each
-												// image, respectively
-		Double[] im2PVS = uniqueValues(im2);
-		int im1LargestPV = im1PVS[im1PVS.length - 1].intValue(); // get largest
-																	// pixelValue
-																	// from each
-																	// pixelValueSpace
-		int im2LargestPV = im2PVS[im2PVS.length - 1].intValue();
+		return ARI;
+	}
 
-		if (im1LargestPV < 1 || im2LargestPV < 1) {
+	private Double ari(ContingencyTable table) throws Exception {
+		if (table.hasLabels()
+				&& (table.getNumRows() < 2 || table.getNumCols() < 2)) {
 			System.err.println("Error: largest pixel value from each pixel value space is less than 1, attempts to create negative sized array.");
 			throw new NegativeArraySizeException();
 		}
-		
-		Double[][] commonPixels = new Double[im1LargestPV + 1][im2LargestPV + 1]; // for
-																					// counting
-																					// total
-																					// pixel
-																					// overlaps
-																					// in
-																					// the
-																					// two
-																					// images
-		// NOTE: We add 1 to each pixelValue dimension b/c when a given
-		// pixelValue, like 255, is indexed, it goes to
-		// index-location 255, which works if we allocated 256 pixelLocations in
-		// which to index/count.
-
-		// init to zero counts
-		for (int i = 0; i < commonPixels.length; i++)
-			for (int j = 0; j < commonPixels[0].length; j++)
-				commonPixels[i][j] = 0.0d;
+		return table.adjustedRandIndex();
+	}
 
-		int im1Idx = 0; // respective indices in commonPixel tracking matrix
-		int im2Idx = 0;
-
-		// capture the occurrence of the labels at the same location in each
-		// image
-		for (int i = 0; i < imgSize; i++) {
-			im1Idx = im1[i].intValue(); // get pixel index values into the
-										// commonPixels
-										// pixelValueCoordinateSpace
-			im2Idx = im2[i].intValue();
-			commonPixels[im1Idx][im2Idx]++; // increment relative pixel
-											// values
-											// at (im1Px, im2Px) location
-		}
-
-		Double[] A = getRowCounts(commonPixels); // get row counts
-		Double[] B = getColCounts(commonPixels); // get column counts
-
-		// linearize commonPixels space and get its sum
-		Double[] linearized_commonPixels = vectorize(commonPixels);
-		Double N = sum(linearized_commonPixels);
-		// perform (N*(N-1)/2) over entire commonPixels space and other counts
-		Double Nij = gaussSum(linearized_commonPixels);
-		Double A2 = gaussSum(A);
-		Double B2 = gaussSum(B);
-		Double N2 = gaussSum(N);
-		// Double ARI = ( Nij - ((A2*B2)/N2) ) / ( (0.5 * (A2+B2)) -
-		// ((A2*B2)/N2) );
-		Double d1 = div((A2 * B2), N2);
-		Double numerator = (Nij - d1);
-		Double denom = ((0.5 * (A2 + B2)) - d1);
-
-		// TODO - check if this is correct
-		//http://www.otlet-institute.org/wikics/Clustering_Problems.html#toc-Subsection-4.1
-			
-		if (numerator.equals(0.d) && denom.equals(0.d)) {
-			return 1.0; // takes care of single color images
-		}
-		Double ARI = div(numerator, denom);
-		// Double RI = 1 + (((2*Nij) - A2 - B2) / N2) ;
-
-		if (ARI <= Double.MIN_VALUE)
-			return 0.0; // takes care of small negative values
-
-		chkresult("pixel_measure_ari", ARI);
-
-		return ARI;
-	}
-
-	public Double[] img2ArrayColumnMajor(ImageData im) throws Exception {
-		chkargs("img2ArrayColumnMajor", im);
-		double[][][] A = im.getValues();
-		int row_len = A.length;
-		int col_len = A[0].length;
-		int band_len = A[0][0].length;
-		// System.out.println("(row,col,band,total)=("+row_len+","+col_len+","+band_len+","+"total="
-		// + (row_len*col_len*band_len));
-		// Double[][][] B = new Double[row_len][col_len][band_len];
-		Double[] C = new Double[row_len * col_len * band_len];
-		int index = 0;
-		for (int i = 0; i < col_len; i++) { // to mirror the Matlab reference
-											// implementation, walk columns
-											// first, then rows
-			for (int j = 0; j < row_len; j++) {
-				for (int k = 0; k < band_len; k++) {
-					// B[j][i][k] = new Double(A[j][i][k]);
-					C[index] = A[j][i][k];
-					index++;
-				}
-			}
-		}
-		// Double[] C = vectorize(B);
-		chkresult("img2ArrayColumnMajor", C);
-		return C;
-	}
+	public Double[] img2ArrayColumnMajor(ImageData im) throws Exception {
+		chkargs("img2ArrayColumnMajor", im);
+		// to mirror the Matlab reference implementation, walk columns first,
+		// then rows: the rows of the transposed view, with no copy of im
+		Double[] C = rowsOf(im.transpose());
+		chkresult("img2ArrayColumnMajor", C);
+		return C;
+	}
 
 	/*
 	 * name: Rand Index : (RI)
@@ -2187,78 +3301,8 @@ public class MathOpsE {
 			throws Exception {
 
 		chkargs("pixel_measure_ri", img1, img2);
-
-		ImageData op = new ImageData();
-
-		Double[] im1 = img2ArrayColumnMajor(img1); // NOTE: Column-major matrix
-													// traversal mimics Matlab
-													// traversal pattern.
-		Double[] im2 = img2ArrayColumnMajor(img2);
-
-		// We've assumed that images are identical in size at the application
-		// level.
-		// Ergo,
-		int imgSize = im1.length;
-
-		Double[] im1PVS = uniqueValues(im1); // unique pixelValueSpace for each
-												// image, respectively
-		Double[] im2PVS = uniqueValues(im2);
-		int im1LargestPV = im1PVS[im1PVS.length - 1].intValue(); // get largest
-																	// pixelValue
-																	// from each
-																	// pixelValueSpace
-		int im2LargestPV = im2PVS[im2PVS.length - 1].intValue();
-
-		Double[][] commonPixels = new Double[im1LargestPV + 1][im2LargestPV + 1]; // for
-																					// counting
-																					// total
-																					// pixel
-																					// overlaps
-																					// in
-																					// the
-																					// two
-																					// images
-		// NOTE: We add 1 to each pixelValue dimension b/c when a given
-		// pixelValue, like 255, is indexed, it goes to
-		// index-location 255, which works if we allocated 256 pixelLocations in
-		// which to index/count.
-
-		// init to zero counts
-		for (int i = 0; i < commonPixels.length; i++)
-			for (int j = 0; j < commonPixels[0].length; j++)
-				commonPixels[i][j] = 0.0d;
-
-		int im1Idx = 0; // respective indices in commonPixel tracking matrix
-		int im2Idx = 0;
-
-		// capture the occurrence of the labels at the same location in each
-		// image
-		for (int i = 0; i < imgSize; i++) {
-			im1Idx = im1[i].intValue(); // get pixel index values into the
-			// commonPixels
-			// pixelValueCoordinateSpace
-			im2Idx = im2[i].intValue();
-			commonPixels[im1Idx][im2Idx]++; // increment relative pixel
-											// values
-											// at (im1Px, im2Px) location
-
-		}
-
-		Double[] A = getRowCounts(commonPixels); // get row counts
-		Double[] B = getColCounts(commonPixels); // get column counts
-
-		// linearize commonPixels space and get its sum
-		Double[] linearized_commonPixels = vectorize(commonPixels);
-		Double N = sum(linearized_commonPixels);
-
-		// perform (N*(N-1)/2) over entire commonPixels space and other counts
-		Double Nij = gaussSum(linearized_commonPixels);
-		Double A2 = gaussSum(A);
-		Double B2 = gaussSum(B);
-		Double N2 = gaussSum(N);
-		// Double ARI = ( Nij - ((A2*B2)/N2) ) / ( (0.5 * (A2+B2)) -
-		// ((A2*B2)/N2) );
-		Double RI = 1 + (((2 * Nij) - A2 - B2) / N2);
+		// one pass over both images, see ContingencyTable
+		Double RI = ContingencyTable.of(img1, img2).randIndex();
 
 		chkresult("pixel_measure_ri", RI);
 
@@ -2281,40 +3325,10 @@ public class MathOpsE {
 			throws Exception {
 
 		chkargs("pixel_measure_dice", img1, img2);
-
-		Double[] im1 = img2ArrayColumnMajor(img1); // NOTE: Column-major matrix
-													// traversal mimics Matlab
-													// traversal pattern.
-		Double[] im2 = img2ArrayColumnMajor(img2);
-
-		im1 = pvrel_greaterThan(im1, 0.0d); // transform all input images to
-											// binary via pixel-value-relation:
-											// pixelValue>0
-		im2 = pvrel_greaterThan(im2, 0.0d);
-
-		Double[] I = add(im1, im2); // add their values together, creating a
-									// composite image of their corresponding
-									// values
-		Double[] overlap = pvrel_equalTo(I, 2.0d); // transform combined image
-													// into binary via
-													// pixel-value-relation;
-													// pixelValue==2 (i.e.,
-													// where images had
-													// pixelValue==1)\
-
-		// compute common color area bet/w both images
-		I = pvrel_greaterThan(I, 0.0d); // transforms back to binary
-		Double sum_overlap = sum(overlap);
-		Double sum_I = sum(I);
-
-		if ((int) (sum_I.doubleValue()) == 0) {
-			// this is the special case when all pixels are zero and the
-			// background/foreground separation does not apply.
-			// img1 and img2 have the same dimensions
-			return new Double(1.0);
-		}
-		// use this information to compute dice
-		Double dice = div(mult(2.0d, sum_overlap), add(sum_I, sum_overlap));
+		// 2 |A and B| / (|A or B| + |A and B|) over the pixels > 0, 1 when
+		// there are none, on bit-packed masks (see BinaryMask)
+		BinaryMask.checkSize(img1, img2);
+		Double dice = BinaryMask.of(img1).dice(BinaryMask.of(img2));
 
 		chkresult("pixel_measure_dice", dice);
 
@@ -2337,39 +3351,10 @@ public class MathOpsE {
 			throws Exception {
 
 		chkargs("pixel_measure_jaccard", img1, img2);
-
-		Double[] im1 = img2ArrayColumnMajor(img1); // NOTE: Column-major matrix
-													// traversal mimics Matlab
-													// traversal pattern.
-		Double[] im2 = img2ArrayColumnMajor(img2);
-
-		im1 = pvrel_greaterThan(im1, 0.0d); // transform all input images to
-											// binary via pixel-value-relation:
-											// pixelValue>0
-		im2 = pvrel_greaterThan(im2, 0.0d);
-
-		Double[] I = add(im1, im2); // add their values together, creating a
-									// composite image of their corresponding
-									// values
-		Double[] overlap = pvrel_equalTo(I, 2.0d); // transform combined image
-													// into binary via
-													// pixel-value-relation;
-													// pixelValue==2 (i.e.,
-													// where images had
-													// pixelValue==1)\
-		// compute common color area bet/w both images
-		I = pvrel_greaterThan(I, 0.0d); // transforms back to binary
-		Double sum_overlap = sum(overlap);
-		Double sum_I = sum(I);
-
-		if ((int) (sum_I.doubleValue()) == 0) {
-			// this is the special case when all pixels are zero and the
-			// background/foreground separation does not apply.
-			// img1 and img2 have the same dimensions
-			return new Double(1.0);
-		}
-		// use this information to compute jaccard
-		Double jaccard = div(sum_overlap, sum_I);
+		// |A and B| / |A or B| over the pixels > 0, 1 when there are none,
+		// on bit-packed masks (see BinaryMask)
+		BinaryMask.checkSize(img1, img2);
+		Double jaccard = BinaryMask.of(img1).jaccard(BinaryMask.of(img2));
 
 		chkresult("pixel_measure_jaccard", jaccard);
 
@@ -2392,71 +3377,320 @@ public class MathOpsE {
 			throws Exception {
 		chkargs("pixel_measure_tee", img1, img2);
 
-		Double tee = 0.0d;
-		Double[] im1 = img2Array(img1);
-		Double[] im2 = img2Array(img2);
+		// |A and B| / |B| over the pixels > 0 (see BinaryMask)
+		BinaryMask.checkSize(img1, img2);
+		Double tee = BinaryMask.of(img1).totalErrorRateEvaluation(
+				BinaryMask.of(img2));
 
-		Double[] T = null;
-		Double[] E = null;
-		Double[] N_TE = null;
+		chkresult("pixel_measure_tee", tee);
 
-		T = logical(im1);
-		E = logical(im2);
+		return tee;
+	}
 
-		N_TE = and(T, E);
+	/*
+	 * name: Total Error Rate Test Measure (TET)
+	 * 
+	 * @see TBD.
+	 * 
+	 * description: Takes 2 representations of image pixel data as input and
+	 * generates a single numerical output. Is called by appropriate related
+	 * class in gov.nist.itl.versus.similarity.comparisons.measure.impl.* .
+	 * 
+	 * @author B. Long version: 1.0
+	 */
 
-		Double c_E = sum(E);
-		Double cN_TE = sum(N_TE);
+	public Double pixel_measure_tet(ImageData img1, ImageData img2)
+			throws Exception {
+		chkargs("pixel_measure_tet", img1, img2);
 
-		if (c_E.equals(0.0d)) {
-			tee = 1.0d;
-		} else {
-			tee = div(cN_TE, c_E);
-		}
+		// |A and B| / |A| over the pixels > 0 (see BinaryMask)
+		BinaryMask.checkSize(img1, img2);
+		Double tet = BinaryMask.of(img1).totalErrorRateTest(BinaryMask.of(img2));
+
+		chkresult("pixel_measure_tet", tet);
+
+		return tet;
+	}
+
+	/*
+	 * name: Mutual Information (MI)
+	 * 
+	 * description: Takes 2 label images as input and generates the mutual
+	 * information of their labelings, in nats, from their contingency table
+	 * (see ContingencyTable).
+	 */
+
+	public Double pixel_measure_mi(ImageData img1, ImageData img2)
+			throws Exception {
+		chkargs("pixel_measure_mi", img1, img2);
+
+		Double mi = ContingencyTable.of(img1, img2).mutualInformation();
+
+		chkresult("pixel_measure_mi", mi);
+
+		return mi;
+	}
+
+	/*
+	 * name: Variation of Information (VI)
+	 * 
+	 * description: Takes 2 label images as input and generates the variation
+	 * of information between their labelings, H(1) + H(2) - 2 MI in nats, from
+	 * their contingency table (see ContingencyTable).
+	 */
+
+	public Double pixel_measure_vi(ImageData img1, ImageData img2)
+			throws Exception {
+		chkargs("pixel_measure_vi", img1, img2);
+
+		Double vi = ContingencyTable.of(img1, img2).variationOfInformation();
+
+		chkresult("pixel_measure_vi", vi);
+
+		return vi;
+	}
+
+	// -----------------------------------------
+	// Label Map Metrics
+	// -----------------------------------------
+
+	/*
+	 * name: ARI, RI, Dice, Jaccard, TEE and TET of label maps
+	 * 
+	 * description: Take 2 label maps (see LabelMap) as input and generate the
+	 * measure of the whole maps, as the methods above would on their label
+	 * images, from one contingency table of the maps with no image made.
+	 */
+
+	private ContingencyTable labelTable(String methodName, LabelMap map1,
+			LabelMap map2) throws Exception {
+		if (map1 == null || map2 == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": argument null value");
+		return ContingencyTable.of(map1, map2);
+	}
+
+	public Double pixel_measure_ari(LabelMap map1, LabelMap map2)
+			throws Exception {
+		Double ARI = ari(labelTable("pixel_measure_ari", map1, map2));
+
+		chkresult("pixel_measure_ari", ARI);
+
+		return ARI;
+	}
+
+	public Double pixel_measure_ri(LabelMap map1, LabelMap map2)
+			throws Exception {
+		Double RI = labelTable("pixel_measure_ri", map1, map2).randIndex();
+
+		chkresult("pixel_measure_ri", RI);
+
+		return RI;
+	}
+
+	public Double pixel_measure_dice(LabelMap map1, LabelMap map2)
+			throws Exception {
+		Double dice = labelTable("pixel_measure_dice", map1, map2).dice();
+
+		chkresult("pixel_measure_dice", dice);
+
+		return dice;
+	}
+
+	public Double pixel_measure_jaccard(LabelMap map1, LabelMap map2)
+			throws Exception {
+		Double jaccard = labelTable("pixel_measure_jaccard", map1, map2).jaccard();
+
+		chkresult("pixel_measure_jaccard", jaccard);
+
+		return jaccard;
+	}
+
+	public Double pixel_measure_tee(LabelMap map1, LabelMap map2)
+			throws Exception {
+		Double tee = labelTable("pixel_measure_tee", map1, map2)
+				.totalErrorRateEvaluation();
+
+		chkresult("pixel_measure_tee", tee);
+
+		return tee;
+	}
+
+	public Double pixel_measure_tet(LabelMap map1, LabelMap map2)
+			throws Exception {
+		Double tet = labelTable("pixel_measure_tet", map1, map2)
+				.totalErrorRateTest();
+
+		chkresult("pixel_measure_tet", tet);
+
+		return tet;
+	}
+
+	// -----------------------------------------
+	// Per-label Metrics
+	// -----------------------------------------
+
+	/*
+	 * name: Per-label ARI, RI, Dice, Jaccard, TEE and TET
+	 * 
+	 * description: Take 2 label images as input and generate, for each label
+	 * l in 0 .. numLabels - 1, the measure between the binary images of l
+	 * (ImageData.match), as the single measure would on those images. The
+	 * scores of all the labels come from one contingency table, see
+	 * ContingencyTable.forLabel; the label maps of LabelMap are read as they
+	 * are, and rejected when a label is negative. Are called by the labeled
+	 * compare() of the related classes in
+	 * gov.nist.itl.versus.similarity.comparisons.measure.impl.* .
+	 */
+
+	private ContingencyTable[] labelTables(String methodName, ImageData img1,
+			ImageData img2, int numLabels) throws Exception {
+		chkargs(methodName, img1, img2);
+		chkargs(methodName, numLabels);
+		return ContingencyTable.perLabel(img1, img2, numLabels);
+	}
+
+	private ContingencyTable[] labelTables(String methodName, LabelMap map1,
+			LabelMap map2, int numLabels) throws Exception {
+		if (map1 == null || map2 == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": argument null value");
+		chkargs(methodName, numLabels);
+		return ContingencyTable.perLabel(map1, map2, numLabels);
+	}
+
+	public Double[] pixel_measure_ari(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		return pixel_measure_ari(labelTables("pixel_measure_ari", img1, img2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_ari(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		return pixel_measure_ari(labelTables("pixel_measure_ari", map1, map2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_ari(ContingencyTable[] tables)
+			throws Exception {
+		Double[] ARI = new Double[tables.length];
+		for (int l = 0; l < tables.length; l++)
+			ARI[l] = ari(tables[l]);
+
+		chkresult("pixel_measure_ari", ARI);
+
+		return ARI;
+	}
+
+	public Double[] pixel_measure_ri(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		return pixel_measure_ri(labelTables("pixel_measure_ri", img1, img2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_ri(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		return pixel_measure_ri(labelTables("pixel_measure_ri", map1, map2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_ri(ContingencyTable[] tables)
+			throws Exception {
+		Double[] RI = new Double[tables.length];
+		for (int l = 0; l < tables.length; l++)
+			RI[l] = tables[l].randIndex();
+
+		chkresult("pixel_measure_ri", RI);
+
+		return RI;
+	}
+
+	public Double[] pixel_measure_dice(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		return pixel_measure_dice(labelTables("pixel_measure_dice", img1, img2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_dice(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		return pixel_measure_dice(labelTables("pixel_measure_dice", map1, map2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_dice(ContingencyTable[] tables)
+			throws Exception {
+		Double[] dice = new Double[tables.length];
+		for (int l = 0; l < tables.length; l++)
+			dice[l] = tables[l].dice();
+
+		chkresult("pixel_measure_dice", dice);
+
+		return dice;
+	}
+
+	public Double[] pixel_measure_jaccard(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		return pixel_measure_jaccard(labelTables("pixel_measure_jaccard", img1, img2,
+				numLabels));
+	}
+
+	public Double[] pixel_measure_jaccard(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		return pixel_measure_jaccard(labelTables("pixel_measure_jaccard", map1, map2,
+				numLabels));
+	}
 
-		chkresult("pixel_measure_tee", tee);
+	public Double[] pixel_measure_jaccard(ContingencyTable[] tables)
+			throws Exception {
+		Double[] jaccard = new Double[tables.length];
+		for (int l = 0; l < tables.length; l++)
+			jaccard[l] = tables[l].jaccard();
 
-		return tee;
+		chkresult("pixel_measure_jaccard", jaccard);
+
+		return jaccard;
 	}
 
-	/*
-	 * name: Total Error Rate Test Measure (TET)
-	 * 
-	 * @see TBD.
-	 * 
-	 * description: Takes 2 representations of image pixel data as input and
-	 * generates a single numerical output. Is called by appropriate related
-	 * class in gov.nist.itl.versus.similarity.comparisons.measure.impl.* .
-	 * 
-	 * @author B. Long version: 1.0
-	 */
+	public Double[] pixel_measure_tee(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		return pixel_measure_tee(labelTables("pixel_measure_tee", img1, img2,
+				numLabels));
+	}
 
-	public Double pixel_measure_tet(ImageData img1, ImageData img2)
-			throws Exception {
-		chkargs("pixel_measure_tet", img1, img2);
+	public Double[] pixel_measure_tee(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		return pixel_measure_tee(labelTables("pixel_measure_tee", map1, map2,
+				numLabels));
+	}
 
-		Double tet = 0.0d;
-		Double[] im1 = img2Array(img1);
-		Double[] im2 = img2Array(img2);
+	public Double[] pixel_measure_tee(ContingencyTable[] tables)
+			throws Exception {
+		Double[] tee = new Double[tables.length];
+		for (int l = 0; l < tables.length; l++)
+			tee[l] = tables[l].totalErrorRateEvaluation();
 
-		Double[] T = null;
-		Double[] E = null;
-		Double[] N_TE = null;
+		chkresult("pixel_measure_tee", tee);
 
-		T = logical(im1);
-		E = logical(im2);
+		return tee;
+	}
 
-		N_TE = and(T, E);
+	public Double[] pixel_measure_tet(ImageData img1, ImageData img2,
+			int numLabels) throws Exception {
+		return pixel_measure_tet(labelTables("pixel_measure_tet", img1, img2,
+				numLabels));
+	}
 
-		Double c_T = sum(T);
-		Double cN_TE = sum(N_TE);
+	public Double[] pixel_measure_tet(LabelMap map1, LabelMap map2,
+			int numLabels) throws Exception {
+		return pixel_measure_tet(labelTables("pixel_measure_tet", map1, map2,
+				numLabels));
+	}
 
-		// tet = div(cN_TE,c_T);
-		if (c_T.equals(0.0d)) {
-			tet = 1.0d;
-		} else {
-			tet = div(cN_TE, c_T);
-		}
+	public Double[] pixel_measure_tet(ContingencyTable[] tables)
+			throws Exception {
+		Double[] tet = new Double[tables.length];
+		for (int l = 0; l < tables.length; l++)
+			tet[l] = tables[l].totalErrorRateTest();
 
 		chkresult("pixel_measure_tet", tet);
 
@@ -2829,6 +4063,109 @@ public class MathOpsE {
 		return b;
 	}
 
+	// ////////////////////////////////////////////////////////////////////////////////
+	// PRIMITIVE SCALAR OPERATIONS
+	// ////////////////////////////////////////////////////////////////////////////////
+
+	/*
+	 * Support for the double[] histogram kernels: each kernel makes a single
+	 * pass over P and Q and folds the per-bin terms into scalar accumulators.
+	 * The helpers below apply the same checks and zero-handling rules as the
+	 * boxed primitives above (div, ln, a_Ln_b, sum), so that the fused kernels
+	 * return the same values as the staged Double[] computations. They are
+	 * package-private so that MultiMeasureEvaluator applies the same rules.
+	 */
+
+	double checked(String methodName, double a) throws Exception {
+		chkargs(methodName, a);
+		return a;
+	}
+
+	// same 0/0 and x/0 conventions as div(Double, Double)
+	double quotient(double a, double b) throws Exception {
+		chkargs("div", a);
+		chkargs("div", b);
+		if (Math.abs(a) <= Double.MIN_VALUE && Math.abs(b) <= Double.MIN_VALUE) { // 0/0
+			return 0d;
+		} else if (Math.abs(a) > Double.MIN_VALUE
+				&& Math.abs(b) <= Double.MIN_VALUE) { // x/0
+			return Double.MAX_VALUE;
+		}
+		return checked("div", a / b);
+	}
+
+	// same conventions as ln(Double)
+	double naturalLog(double a) throws Exception {
+		chkargs("ln", a);
+		if (a == 0.0)
+			return (-Double.MAX_VALUE);
+		return checked("ln", Math.log(a));
+	}
+
+	// same conventions as a_Ln_b(Double, Double)
+	double aLnB(double a1, double a2) throws Exception {
+		if (Math.abs(a1) <= Double.MIN_VALUE
+				&& Math.abs(a2) <= Double.MIN_VALUE)
+			return 0.0;
+		if (a1 > Double.MIN_VALUE && Math.abs(a2) <= Double.MIN_VALUE)
+			return (-Double.MAX_VALUE);
+		if (-a1 > Double.MIN_VALUE && Math.abs(a2) <= Double.MIN_VALUE)
+			return Double.MAX_VALUE;
+
+		if (a1 >= Double.MAX_VALUE || a2 >= Double.MAX_VALUE)
+			return Double.MAX_VALUE;
+
+		return checked("a_Ln_b", a1 * naturalLog(a2));
+	}
+
+	/*
+	 * Adds one term to a running sum with the saturation rule of sum(Double[]):
+	 * the first term at or beyond +/-MAX_VALUE becomes the value of the sum and
+	 * every later term is ignored.
+	 */
+	double accumulate(double sum, double term) throws Exception {
+		chkargs("sum", term);
+		if (sum == Double.MAX_VALUE || sum == (-Double.MAX_VALUE))
+			return sum;
+		if (term <= (-Double.MAX_VALUE))
+			return (-Double.MAX_VALUE);
+		if (term >= Double.MAX_VALUE)
+			return Double.MAX_VALUE;
+		return checked("add", term + sum);
+	}
+
+	// a^k for k >= 1, by repeated squaring
+	static double power(double a, int k) {
+		double r = 1d;
+		while (true) {
+			if ((k & 1) != 0)
+				r *= a;
+			k >>= 1;
+			if (k == 0)
+				return r;
+			a *= a;
+		}
+	}
+
+	// sum of (a-b)^2 with the saturation rules of sum(Double[])
+	double sumSquaredDifference(double[] a, double[] b) throws Exception {
+		int n = a.length;
+		double d = 0d;
+		for (int i = 0; i < n; i++) {
+			double c = a[i] - b[i];
+			d = accumulate(d, c * c);
+		}
+		return d;
+	}
+
+	// same saturation rules as sum(Double[])
+	double sum(double[] a, int n) throws Exception {
+		double b = 0d;
+		for (int i = 0; i < n; i++)
+			b = accumulate(b, a[i]);
+		return b;
+	}
+
 	// ////////////////////////////////////////////////////////////////////////////////
 	// SUPPORT METHODS
 	// ////////////////////////////////////////////////////////////////////////////////
@@ -2853,6 +4190,21 @@ public class MathOpsE {
 		return a;
 	}
 
+	/*
+	 * Support method for metric implementations description: unboxes a
+	 * histogram so that it can be handed to the double[] measure kernels.
+	 * 
+	 * @author B. Long version: 1.0
+	 */
+	public double[] toPrimitive(final Double[] h) throws Exception {
+		if (h == null)
+			return null; // left to the kernel's chkargs
+		double[] a = new double[h.length];
+		for (int i = 0; i < a.length; i++)
+			a[i] = h[i];
+		return a;
+	}
+
 	/*
 	 * Support method for metric implementations description: Converts the
 	 * content of an RGB histogram to the form used by the metric algorithms.
@@ -2934,6 +4286,67 @@ public Double[] pixelHistogram2Double(final PixelHistogramDescriptor d) throws E
 } 
 	
 
+	/*
+	 * Support method for metric implementations description: the raw counts
+	 * of a histogram, for the int[] count kernels. Gray-scale counts are
+	 * shared with the descriptor, RGB and pixel counts are flattened in the
+	 * order of rgbHistogram2Double(). They must not be modified.
+	 * 
+	 * @author B. Long version: 1.0
+	 */
+	public int[] histogramCounts(final GrayscaleHistogramDescriptor d)
+			throws Exception {
+		chkargs("histogramCounts", d);
+		int len = d.getNumBins();
+		int hist[] = d.getHistogram();
+		if (hist.length == len)
+			return hist;
+		int[] r = new int[len];
+		System.arraycopy(hist, 0, r, 0, len);
+		return r;
+	}
+
+	public int[] histogramCounts(final RGBHistogramDescriptor d)
+			throws Exception {
+		chkargs("histogramCounts", d);
+		return flatten(d.getHistogram(), d.getNumBins(), d.getNumBands());
+	}
+
+	public int[] histogramCounts(final PixelHistogramDescriptor d)
+			throws Exception {
+		if (d == null)
+			throw new SingularityTreatmentException(
+					"histogramCounts: first argument null value");
+		return flatten(d.getHistogram(), d.getNumBins(), d.getNumBands());
+	}
+
+	private int[] flatten(int[][] hist, int len, int bands) {
+		int[] r = new int[len * bands];
+		for (int i = 0; i < len; i++)
+			System.arraycopy(hist[i], 0, r, i * bands, bands);
+		return r;
+	}
+
+	/*
+	 * Support method for metric implementations description: Normalizes raw
+	 * counts to relative frequencies, with the same totals and 0/0 rules as
+	 * normalizeHistogram().
+	 * 
+	 * @author B. Long version: 1.0
+	 */
+	public double[] normalizeCounts(final int[] h) throws Exception {
+		if (h == null)
+			throw new SingularityTreatmentException(
+					"normalizeCounts: first argument null value");
+		double total = 0;
+		for (int i = 0; i < h.length; i++)
+			total += h[i];
+		double[] r = new double[h.length];
+		for (int i = 0; i < h.length; i++)
+			r[i] = quotient(h[i], total);
+		return r;
+	}
+
 	/*
 	 * Support method for metric implementations description: Normalizes a raw
 	 * histogram to relative frequencies. (Where the histogram was received from
@@ -3100,10 +4513,17 @@ public Double[] pixelHistogram2Double(final PixelHistogramDescriptor d) throws E
 			throw new SingularityTreatmentException(methodName
 					+ ": first argument null value");
 
+		ValidationPolicy policy = getValidationPolicy(methodName);
 		int len = a.length;
-		for (int i = 0; i < len; i++) {
+		if (policy == ValidationPolicy.TRUSTED || len == 0)
+			return true;
+		int step = (policy == ValidationPolicy.SAMPLED) ? Math.max(1, len
+				/ ValidationPolicy.SAMPLE_SIZE) : 1;
+		for (int i = 0; i < len; i += step) {
 			chkargs(methodName, a[i]);
 		}
+		if ((len - 1) % step != 0)
+			chkargs(methodName, a[len - 1]);
 		return true; // if we get here, we've had no exceptions.
 	}
 
@@ -3272,17 +4692,36 @@ public Double[] pixelHistogram2Double(final PixelHistogramDescriptor d) throws E
 		return chkargs(methodName, a);
 	}
 
+	/*
+	 * Results are checked element by element under every validation policy,
+	 * unlike the arguments (see chkargs(String, Double[])).
+	 */
 	public boolean chkresult(String methodName, Double[] a) throws Exception {
-		return chkargs(methodName, a);
+		if (a == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument null value");
+		for (int i = 0; i < a.length; i++)
+			chkargs(methodName, a[i]);
+		return true; // if we get here, we've had no exceptions.
 	}
 
 	public boolean chkresult(String methodName, Double[][] a) throws Exception {
-		return chkargs(methodName, a);
+		if (a == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument null value");
+		for (int i = 0; i < a.length; i++)
+			chkresult(methodName, a[i]);
+		return true; // if we get here, we've had no exceptions.
 	}
 
 	public boolean chkresult(String methodName, Double[][][] a)
 			throws Exception {
-		return chkargs(methodName, a);
+		if (a == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument null value");
+		for (int i = 0; i < a.length; i++)
+			chkresult(methodName, a[i]);
+		return true; // if we get here, we've had no exceptions.
 	}
 
 	public boolean chkresult(String methodName, Integer a) throws Exception {
@@ -3304,23 +4743,22 @@ public Double[] pixelHistogram2Double(final PixelHistogramDescriptor d) throws E
 
 	public Double[] img2Array(ImageData im) throws Exception {
 		chkargs("img2Array", im);
-		double[][][] A = im.getValues();
-		int len1 = A.length;
-		int len2 = A[0].length;
-		int len3 = A[0][0].length;
-		// Double[][][] B = new Double[len1][len2][len3];
-		Double[] C = new Double[len1 * len2 * len3];
+		Double[] C = rowsOf(im);
+		chkresult("img2Array", C);
+		return C;
+	}
+
+	// the values row by row, band by band within a pixel, read a row at a time
+	private Double[] rowsOf(ImageData im) {
+		int rows = im.getNumRows();
+		double[] row = new double[im.getNumCols() * im.getNumBands()];
+		Double[] C = new Double[rows * row.length];
 		int index = 0;
-		for (int i = 0; i < len1; i++) {
-			for (int j = 0; j < len2; j++) {
-				for (int k = 0; k < len3; k++) {
-					C[index] = new Double(A[i][j][k]);
-					index++;
-				}
-			}
+		for (int i = 0; i < rows; i++) {
+			im.getRow(i, row);
+			for (int x = 0; x < row.length; x++)
+				C[index++] = row[x];
 		}
-		// Double[] C = vectorize(B);
-		chkresult("img2Array", C);
 		return C;
 	}
 
@@ -4347,13 +5785,263 @@ public Double[] pixelHistogram2Double(final PixelHistogramDescriptor d) throws E
 			throw new SingularityTreatmentException(methodName
 					+ ": first argument null value");
 
-		int len = a.length;
-		for (int i = 0; i < len; i++) {
-			chkargs(methodName, a[i]);
+		return validate(getValidationPolicy(methodName), methodName, a);
+	}
+
+	public boolean chkargs(String methodName, double a) throws Exception {
+		if (Double.isNaN(a))
+			throw new HWIndependenceException(methodName
+					+ ": first argument NAN indeterminate value");
+		if (a == Double.POSITIVE_INFINITY)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument POSITIVE_INFINITY value");
+		if (a == Double.NEGATIVE_INFINITY)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument NEGATIVE_INFINITY value");
+		return true; // if we get here, we've had no exceptions.
+	}
+
+	public boolean chkargs(String methodName, double[] a, double[] b)
+			throws Exception {
+		if (a == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument null value");
+		if (b == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": second argument null value");
+		chkargs(methodName, a);
+		chkargs(methodName, b);
+		return true; // if we get here, we've had no exceptions.
+	}
+
+	/*
+	 * Validates the arguments of a double[] measure kernel once, at its entry,
+	 * following the policy set for that measure: STRICT checks every element
+	 * of both arrays in a single pass, SAMPLED checks evenly spaced elements
+	 * and the last one, TRUSTED only rejects null arguments. Throws the same
+	 * exceptions as chkargs().
+	 */
+	public boolean validate(String measureName, double[] a, double[] b)
+			throws Exception {
+		if (a == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (b == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		ValidationPolicy policy = getValidationPolicy(measureName);
+		if (policy == ValidationPolicy.STRICT && a.length == b.length) {
+			// x * 0 is NaN for NaN and both infinities, 0 (or -0) otherwise
+			double s = 0d;
+			for (int i = 0; i < a.length; i++)
+				s += a[i] * 0d + b[i] * 0d;
+			if (s == 0d)
+				return true;
 		}
+		// unequal lengths or a bad element: locate it for the message
+		validate(policy, measureName, a);
+		validate(policy, measureName, b);
 		return true; // if we get here, we've had no exceptions.
 	}
 
+	/*
+	 * Validates two prepared histograms: their bins follow the policy of the
+	 * measure, as in validate(String, double[], double[]).
+	 */
+	public boolean validate(String measureName, PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		if (P == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (Q == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		return validate(measureName, P.getBins(), Q.getBins());
+	}
+
+	/*
+	 * Whether a measure on two prepared histograms runs on their sparse form:
+	 * when both are at most SparseHistogram.SPARSE_DENSITY full.
+	 */
+	private boolean useSparse(String measureName, PreparedHistogram P,
+			PreparedHistogram Q) throws Exception {
+		if (P == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (Q == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		return P.isSparse() && Q.isSparse();
+	}
+
+	/*
+	 * The values of two sparse histograms at the bins non-zero in either of
+	 * them, for the dense kernels of the measures whose terms vanish where
+	 * both histograms are 0 (the sums over these bins equal the sums over
+	 * all bins).
+	 */
+	private double[][] union(String measureName, SparseHistogram P,
+			SparseHistogram Q) throws Exception {
+		if (P == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (Q == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		if (P.getNumBins() != Q.getNumBins())
+			throw new MathCompatibilityException(measureName
+					+ ": histograms differ in number of bins");
+		return SparseHistogram.union(P, Q);
+	}
+
+	/*
+	 * Support for the int[] count kernels: the normalized bins are P[i] / tp
+	 * and Q[i] / tq for the totals tp and tq, so that
+	 * 
+	 * P[i] / tp - Q[i] / tq = (P[i] * wp - Q[i] * wq) / scale
+	 * 
+	 * with g = gcd(tp, tq), wp = tq / g, wq = tp / g and scale = tp * wp. The
+	 * count kernels work on the exact long terms and divide by scale once.
+	 * Returns {wp, wq, scale}, or null when a total is not positive or scale
+	 * would overflow, in which case the kernel normalizes the counts as
+	 * normalizeHistogram() does and runs the double[] kernel instead.
+	 */
+	private long[] countWeights(String measureName, int[] P, int[] Q)
+			throws Exception {
+		chkcounts(measureName, P, Q);
+		long tp = 0, tq = 0;
+		for (int i = 0; i < P.length; i++) {
+			tp += P[i];
+			tq += Q[i];
+		}
+		if (tp <= 0 || tq <= 0)
+			return null;
+		long a = tp, b = tq;
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		long wp = tq / a;
+		long wq = tp / a;
+		// sums of |P[i] * wp - Q[i] * wq| are at most 2 * scale
+		if (tp > Long.MAX_VALUE / 2 / wp)
+			return null;
+		return new long[] { wp, wq, tp * wp };
+	}
+
+	private void chkcounts(String measureName, int[] P, int[] Q)
+			throws Exception {
+		if (P == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (Q == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		if (P.length != Q.length)
+			throw new MathCompatibilityException(measureName
+					+ ": histograms differ in number of bins");
+	}
+
+	/*
+	 * Support for the HistogramMatrix kernels: checks that rows from..to-1
+	 * exist and fit in result, and validates the query following the policy
+	 * of the measure. The rows were validated when they were stored. Returns
+	 * the bins of the query.
+	 */
+	private double[] batch(String measureName, PreparedHistogram P,
+			HistogramMatrix Q, int from, int to, double[] result)
+			throws Exception {
+		if (P == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (Q == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		if (result == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": null result array");
+		if (P.getNumBins() != Q.getNumBins())
+			throw new MathCompatibilityException(measureName
+					+ ": histograms differ in number of bins");
+		if (from < 0 || from > to || to > Q.getNumRows() || to > result.length)
+			throw new MathCompatibilityException(measureName + ": rows ["
+					+ from + ", " + to + ") not in the " + Q.getNumRows()
+					+ " rows or the " + result.length + " results");
+		double[] p = P.getBins();
+		validate(measureName, p);
+		return p;
+	}
+
+	// checks of the QuantizedHistogramStore kernels, as batch()
+	private double[] quantized(String measureName, PreparedHistogram P,
+			QuantizedHistogramStore Q, int from, int to, double[] result)
+			throws Exception {
+		if (P == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		if (Q == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": second argument null value");
+		if (result == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": null result array");
+		if (P.getNumBins() != Q.getNumBins())
+			throw new MathCompatibilityException(measureName
+					+ ": histograms differ in number of bins");
+		if (from < 0 || from > to || to > Q.getNumRows() || to > result.length)
+			throw new MathCompatibilityException(measureName + ": rows ["
+					+ from + ", " + to + ") not in the " + Q.getNumRows()
+					+ " rows or the " + result.length + " results");
+		double[] p = P.getBins();
+		validate(measureName, p);
+		return p;
+	}
+
+	/*
+	 * Whether a HistogramMatrix kernel may add its terms with plain double
+	 * arithmetic: with no negative bins the partial sums only grow, so a sum
+	 * below MAX_VALUE never saturated and equals the one accumulate() gives.
+	 * The lane-parallel kernels add in another order and are left to the
+	 * pairwise kernels.
+	 */
+	private boolean plainSums(double[] p, HistogramMatrix Q) {
+		return !useVectorKernels(p.length) && Q.isNonNegative()
+				&& nonNegative(p);
+	}
+
+	private boolean nonNegative(double[] p) {
+		for (int i = 0; i < p.length; i++)
+			if (p[i] < 0d)
+				return false;
+		return true;
+	}
+
+	/*
+	 * Validates a single array, e.g. the bins of a descriptor once when it is
+	 * created, so that later comparisons can run with TRUSTED.
+	 */
+	public boolean validate(String measureName, double[] a) throws Exception {
+		if (a == null)
+			throw new SingularityTreatmentException(measureName
+					+ ": first argument null value");
+		return validate(getValidationPolicy(measureName), measureName, a);
+	}
+
+	private boolean validate(ValidationPolicy policy, String measureName,
+			double[] a) throws Exception {
+		int len = a.length;
+		if (policy == ValidationPolicy.TRUSTED || len == 0)
+			return true;
+		int step = (policy == ValidationPolicy.SAMPLED) ? Math.max(1, len
+				/ ValidationPolicy.SAMPLE_SIZE) : 1;
+		for (int i = 0; i < len; i += step)
+			chkargs(measureName, a[i]);
+		if ((len - 1) % step != 0)
+			chkargs(measureName, a[len - 1]);
+		return true;
+	}
+
 	public boolean chkargs(String methodName, double[][] a) throws Exception {
 		if (a == null)
 			throw new SingularityTreatmentException(methodName
@@ -4370,8 +6058,12 @@ public Double[] pixelHistogram2Double(final PixelHistogramDescriptor d) throws E
 		return chkargs(methodName, a);
 	}
 
+	// every element, whatever the validation policy
 	public boolean chkresult(String methodName, double[] a) throws Exception {
-		return chkargs(methodName, a);
+		if (a == null)
+			throw new SingularityTreatmentException(methodName
+					+ ": first argument null value");
+		return validate(ValidationPolicy.STRICT, methodName, a);
 	}
 
 	// END
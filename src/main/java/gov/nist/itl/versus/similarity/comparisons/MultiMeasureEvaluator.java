@@ -0,0 +1,595 @@
+package gov.nist.itl.versus.similarity.comparisons;
+
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ */
+
+/*
+ *  Evaluates several histogram measures on the same pair in a single pass.
+ *
+ *	description:	The histogram measures of MathOpsE share most of their
+ *					per-bin terms: |P-Q|, min/max, P+Q, sqrt(P*Q), ln(P/Q),
+ *					(P-Q)^2, ... . This evaluator works out which running sums
+ *					the selected measures need, computes each of them once while
+ *					walking the two histograms, and then derives every selected
+ *					measure from those sums. Each result is identical to the one
+ *					returned by the corresponding MathOpsE kernel (and so by the
+ *					corresponding *Measure class).
+ *
+ *					An evaluator holds no per-call state and may be shared
+ *					between threads.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.PixelHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.RGBHistogramDescriptor;
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+public class MultiMeasureEvaluator {
+
+	// running sums (and the running max) shared between the measures
+	private static final long ABS = 1L << 0; // |P-Q|
+	private static final long SQ = 1L << 1; // (P-Q)^2
+	private static final long CUBE = 1L << 2; // |P-Q|^3
+	private static final long MAXABS = 1L << 3; // max |P-Q|
+	private static final long SUM = 1L << 4; // P+Q
+	private static final long MIN = 1L << 5; // min(P,Q)
+	private static final long MAX = 1L << 6; // max(P,Q)
+	private static final long MAXMIN = 1L << 7; // max(P,Q)-min(P,Q)
+	private static final long P1 = 1L << 8; // P
+	private static final long Q1 = 1L << 9; // Q
+	private static final long PQ = 1L << 10; // P*Q
+	private static final long P2 = 1L << 11; // P^2
+	private static final long Q2 = 1L << 12; // Q^2
+	private static final long SQRTPQ = 1L << 13; // sqrt(P*Q)
+	private static final long CHORD = 1L << 14; // (sqrt(P)-sqrt(Q))^2
+	private static final long SSQC2 = 1L << 15; // sqrt(P*Q)-1
+	private static final long CANB = 1L << 16; // |P-Q|/(P+Q)
+	private static final long LOR = 1L << 17; // ln(1+|P-Q|)
+	private static final long WH = 1L << 18; // |P-Q|/max(P,Q)
+	private static final long WHD = 1L << 19; // 1-min(P,Q)/max(P,Q)
+	private static final long HARM = 1L << 20; // P*Q/(P+Q)
+	private static final long PEAR = 1L << 21; // (P-Q)^2/Q
+	private static final long NEY = 1L << 22; // (P-Q)^2/P
+	private static final long SQCHI = 1L << 23; // (P-Q)^2/(P+Q)
+	private static final long DIV = 1L << 24; // (P-Q)^2/(P+Q)^2
+	private static final long CLARK = 1L << 25; // (|P-Q|/(P+Q))^2
+	private static final long ADD = 1L << 26; // (P-Q)^2(P+Q)/(P*Q)
+	private static final long KL = 1L << 27; // P ln(P/Q)
+	private static final long JEF = 1L << 28; // (P-Q) ln(P/Q)
+	private static final long KDP = 1L << 29; // P ln(2P/(P+Q))
+	private static final long KDQ = 1L << 30; // Q ln(2Q/(P+Q))
+	private static final long TOP = 1L << 31; // P ln(2P/(P+Q)) + Q ln(2Q/(P+Q))
+	private static final long JD = 1L << 32; // (P ln P + Q ln Q)/2 - M ln M
+	private static final long TAN = 1L << 33; // M ln((P+Q)/(2 sqrt(P*Q)))
+	private static final long KJ = 1L << 34; // (P^2-Q^2)^2/(2 (P*Q)^(3/2))
+
+	private static final int TERMS = 35;
+
+	/*
+	 * The histogram measures the evaluator can compute, named after the
+	 * corresponding MathOpsE method. measureClass is the *Measure class that
+	 * reports the same value, or null when the variant is only available in
+	 * MathOpsE.
+	 */
+	public enum Kind {
+		EUCLIDEAN(EuclideanL2Measure.class, SQ),
+		CITY_BLOCK(CityBlockL1Measure.class, ABS),
+		MINKOWSKI(MinkowskiMeasure.class, CUBE),
+		CHEBYSHEV(ChebyshevLInfMeasure.class, MAXABS),
+		SORENSEN(SorensenMeasure.class, ABS | SUM),
+		GOWER(GowerMeasure.class, ABS),
+		SOERGEL(SoergelMeasure.class, ABS | MAX),
+		KULCZYNSKI(KulczynskiMeasure.class, ABS | MIN),
+		CANBERRA(CanberraMeasure.class, CANB),
+		LORENTZIAN(LorentzianMeasure.class, LOR),
+		INTERSECTION_IS(IntersectionMeasure.class, MIN),
+		INTERSECTION_DNONIS(IntersectionDMeasure.class, MIN | P1 | Q1),
+		INTERSECTION_DNONIS2(null, ABS),
+		WAVE_HEDGES(WaveHedgesMeasure.class, WH),
+		WAVE_HEDGES_DWH(null, WHD),
+		CZEKANOWSKI(CzekanowskiMeasure.class, MIN | SUM),
+		CZEKANOWSKI_DCZE(CzekanowskiDMeasure.class, MIN | SUM | P1 | Q1),
+		CZEKANOWSKI_DCZE2(null, ABS | SUM),
+		MOTYKA(MotykaMeasure.class, MIN | SUM),
+		MOTYKA_DMOT(MotykaDMeasure.class, MIN | SUM | P1 | Q1),
+		MOTYKA_DMOT2(null, MAX | SUM),
+		KULCZYNSKI_S(KulczynskiSMeasure.class, ABS | MIN),
+		KULCZYNSKI_S2(null, ABS | MIN),
+		RUZICKA(RuzickaMeasure.class, MIN | MAX),
+		TANIMOTO(TanimotoMeasure.class, MAX | MAXMIN),
+		TANIMOTO2(null, MIN | P1 | Q1),
+		INNER_PRODUCT(InnerProductMeasure.class, PQ),
+		HARMONIC_MEAN(HarmonicMeanMeasure.class, HARM),
+		COSINE(CosineMeasure.class, P2 | Q2 | PQ),
+		JACCARD(JaccardMeasure.class, P2 | Q2 | PQ),
+		JACCARD_DJAC1(JaccardDMeasure.class, P2 | Q2 | PQ | P1 | Q1),
+		JACCARD_DJAC2(null, P2 | Q2 | PQ | SQ),
+		DICE(DiceMeasure.class, P2 | Q2 | PQ),
+		DICE_DDICE1(DiceDMeasure.class, P2 | Q2 | PQ | P1 | Q1),
+		DICE_DDICE2(null, P2 | Q2 | SQ),
+		FIDELITY(FidelityMeasure.class, SQRTPQ),
+		BHATTACHARYYA(BhattacharyyaMeasure.class, SQRTPQ | P1 | Q1),
+		HELLINGER(HellingerMeasure.class, SQRTPQ | P1 | Q1),
+		HELLINGER_DH2(null, CHORD),
+		MATUSITA(MatusitaMeasure.class, SQRTPQ | P1 | Q1),
+		MATUSITA_DM2(MatusitaDMeasure.class, CHORD),
+		SQUARED_CHORD(SquaredChordDMeasure.class, CHORD),
+		SQUARED_CHORD_SSQC1(SquaredChordMeasure.class, CHORD),
+		SQUARED_CHORD_SSQC2(null, SSQC2),
+		SQUARED_EUCLIDEAN(SquaredEuclideanMeasure.class, SQ),
+		PEARSON_CHISQUARED(PearsonChiSquaredMeasure.class, PEAR),
+		NEYMAN_CHISQUARED(NeymanChiSquaredMeasure.class, NEY),
+		SQUARED_CHISQUARED(SquaredChiSquaredMeasure.class, SQCHI),
+		PROBABILISTIC_SYMMETRIC_CHISQUARED(ProbabilisticSymmetricChiSquaredMeasure.class, SQCHI),
+		DIVERGENCE(DivergenceMeasure.class, DIV),
+		CLARK(ClarkMeasure.class, MultiMeasureEvaluator.CLARK),
+		ADDITIVE_SYMMETRIC_CHISQUARED(AdditiveSymmetricChiSquaredMeasure.class, ADD),
+		KULLBACK_LEIBLER(KullbackLeiblerMeasure.class, KL),
+		JEFFREYS(JeffreysMeasure.class, JEF),
+		K_DIVERGENCE(KDivergenceMeasure.class, KDP),
+		TOPSOE(TopsoeMeasure.class, TOP),
+		JENSEN_SHANNON(JensenShannonMeasure.class, KDP | KDQ),
+		JENSEN_DIFFERENCE(JensenDifferenceMeasure.class, JD),
+		TANEJA_DIFFERENCE(TanejaDifferenceMeasure.class, TAN),
+		KUMAR_JOHNSON_DIFFERENCE(KumarJohnsonDifferenceMeasure.class, KJ),
+		AVG_DIFFERENCE(AvgDifferenceMeasure.class, ABS | MAXABS);
+
+		private final Class<? extends Measure> measureClass;
+		private final long terms;
+
+		Kind(Class<? extends Measure> measureClass, long terms) {
+			this.measureClass = measureClass;
+			this.terms = terms;
+		}
+
+		public Class<? extends Measure> getMeasureClass() {
+			return measureClass;
+		}
+
+		/*
+		 * Returns the kind computing the same value as the given *Measure
+		 * class, or null if the class is not a histogram measure.
+		 */
+		public static Kind forMeasure(Class<?> measureClass) {
+			for (Kind k : values())
+				if (k.measureClass != null && k.measureClass.equals(measureClass))
+					return k;
+			return null;
+		}
+	}
+
+	private final MathOpsE ops = new MathOpsE();
+	private final Kind[] kinds;
+	private final long terms;
+
+	public MultiMeasureEvaluator(Kind... kinds) {
+		this.kinds = kinds.clone();
+		long t = 0;
+		for (Kind k : this.kinds)
+			t |= k.terms;
+		this.terms = t;
+	}
+
+	/*
+	 * Evaluator for the given measures, e.g. the Measure instances of a
+	 * sensitivity study. Throws if one of them is not a histogram measure.
+	 */
+	public MultiMeasureEvaluator(Collection<? extends Measure> measures)
+			throws Exception {
+		this(toKinds(measures));
+	}
+
+	// every *Measure histogram measure, in the order of Kind
+	public static MultiMeasureEvaluator allMeasures() {
+		List<Kind> list = new ArrayList<Kind>();
+		for (Kind k : Kind.values())
+			if (k.measureClass != null)
+				list.add(k);
+		return new MultiMeasureEvaluator(list.toArray(new Kind[list.size()]));
+	}
+
+	private static Kind[] toKinds(Collection<? extends Measure> measures)
+			throws Exception {
+		Kind[] kinds = new Kind[measures.size()];
+		int i = 0;
+		for (Measure m : measures) {
+			kinds[i] = Kind.forMeasure(m.getClass());
+			if (kinds[i] == null)
+				throw new SWIndependenceException(
+						"MultiMeasureEvaluator: not a histogram measure: "
+								+ m.getClass().getName());
+			// the MINKOWSKI kind is the default order p = 3
+			if (m instanceof MinkowskiMeasure
+					&& ((MinkowskiMeasure) m).getP() != 3.0d)
+				throw new SWIndependenceException(
+						"MultiMeasureEvaluator: Minkowski measure of order "
+								+ ((MinkowskiMeasure) m).getP()
+								+ ", only p = 3 is supported");
+			i++;
+		}
+		return kinds;
+	}
+
+	public Kind[] getKinds() {
+		return kinds.clone();
+	}
+
+	public ValidationPolicy getValidationPolicy() {
+		return ops.getValidationPolicy();
+	}
+
+	/*
+	 * How the histograms are validated before each evaluation, e.g. TRUSTED
+	 * for histograms that were validated once when they were created.
+	 */
+	public void setValidationPolicy(ValidationPolicy policy) {
+		ops.setValidationPolicy(policy);
+	}
+
+	/*
+	 * Normalizes both histogram descriptors once and evaluates the selected
+	 * measures on them. Results are in the order of getKinds().
+	 */
+	public double[] evaluate(Descriptor feature1, Descriptor feature2)
+			throws Exception {
+		Double[] normHist1;
+		Double[] normHist2;
+		if (feature1 instanceof RGBHistogramDescriptor
+				&& feature2 instanceof RGBHistogramDescriptor) {
+			chkbins(((RGBHistogramDescriptor) feature1).getNumBins(),
+					((RGBHistogramDescriptor) feature2).getNumBins());
+			normHist1 = ops.normalizeRgbHistogram((RGBHistogramDescriptor) feature1);
+			normHist2 = ops.normalizeRgbHistogram((RGBHistogramDescriptor) feature2);
+		} else if (feature1 instanceof GrayscaleHistogramDescriptor
+				&& feature2 instanceof GrayscaleHistogramDescriptor) {
+			chkbins(((GrayscaleHistogramDescriptor) feature1).getNumBins(),
+					((GrayscaleHistogramDescriptor) feature2).getNumBins());
+			normHist1 = ops.normalizeGrayscaleHistogram((GrayscaleHistogramDescriptor) feature1);
+			normHist2 = ops.normalizeGrayscaleHistogram((GrayscaleHistogramDescriptor) feature2);
+		} else if (feature1 instanceof PixelHistogramDescriptor
+				&& feature2 instanceof PixelHistogramDescriptor) {
+			chkbins(((PixelHistogramDescriptor) feature1).getNumBins(),
+					((PixelHistogramDescriptor) feature2).getNumBins());
+			normHist1 = ops.normalizePixelHistogram((PixelHistogramDescriptor) feature1);
+			normHist2 = ops.normalizePixelHistogram((PixelHistogramDescriptor) feature2);
+		} else if (feature1 instanceof PreparedHistogram
+				&& feature2 instanceof PreparedHistogram) {
+			return evaluate((PreparedHistogram) feature1,
+					(PreparedHistogram) feature2);
+		} else {
+			throw new SWIndependenceException(
+					"MultiMeasureEvaluator expects two histogram descriptors of the same type");
+		}
+		return evaluate(ops.toPrimitive(normHist1), ops.toPrimitive(normHist2));
+	}
+
+	public double[] evaluate(PreparedHistogram feature1,
+			PreparedHistogram feature2) throws Exception {
+		chkbins(feature1.getNumBins(), feature2.getNumBins());
+		return evaluate(feature1.getBins(), feature2.getBins());
+	}
+
+	private void chkbins(int bins1, int bins2) throws Exception {
+		// Check feature lengths, they must be equal
+		if (bins1 != bins2)
+			throw new ImageCompatibilityException("Features must have the same length");
+	}
+
+	public double[] evaluate(double[] P, double[] Q) throws Exception {
+		double[] result = new double[kinds.length];
+		evaluate(P, Q, result);
+		return result;
+	}
+
+	/*
+	 * Evaluates the selected measures on two (normalized) histograms, writing
+	 * result[k] for kinds[k]. Throws as soon as one of the selected measures
+	 * would throw.
+	 */
+	public void evaluate(double[] P, double[] Q, double[] result)
+			throws Exception {
+		ops.validate("MultiMeasureEvaluator", P, Q);
+		int n = P.length;
+		double[] a = new double[TERMS];
+		boolean abs = has(ABS), sq = has(SQ), cube = has(CUBE), maxabs = has(MAXABS);
+		boolean sum = has(SUM), min = has(MIN), max = has(MAX), maxmin = has(MAXMIN);
+		boolean p1 = has(P1), q1 = has(Q1), pq = has(PQ), p2 = has(P2), q2 = has(Q2);
+		boolean sqrtpq = has(SQRTPQ), chord = has(CHORD), ssqc2 = has(SSQC2);
+		boolean canb = has(CANB), lor = has(LOR), wh = has(WH), whd = has(WHD);
+		boolean harm = has(HARM), pear = has(PEAR), ney = has(NEY), sqchi = has(SQCHI);
+		boolean div = has(DIV), clark = has(CLARK), add = has(ADD), kl = has(KL);
+		boolean jef = has(JEF), kdp = has(KDP), kdq = has(KDQ), top = has(TOP);
+		boolean jd = has(JD), tan = has(TAN), kj = has(KJ);
+
+		double threeHalves = ops.quotient(3.0d, 2.0d);
+		double maxAbs = (n == 0) ? 0d : Math.abs(P[0] - Q[0]);
+		for (int i = 0; i < n; i++) {
+			double p = P[i];
+			double q = Q[i];
+			double d = p - q;
+			double ad = Math.abs(d);
+			double s = p + q;
+			double mn = (p < q) ? p : q;
+			double mx = (p > q) ? p : q;
+			double r = p * q;
+
+			if (abs)
+				a[0] = ops.accumulate(a[0], ad);
+			if (sq)
+				a[1] = ops.accumulate(a[1], ad * ad);
+			if (cube)
+				a[2] = ops.accumulate(a[2], ad * ad * ad);
+			if (maxabs)
+				maxAbs = (ad > maxAbs) ? ad : maxAbs;
+			if (sum)
+				a[4] = ops.accumulate(a[4], s);
+			if (min)
+				a[5] = ops.accumulate(a[5], mn);
+			if (max)
+				a[6] = ops.accumulate(a[6], mx);
+			if (maxmin)
+				a[7] = ops.accumulate(a[7], mx - mn);
+			if (p1)
+				a[8] = ops.accumulate(a[8], p);
+			if (q1)
+				a[9] = ops.accumulate(a[9], q);
+			if (pq)
+				a[10] = ops.accumulate(a[10], r);
+			if (p2)
+				a[11] = ops.accumulate(a[11], p * p);
+			if (q2)
+				a[12] = ops.accumulate(a[12], q * q);
+			if (sqrtpq || tan) {
+				double sr = Math.sqrt(r);
+				if (sqrtpq)
+					a[13] = ops.accumulate(a[13], sr);
+				if (tan)
+					a[33] = ops.accumulate(a[33], ops.aLnB(ops.quotient(s, 2.0d),
+							ops.quotient(s, 2.0d * sr)));
+			}
+			if (chord) {
+				double c = Math.sqrt(p) - Math.sqrt(q);
+				a[14] = ops.accumulate(a[14], c * c);
+			}
+			if (ssqc2)
+				a[15] = ops.accumulate(a[15], Math.sqrt(r) - 1.0d);
+			if (canb)
+				a[16] = ops.accumulate(a[16], ops.quotient(ad, s));
+			if (lor)
+				a[17] = ops.accumulate(a[17], ops.naturalLog(1d + ad));
+			if (wh)
+				a[18] = ops.accumulate(a[18], ops.quotient(ad, mx));
+			if (whd)
+				a[19] = ops.accumulate(a[19], 1.0d - ops.quotient(mn, mx));
+			if (harm)
+				a[20] = ops.accumulate(a[20], ops.quotient(r, s));
+			if (pear)
+				a[21] = ops.accumulate(a[21], ops.quotient(d * d, q));
+			if (ney)
+				a[22] = ops.accumulate(a[22], ops.quotient(d * d, p));
+			if (sqchi)
+				a[23] = ops.accumulate(a[23], ops.quotient(d * d, s));
+			if (div)
+				a[24] = ops.accumulate(a[24], ops.quotient(d * d, s * s));
+			if (clark) {
+				double c = ops.quotient(ad, s);
+				a[25] = ops.accumulate(a[25], c * c);
+			}
+			if (add)
+				a[26] = ops.accumulate(a[26], ops.quotient(d * d * s, r));
+			if (kl || jef) {
+				double pOverQ = ops.quotient(p, q);
+				if (kl)
+					a[27] = ops.accumulate(a[27], ops.aLnB(p, pOverQ));
+				if (jef)
+					a[28] = ops.accumulate(a[28],
+							ops.aLnB(ops.checked("sub", d), pOverQ));
+			}
+			if (kdp || kdq || top) {
+				double l = (kdp || top) ? ops.aLnB(p, ops.quotient(2.0d * p, s)) : 0d;
+				double rt = (kdq || top) ? ops.aLnB(q, ops.quotient(2.0d * q, s)) : 0d;
+				if (kdp)
+					a[29] = ops.accumulate(a[29], l);
+				if (kdq)
+					a[30] = ops.accumulate(a[30], rt);
+				if (top)
+					a[31] = ops.accumulate(a[31], l + rt);
+			}
+			if (jd) {
+				double m = ops.quotient(s, 2.0d);
+				double rt = ops.aLnB(m, m);
+				double l = ops.quotient(ops.aLnB(p, p) + ops.aLnB(q, q), 2.0d);
+				a[32] = ops.accumulate(a[32], l - rt);
+			}
+			if (kj) {
+				double b = 2.0d * Math.pow(r, threeHalves);
+				double t = p * p - q * q;
+				a[34] = ops.accumulate(a[34], ops.quotient(t * t, b));
+			}
+		}
+		a[3] = maxAbs;
+
+		for (int k = 0; k < kinds.length; k++) {
+			result[k] = finish(kinds[k], a, n);
+			ops.chkresult("MultiMeasureEvaluator", result[k]);
+		}
+	}
+
+	private boolean has(long term) {
+		return (terms & term) != 0;
+	}
+
+	// derives one measure from the running sums, as the MathOpsE kernel does
+	private double finish(Kind kind, double[] a, int n) throws Exception {
+		switch (kind) {
+		case EUCLIDEAN:
+			return Math.sqrt(a[1]);
+		case CITY_BLOCK:
+			return a[0];
+		case MINKOWSKI:
+			return Math.cbrt(a[2]);
+		case CHEBYSHEV:
+			return a[3];
+		case SORENSEN:
+		case CZEKANOWSKI_DCZE2:
+			return ops.quotient(a[0], a[4]);
+		case GOWER:
+			return ops.quotient(1d, (double) n) * a[0];
+		case SOERGEL:
+			return ops.quotient(a[0], a[6]);
+		case KULCZYNSKI:
+			return ops.quotient(a[0], a[5]);
+		case CANBERRA:
+			return a[16];
+		case LORENTZIAN:
+			return a[17];
+		case INTERSECTION_IS:
+			return intersection(a);
+		case INTERSECTION_DNONIS:
+			return complement(intersection(a), a);
+		case INTERSECTION_DNONIS2:
+			return ops.quotient(1d, 2.0d) * a[0];
+		case WAVE_HEDGES:
+			return a[18];
+		case WAVE_HEDGES_DWH:
+			return a[19];
+		case CZEKANOWSKI:
+			return ops.quotient(2.0d * a[5], a[4]);
+		case CZEKANOWSKI_DCZE:
+			return complement(ops.quotient(2.0d * a[5], a[4]), a);
+		case MOTYKA:
+			return ops.quotient(a[5], a[4]);
+		case MOTYKA_DMOT:
+			return complement(ops.quotient(a[5], a[4]), a);
+		case MOTYKA_DMOT2:
+			return ops.quotient(a[6], a[4]);
+		case KULCZYNSKI_S:
+			return ops.quotient(1d, ops.quotient(a[0], a[5]));
+		case KULCZYNSKI_S2:
+			return ops.quotient(a[5], a[0]);
+		case RUZICKA:
+			return ops.quotient(a[5], a[6]);
+		case TANIMOTO:
+			return ops.quotient(a[7], a[6]);
+		case TANIMOTO2: {
+			double total = a[8] + a[9];
+			return ops.quotient(total - 2.0d * a[5], total - a[5]);
+		}
+		case INNER_PRODUCT:
+			return a[10];
+		case HARMONIC_MEAN: {
+			double d = 2.0d * a[20];
+			return (d > 1.0) ? 1.0 : d;
+		}
+		case COSINE:
+			return ops.quotient(a[10], Math.sqrt(a[11]) * Math.sqrt(a[12]));
+		case JACCARD:
+			return ops.quotient(a[10], (a[11] + a[12]) - a[10]);
+		case JACCARD_DJAC1:
+			return complement(ops.quotient(a[10], (a[11] + a[12]) - a[10]), a);
+		case JACCARD_DJAC2:
+			return ops.quotient(a[1], (a[11] + a[12]) - a[10]);
+		case DICE:
+			return ops.quotient(2.0d * a[10], a[11] + a[12]);
+		case DICE_DDICE1:
+			return complement(ops.quotient(2.0d * a[10], a[11] + a[12]), a);
+		case DICE_DDICE2:
+			return ops.quotient(a[1], a[11] + a[12]);
+		case FIDELITY:
+			return (a[13] > 1.0) ? 1.0 : a[13];
+		case BHATTACHARYYA:
+			if (normalized(a[13], a))
+				return 0.0;
+			return -1.0d * ops.naturalLog(a[13]);
+		case HELLINGER:
+			if (normalized(a[13], a))
+				return 0.0;
+			return 2.0d * Math.sqrt(1d - a[13]);
+		case HELLINGER_DH2:
+			return Math.sqrt(2.0d * a[14]);
+		case MATUSITA:
+			if (normalized(a[13], a))
+				return 0.0;
+			return Math.sqrt(2.0d - 2.0d * a[13]);
+		case MATUSITA_DM2:
+			return Math.sqrt(a[14]);
+		case SQUARED_CHORD:
+			return a[14];
+		case SQUARED_CHORD_SSQC1:
+			return 1.0d - a[14];
+		case SQUARED_CHORD_SSQC2:
+			return 2.0d * a[15];
+		case SQUARED_EUCLIDEAN:
+			return a[1];
+		case PEARSON_CHISQUARED:
+			return a[21];
+		case NEYMAN_CHISQUARED:
+			return a[22];
+		case SQUARED_CHISQUARED:
+			return a[23];
+		case PROBABILISTIC_SYMMETRIC_CHISQUARED:
+			return 2.0d * a[23];
+		case DIVERGENCE:
+			return 2.0d * a[24];
+		case CLARK:
+			return Math.sqrt(a[25]);
+		case ADDITIVE_SYMMETRIC_CHISQUARED:
+			return a[26];
+		case KULLBACK_LEIBLER:
+			return a[27];
+		case JEFFREYS:
+			return a[28];
+		case K_DIVERGENCE:
+			return a[29];
+		case TOPSOE:
+			return a[31];
+		case JENSEN_SHANNON:
+			return ops.quotient(1.0d, 2.0d) * (a[29] + a[30]);
+		case JENSEN_DIFFERENCE:
+			return a[32];
+		case TANEJA_DIFFERENCE:
+			return a[33];
+		case KUMAR_JOHNSON_DIFFERENCE:
+			return a[34];
+		case AVG_DIFFERENCE:
+			return ops.quotient(a[3] + a[0], 2.0d);
+		default:
+			throw new SWIndependenceException("MultiMeasureEvaluator: unknown measure " + kind);
+		}
+	}
+
+	private double intersection(double[] a) {
+		// check if the value is larger than 1
+		return (a[5] > 1.0) ? 1.0 : a[5];
+	}
+
+	// Case of normalized histograms, as in the "d" variants of MathOpsE
+	private boolean normalized(double d, double[] a) {
+		return d > 1 && Math.abs(a[8] - 1) < MathOpsE.EPSILON
+				&& Math.abs(a[9] - 1) < MathOpsE.EPSILON;
+	}
+
+	private double complement(double d, double[] a) throws Exception {
+		ops.chkresult("MultiMeasureEvaluator", d);
+		if (normalized(d, a))
+			return 0.0;
+		return 1.0d - d;
+	}
+}
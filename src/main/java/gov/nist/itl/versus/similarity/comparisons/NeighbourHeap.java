@@ -0,0 +1,130 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+ *  The k smallest keys offered, with their rows.
+ *
+ *	description:	A binary max-heap: the root is the worst of the k kept
+ *					(largest key, then largest row), so that the result does not
+ *					depend on the order in which rows are offered. An unbounded
+ *					heap keeps every key offered, for range searches.
+ */
+class NeighbourHeap {
+	private double[] keys;
+	private int[] rows;
+	private final boolean bounded;
+	private int size;
+
+	NeighbourHeap(int k) {
+		keys = new double[k];
+		rows = new int[k];
+		bounded = true;
+	}
+
+	private NeighbourHeap() {
+		keys = new double[16];
+		rows = new int[16];
+		bounded = false;
+	}
+
+	static NeighbourHeap unbounded() {
+		return new NeighbourHeap();
+	}
+
+	boolean isFull() {
+		return bounded && size == keys.length;
+	}
+
+	double worstKey() {
+		return keys[0];
+	}
+
+	private static boolean worse(double k1, int r1, double k2, int r2) {
+		return k1 > k2 || (k1 == k2 && r1 > r2);
+	}
+
+	void offer(double key, int row) {
+		if (!bounded && size == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * size);
+			rows = Arrays.copyOf(rows, 2 * size);
+		}
+		if (keys.length == 0)
+			return;
+		if (size < keys.length) {
+			// sift up
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >> 1;
+				if (!worse(key, row, keys[parent], rows[parent]))
+					break;
+				keys[i] = keys[parent];
+				rows[i] = rows[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			rows[i] = row;
+		} else if (worse(keys[0], rows[0], key, row)) {
+			// replace the root and sift down
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if (child + 1 < size
+						&& worse(keys[child + 1], rows[child + 1], keys[child],
+								rows[child]))
+					child++;
+				if (!worse(keys[child], rows[child], key, row))
+					break;
+				keys[i] = keys[child];
+				rows[i] = rows[child];
+				i = child;
+			}
+			keys[i] = key;
+			rows[i] = row;
+		}
+	}
+
+	/*
+	 * The rows kept, closest first; the values are the keys, negated back
+	 * when negate is set.
+	 */
+	HistogramKnnSearcher.Result result(boolean negate, int measured,
+			int abandoned) {
+		Integer[] idx = new Integer[size];
+		for (int i = 0; i < size; i++)
+			idx[i] = i;
+		Arrays.sort(idx, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				if (worse(keys[a], rows[a], keys[b], rows[b]))
+					return 1;
+				return worse(keys[b], rows[b], keys[a], rows[a]) ? -1 : 0;
+			}
+		});
+		int[] indices = new int[size];
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = rows[idx[i]];
+			values[i] = negate ? -keys[idx[i]] : keys[idx[i]];
+		}
+		return new HistogramKnnSearcher.Result(indices, values, measured,
+				abandoned);
+	}
+}
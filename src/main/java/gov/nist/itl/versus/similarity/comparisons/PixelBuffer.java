@@ -0,0 +1,549 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+
+/*
+ *  Pixels of one primitive type in a single flat array.
+ *
+ *	description:	Pixel (row, col, band) is element
+ *
+ *						offset + row * rowStride + col * colStride + band
+ *
+ *					of the array; a buffer as allocated is laid out row by row,
+ *					band by band within a pixel (rowStride = cols * bands,
+ *					colStride = bands), so that scans are sequential. The types
+ *					and what a value becomes when set:
+ *
+ *					BIT		1 bit, 1 if the value is not 0 (a long per 64 pixels)
+ *					BYTE	8 bits, unsigned, as (int) value & 0xff
+ *					SHORT	16 bits, unsigned, as (int) value & 0xffff
+ *					INT		32 bits, as (int) value
+ *					FLOAT	32 bits, as (float) value
+ *					DOUBLE	64 bits
+ *
+ *					A binary mask takes 1/64 and an 8-bit label image 1/8 of
+ *					the memory of double[rows][cols][bands], without the row
+ *					and column arrays. ImageData keeps its getValue / set /
+ *					getValues methods over a buffer (see ImageData(PixelBuffer)).
+ *
+ *					region(), band(), transpose() and flatten() are views: new
+ *					offsets and strides over the same array, with no copy, so
+ *					that a write through one is seen by the other. wrap() makes
+ *					a buffer of the arrays of an image in the same way.
+ */
+public abstract class PixelBuffer {
+
+	public enum Type {
+		BIT(1), BYTE(8), SHORT(16), INT(32), FLOAT(32), DOUBLE(64);
+
+		private final int bits;
+
+		private Type(int bits) {
+			this.bits = bits;
+		}
+
+		public int getBits() {
+			return bits;
+		}
+	}
+
+	protected final int rows;
+	protected final int cols;
+	protected final int bands;
+	protected final int offset;
+	protected final int rowStride;
+	protected final int colStride;
+
+	protected PixelBuffer(int rows, int cols, int bands, int offset,
+			int rowStride, int colStride) {
+		this.rows = rows;
+		this.cols = cols;
+		this.bands = bands;
+		this.offset = offset;
+		this.rowStride = rowStride;
+		this.colStride = colStride;
+	}
+
+	public static PixelBuffer allocate(Type type, int rows, int cols,
+			int bands) throws Exception {
+		if (rows < 1 || cols < 1 || bands < 1)
+			throw new MathCompatibilityException("PixelBuffer: " + rows
+					+ " x " + cols + " x " + bands + " pixels");
+		long size = (long) rows * cols * bands;
+		if (size > Integer.MAX_VALUE)
+			throw new MathCompatibilityException("PixelBuffer: " + size
+					+ " values, more than an array holds");
+		int n = (int) size;
+		int rs = cols * bands;
+		switch (type) {
+		case BIT:
+			return new Bits(rows, cols, bands, 0, rs, bands,
+					new long[(n + 63) >>> 6]);
+		case BYTE:
+			return new Bytes(rows, cols, bands, 0, rs, bands, new byte[n]);
+		case SHORT:
+			return new Shorts(rows, cols, bands, 0, rs, bands, new short[n]);
+		case INT:
+			return new Ints(rows, cols, bands, 0, rs, bands, new int[n]);
+		case FLOAT:
+			return new Floats(rows, cols, bands, 0, rs, bands, new float[n]);
+		default:
+			return new Doubles(rows, cols, bands, 0, rs, bands, new double[n]);
+		}
+	}
+
+	/*
+	 * The narrowest type that holds every value from min to max exactly:
+	 * BYTE or SHORT for labels 0 .. 255 or 0 .. 65535, INT for other
+	 * integers, DOUBLE for the rest.
+	 */
+	public static Type narrowest(double min, double max, boolean integral) {
+		if (!integral)
+			return Type.DOUBLE;
+		if (min >= 0d && max <= 0xff)
+			return Type.BYTE;
+		if (min >= 0d && max <= 0xffff)
+			return Type.SHORT;
+		if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE)
+			return Type.INT;
+		return Type.DOUBLE;
+	}
+
+	/*
+	 * The arrays as a DOUBLE buffer, with no copy; the arrays must all have
+	 * the lengths of the first.
+	 */
+	public static PixelBuffer wrap(double[][][] values) throws Exception {
+		int rows = values.length;
+		int cols = values[0].length;
+		int bands = values[0][0].length;
+		if ((long) rows * cols * bands > Integer.MAX_VALUE)
+			throw new MathCompatibilityException("PixelBuffer: "
+					+ ((long) rows * cols * bands)
+					+ " values, more than an array holds");
+		return new Jagged(rows, cols, bands, 0, cols * bands, bands, values);
+	}
+
+	// the BIT buffer over packed words laid out as BinaryMask's
+	static PixelBuffer bits(int rows, int cols, int bands, long[] words) {
+		return new Bits(rows, cols, bands, 0, cols * bands, bands, words);
+	}
+
+	// a copy of the values converted to the type
+	public static PixelBuffer of(double[][][] values, Type type)
+			throws Exception {
+		PixelBuffer b = allocate(type, values.length, values[0].length,
+				values[0][0].length);
+		for (int i = 0; i < b.rows; i++)
+			for (int j = 0; j < b.cols; j++)
+				for (int k = 0; k < b.bands; k++)
+					b.set(i, j, k, values[i][j][k]);
+		return b;
+	}
+
+	public abstract Type getType();
+
+	// a buffer over the same array
+	protected abstract PixelBuffer view(int rows, int cols, int bands,
+			int offset, int rowStride, int colStride);
+
+	// element of the array
+	public abstract double get(int index);
+
+	public abstract void set(int index, double value);
+
+	// the array the buffer shares with its views
+	public abstract Object getArray();
+
+	public int getNumRows() {
+		return rows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	public int getNumBands() {
+		return bands;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getRowStride() {
+		return rowStride;
+	}
+
+	public int getColStride() {
+		return colStride;
+	}
+
+	// whether the pixels are the array from offset on, in scan order
+	public boolean isContiguous() {
+		return colStride == bands && rowStride == cols * bands;
+	}
+
+	public int index(int row, int col, int band) {
+		return offset + row * rowStride + col * colStride + band;
+	}
+
+	public double get(int row, int col, int band) {
+		return get(index(row, col, band));
+	}
+
+	public void set(int row, int col, int band, double value) {
+		set(index(row, col, band), value);
+	}
+
+	// the pixels of numRows x numCols from (row, col) on
+	public PixelBuffer region(int row, int col, int numRows, int numCols)
+			throws Exception {
+		if (row < 0 || col < 0 || numRows < 1 || numCols < 1
+				|| row + numRows > rows || col + numCols > cols)
+			throw new MathCompatibilityException("PixelBuffer: region ("
+					+ row + ", " + col + ") " + numRows + " x " + numCols
+					+ " outside " + rows + " x " + cols + " pixels");
+		return view(numRows, numCols, bands, index(row, col, 0), rowStride,
+				colStride);
+	}
+
+	// one band, as an image of 1 band
+	public PixelBuffer band(int band) throws Exception {
+		if (band < 0 || band >= bands)
+			throw new MathCompatibilityException("PixelBuffer: band " + band
+					+ " of " + bands);
+		return view(rows, cols, 1, offset + band, rowStride, colStride);
+	}
+
+	/*
+	 * Rows and columns swapped: the rows of the view are the columns of this
+	 * buffer, so that a scan of the view row by row walks this one column by
+	 * column.
+	 */
+	public PixelBuffer transpose() {
+		return view(cols, rows, bands, offset, colStride, rowStride);
+	}
+
+	// the pixels as a single row; only contiguous pixels have such a view
+	public PixelBuffer flatten() throws Exception {
+		if (!isContiguous())
+			throw new MathCompatibilityException(
+					"PixelBuffer: flatten of pixels not contiguous in the array");
+		return view(1, rows * cols, bands, offset, rows * cols * bands, bands);
+	}
+
+	/*
+	 * Copies the cols * bands values of a row, band by band within a pixel,
+	 * into dst.
+	 */
+	public void getRow(int row, double[] dst) {
+		int x = offset + row * rowStride;
+		int d = 0;
+		for (int j = 0; j < cols; j++, x += colStride)
+			for (int k = 0; k < bands; k++)
+				dst[d++] = get(x + k);
+	}
+
+	public double[][][] toArray() {
+		double[][][] v = new double[rows][cols][bands];
+		double[] row = new double[cols * bands];
+		for (int i = 0; i < rows; i++) {
+			getRow(i, row);
+			for (int j = 0, d = 0; j < cols; j++)
+				for (int k = 0; k < bands; k++)
+					v[i][j][k] = row[d++];
+		}
+		return v;
+	}
+
+	// a new contiguous buffer of the same type and values
+	public PixelBuffer copy() throws Exception {
+		PixelBuffer b = allocate(getType(), rows, cols, bands);
+		double[] row = new double[cols * bands];
+		for (int i = 0; i < rows; i++) {
+			getRow(i, row);
+			for (int j = 0, d = 0; j < cols; j++)
+				for (int k = 0; k < bands; k++)
+					b.set(i, j, k, row[d++]);
+		}
+		return b;
+	}
+
+	// bytes of the values, not counting the array header
+	public long sizeInBytes() {
+		return ((long) rows * cols * bands * getType().getBits() + 7) / 8;
+	}
+
+	private static final class Bits extends PixelBuffer {
+		private final long[] words;
+
+		Bits(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, long[] words) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.words = words;
+		}
+
+		public Type getType() {
+			return Type.BIT;
+		}
+
+		public double get(int index) {
+			return (words[index >>> 6] >>> index) & 1L;
+		}
+
+		public void set(int index, double value) {
+			if (value != 0d)
+				words[index >>> 6] |= 1L << index;
+			else
+				words[index >>> 6] &= ~(1L << index);
+		}
+
+		public Object getArray() {
+			return words;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Bits(rows, cols, bands, offset, rowStride, colStride, words);
+		}
+	}
+
+	private static final class Bytes extends PixelBuffer {
+		private final byte[] data;
+
+		Bytes(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, byte[] data) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.data = data;
+		}
+
+		public Type getType() {
+			return Type.BYTE;
+		}
+
+		public double get(int index) {
+			return data[index] & 0xff;
+		}
+
+		public void set(int index, double value) {
+			data[index] = (byte) (int) value;
+		}
+
+		public Object getArray() {
+			return data;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Bytes(rows, cols, bands, offset, rowStride, colStride, data);
+		}
+	}
+
+	private static final class Shorts extends PixelBuffer {
+		private final short[] data;
+
+		Shorts(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, short[] data) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.data = data;
+		}
+
+		public Type getType() {
+			return Type.SHORT;
+		}
+
+		public double get(int index) {
+			return data[index] & 0xffff;
+		}
+
+		public void set(int index, double value) {
+			data[index] = (short) (int) value;
+		}
+
+		public Object getArray() {
+			return data;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Shorts(rows, cols, bands, offset, rowStride, colStride, data);
+		}
+	}
+
+	private static final class Ints extends PixelBuffer {
+		private final int[] data;
+
+		Ints(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, int[] data) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.data = data;
+		}
+
+		public Type getType() {
+			return Type.INT;
+		}
+
+		public double get(int index) {
+			return data[index];
+		}
+
+		public void set(int index, double value) {
+			data[index] = (int) value;
+		}
+
+		public Object getArray() {
+			return data;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Ints(rows, cols, bands, offset, rowStride, colStride, data);
+		}
+	}
+
+	private static final class Floats extends PixelBuffer {
+		private final float[] data;
+
+		Floats(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, float[] data) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.data = data;
+		}
+
+		public Type getType() {
+			return Type.FLOAT;
+		}
+
+		public double get(int index) {
+			return data[index];
+		}
+
+		public void set(int index, double value) {
+			data[index] = (float) value;
+		}
+
+		public Object getArray() {
+			return data;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Floats(rows, cols, bands, offset, rowStride, colStride, data);
+		}
+	}
+
+	private static final class Doubles extends PixelBuffer {
+		private final double[] data;
+
+		Doubles(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, double[] data) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.data = data;
+		}
+
+		public Type getType() {
+			return Type.DOUBLE;
+		}
+
+		public double get(int index) {
+			return data[index];
+		}
+
+		public void set(int index, double value) {
+			data[index] = value;
+		}
+
+		public Object getArray() {
+			return data;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Doubles(rows, cols, bands, offset, rowStride, colStride, data);
+		}
+
+		public void getRow(int row, double[] dst) {
+			if (colStride == bands)
+				System.arraycopy(data, offset + row * rowStride, dst, 0, cols
+						* bands);
+			else
+				super.getRow(row, dst);
+		}
+	}
+
+	/*
+	 * The arrays of an image: element x of the buffer is the value at
+	 * (x / (width * depth), x / depth % width, x % depth) of the arrays,
+	 * width and depth being their columns and bands.
+	 */
+	private static final class Jagged extends PixelBuffer {
+		private final double[][][] values;
+		private final int width;
+		private final int depth;
+
+		Jagged(int rows, int cols, int bands, int offset, int rowStride,
+				int colStride, double[][][] values) {
+			super(rows, cols, bands, offset, rowStride, colStride);
+			this.values = values;
+			this.depth = values[0][0].length;
+			this.width = values[0].length * depth;
+		}
+
+		public Type getType() {
+			return Type.DOUBLE;
+		}
+
+		public double get(int index) {
+			int i = index / width;
+			int r = index - i * width;
+			int j = r / depth;
+			return values[i][j][r - j * depth];
+		}
+
+		public void set(int index, double value) {
+			int i = index / width;
+			int r = index - i * width;
+			int j = r / depth;
+			values[i][j][r - j * depth] = value;
+		}
+
+		public Object getArray() {
+			return values;
+		}
+
+		protected PixelBuffer view(int rows, int cols, int bands, int offset,
+				int rowStride, int colStride) {
+			return new Jagged(rows, cols, bands, offset, rowStride, colStride,
+					values);
+		}
+
+		// the bands of a pixel are in one array: one lookup per pixel
+		public void getRow(int row, double[] dst) {
+			int x = offset + row * rowStride;
+			int d = 0;
+			for (int j = 0; j < cols; j++, x += colStride) {
+				int i = x / width;
+				int r = x - i * width;
+				int c = r / depth;
+				System.arraycopy(values[i][c], r - c * depth, dst, d, bands);
+				d += bands;
+			}
+		}
+	}
+}
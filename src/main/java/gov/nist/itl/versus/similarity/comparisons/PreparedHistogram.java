@@ -0,0 +1,262 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.PixelHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.RGBHistogramDescriptor;
+import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+/*
+ *  A histogram descriptor normalized once, for repeated comparisons.
+ *
+ *	description:	Holds the relative frequencies of an RGB, gray-scale or pixel
+ *					histogram as primitive bins, in the order and with the values
+ *					of MathOpsE.normalizeRgbHistogram() and its siblings, so that
+ *					comparing prepared histograms gives the same results as
+ *					comparing the descriptors. The exception is the five measures
+ *					that compare descriptors on their raw counts (Euclidean, City
+ *					Block, Chebyshev, cosine and intersection, see the int[]
+ *					kernels of MathOpsE): there the two agree to about 1e-14
+ *					relative, as the bins here are rounded before the sums and
+ *					the counts are not. Per-bin invariants used by some
+ *					measures (sqrt(P), ln(P), P*ln(P)) and the L2 norm are
+ *					computed on first use and kept, as is the sparse form of the
+ *					bins (see SparseHistogram).
+ *
+ *					Build one per descriptor and compare it against many others
+ *					with the compare(PreparedHistogram, PreparedHistogram) method
+ *					of the histogram measures.
+ */
+public class PreparedHistogram implements Descriptor {
+
+	// histograms are always validated in full when they are prepared
+	private static final MathOpsE ops = new MathOpsE();
+	static {
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+	}
+
+	private final double[] bins;
+	private final double total;
+	private final int numNonZero;
+
+	// lazily computed invariants
+	private volatile double[] sqrt;
+	private volatile double[] ln;
+	private volatile double[] pLnP;
+	private volatile Double l2Norm;
+	private volatile SparseHistogram sparse;
+
+	/*
+	 * Prepares a histogram of raw counts (or weights): normalizes it to
+	 * relative frequencies as MathOpsE.normalizeHistogram() does.
+	 */
+	public PreparedHistogram(double[] counts) throws Exception {
+		ops.chkargs("PreparedHistogram", counts);
+		int n = counts.length;
+		double t = 0;
+		for (int i = 0; i < n; i++) {
+			if (counts[i] != 0) {
+				t += counts[i];
+			}
+		}
+		bins = new double[n];
+		int nnz = 0;
+		for (int i = 0; i < n; i++) {
+			bins[i] = ops.quotient(counts[i], t);
+			if (bins[i] != 0d)
+				nnz++;
+		}
+		total = t;
+		numNonZero = nnz;
+	}
+
+	/*
+	 * A histogram whose bins are already normalized, e.g. a row of a
+	 * HistogramMatrix. The array is kept, not copied.
+	 */
+	private PreparedHistogram(double[] bins, double total) {
+		int nnz = 0;
+		for (int i = 0; i < bins.length; i++)
+			if (bins[i] != 0d)
+				nnz++;
+		this.bins = bins;
+		this.total = total;
+		this.numNonZero = nnz;
+	}
+
+	static PreparedHistogram ofNormalized(double[] bins, double total) {
+		return new PreparedHistogram(bins, total);
+	}
+
+	public static PreparedHistogram of(RGBHistogramDescriptor d)
+			throws Exception {
+		ops.chkargs("PreparedHistogram", d);
+		return new PreparedHistogram(flatten(d.getHistogram(), d.getNumBins(),
+				d.getNumBands()));
+	}
+
+	public static PreparedHistogram of(GrayscaleHistogramDescriptor d)
+			throws Exception {
+		ops.chkargs("PreparedHistogram", d);
+		int len = d.getNumBins();
+		int[] hist = d.getHistogram();
+		double[] r = new double[len];
+		for (int i = 0; i < len; i++)
+			r[i] = hist[i];
+		return new PreparedHistogram(r);
+	}
+
+	public static PreparedHistogram of(PixelHistogramDescriptor d)
+			throws Exception {
+		if (d == null)
+			throw new SingularityTreatmentException(
+					"PreparedHistogram: first argument null value");
+		return new PreparedHistogram(flatten(d.getHistogram(), d.getNumBins(),
+				d.getNumBands()));
+	}
+
+	/*
+	 * Prepares any of the supported histogram descriptors; a prepared
+	 * histogram is returned as is.
+	 */
+	public static PreparedHistogram of(Descriptor d) throws Exception {
+		if (d instanceof PreparedHistogram)
+			return (PreparedHistogram) d;
+		if (d instanceof RGBHistogramDescriptor)
+			return of((RGBHistogramDescriptor) d);
+		if (d instanceof GrayscaleHistogramDescriptor)
+			return of((GrayscaleHistogramDescriptor) d);
+		if (d instanceof PixelHistogramDescriptor)
+			return of((PixelHistogramDescriptor) d);
+		throw new SWIndependenceException(
+				"PreparedHistogram: not a histogram descriptor: "
+						+ ((d == null) ? "null" : d.getClass().getName()));
+	}
+
+	// bin i, band j at (i * bands) + j, as in MathOpsE.rgbHistogram2Double()
+	private static double[] flatten(int[][] hist, int len, int bands) {
+		double[] r = new double[len * bands];
+		for (int i = 0; i < len; i++) {
+			for (int j = 0; j < bands; j++) {
+				r[(i * bands) + j] = hist[i][j];
+			}
+		}
+		return r;
+	}
+
+	/*
+	 * The normalized bins. The array is shared, not copied, and must not be
+	 * modified.
+	 */
+	public double[] getBins() {
+		return bins;
+	}
+
+	public int getNumBins() {
+		return bins.length;
+	}
+
+	public int getNumNonZero() {
+		return numNonZero;
+	}
+
+	// fraction of the bins that are not 0
+	public double getDensity() {
+		return (bins.length == 0) ? 0d : (double) numNonZero / bins.length;
+	}
+
+	// whether the sparse kernels of MathOpsE are used for this histogram
+	public boolean isSparse() {
+		return getDensity() <= SparseHistogram.SPARSE_DENSITY;
+	}
+
+	// the non-zero bins, see SparseHistogram
+	public SparseHistogram getSparse() throws Exception {
+		SparseHistogram s = sparse;
+		if (s == null) {
+			s = new SparseHistogram(bins);
+			sparse = s;
+		}
+		return s;
+	}
+
+	// sum of the raw counts before normalization
+	public double getTotal() {
+		return total;
+	}
+
+	// sqrt(P) per bin
+	public double[] getSqrt() {
+		double[] s = sqrt;
+		if (s == null) {
+			s = new double[bins.length];
+			for (int i = 0; i < s.length; i++)
+				s[i] = Math.sqrt(bins[i]);
+			sqrt = s;
+		}
+		return s;
+	}
+
+	// ln(P) per bin, with ln(0) = -MAX_VALUE as in MathOpsE.ln()
+	public double[] getLn() throws Exception {
+		double[] l = ln;
+		if (l == null) {
+			l = new double[bins.length];
+			for (int i = 0; i < l.length; i++)
+				l[i] = ops.naturalLog(bins[i]);
+			ln = l;
+		}
+		return l;
+	}
+
+	// P*ln(P) per bin, with 0*ln(0) = 0 as in MathOpsE.a_Ln_b()
+	public double[] getPLnP() throws Exception {
+		double[] l = pLnP;
+		if (l == null) {
+			l = new double[bins.length];
+			for (int i = 0; i < l.length; i++)
+				l[i] = ops.aLnB(bins[i], bins[i]);
+			pLnP = l;
+		}
+		return l;
+	}
+
+	// sqrt(sum of P^2), summed with the saturation rules of MathOpsE.sum()
+	public double getL2Norm() throws Exception {
+		Double norm = l2Norm;
+		if (norm == null) {
+			double d = 0d;
+			for (int i = 0; i < bins.length; i++)
+				d = ops.accumulate(d, bins[i] * bins[i]);
+			norm = Math.sqrt(d);
+			l2Norm = norm;
+		}
+		return norm.doubleValue();
+	}
+
+	@Override
+	public String getType() {
+		return this.getClass().toString();
+	}
+
+	@Override
+	public String getName() {
+		return "PreparedHistogram";
+	}
+}
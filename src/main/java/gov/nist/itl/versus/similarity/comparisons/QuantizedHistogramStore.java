@@ -0,0 +1,315 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import java.util.Arrays;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.ChebyshevLInfMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CosineMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.InnerProductMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.IntersectionMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.SquaredEuclideanMeasure;
+
+/*
+ *  Histograms kept as 8 or 16-bit fixed point, in one primitive array.
+ *
+ *	description:	Every row is scaled by its largest bin: bin x is kept as
+ *					round(x / step) with step = max / levels (255 or 65535
+ *					levels), and read back as q * step. Empty bins stay exactly
+ *					0, and no bin read back is off by more than
+ *					delta = step / 2. A million 768-bin histograms take 768 MB
+ *					at 8 bits and 1.5 GB at 16 bits, against 6 GB as double[]
+ *					and about 18 GB as Double[].
+ *
+ *					The MathOpsE kernels for a query against the store measure
+ *					the query (exact) against the rows read back. Against the
+ *					measurement with the exact row, for n bins and the error
+ *					bounds errorBound() returns:
+ *
+ *					city block, intersection:	n * delta
+ *					Euclidean:					sqrt(n) * delta
+ *					squared Euclidean:			e (2 sqrt(v) + e), e = sqrt(n) * delta
+ *					Chebyshev:					delta
+ *					inner product:				delta * sum |P|
+ *					cosine:						(pi / 2) e / (|x'| - e)
+ *
+ *					where v is the quantized measurement and |x'| the norm of
+ *					the row read back; all up to the rounding of the sums. Only
+ *					bins that are not negative can be stored.
+ */
+public class QuantizedHistogramStore {
+
+	public enum Precision {
+		FIXED8(255), FIXED16(65535);
+
+		private final int levels;
+
+		private Precision(int levels) {
+			this.levels = levels;
+		}
+
+		public int getLevels() {
+			return levels;
+		}
+	}
+
+	private static final MathOpsE ops = new MathOpsE();
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int numBins;
+	private final Precision precision;
+	private int numRows;
+	// one of the two, numBins values per row
+	private byte[] bytes;
+	private short[] shorts;
+	private double[] steps;
+
+	public QuantizedHistogramStore(int numBins, Precision precision)
+			throws Exception {
+		if (numBins <= 0)
+			throw new MathCompatibilityException(
+					"QuantizedHistogramStore: " + numBins + " bins");
+		if (precision == null)
+			throw new SingularityTreatmentException(
+					"QuantizedHistogramStore: null precision");
+		this.numBins = numBins;
+		this.precision = precision;
+		this.steps = new double[INITIAL_CAPACITY];
+		if (precision == Precision.FIXED8)
+			bytes = new byte[INITIAL_CAPACITY * numBins];
+		else
+			shorts = new short[INITIAL_CAPACITY * numBins];
+	}
+
+	public static QuantizedHistogramStore of(HistogramMatrix m,
+			Precision precision) throws Exception {
+		if (m == null)
+			throw new SingularityTreatmentException(
+					"QuantizedHistogramStore: null matrix");
+		QuantizedHistogramStore store = new QuantizedHistogramStore(m
+				.getNumBins(), precision);
+		store.reserve(m.getNumRows());
+		for (int r = 0; r < m.getNumRows(); r++)
+			store.add(m.getData(), m.getOffset(r));
+		return store;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	// bytes held by the bins and scales of the rows stored
+	public long getMemorySize() {
+		long perBin = (precision == Precision.FIXED8) ? 1 : 2;
+		return (long) numRows * (numBins * perBin + 8);
+	}
+
+	// largest error of a bin of row r read back
+	public double getDelta(int r) throws Exception {
+		chkrow(r);
+		return steps[r] / 2d;
+	}
+
+	// stores the bins of h as a new row and returns its index
+	public int add(PreparedHistogram h) throws Exception {
+		if (h == null)
+			throw new SingularityTreatmentException(
+					"QuantizedHistogramStore: null histogram");
+		if (h.getNumBins() != numBins)
+			throw new MathCompatibilityException("QuantizedHistogramStore: "
+					+ h.getNumBins() + " bins in a store of " + numBins);
+		return add(h.getBins(), 0);
+	}
+
+	private int add(double[] x, int off) throws Exception {
+		double max = 0d;
+		for (int i = 0; i < numBins; i++) {
+			double v = x[off + i];
+			if (!(v >= 0d) || Double.isInfinite(v))
+				throw new MathCompatibilityException(
+						"QuantizedHistogramStore: bin " + v
+								+ " cannot be stored");
+			max = (v > max) ? v : max;
+		}
+		reserve(numRows + 1);
+		int r = numRows;
+		int levels = precision.getLevels();
+		double step = max / levels;
+		double scale = (max > 0d) ? levels / max : 0d;
+		int o = r * numBins;
+		for (int i = 0; i < numBins; i++) {
+			int q = (int) Math.min(levels, Math.round(x[off + i] * scale));
+			if (bytes != null)
+				bytes[o + i] = (byte) q;
+			else
+				shorts[o + i] = (short) q;
+		}
+		steps[r] = step;
+		numRows++;
+		return r;
+	}
+
+	private void reserve(int rows) throws Exception {
+		if (rows <= steps.length)
+			return;
+		if ((long) rows * numBins > Integer.MAX_VALUE)
+			throw new MathCompatibilityException("QuantizedHistogramStore: "
+					+ rows + " x " + numBins + " bins do not fit in an array");
+		int capacity = (int) Math.min(Integer.MAX_VALUE / numBins, Math.max(
+				rows, 2L * steps.length));
+		steps = Arrays.copyOf(steps, capacity);
+		if (bytes != null)
+			bytes = Arrays.copyOf(bytes, capacity * numBins);
+		else
+			shorts = Arrays.copyOf(shorts, capacity * numBins);
+	}
+
+	/*
+	 * Reads row r back into row (allocated when null or too short) and
+	 * returns it.
+	 */
+	public double[] decode(int r, double[] row) throws Exception {
+		chkrow(r);
+		if (row == null || row.length != numBins)
+			row = new double[numBins];
+		double step = steps[r];
+		int o = r * numBins;
+		if (bytes != null) {
+			for (int i = 0; i < numBins; i++)
+				row[i] = (bytes[o + i] & 0xff) * step;
+		} else {
+			for (int i = 0; i < numBins; i++)
+				row[i] = (shorts[o + i] & 0xffff) * step;
+		}
+		return row;
+	}
+
+	/*
+	 * Row r as read back, as a prepared histogram over those bins (not
+	 * normalized again).
+	 */
+	public PreparedHistogram getRow(int r) throws Exception {
+		double[] row = decode(r, null);
+		double total = 0d;
+		for (int i = 0; i < row.length; i++)
+			total += row[i];
+		return PreparedHistogram.ofNormalized(row, total);
+	}
+
+	// whether compare() has a kernel for the measure
+	public static boolean isSupported(HistogramMeasure measure) {
+		return measure instanceof EuclideanL2Measure
+				|| measure instanceof CityBlockL1Measure
+				|| measure instanceof ChebyshevLInfMeasure
+				|| measure instanceof SquaredEuclideanMeasure
+				|| measure instanceof IntersectionMeasure
+				|| measure instanceof InnerProductMeasure
+				|| measure instanceof CosineMeasure;
+	}
+
+	public double[] compare(HistogramMeasure measure, PreparedHistogram query)
+			throws Exception {
+		double[] result = new double[numRows];
+		compare(measure, query, 0, numRows, result);
+		return result;
+	}
+
+	/*
+	 * Measures query against rows from..to-1 as read back, into
+	 * result[from..to-1].
+	 */
+	public void compare(HistogramMeasure measure, PreparedHistogram query,
+			int from, int to, double[] result) throws Exception {
+		if (measure instanceof EuclideanL2Measure)
+			ops.histogram_measure_euclidean(query, this, from, to, result);
+		else if (measure instanceof CityBlockL1Measure)
+			ops.histogram_measure_city_block(query, this, from, to, result);
+		else if (measure instanceof ChebyshevLInfMeasure)
+			ops.histogram_measure_chebyshev(query, this, from, to, result);
+		else if (measure instanceof SquaredEuclideanMeasure)
+			ops.histogram_measure_squared_euclidean(query, this, from, to,
+					result);
+		else if (measure instanceof IntersectionMeasure)
+			ops.histogram_measure_intersection_IS(query, this, from, to,
+					result);
+		else if (measure instanceof InnerProductMeasure)
+			ops.histogram_measure_inner_product(query, this, from, to, result);
+		else if (measure instanceof CosineMeasure)
+			ops.histogram_measure_cosine(query, this, from, to, result);
+		else
+			throw new MathCompatibilityException("QuantizedHistogramStore: "
+					+ ((measure == null) ? "null measure" : "no kernel for "
+							+ measure.getName()));
+	}
+
+	/*
+	 * Largest difference between value, the measurement of query against row
+	 * r as read back, and the measurement against the row as it was added.
+	 */
+	public double errorBound(HistogramMeasure measure,
+			PreparedHistogram query, int r, double value) throws Exception {
+		double delta = getDelta(r);
+		double e = Math.sqrt(numBins) * delta;
+		if (measure instanceof CityBlockL1Measure
+				|| measure instanceof IntersectionMeasure)
+			return numBins * delta;
+		if (measure instanceof EuclideanL2Measure)
+			return e;
+		if (measure instanceof SquaredEuclideanMeasure)
+			return e * (2d * Math.sqrt(value) + e);
+		if (measure instanceof ChebyshevLInfMeasure)
+			return delta;
+		if (measure instanceof InnerProductMeasure) {
+			double[] p = query.getBins();
+			double s = 0d;
+			for (int i = 0; i < p.length; i++)
+				s += Math.abs(p[i]);
+			return delta * s;
+		}
+		if (measure instanceof CosineMeasure) {
+			double[] x = decode(r, null);
+			double norm = 0d;
+			for (int i = 0; i < x.length; i++)
+				norm += x[i] * x[i];
+			norm = Math.sqrt(norm);
+			return (norm > e) ? Math.min(2d, Math.PI / 2d * e / (norm - e))
+					: 2d;
+		}
+		throw new MathCompatibilityException("QuantizedHistogramStore: "
+				+ ((measure == null) ? "null measure" : "no kernel for "
+						+ measure.getName()));
+	}
+
+	private void chkrow(int r) throws Exception {
+		if (r < 0 || r >= numRows)
+			throw new MathCompatibilityException("QuantizedHistogramStore: row "
+					+ r + " not in [0, " + numRows + ")");
+	}
+}
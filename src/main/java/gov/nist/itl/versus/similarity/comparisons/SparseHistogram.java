@@ -0,0 +1,164 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons;
+
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+
+/*
+ *  A histogram stored as its non-zero bins only.
+ *
+ *	description:	Bin indices in increasing order, with the value of each bin.
+ *					The sparse kernels of MathOpsE merge two such histograms on
+ *					their indices, so their cost grows with the number of
+ *					non-zero bins instead of the number of bins. This pays off
+ *					for 16-bit and 32-bit image histograms and label histograms,
+ *					where most bins are empty.
+ *
+ *					PreparedHistogram keeps a sparse form of its bins and MathOpsE
+ *					uses it when both histograms are at most SPARSE_DENSITY full.
+ */
+public class SparseHistogram {
+
+	// largest fraction of non-zero bins for which the sparse kernels are used
+	public final static double SPARSE_DENSITY = 0.25;
+
+	private static final MathOpsE ops = new MathOpsE();
+	static {
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+	}
+
+	private final int numBins;
+	private final int[] indices;
+	private final double[] values;
+
+	/*
+	 * Sparse form of a dense histogram, keeping the bins that are not 0.
+	 */
+	public SparseHistogram(double[] bins) throws Exception {
+		ops.chkargs("SparseHistogram", bins);
+		int nnz = 0;
+		for (int i = 0; i < bins.length; i++)
+			if (bins[i] != 0d)
+				nnz++;
+		numBins = bins.length;
+		indices = new int[nnz];
+		values = new double[nnz];
+		int k = 0;
+		for (int i = 0; i < bins.length; i++) {
+			if (bins[i] != 0d) {
+				indices[k] = i;
+				values[k] = bins[i];
+				k++;
+			}
+		}
+	}
+
+	/*
+	 * Sparse histogram of numBins bins from its non-zero bins: indices must
+	 * be increasing and below numBins. The arrays are kept, not copied.
+	 */
+	public SparseHistogram(int numBins, int[] indices, double[] values)
+			throws Exception {
+		if (indices == null || values == null)
+			throw new MathCompatibilityException(
+					"SparseHistogram: null indices or values");
+		if (indices.length != values.length)
+			throw new MathCompatibilityException(
+					"SparseHistogram: indices and values differ in length");
+		ops.chkargs("SparseHistogram", values);
+		int last = -1;
+		for (int k = 0; k < indices.length; k++) {
+			if (indices[k] <= last || indices[k] >= numBins)
+				throw new MathCompatibilityException(
+						"SparseHistogram: index " + indices[k] + " at " + k
+								+ " is not increasing or not below " + numBins);
+			last = indices[k];
+		}
+		this.numBins = numBins;
+		this.indices = indices;
+		this.values = values;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	public int getNumNonZero() {
+		return indices.length;
+	}
+
+	// fraction of the bins that are stored
+	public double getDensity() {
+		return (numBins == 0) ? 0d : (double) indices.length / numBins;
+	}
+
+	// the arrays are shared, not copied, and must not be modified
+	public int[] getIndices() {
+		return indices;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+
+	public double[] toDense() {
+		double[] d = new double[numBins];
+		for (int k = 0; k < indices.length; k++)
+			d[indices[k]] = values[k];
+		return d;
+	}
+
+	/*
+	 * Merges two sparse histograms on their indices: the values of both at
+	 * every bin that is non-zero in either of them, in bin order, as two
+	 * arrays of equal length. Bins that are zero in both are left out.
+	 */
+	static double[][] union(SparseHistogram P, SparseHistogram Q) {
+		int[] pi = P.indices;
+		int[] qi = Q.indices;
+		double[] pv = P.values;
+		double[] qv = Q.values;
+		int np = pi.length;
+		int nq = qi.length;
+		double[] a = new double[np + nq];
+		double[] b = new double[np + nq];
+		int i = 0, j = 0, k = 0;
+		while (i < np && j < nq) {
+			if (pi[i] < qi[j]) {
+				a[k] = pv[i++];
+			} else if (pi[i] > qi[j]) {
+				b[k] = qv[j++];
+			} else {
+				a[k] = pv[i++];
+				b[k] = qv[j++];
+			}
+			k++;
+		}
+		while (i < np)
+			a[k++] = pv[i++];
+		while (j < nq)
+			b[k++] = qv[j++];
+		if (k < a.length) {
+			double[] a2 = new double[k];
+			double[] b2 = new double[k];
+			System.arraycopy(a, 0, a2, 0, k);
+			System.arraycopy(b, 0, b2, 0, k);
+			a = a2;
+			b = b2;
+		}
+		return new double[][] { a, b };
+	}
+}
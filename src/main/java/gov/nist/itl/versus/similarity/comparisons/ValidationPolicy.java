@@ -0,0 +1,36 @@
+package gov.nist.itl.versus.similarity.comparisons;
+
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ */
+
+/*
+ *  How MathOpsE validates the arrays handed to a measure.
+ *
+ *	description:	STRICT checks every element of every argument for NaN and
+ *					Infinity, in a single pass at the entry of the measure.
+ *					SAMPLED checks only a fixed number of evenly spaced elements
+ *					(always including the first and the last one).
+ *					TRUSTED skips element checks entirely, e.g. for histograms
+ *					that were validated once when their descriptor was created.
+ *
+ *					Null arguments are rejected and the final result of a measure
+ *					is checked under every policy.
+ *
+ *	@see			MathOpsE#setValidationPolicy(ValidationPolicy)
+ *	@see			MathOpsE#setMeasureValidationPolicy(String, ValidationPolicy)
+ */
+public enum ValidationPolicy {
+	STRICT, SAMPLED, TRUSTED;
+
+	// number of elements checked per argument under SAMPLED
+	public static final int SAMPLE_SIZE = 32;
+}
@@ -0,0 +1,123 @@
+package gov.nist.itl.versus.similarity.comparisons;
+
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ */
+
+/*
+ *  Lane-parallel reductions for the elementwise-reduce histogram measures.
+ *
+ *	description:	Each reduction keeps LANES independent accumulators, one per
+ *					bin i mod LANES, and combines them at the end. This removes
+ *					the loop-carried dependency of the scalar kernels, so the JIT
+ *					can keep one accumulator per SIMD lane (or per pipeline
+ *					slot) instead of waiting on a single running sum.
+ *
+ *					Sums are plain IEEE additions in a different order than the
+ *					scalar kernels, so results may differ in the last bits. A
+ *					result that is not finite is returned as is; MathOpsE then
+ *					recomputes it with the scalar kernel, which applies the
+ *					saturation and exception rules of sum().
+ *
+ *					Used by MathOpsE when vector kernels are enabled, see
+ *					MathOpsE.setVectorKernels(boolean).
+ */
+final class VectorKernels {
+
+	/*
+	 * Chebyshev has no lane kernel: its scalar loop has no per-term checks
+	 * and a max reduction split into lanes measured no faster.
+	 */
+
+	// independent accumulators per reduction (4 doubles = one 256-bit vector)
+	static final int LANES = 4;
+
+	// below this many bins the scalar kernels are used
+	static final int MIN_LENGTH = 4 * LANES;
+
+	private VectorKernels() {
+	}
+
+	// sum |P-Q|^2 (Euclidean before the root, Squared Euclidean)
+	static double sumSquaredDifference(double[] P, double[] Q) {
+		int n = P.length;
+		int m = n - n % LANES;
+		double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+		for (int i = 0; i < m; i += LANES) {
+			double a0 = P[i] - Q[i];
+			double a1 = P[i + 1] - Q[i + 1];
+			double a2 = P[i + 2] - Q[i + 2];
+			double a3 = P[i + 3] - Q[i + 3];
+			s0 += a0 * a0;
+			s1 += a1 * a1;
+			s2 += a2 * a2;
+			s3 += a3 * a3;
+		}
+		for (int i = m; i < n; i++) {
+			double a = P[i] - Q[i];
+			s0 += a * a;
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// sum |P-Q| (City Block)
+	static double sumAbsDifference(double[] P, double[] Q) {
+		int n = P.length;
+		int m = n - n % LANES;
+		double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+		for (int i = 0; i < m; i += LANES) {
+			s0 += Math.abs(P[i] - Q[i]);
+			s1 += Math.abs(P[i + 1] - Q[i + 1]);
+			s2 += Math.abs(P[i + 2] - Q[i + 2]);
+			s3 += Math.abs(P[i + 3] - Q[i + 3]);
+		}
+		for (int i = m; i < n; i++)
+			s0 += Math.abs(P[i] - Q[i]);
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// sum min(P,Q) (Intersection)
+	static double sumMin(double[] P, double[] Q) {
+		int n = P.length;
+		int m = n - n % LANES;
+		double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+		for (int i = 0; i < m; i += LANES) {
+			s0 += (P[i] < Q[i]) ? P[i] : Q[i];
+			s1 += (P[i + 1] < Q[i + 1]) ? P[i + 1] : Q[i + 1];
+			s2 += (P[i + 2] < Q[i + 2]) ? P[i + 2] : Q[i + 2];
+			s3 += (P[i + 3] < Q[i + 3]) ? P[i + 3] : Q[i + 3];
+		}
+		for (int i = m; i < n; i++)
+			s0 += (P[i] < Q[i]) ? P[i] : Q[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// sum P*Q (Inner Product)
+	static double sumProduct(double[] P, double[] Q) {
+		int n = P.length;
+		int m = n - n % LANES;
+		double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+		for (int i = 0; i < m; i += LANES) {
+			s0 += P[i] * Q[i];
+			s1 += P[i + 1] * Q[i + 1];
+			s2 += P[i + 2] * Q[i + 2];
+			s3 += P[i + 3] * Q[i + 3];
+		}
+		for (int i = m; i < n; i++)
+			s0 += P[i] * Q[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// a finite lane result, within the range sum() saturates to
+	static boolean usable(double d) {
+		return d > -Double.MAX_VALUE && d < Double.MAX_VALUE;
+	}
+}
@@ -20,6 +20,7 @@ package gov.nist.itl.versus.similarity.comparisons.adapter;
 
 import edu.illinois.ncsa.versus.adapter.HasPixels;
 import gov.nist.itl.versus.similarity.comparisons.ImageData;
+import gov.nist.itl.versus.similarity.comparisons.LabelIndex;
 
 /**
  *  This interface allows one to manipulate anything that has "labels". 
@@ -39,11 +40,18 @@ import gov.nist.itl.versus.similarity.comparisons.ImageData;
  *  This is an extension of the HasPixels interface. As such, it should implement methods
  *  so that anyone using this interface can process pixels to manipulate labels no matter the source. 
  * 
+ *  The segmented image itself, whose pixel values are the labels, is given by
+ *  getLabelImage(); the labeled measures count all the labels from it at once.
+ *  getLabelIndex() gives the pixels of each label present, from one pass.
+ *  Labels are integers.
+ * 
  *  Where pixel methods are implemented, the first dimension is rows, second is columns, and third is bands.
  * 
  */
 public interface HasLabels extends HasPixels 
 {	
+	public ImageData getLabelImage() throws Exception;
+	public LabelIndex getLabelIndex() throws Exception;
 	public ImageData getLabel( double pixel_label_value );
 	public ImageData[] getLabels();
 }
\ No newline at end of file
@@ -26,7 +26,11 @@ import org.apache.commons.logging.LogFactory;
 
 import edu.illinois.ncsa.versus.adapter.impl.ImageObjectAdapter;
 import gov.nist.itl.versus.similarity.comparisons.ImageData;
+import gov.nist.itl.versus.similarity.comparisons.LabelIndex;
+import gov.nist.itl.versus.similarity.comparisons.PixelBuffer;
 import gov.nist.itl.versus.similarity.comparisons.adapter.HasLabels;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabeledThreeDimensionalDoubleArrayFeature;
 
 /**
  * Simple adapter encapsulating Im2Learn ImageObject.
@@ -35,7 +39,6 @@ import gov.nist.itl.versus.similarity.comparisons.adapter.HasLabels;
 public class LabeledImageObjectAdapter extends ImageObjectAdapter implements HasLabels 
 {
 	protected ImageObject o;
-	private ImageData ops = new ImageData();
 	private static Log log = LogFactory.getLog(LabeledImageObjectAdapter.class);
 
 	/**
@@ -58,29 +61,93 @@ public class LabeledImageObjectAdapter extends ImageObjectAdapter implements Has
 	}
 
 	/*
-	 *  Provides access to a given label of a segmented image.
+	 *  The segmented image and its label index, made in one pass over the
+	 *  ImageObject the first time either is asked for, and again only once
+	 *  another ImageObject is loaded. Labels are integers: an image with
+	 *  any other pixel value is rejected.
 	 */
-	@Override
-	public ImageData getLabel( double pixel_label_value ) 
+	private ImageObject indexed;
+	private ImageData labelImage;
+	private LabelIndex labelIndex;
+
+	private void index() throws Exception 
 	{
-		ImageData r = null;	
 		o = getImageObject();
+		if ( o == indexed && labelIndex != null ) 
+			return;
 		int numBands 	= o.getNumBands();
 		int numRows 	= o.getNumRows();
 		int numCols 	= o.getNumCols();
-		double[][][] pixels = new double[numRows][numCols][numBands];
 		
-		for (int band = 0; band < numBands; band++) {
-			for (int row = 0; row < numRows; row++) {
-				for (int col = 0; col < numCols; col++) {
-					pixels[row][col][band] = o.getDouble(row, col, band);
+		// labels are kept in the narrowest buffer that holds them exactly
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		boolean integral = true;
+		for (int row = 0; row < numRows; row++) {
+			for (int col = 0; col < numCols; col++) {
+				for (int band = 0; band < numBands; band++) {
+					double v = o.getDouble(row, col, band);
+					min = Math.min(min, v);
+					max = Math.max(max, v);
+					integral &= (v == Math.rint(v));
 				}
 			}
 		}
 		
-		r = new ImageData(pixels);
-		r = ops.match(r, pixel_label_value );
-		return r;
+		if ( !integral ) 
+			throw new MathCompatibilityException("LabeledImageObjectAdapter: labels must be integers");
+		
+		PixelBuffer pixels = PixelBuffer.allocate(
+				PixelBuffer.narrowest(min, max, true), numRows, numCols, numBands);
+		for (int row = 0; row < numRows; row++) {
+			for (int col = 0; col < numCols; col++) {
+				for (int band = 0; band < numBands; band++) {
+					pixels.set(row, col, band, o.getDouble(row, col, band));
+				}
+			}
+		}
+		labelImage = new ImageData(pixels);
+		labelIndex = LabelIndex.of(labelImage);
+		indexed = o;
+	}
+
+	/*
+	 *  Provides access to the segmented image, its pixel values being the labels.
+	 *  Each call gives a new copy of the image.
+	 */
+	@Override
+	public ImageData getLabelImage() throws Exception 
+	{
+		index();
+		return new ImageData(labelImage.getBuffer().copy());
+	}
+
+	/*
+	 *  Provides access to the pixels of each label present in the segmented image.
+	 */
+	@Override
+	public LabelIndex getLabelIndex() throws Exception 
+	{
+		index();
+		return labelIndex;
+	}
+
+	/*
+	 *  Provides access to a given label of a segmented image. The label must
+	 *  be an integer; an image that cannot be indexed, e.g. one with a pixel
+	 *  that is not an integer, is logged and rejected.
+	 */
+	@Override
+	public ImageData getLabel( double pixel_label_value ) 
+	{
+		if ( pixel_label_value != Math.rint(pixel_label_value) || Math.abs(pixel_label_value) > Integer.MAX_VALUE ) 
+			throw new IllegalArgumentException("label is not an integer: " + pixel_label_value);
+		try {
+			return getLabelIndex().getPlane( (int)pixel_label_value );
+		} catch (Exception e) {
+			log.error("LabeledImageObjectAdapter: cannot index the labels", e);
+			throw new IllegalStateException(e.getMessage(), e);
+		}
 	}
 	
 	/*
@@ -89,7 +156,7 @@ public class LabeledImageObjectAdapter extends ImageObjectAdapter implements Has
 	@Override
 	public ImageData[] getLabels() 
 	{
-		ImageData[] r = new ImageData[256];	// BJL: Need to revisit this assumption of 256 pixel values
+		ImageData[] r = new ImageData[LabeledThreeDimensionalDoubleArrayFeature.NUM_LABELS];	// BJL: Need to revisit this assumption of 256 pixel values
 		for (int i=0; i < r.length; i++) {
 			r[i] = getLabel((double)i);
 		}
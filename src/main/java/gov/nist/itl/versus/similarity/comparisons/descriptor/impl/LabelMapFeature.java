@@ -0,0 +1,65 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons.descriptor.impl;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import gov.nist.itl.versus.similarity.comparisons.LabelMap;
+
+/*
+ *  A segmented image as its label map (see LabelMap): one byte, short or int
+ *  per pixel by largest label, and the sorted labels present. Holds what the
+ *  256 label planes of LabeledThreeDimensionalDoubleArrayFeature hold, and is
+ *  compared label by label by the LabeledMeasure classes in the same pass.
+ */
+public class LabelMapFeature implements Descriptor
+{
+	public final String type = this.getClass().toString();
+	private LabelMap map;
+
+	public LabelMapFeature() {
+		map = null;
+	}
+
+	public LabelMapFeature(LabelMap map) {
+		this.map = map;
+	}
+
+	public LabelMap getLabelMap() 
+	{
+		return map;
+	}
+
+	public void setLabelMap( LabelMap map ) 
+	{
+		this.map = map;
+	}
+
+	// the labels present, in increasing order
+	public int[] getLabels() 
+	{
+		return map.getLabels();
+	}
+
+	@Override
+	public String getType() {
+		return type;
+	}
+
+	@Override
+	public String getName() {
+		return "LabelMap";
+	}
+}
@@ -21,12 +21,15 @@ package gov.nist.itl.versus.similarity.comparisons.descriptor.impl;
 
 import edu.illinois.ncsa.versus.descriptor.impl.ThreeDimensionalDoubleArrayFeature;
 import gov.nist.itl.versus.similarity.comparisons.ImageData;
+import gov.nist.itl.versus.similarity.comparisons.LabelIndex;
 
 public class LabeledThreeDimensionalDoubleArrayFeature extends ThreeDimensionalDoubleArrayFeature
 {
 	public final String type = this.getClass().toString();
 	private ImageData label;
 	private ImageData[] labels;
+	private LabelIndex labelIndex;
+	public static final int NUM_LABELS = 256;
 	
 	public LabeledThreeDimensionalDoubleArrayFeature() {
 		label = null;
@@ -40,6 +43,11 @@ public class LabeledThreeDimensionalDoubleArrayFeature extends ThreeDimensionalD
 	public LabeledThreeDimensionalDoubleArrayFeature(ImageData[] labels) {
 		this.labels = labels;
 	}
+
+	public LabeledThreeDimensionalDoubleArrayFeature(ImageData label, LabelIndex labelIndex) {
+		this.label = label;
+		this.labelIndex = labelIndex;
+	}
 	
 	public LabeledThreeDimensionalDoubleArrayFeature(double[][][] values) {
 		super(values);
@@ -50,11 +58,36 @@ public class LabeledThreeDimensionalDoubleArrayFeature extends ThreeDimensionalD
 		return label;
 	}
 	
+	/*
+	 *  The label planes; made from the label index the first time they are
+	 *  asked for, when the feature was extracted with an index only.
+	 */
 	public ImageData[] getLabels() 
 	{
+		if ( labels == null && labelIndex != null ) {
+			ImageData[] planes = new ImageData[NUM_LABELS];
+			for (int i=0; i < planes.length; i++) {
+				planes[i] = labelIndex.getPlane(i);
+			}
+			labels = planes;
+		}
 		return labels;
 	}
 
+	public LabelIndex getLabelIndex() 
+	{
+		return labelIndex;
+	}
+
+	/*
+	 *  Number of labels compared: one per label plane, or the 256 pixel values
+	 *  of an 8-bit label image when there are no planes.
+	 */
+	public int getNumLabels() 
+	{
+		return (labels != null) ? labels.length : NUM_LABELS;
+	}
+
 	public void setLabel( ImageData label ) 
 	{
 		this.label = label;
@@ -64,6 +97,11 @@ public class LabeledThreeDimensionalDoubleArrayFeature extends ThreeDimensionalD
 	{
 		this.labels = labels;
 	}	
+
+	public void setLabelIndex( LabelIndex labelIndex ) 
+	{
+		this.labelIndex = labelIndex;
+	}
 	
 	@Override
 	public String getType() {
@@ -79,6 +117,7 @@ public class LabeledThreeDimensionalDoubleArrayFeature extends ThreeDimensionalD
 		LabeledThreeDimensionalDoubleArrayFeature f = new LabeledThreeDimensionalDoubleArrayFeature();
 		f.setLabel(label);
 		f.setLabels(labels);
+		f.setLabelIndex(labelIndex);
 		return f;
 	}
 }
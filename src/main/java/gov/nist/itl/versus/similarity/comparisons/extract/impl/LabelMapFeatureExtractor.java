@@ -0,0 +1,82 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.extract.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.illinois.ncsa.versus.UnsupportedTypeException;
+import edu.illinois.ncsa.versus.adapter.Adapter;
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.extract.Extractor;
+import edu.illinois.ncsa.versus.utility.HasCategory;
+import gov.nist.itl.versus.similarity.comparisons.LabelMap;
+import gov.nist.itl.versus.similarity.comparisons.adapter.HasLabels;
+import gov.nist.itl.versus.similarity.comparisons.adapter.impl.LabeledImageObjectAdapter;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabelMapFeature;
+
+public class LabelMapFeatureExtractor implements Extractor, HasCategory {
+
+    private LabelMapFeature extract(HasLabels adapter) throws Exception {
+        return new LabelMapFeature(LabelMap.of(adapter.getLabelImage()));
+    }
+
+    @Override
+    public LabeledImageObjectAdapter newAdapter() {
+        return new LabeledImageObjectAdapter();
+    }
+
+    @Override
+    public String getName() {
+        return "Pixels2LabelMap";
+    }
+
+    @Override
+    public Descriptor extract(Adapter adapter) throws Exception {
+        if (adapter instanceof HasLabels) {
+            HasLabels hasLabels = (HasLabels) adapter;
+            return extract(hasLabels);
+        } else {
+            throw new UnsupportedTypeException();
+        }
+    }
+
+    @Override
+    public Set<Class<? extends Adapter>> supportedAdapters() {
+        Set<Class<? extends Adapter>> adapters = new HashSet<Class<? extends Adapter>>();
+        adapters.add(HasLabels.class);
+        return adapters;
+    }
+
+    @Override
+    public Class<? extends Descriptor> getFeatureType() {
+        return LabelMapFeature.class;
+    }
+
+    @Override
+    public boolean hasPreview() {
+        return false;
+    }
+
+    @Override
+    public String previewName() {
+        return null;
+    }
+
+    @Override
+    public String getCategory() {
+        return "2D";
+    }
+}
@@ -34,8 +34,9 @@ import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabeledThreeDi
 
 public class LabeledArrayFeatureExtractor implements Extractor, HasCategory {
 
-    private LabeledThreeDimensionalDoubleArrayFeature extract(HasLabels adapter) {
-        return new LabeledThreeDimensionalDoubleArrayFeature(adapter.getLabels());
+    private LabeledThreeDimensionalDoubleArrayFeature extract(HasLabels adapter) throws Exception {
+        // the label planes are made from the index only if they are asked for
+        return new LabeledThreeDimensionalDoubleArrayFeature(adapter.getLabelImage(), adapter.getLabelIndex());
     }
 
     @Override
@@ -49,7 +50,7 @@ public class LabeledArrayFeatureExtractor implements Extractor, HasCategory {
     }
 
     @Override
-    public Descriptor extract(Adapter adapter) throws UnsupportedTypeException {
+    public Descriptor extract(Adapter adapter) throws Exception {
         if (adapter instanceof HasLabels) {
             HasLabels hasLabels = (HasLabels) adapter;
             return extract(hasLabels);
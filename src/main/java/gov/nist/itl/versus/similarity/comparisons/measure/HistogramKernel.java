@@ -0,0 +1,31 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons.measure;
+
+import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+
+/*
+ *  The MathOpsE kernel of a histogram measure.
+ *
+ *	description:	Lets HistogramBatch.compareRows() run the kernel of a
+ *					measure over the rows of a HistogramMatrix on an instance
+ *					of MathOpsE of its own choosing.
+ */
+public interface HistogramKernel {
+	public double measure(MathOpsE ops, PreparedHistogram P, PreparedHistogram Q)
+			throws Exception;
+}
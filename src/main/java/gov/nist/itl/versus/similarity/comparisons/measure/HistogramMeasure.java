@@ -0,0 +1,40 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons.measure;
+
+import edu.illinois.ncsa.versus.measure.Measure;
+import edu.illinois.ncsa.versus.measure.SimilarityNumber;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+
+public interface HistogramMeasure extends Measure {
+	public SimilarityNumber compare(PreparedHistogram feature1, PreparedHistogram feature2)
+			throws Exception;
+
+	/*
+	 * One measurement per row of candidates, each equal to
+	 * compare(query, candidates.getRow(r)).
+	 */
+	public double[] compare(PreparedHistogram query, HistogramMatrix candidates)
+			throws Exception;
+
+	/*
+	 * Measurements of rows from..to-1 of candidates, into result[from..to-1].
+	 * Calls on disjoint row ranges may run concurrently (see HistogramBatch).
+	 */
+	public void compare(PreparedHistogram query, HistogramMatrix candidates,
+			int from, int to, double[] result) throws Exception;
+}
@@ -0,0 +1,97 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ *
+ *  @version 1.0
+ */
+
+package gov.nist.itl.versus.similarity.comparisons.measure;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.measure.SimilarityNumber;
+import gov.nist.itl.versus.similarity.comparisons.ContingencyTable;
+import gov.nist.itl.versus.similarity.comparisons.LabelMap;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabelMapFeature;
+import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
+import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
+
+/*
+ *  The LabelMapFeature handling shared by the LabeledMeasure classes.
+ *
+ *	description:	compare(LabelMapFeature, LabelMapFeature) gives one result
+ *					per label present in either map, in the increasing order
+ *					of labels(): a 16-bit mask with 3 labels gives 3 results,
+ *					not one per value up to its largest label. The tables of
+ *					all the labels come from one pass over the two maps (see
+ *					ContingencyTable.forLabel); a negative label cannot be
+ *					counted in it and is rejected with a
+ *					MathCompatibilityException.
+ */
+public final class LabelMapComparison {
+
+	private LabelMapComparison() {
+	}
+
+	// the label map of a LabelMapFeature
+	public static LabelMap map(Descriptor feature) throws Exception {
+		LabelMap map = (feature instanceof LabelMapFeature) ? ((LabelMapFeature) feature)
+				.getLabelMap() : null;
+		if (map == null)
+			throw new SWIndependenceException(
+					"failed to create object for LabelMapFeature label map");
+		return map;
+	}
+
+	// the labels present in either map, in increasing order
+	public static int[] labels(LabelMap map1, LabelMap map2) {
+		int[] a = map1.getLabels();
+		int[] b = map2.getLabels();
+		int[] r = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j]))
+				r[n++] = a[i++];
+			else if (i == a.length || b[j] < a[i])
+				r[n++] = b[j++];
+			else {
+				r[n++] = a[i++];
+				j++;
+			}
+		}
+		int[] labels = new int[n];
+		System.arraycopy(r, 0, labels, 0, n);
+		return labels;
+	}
+
+	public static int[] labels(LabelMapFeature feature1,
+			LabelMapFeature feature2) throws Exception {
+		return labels(map(feature1), map(feature2));
+	}
+
+	// the table of each of labels(feature1, feature2)
+	public static ContingencyTable[] perLabel(LabelMapFeature feature1,
+			LabelMapFeature feature2) throws Exception {
+		LabelMap map1 = map(feature1);
+		LabelMap map2 = map(feature2);
+		return ContingencyTable.perLabel(map1, map2, labels(map1, map2));
+	}
+
+	public static SimilarityNumber[] results(Double[] measurements)
+			throws Exception {
+		if (measurements == null)
+			throw new SingularityTreatmentException(
+					"Received null measurement value");
+		SimilarityNumber[] results = new SimilarityNumber[measurements.length];
+		for (int i = 0; i < measurements.length; i++)
+			results[i] = new SimilarityNumber(measurements[i].doubleValue());
+		return results;
+	}
+}
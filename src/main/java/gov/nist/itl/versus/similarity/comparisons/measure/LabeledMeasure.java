@@ -20,9 +20,12 @@ package gov.nist.itl.versus.similarity.comparisons.measure;
 
 import edu.illinois.ncsa.versus.measure.Measure;
 import edu.illinois.ncsa.versus.measure.SimilarityNumber;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabelMapFeature;
 import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabeledThreeDimensionalDoubleArrayFeature;
 
 public interface LabeledMeasure extends Measure {
 	public SimilarityNumber[] compare(LabeledThreeDimensionalDoubleArrayFeature feature1, LabeledThreeDimensionalDoubleArrayFeature feature2) 
 			throws Exception;
+	public SimilarityNumber[] compare(LabelMapFeature feature1, LabelMapFeature feature2) 
+			throws Exception;
 }
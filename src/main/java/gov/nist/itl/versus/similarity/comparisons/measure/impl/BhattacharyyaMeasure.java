@@ -17,7 +17,12 @@
  */
 package gov.nist.itl.versus.similarity.comparisons.measure.impl;
 
+import gov.nist.itl.versus.similarity.comparisons.HistogramBatch;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
 import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramKernel;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
 import edu.illinois.ncsa.versus.UnsupportedTypeException;
 import edu.illinois.ncsa.versus.descriptor.Descriptor;
 import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
@@ -36,7 +41,7 @@ import java.util.Set;
 import java.util.Iterator;
 import gov.nist.itl.versus.similarity.comparisons.exception.*;
 
-public class BhattacharyyaMeasure implements Measure, HasCategory, HasHelp
+public class BhattacharyyaMeasure implements HistogramMeasure, HasCategory, HasHelp
 {
 	private MathOpsE ops = new MathOpsE();
 
@@ -159,6 +164,62 @@ public class BhattacharyyaMeasure implements Measure, HasCategory, HasHelp
                 return result;
         }
         
+        /**
+         * Compares two prepared histograms.
+         *
+         * @param feature1 PreparedHistogram
+         * @param feature2 PreparedHistogram
+         * @return SimilarityNumber
+         * @throws Exception
+         */
+        public SimilarityNumber compare(PreparedHistogram feature1, PreparedHistogram feature2) throws Exception {
+
+                // Check feature lengths, they must be equal
+                if( feature1.getNumBins() != feature2.getNumBins() ) {
+                        throw new ImageCompatibilityException("Features must have the same length");
+                }
+
+                double measurement  = KERNEL.measure( ops, feature1, feature2 );
+
+                return new SimilarityNumber(measurement);
+        }
+
+        /**
+         * Compares a prepared histogram with every row of a histogram matrix.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @return one measurement per row of candidates
+         * @throws Exception
+         */
+        public double[] compare(PreparedHistogram query, HistogramMatrix candidates) throws Exception {
+
+                return HistogramBatch.compare( this, query, candidates );
+        }
+
+        /**
+         * Compares a prepared histogram with rows from..to-1 of a histogram
+         * matrix, into the same positions of result.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @param from first row
+         * @param to end row (exclusive)
+         * @param result measurements, indexed by row
+         * @throws Exception
+         */
+        public void compare(PreparedHistogram query, HistogramMatrix candidates, int from, int to, double[] result) throws Exception {
+
+                HistogramBatch.compareRows( KERNEL, ops, query, candidates, from, to, result );
+        }
+
+        // the kernel of compare(PreparedHistogram, PreparedHistogram)
+        private static final HistogramKernel KERNEL = new HistogramKernel() {
+                public double measure(MathOpsE ops, PreparedHistogram P, PreparedHistogram Q) throws Exception {
+                        return ops.histogram_measure_bhattacharyya( P.getBins(), Q.getBins() );
+                }
+        };
+
 		@Override
 		public SimilarityNumber compare(Descriptor feature1, Descriptor feature2)	throws Exception {
 				if (feature1 instanceof RGBHistogramDescriptor && feature2 instanceof RGBHistogramDescriptor) {
@@ -218,6 +279,9 @@ public class BhattacharyyaMeasure implements Measure, HasCategory, HasHelp
 					
 					return result;
 			}
+				else if( feature1 instanceof PreparedHistogram && feature2 instanceof PreparedHistogram) {
+					return compare((PreparedHistogram) feature1, (PreparedHistogram) feature2);
+				}
 				else {
 						throw new SWIndependenceException(
 										"Similarity measure expects features of type " + supportedTypesString() );
@@ -242,6 +306,7 @@ public class BhattacharyyaMeasure implements Measure, HasCategory, HasHelp
 			features.add( RGBHistogramDescriptor.class );
 			features.add( GrayscaleHistogramDescriptor.class );
 			features.add( PixelHistogramDescriptor.class );
+			features.add( PreparedHistogram.class );
 			return features;
 		}
 	
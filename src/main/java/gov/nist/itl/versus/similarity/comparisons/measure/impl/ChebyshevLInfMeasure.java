@@ -32,13 +32,17 @@ import edu.illinois.ncsa.versus.measure.SimilarityPercentage;
 import edu.illinois.ncsa.versus.utility.HasCategory;
 import edu.illinois.ncsa.versus.utility.HasHelp;
 import edu.illinois.ncsa.versus.utility.HelpProvider;
+import gov.nist.itl.versus.similarity.comparisons.HistogramBatch;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
 import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
 import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
 import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
 
-public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
+public class ChebyshevLInfMeasure implements HistogramMeasure, HasCategory, HasHelp
 {
 	private MathOpsE ops = new MathOpsE();
 
@@ -62,22 +66,13 @@ public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
 							throw new ImageCompatibilityException("Features must have the same length");
 					}
 					
-					Double[] normHist1 = ops.normalizeRgbHistogram( feature1 );
-					
-						if ( normHist1 == null ) 
-							throw new MathCompatibilityException("Histogram normalization failed for RGBHistogramDescriptor histogram1");					
-					
-					Double[] normHist2 = ops.normalizeRgbHistogram( feature2 );
-					
-						if ( normHist2 == null ) 
-							throw new MathCompatibilityException("Histogram normalization failed for RGBHistogramDescriptor histogram2");
-
-					Double measurement  = ops.histogram_measure_chebyshev( normHist1, normHist2 );
-									
-						if ( measurement == null ) 
-							throw new SingularityTreatmentException("Received null measurement value");	
-							
-					SimilarityNumber result = new SimilarityNumber(measurement.doubleValue());
+					// raw counts: the kernel applies the normalization to the result
+					int[] counts1 = ops.histogramCounts( feature1 );
+					int[] counts2 = ops.histogramCounts( feature2 );
+
+					double measurement  = ops.histogram_measure_chebyshev( counts1, counts2 );
+
+					SimilarityNumber result = new SimilarityNumber(measurement);
 				
 						if ( result == null )
 							throw new SingularityTreatmentException("Received null SimilarityNumber comparison result");							
@@ -100,22 +95,13 @@ public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
                         throw new ImageCompatibilityException("Features must have the same length");
                 }
 
-                Double[] normHist1 = ops.normalizeGrayscaleHistogram( feature1 );
-				
-					if ( normHist1 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram1");
-				
-                Double[] normHist2 = ops.normalizeGrayscaleHistogram( feature2 );
-				
-					if ( normHist2 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram2");				
+                // raw counts: the kernel applies the normalization to the result
+                int[] counts1 = ops.histogramCounts( feature1 );
+                int[] counts2 = ops.histogramCounts( feature2 );
 
-                Double measurement  = ops.histogram_measure_chebyshev( normHist1, normHist2 );
-				
-					if ( measurement == null ) 
-						throw new SingularityTreatmentException("Received null measurement value");	
+                double measurement  = ops.histogram_measure_chebyshev( counts1, counts2 );
 
-				SimilarityNumber result = new SimilarityNumber(measurement.doubleValue());
+				SimilarityNumber result = new SimilarityNumber(measurement);
 				
 					if ( result == null )
 						throw new SingularityTreatmentException("Received null SimilarityNumber comparison result");
@@ -138,22 +124,13 @@ public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
                         throw new ImageCompatibilityException("Features must have the same length");
                 }
 
-                Double[] normHist1 = ops.normalizePixelHistogram( feature1 );
-				
-					if ( normHist1 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram1");
-				
-                Double[] normHist2 = ops.normalizePixelHistogram( feature2 );
-				
-					if ( normHist2 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram2");				
+                // raw counts: the kernel applies the normalization to the result
+                int[] counts1 = ops.histogramCounts( feature1 );
+                int[] counts2 = ops.histogramCounts( feature2 );
 
-                Double measurement  = ops.histogram_measure_chebyshev( normHist1, normHist2 );
-				
-					if ( measurement == null ) 
-						throw new SingularityTreatmentException("Received null measurement value");	
+                double measurement  = ops.histogram_measure_chebyshev( counts1, counts2 );
 
-				SimilarityNumber result = new SimilarityNumber(measurement.doubleValue());
+				SimilarityNumber result = new SimilarityNumber(measurement);
 				
 					if ( result == null )
 						throw new SingularityTreatmentException("Received null SimilarityNumber comparison result");
@@ -161,6 +138,60 @@ public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
                 return result;
         }
         
+        /**
+         * Compares two prepared histograms.
+         *
+         * @param feature1 PreparedHistogram
+         * @param feature2 PreparedHistogram
+         * @return SimilarityNumber
+         * @throws Exception
+         */
+        public SimilarityNumber compare(PreparedHistogram feature1, PreparedHistogram feature2) throws Exception {
+
+                // Check feature lengths, they must be equal
+                if( feature1.getNumBins() != feature2.getNumBins() ) {
+                        throw new ImageCompatibilityException("Features must have the same length");
+                }
+
+                double measurement  = ops.histogram_measure_chebyshev( feature1.getBins(), feature2.getBins() );
+
+                return new SimilarityNumber(measurement);
+        }
+
+        /**
+         * Compares a prepared histogram with every row of a histogram matrix.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @return one measurement per row of candidates
+         * @throws Exception
+         */
+        public double[] compare(PreparedHistogram query, HistogramMatrix candidates) throws Exception {
+
+                return HistogramBatch.compare( this, query, candidates );
+        }
+
+        /**
+         * Compares a prepared histogram with rows from..to-1 of a histogram
+         * matrix, into the same positions of result.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @param from first row
+         * @param to end row (exclusive)
+         * @param result measurements, indexed by row
+         * @throws Exception
+         */
+        public void compare(PreparedHistogram query, HistogramMatrix candidates, int from, int to, double[] result) throws Exception {
+
+                // Check feature lengths, they must be equal
+                if( query.getNumBins() != candidates.getNumBins() ) {
+                        throw new ImageCompatibilityException("Features must have the same length");
+                }
+
+                ops.histogram_measure_chebyshev( query, candidates, from, to, result );
+        }
+
 		@Override
 		public SimilarityNumber compare(Descriptor feature1, Descriptor feature2)	throws Exception {
 				if (feature1 instanceof RGBHistogramDescriptor && feature2 instanceof RGBHistogramDescriptor) {
@@ -220,6 +251,9 @@ public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
 					
 					return result;
 			}
+				else if( feature1 instanceof PreparedHistogram && feature2 instanceof PreparedHistogram) {
+					return compare((PreparedHistogram) feature1, (PreparedHistogram) feature2);
+				}
 				else {
 						throw new SWIndependenceException(
 										"Similarity measure expects features of type " + supportedTypesString() );
@@ -243,6 +277,7 @@ public class ChebyshevLInfMeasure implements Measure, HasCategory, HasHelp
 			features.add( RGBHistogramDescriptor.class );
 			features.add( GrayscaleHistogramDescriptor.class );
 			features.add( PixelHistogramDescriptor.class );
+			features.add( PreparedHistogram.class );
 			return features;
 		}
 	
@@ -17,7 +17,11 @@
  */
 package gov.nist.itl.versus.similarity.comparisons.measure.impl;
 
+import gov.nist.itl.versus.similarity.comparisons.HistogramBatch;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
 import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
 import edu.illinois.ncsa.versus.UnsupportedTypeException;
 import edu.illinois.ncsa.versus.descriptor.Descriptor;
 import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
@@ -36,7 +40,7 @@ import java.util.Set;
 import java.util.Iterator;
 import gov.nist.itl.versus.similarity.comparisons.exception.*;
 
-public class IntersectionMeasure implements Measure, HasCategory, HasHelp
+public class IntersectionMeasure implements HistogramMeasure, HasCategory, HasHelp
 {
 	private MathOpsE ops = new MathOpsE();
 
@@ -60,22 +64,13 @@ public class IntersectionMeasure implements Measure, HasCategory, HasHelp
 							throw new ImageCompatibilityException("Features must have the same length");
 					}
 					
-					Double[] normHist1 = ops.normalizeRgbHistogram( feature1 );
-					
-						if ( normHist1 == null ) 
-							throw new MathCompatibilityException("Histogram normalization failed for RGBHistogramDescriptor histogram1");					
-					
-					Double[] normHist2 = ops.normalizeRgbHistogram( feature2 );
-					
-						if ( normHist2 == null ) 
-							throw new MathCompatibilityException("Histogram normalization failed for RGBHistogramDescriptor histogram2");
-
-					Double measurement  = ops.histogram_measure_intersection_IS( normHist1, normHist2 );
-									
-						if ( measurement == null ) 
-							throw new SingularityTreatmentException("Received null measurement value");	
-							
-					SimilarityNumber result = new SimilarityNumber(measurement.doubleValue());
+					// raw counts: the kernel applies the normalization to the result
+					int[] counts1 = ops.histogramCounts( feature1 );
+					int[] counts2 = ops.histogramCounts( feature2 );
+
+					double measurement  = ops.histogram_measure_intersection_IS( counts1, counts2 );
+
+					SimilarityNumber result = new SimilarityNumber(measurement);
 				
 						if ( result == null )
 							throw new SingularityTreatmentException("Received null SimilarityNumber comparison result");							
@@ -98,22 +93,13 @@ public class IntersectionMeasure implements Measure, HasCategory, HasHelp
                         throw new ImageCompatibilityException("Features must have the same length");
                 }
 
-                Double[] normHist1 = ops.normalizeGrayscaleHistogram( feature1 );
-				
-					if ( normHist1 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram1");
-				
-                Double[] normHist2 = ops.normalizeGrayscaleHistogram( feature2 );
-				
-					if ( normHist2 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram2");				
+                // raw counts: the kernel applies the normalization to the result
+                int[] counts1 = ops.histogramCounts( feature1 );
+                int[] counts2 = ops.histogramCounts( feature2 );
 
-                Double measurement  = ops.histogram_measure_intersection_IS( normHist1, normHist2 );
-				
-					if ( measurement == null ) 
-						throw new SingularityTreatmentException("Received null measurement value");	
+                double measurement  = ops.histogram_measure_intersection_IS( counts1, counts2 );
 
-				SimilarityNumber result = new SimilarityNumber(measurement.doubleValue());
+				SimilarityNumber result = new SimilarityNumber(measurement);
 				
 					if ( result == null )
 						throw new SingularityTreatmentException("Received null SimilarityNumber comparison result");
@@ -136,22 +122,13 @@ public class IntersectionMeasure implements Measure, HasCategory, HasHelp
                         throw new ImageCompatibilityException("Features must have the same length");
                 }
 
-                Double[] normHist1 = ops.normalizePixelHistogram( feature1 );
-				
-					if ( normHist1 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram1");
-				
-                Double[] normHist2 = ops.normalizePixelHistogram( feature2 );
-				
-					if ( normHist2 == null ) 
-						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram2");				
+                // raw counts: the kernel applies the normalization to the result
+                int[] counts1 = ops.histogramCounts( feature1 );
+                int[] counts2 = ops.histogramCounts( feature2 );
 
-                Double measurement  = ops.histogram_measure_intersection_IS( normHist1, normHist2 );
-				
-					if ( measurement == null ) 
-						throw new SingularityTreatmentException("Received null measurement value");	
+                double measurement  = ops.histogram_measure_intersection_IS( counts1, counts2 );
 
-				SimilarityNumber result = new SimilarityNumber(measurement.doubleValue());
+				SimilarityNumber result = new SimilarityNumber(measurement);
 				
 					if ( result == null )
 						throw new SingularityTreatmentException("Received null SimilarityNumber comparison result");
@@ -159,6 +136,60 @@ public class IntersectionMeasure implements Measure, HasCategory, HasHelp
                 return result;
         }
         
+        /**
+         * Compares two prepared histograms.
+         *
+         * @param feature1 PreparedHistogram
+         * @param feature2 PreparedHistogram
+         * @return SimilarityNumber
+         * @throws Exception
+         */
+        public SimilarityNumber compare(PreparedHistogram feature1, PreparedHistogram feature2) throws Exception {
+
+                // Check feature lengths, they must be equal
+                if( feature1.getNumBins() != feature2.getNumBins() ) {
+                        throw new ImageCompatibilityException("Features must have the same length");
+                }
+
+                double measurement  = ops.histogram_measure_intersection_IS( feature1, feature2 );
+
+                return new SimilarityNumber(measurement);
+        }
+
+        /**
+         * Compares a prepared histogram with every row of a histogram matrix.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @return one measurement per row of candidates
+         * @throws Exception
+         */
+        public double[] compare(PreparedHistogram query, HistogramMatrix candidates) throws Exception {
+
+                return HistogramBatch.compare( this, query, candidates );
+        }
+
+        /**
+         * Compares a prepared histogram with rows from..to-1 of a histogram
+         * matrix, into the same positions of result.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @param from first row
+         * @param to end row (exclusive)
+         * @param result measurements, indexed by row
+         * @throws Exception
+         */
+        public void compare(PreparedHistogram query, HistogramMatrix candidates, int from, int to, double[] result) throws Exception {
+
+                // Check feature lengths, they must be equal
+                if( query.getNumBins() != candidates.getNumBins() ) {
+                        throw new ImageCompatibilityException("Features must have the same length");
+                }
+
+                ops.histogram_measure_intersection_IS( query, candidates, from, to, result );
+        }
+
 		@Override
 		public SimilarityNumber compare(Descriptor feature1, Descriptor feature2)	throws Exception {
 				if (feature1 instanceof RGBHistogramDescriptor && feature2 instanceof RGBHistogramDescriptor) {
@@ -218,6 +249,9 @@ public class IntersectionMeasure implements Measure, HasCategory, HasHelp
 					
 					return result;
 			}
+				else if( feature1 instanceof PreparedHistogram && feature2 instanceof PreparedHistogram) {
+					return compare((PreparedHistogram) feature1, (PreparedHistogram) feature2);
+				}
 				else {
 						throw new SWIndependenceException(
 										"Similarity measure expects features of type " + supportedTypesString() );
@@ -242,6 +276,7 @@ public class IntersectionMeasure implements Measure, HasCategory, HasHelp
 			features.add( RGBHistogramDescriptor.class );
 			features.add( GrayscaleHistogramDescriptor.class );
 			features.add( PixelHistogramDescriptor.class );
+			features.add( PreparedHistogram.class );
 			return features;
 		}
 	
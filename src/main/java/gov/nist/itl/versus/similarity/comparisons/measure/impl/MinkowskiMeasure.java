@@ -32,16 +32,48 @@ import edu.illinois.ncsa.versus.measure.SimilarityPercentage;
 import edu.illinois.ncsa.versus.utility.HasCategory;
 import edu.illinois.ncsa.versus.utility.HasHelp;
 import edu.illinois.ncsa.versus.utility.HelpProvider;
+import gov.nist.itl.versus.similarity.comparisons.HistogramBatch;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
 import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramKernel;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
 import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
 import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
 
-public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
+public class MinkowskiMeasure implements HistogramMeasure, HasCategory, HasHelp
 {
 	private MathOpsE ops = new MathOpsE();
 
+	// order of the distance; 3 unless configured
+	private double p;
+
+		public MinkowskiMeasure() {
+			this(3.0d);
+		}
+
+		/**
+		 * Minkowski measure of order p.
+		 *
+		 * @param p order, any number > 0; Double.POSITIVE_INFINITY gives the
+		 *            Chebyshev distance
+		 */
+		public MinkowskiMeasure(double p) {
+			setP(p);
+		}
+
+		public double getP() {
+			return p;
+		}
+
+		public void setP(double p) {
+			if ( !(p > 0d) )
+				throw new IllegalArgumentException("Minkowski order p must be > 0, got " + p);
+			this.p = p;
+		}
+
 		@Override
 		public SimilarityPercentage normalize(Similarity similarity) {
 			return null;
@@ -72,7 +104,7 @@ public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
 						if ( normHist2 == null ) 
 							throw new MathCompatibilityException("Histogram normalization failed for RGBHistogramDescriptor histogram2");
 
-					Double measurement  = ops.histogram_measure_minkowski( normHist1, normHist2 );
+					Double measurement  = ops.histogram_measure_minkowski( normHist1, normHist2, p );
 									
 						if ( measurement == null ) 
 							throw new SingularityTreatmentException("Received null measurement value");	
@@ -110,7 +142,7 @@ public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
 					if ( normHist2 == null ) 
 						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram2");				
 
-                Double measurement  = ops.histogram_measure_minkowski( normHist1, normHist2 );
+                Double measurement  = ops.histogram_measure_minkowski( normHist1, normHist2, p );
 				
 					if ( measurement == null ) 
 						throw new SingularityTreatmentException("Received null measurement value");	
@@ -148,7 +180,7 @@ public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
 					if ( normHist2 == null ) 
 						throw new MathCompatibilityException("Histogram normalization failed for GrayscaleHistogramDescriptor histogram2");				
 
-                Double measurement  = ops.histogram_measure_minkowski( normHist1, normHist2 );
+                Double measurement  = ops.histogram_measure_minkowski( normHist1, normHist2, p );
 				
 					if ( measurement == null ) 
 						throw new SingularityTreatmentException("Received null measurement value");	
@@ -161,6 +193,62 @@ public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
                 return result;
         }
         
+        /**
+         * Compares two prepared histograms.
+         *
+         * @param feature1 PreparedHistogram
+         * @param feature2 PreparedHistogram
+         * @return SimilarityNumber
+         * @throws Exception
+         */
+        public SimilarityNumber compare(PreparedHistogram feature1, PreparedHistogram feature2) throws Exception {
+
+                // Check feature lengths, they must be equal
+                if( feature1.getNumBins() != feature2.getNumBins() ) {
+                        throw new ImageCompatibilityException("Features must have the same length");
+                }
+
+                double measurement  = kernel.measure( ops, feature1, feature2 );
+
+                return new SimilarityNumber(measurement);
+        }
+
+        /**
+         * Compares a prepared histogram with every row of a histogram matrix.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @return one measurement per row of candidates
+         * @throws Exception
+         */
+        public double[] compare(PreparedHistogram query, HistogramMatrix candidates) throws Exception {
+
+                return HistogramBatch.compare( this, query, candidates );
+        }
+
+        /**
+         * Compares a prepared histogram with rows from..to-1 of a histogram
+         * matrix, into the same positions of result.
+         *
+         * @param query PreparedHistogram
+         * @param candidates HistogramMatrix
+         * @param from first row
+         * @param to end row (exclusive)
+         * @param result measurements, indexed by row
+         * @throws Exception
+         */
+        public void compare(PreparedHistogram query, HistogramMatrix candidates, int from, int to, double[] result) throws Exception {
+
+                HistogramBatch.compareRows( kernel, ops, query, candidates, from, to, result );
+        }
+
+        // the kernel of compare(PreparedHistogram, PreparedHistogram)
+        private final HistogramKernel kernel = new HistogramKernel() {
+                public double measure(MathOpsE ops, PreparedHistogram P, PreparedHistogram Q) throws Exception {
+                        return ops.histogram_measure_minkowski( P.getBins(), Q.getBins(), p );
+                }
+        };
+
 		@Override
 		public SimilarityNumber compare(Descriptor feature1, Descriptor feature2)	throws Exception {
 				if (feature1 instanceof RGBHistogramDescriptor && feature2 instanceof RGBHistogramDescriptor) {
@@ -220,6 +308,9 @@ public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
 					
 					return result;
 			}
+				else if( feature1 instanceof PreparedHistogram && feature2 instanceof PreparedHistogram) {
+					return compare((PreparedHistogram) feature1, (PreparedHistogram) feature2);
+				}
 				else {
 						throw new SWIndependenceException(
 										"Similarity measure expects features of type " + supportedTypesString() );
@@ -244,6 +335,7 @@ public class MinkowskiMeasure implements Measure, HasCategory, HasHelp
 			features.add( RGBHistogramDescriptor.class );
 			features.add( GrayscaleHistogramDescriptor.class );
 			features.add( PixelHistogramDescriptor.class );
+			features.add( PreparedHistogram.class );
 			return features;
 		}
 	
@@ -26,12 +26,14 @@ import edu.illinois.ncsa.versus.measure.SimilarityPercentage;
 import edu.illinois.ncsa.versus.utility.HasCategory;
 import edu.illinois.ncsa.versus.utility.HasHelp;
 import edu.illinois.ncsa.versus.utility.HelpProvider;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabelMapFeature;
 import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabeledThreeDimensionalDoubleArrayFeature;
 import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SingularityTreatmentException;
 import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
 import gov.nist.itl.versus.similarity.comparisons.ImageData;
 import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.measure.LabelMapComparison;
 import gov.nist.itl.versus.similarity.comparisons.measure.LabeledMeasure;
 import java.io.InputStream;
 import java.util.HashSet;
@@ -98,6 +100,18 @@ public class TotalErrorRateEvaluationMeasure implements LabeledMeasure, HasCateg
 	public SimilarityNumber[] compare(LabeledThreeDimensionalDoubleArrayFeature feature1, LabeledThreeDimensionalDoubleArrayFeature feature2) 
 			throws Exception 
 	{
+		// every label from one contingency table of the label images
+		if ( feature1.getLabel() != null && feature2.getLabel() != null ) {
+			Double measurements[] = mops.pixel_measure_tee(feature1.getLabel(), feature2.getLabel(), feature1.getNumLabels() );
+				if ( measurements == null ) 
+					throw new SingularityTreatmentException("Received null measurement value");
+			SimilarityNumber results[] = new SimilarityNumber[measurements.length];
+			for (int i=0; i < measurements.length; i++ ) {
+				results[i] = new SimilarityNumber(measurements[i].doubleValue());
+			}
+			return results;
+		}
+
 		ThreeDimensionalDoubleArrayFeature f1 = null, f2 = null;
 		ImageData labels1[] = feature1.getLabels();
 			if ( labels1 == null ) 
@@ -115,7 +129,7 @@ public class TotalErrorRateEvaluationMeasure implements LabeledMeasure, HasCateg
 				if ( f1 == null ) 
 					throw new SWIndependenceException("failed extract a given ThreeDimensionalDoubleArrayFeature label array1");
 				
-			f2 = new ThreeDimensionalDoubleArrayFeature(labels1[i].getValues());
+			f2 = new ThreeDimensionalDoubleArrayFeature(labels2[i].getValues());
 				if ( f2 == null ) 
 					throw new SWIndependenceException("failed extract a given ThreeDimensionalDoubleArrayFeature label array2");
 			
@@ -126,6 +140,13 @@ public class TotalErrorRateEvaluationMeasure implements LabeledMeasure, HasCateg
 		return results;
 	}	
 	
+	public SimilarityNumber[] compare(LabelMapFeature feature1, LabelMapFeature feature2) 
+			throws Exception 
+	{
+		// one result per label present in either map, see LabelMapComparison
+		return LabelMapComparison.results( mops.pixel_measure_tee( LabelMapComparison.perLabel(feature1, feature2) ) );
+	}
+
 	@Override
 	public SimilarityNumber compare(Descriptor feature1, Descriptor feature2)	throws Exception {
 
@@ -145,6 +166,11 @@ public class TotalErrorRateEvaluationMeasure implements LabeledMeasure, HasCateg
 						
 			return result;
 		} 
+		else if (feature1 instanceof LabelMapFeature && feature2 instanceof LabelMapFeature) {
+			// the label maps as a whole, from their contingency table
+			Double measurement = mops.pixel_measure_tee( LabelMapComparison.map(feature1), LabelMapComparison.map(feature2) );
+			return new SimilarityNumber(measurement.doubleValue());
+		}
 		else {
 			throw new SWIndependenceException(
 						"Similarity measure expects features of type " + supportedTypesString() );
@@ -167,6 +193,7 @@ public class TotalErrorRateEvaluationMeasure implements LabeledMeasure, HasCateg
 		Set features = new HashSet();
 		features.add( ThreeDimensionalDoubleArrayFeature.class );
 		features.add( LabeledThreeDimensionalDoubleArrayFeature.class );
+		features.add( LabelMapFeature.class );
 		return features;
 	}
 		
@@ -0,0 +1,99 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          BinaryMask
+ * description   Bit-packed foreground masks count and score as the
+ *               contingency table of the same images.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+
+/**
+ * BinaryMask Test
+ */
+public class BinaryMaskTest extends junit.framework.TestCase
+{
+	private static ImageData image(Random random, int h, int w, int bands) {
+		double[][][] v = new double[h][w][bands];
+		for (int i = 0; i < h; i++)
+			for (int j = 0; j < w; j++)
+				for (int k = 0; k < bands; k++)
+					v[i][j][k] = random.nextInt(3) - 0.5d;
+		return new ImageData(v);
+	}
+
+	@Test
+	public void testCounts() throws Exception {
+		// 37 x 11 x 3 bits: the last word is partly used
+		Random random = new Random(81);
+		ImageData a = image(random, 37, 11, 3);
+		ImageData b = image(random, 37, 11, 3);
+		BinaryMask x = BinaryMask.of(a);
+		BinaryMask y = BinaryMask.of(b);
+		Assert.assertEquals((37 * 11 * 3 + 63) / 64, x.getWords().length);
+
+		long fa = 0, fb = 0, both = 0;
+		for (int i = 0; i < 37; i++)
+			for (int j = 0; j < 11; j++)
+				for (int k = 0; k < 3; k++) {
+					boolean p = a.getValues()[i][j][k] > 0;
+					boolean q = b.getValues()[i][j][k] > 0;
+					fa += p ? 1 : 0;
+					fb += q ? 1 : 0;
+					both += (p && q) ? 1 : 0;
+				}
+		Assert.assertEquals(fa, x.cardinality());
+		Assert.assertEquals(fb, y.cardinality());
+		Assert.assertEquals(both, x.andCount(y));
+		Assert.assertEquals(fa + fb - both, x.orCount(y));
+		Assert.assertEquals(fa - both, x.andNotCount(y));
+
+		ContingencyTable t = ContingencyTable.of(a, b);
+		Assert.assertEquals(t.dice(), x.dice(y), 0d);
+		Assert.assertEquals(t.jaccard(), x.jaccard(y), 0d);
+		Assert.assertEquals(t.totalErrorRateEvaluation(), x.totalErrorRateEvaluation(y), 0d);
+		Assert.assertEquals(t.totalErrorRateTest(), x.totalErrorRateTest(y), 0d);
+
+		MathOpsE ops = new MathOpsE();
+		Assert.assertEquals(x.dice(y), ops.pixel_measure_dice(a, b), 0d);
+		Assert.assertEquals(x.totalErrorRateTest(y), ops.pixel_measure_tet(a, b), 0d);
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		BinaryMask x = BinaryMask.of(new ImageData(new double[4][4][1]));
+		Assert.assertEquals(0L, x.cardinality());
+		Assert.assertEquals(1d, x.dice(x), 0d);
+		Assert.assertEquals(1d, x.jaccard(x), 0d);
+		Assert.assertEquals(1d, x.totalErrorRateEvaluation(x), 0d);
+		Assert.assertEquals(1d, x.totalErrorRateTest(x), 0d);
+	}
+
+	@Test
+	public void testShape() throws Exception {
+		try {
+			Random random = new Random(82);
+			BinaryMask.of(image(random, 8, 8, 1)).andCount(BinaryMask.of(image(random, 8, 4, 2)));
+			Assert.assertTrue("different shapes accepted", false);
+		} catch (ImageCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(BinaryMaskTest.class);
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          ContingencyTable
+ * description   The segmentation measures derived from the contingency table
+ *               of two label images.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+
+/**
+ * ContingencyTable Test
+ */
+public class ContingencyTableTest extends junit.framework.TestCase
+{
+	private static ImageData image(double... labels) {
+		double[][][] v = new double[1][labels.length][1];
+		for (int j = 0; j < labels.length; j++)
+			v[0][j][0] = labels[j];
+		return new ImageData(v);
+	}
+
+	@Test
+	public void testMeasures() throws Exception {
+		ImageData a = image(0, 0, 1, 1);
+		ImageData b = image(0, 0, 1, 2);
+		ContingencyTable t = ContingencyTable.of(a, b);
+		Assert.assertEquals(2, t.getNumRows());
+		Assert.assertEquals(3, t.getNumCols());
+		Assert.assertEquals(2, t.getCount(0, 0));
+		Assert.assertEquals(1, t.getCount(1, 2));
+		Assert.assertEquals(4L, t.getTotal());
+		Assert.assertEquals(4d / 7d, t.adjustedRandIndex(), 1e-15);
+		Assert.assertEquals(5d / 6d, t.randIndex(), 1e-15);
+		// foreground: {2, 3} against {2, 3}
+		Assert.assertEquals(1d, t.dice(), 0d);
+		Assert.assertEquals(1d, t.jaccard(), 0d);
+		Assert.assertEquals(1d, t.totalErrorRateEvaluation(), 0d);
+		Assert.assertEquals(1d, t.totalErrorRateTest(), 0d);
+		// H(a) = ln 2, H(b) = 1.5 ln 2, I = ln 2
+		Assert.assertEquals(Math.log(2d), t.mutualInformation(), 1e-15);
+		Assert.assertEquals(0.5d * Math.log(2d), t.variationOfInformation(), 1e-15);
+
+		MathOpsE ops = new MathOpsE();
+		Assert.assertEquals(t.adjustedRandIndex(), ops.pixel_measure_ari(a, b), 0d);
+		Assert.assertEquals(t.variationOfInformation(), ops.pixel_measure_vi(a, b), 0d);
+	}
+
+	@Test
+	public void testRelabeled() throws Exception {
+		// the same segmentation under other label values
+		Random random = new Random(71);
+		double[][][] x = new double[30][20][1];
+		double[][][] y = new double[30][20][1];
+		int[] rename = { 40, 3, 17, 0, 9 };
+		for (int i = 0; i < 30; i++)
+			for (int j = 0; j < 20; j++) {
+				int l = random.nextInt(rename.length);
+				x[i][j][0] = l;
+				y[i][j][0] = rename[l];
+			}
+		ContingencyTable t = ContingencyTable.of(new ImageData(x), new ImageData(y));
+		Assert.assertEquals(41, t.getNumCols());
+		Assert.assertEquals(1d, t.adjustedRandIndex(), 1e-12);
+		Assert.assertEquals(1d, t.randIndex(), 1e-12);
+		Assert.assertEquals(0d, t.variationOfInformation(), 1e-12);
+	}
+
+	@Test
+	public void testSparse() throws Exception {
+		// 16-bit instance labels: a dense table would take 2^32 cells
+		Random random = new Random(72);
+		int h = 200, w = 150;
+		double[][][] x = new double[h][w][1];
+		double[][][] y = new double[h][w][1];
+		double[][][] xs = new double[h][w][1];
+		double[][][] ys = new double[h][w][1];
+		for (int i = 0; i < h; i++)
+			for (int j = 0; j < w; j++) {
+				int l = random.nextInt(300);
+				int m = (random.nextInt(4) == 0) ? random.nextInt(300) : l;
+				// the same segmentations with small labels
+				xs[i][j][0] = l;
+				ys[i][j][0] = m;
+				x[i][j][0] = 65535 - 211 * l;
+				y[i][j][0] = 65535 - 197 * m;
+			}
+		ContingencyTable sparse = ContingencyTable.of(new ImageData(x), new ImageData(y));
+		ContingencyTable dense = ContingencyTable.of(new ImageData(xs), new ImageData(ys));
+		Assert.assertTrue(sparse.isSparse());
+		Assert.assertFalse(dense.isSparse());
+		Assert.assertEquals(65536, sparse.getNumRows());
+		Assert.assertEquals(dense.getCount(5, 5), sparse.getCount(65535 - 211 * 5, 65535 - 197 * 5));
+		Assert.assertEquals(dense.adjustedRandIndex(), sparse.adjustedRandIndex(), 0d);
+		Assert.assertEquals(dense.randIndex(), sparse.randIndex(), 0d);
+		Assert.assertEquals(dense.mutualInformation(), sparse.mutualInformation(), 1e-12);
+		Assert.assertEquals(dense.variationOfInformation(), sparse.variationOfInformation(), 1e-12);
+		Assert.assertEquals(sparse.adjustedRandIndex(),
+				new MathOpsE().pixel_measure_ari(new ImageData(x), new ImageData(y)), 0d);
+	}
+
+	// the binary image of one label, as ImageData.match on a copy
+	private static ImageData plane(ImageData img, int label) {
+		double[][][] v = img.getValues();
+		double[][][] c = new double[v.length][v[0].length][];
+		for (int i = 0; i < v.length; i++)
+			for (int j = 0; j < v[i].length; j++)
+				c[i][j] = v[i][j].clone();
+		ImageData copy = new ImageData(c);
+		return copy.match(copy, label);
+	}
+
+	@Test
+	public void testForLabel() throws Exception {
+		// labels 0 .. 5 in the first image, 2 .. 7 in the second
+		Random random = new Random(73);
+		double[][][] x = new double[25][18][2];
+		double[][][] y = new double[25][18][2];
+		for (int i = 0; i < 25; i++)
+			for (int j = 0; j < 18; j++)
+				for (int k = 0; k < 2; k++) {
+					x[i][j][k] = random.nextInt(6);
+					y[i][j][k] = (random.nextInt(3) == 0) ? x[i][j][k] : 2 + random.nextInt(6);
+				}
+		ImageData a = new ImageData(x);
+		ImageData b = new ImageData(y);
+		ContingencyTable[] tables = ContingencyTable.perLabel(a, b, 10);
+		for (int l = 0; l < 10; l++) {
+			ContingencyTable t = ContingencyTable.of(plane(a, l), plane(b, l));
+			ContingencyTable u = tables[l];
+			Assert.assertEquals(t.getNumRows(), u.getNumRows());
+			Assert.assertEquals(t.getNumCols(), u.getNumCols());
+			Assert.assertEquals(t.dice(), u.dice(), 0d);
+			Assert.assertEquals(t.jaccard(), u.jaccard(), 0d);
+			Assert.assertEquals(t.totalErrorRateEvaluation(), u.totalErrorRateEvaluation(), 0d);
+			Assert.assertEquals(t.totalErrorRateTest(), u.totalErrorRateTest(), 0d);
+			Assert.assertEquals(t.randIndex(), u.randIndex(), 0d);
+			Assert.assertEquals(t.adjustedRandIndex(), u.adjustedRandIndex(), 0d);
+		}
+
+		// with a negative label, each label is counted on its own
+		y[0][0][0] = -1;
+		ContingencyTable[] apart = ContingencyTable.perLabel(a, b, 10);
+		for (int l = 0; l < 10; l++)
+			Assert.assertEquals(ContingencyTable.of(plane(a, l), plane(b, l)).dice(), apart[l].dice(), 0d);
+
+		y[0][0][0] = 3;
+		MathOpsE ops = new MathOpsE();
+		Double[] dice = ops.pixel_measure_dice(a, b, 10);
+		Double[] tee = ops.pixel_measure_tee(a, b, 10);
+		for (int l = 0; l < 10; l++) {
+			Assert.assertEquals(ops.pixel_measure_dice(plane(a, l), plane(b, l)), dice[l], 0d);
+			Assert.assertEquals(ops.pixel_measure_tee(plane(a, l), plane(b, l)), tee[l], 0d);
+		}
+		// label 4 is in both images
+		Assert.assertEquals(ops.pixel_measure_ari(plane(a, 4), plane(b, 4)),
+				ops.pixel_measure_ari(a, b, 5)[4], 0d);
+	}
+
+	@Test
+	public void testNegativeLabels() throws Exception {
+		ContingencyTable t = ContingencyTable.of(image(1, 0, 2, 2), image(-1, 0, 3, 0));
+		Assert.assertFalse(t.hasLabels());
+		// the foreground measures do not need the labels
+		Assert.assertEquals(0.5d, t.dice(), 1e-15);
+		Assert.assertEquals(1d / 3d, t.jaccard(), 1e-15);
+		Assert.assertEquals(1d, t.totalErrorRateEvaluation(), 0d);
+		Assert.assertEquals(1d / 3d, t.totalErrorRateTest(), 1e-15);
+		try {
+			t.adjustedRandIndex();
+			Assert.assertTrue("negative labels accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(ContingencyTableTest.class);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          DistanceMatrix
+ * description   All-pairs matrices hold the pairwise measurements.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * DistanceMatrix Test
+ */
+public class DistanceMatrixTest extends junit.framework.TestCase
+{
+	static List<Descriptor> descriptors(Random random, int count, int bins) {
+		List<Descriptor> list = new ArrayList<Descriptor>();
+		for (int k = 0; k < count; k++) {
+			int[] h = new int[bins];
+			for (int i = 0; i < bins; i++)
+				h[i] = 1 + random.nextInt(1000);
+			list.add(new GrayscaleHistogramDescriptor(h));
+		}
+		return list;
+	}
+
+	static void assertPairwise(HistogramMeasure m, List<Descriptor> list, DistanceMatrix d) throws Exception {
+		for (int i = 0; i < list.size(); i++)
+			for (int j = 0; j < list.size(); j++) {
+				int a = (d.isSymmetric() && j < i) ? j : i;
+				int b = (d.isSymmetric() && j < i) ? i : j;
+				double expected = m.compare(PreparedHistogram.of(list.get(a)), PreparedHistogram.of(list.get(b))).getValue();
+				Assert.assertEquals(expected, d.get(i, j), 0d);
+			}
+	}
+
+	@Test
+	public void testSymmetric() throws Exception {
+		List<Descriptor> list = descriptors(new Random(1), 45, 32);
+		HistogramMeasure[] measures = { new EuclideanL2Measure(), new CosineMeasure(), new HellingerMeasure() };
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (HistogramMeasure m : measures) {
+				DistanceMatrixEngine engine = new DistanceMatrixEngine(m);
+				engine.setExecutor(executor);
+				DistanceMatrix d = engine.compute(list);
+				Assert.assertTrue(d.isSymmetric());
+				Assert.assertEquals(45 * 46 / 2, d.getValues().length);
+				assertPairwise(m, list, d);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testAsymmetric() throws Exception {
+		List<Descriptor> list = descriptors(new Random(2), 20, 16);
+		HistogramMeasure m = new KullbackLeiblerMeasure();
+		DistanceMatrix d = new DistanceMatrixEngine(m).compute(list);
+		Assert.assertFalse(d.isSymmetric());
+		Assert.assertEquals(400, d.getValues().length);
+		assertPairwise(m, list, d);
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		List<Descriptor> list = descriptors(new Random(3), 30, 8);
+		DistanceMatrixEngine engine = new DistanceMatrixEngine(new CityBlockL1Measure());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		engine.compute(list, DistanceMatrixEngine.writer(new DataOutputStream(bytes)));
+		double[] values = engine.compute(list).getValues();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		Assert.assertEquals(8 * values.length, bytes.size());
+		for (int k = 0; k < values.length; k++)
+			Assert.assertEquals(values[k], in.readDouble(), 0d);
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		Assert.assertEquals(0, DistanceMatrix.index(4, 0, 0));
+		Assert.assertEquals(3, DistanceMatrix.index(4, 0, 3));
+		Assert.assertEquals(4, DistanceMatrix.index(4, 1, 1));
+		Assert.assertEquals(9, DistanceMatrix.index(4, 3, 3));
+	}
+
+	public static void main( String[] args )
+	{
+		org.junit.runner.JUnitCore.runClasses( DistanceMatrixTest.class );
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramCounts
+ * description   Count kernels give the same results as normalized histograms.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+import edu.illinois.ncsa.versus.descriptor.impl.RGBHistogramDescriptor;
+
+/**
+ * HistogramCounts Test
+ */
+public class HistogramCountsTest extends junit.framework.TestCase
+{
+	private static MathOpsE mopsE = new MathOpsE();
+
+	static int[] counts(Random random, int bins, int max) {
+		int[] h = new int[bins];
+		for (int i = 0; i < bins; i++)
+			h[i] = (random.nextInt(4) == 0) ? 0 : random.nextInt(max);
+		return h;
+	}
+
+	// relative difference allowed between the count kernels and the kernels
+	// on normalized bins, which round every bin before summing
+	static final double TOLERANCE = 1e-12;
+
+	static void assertClose(double expected, double actual) {
+		Assert.assertEquals(expected, actual, TOLERANCE * Math.max(1d, Math.abs(expected)));
+	}
+
+	@Test
+	public void testSameResultsAsNormalized() throws Exception {
+		Random random = new Random(9);
+		for (int t = 0; t < 50; t++) {
+			int[] a = counts(random, 256, (t % 2 == 0) ? 1000 : Integer.MAX_VALUE);
+			int[] b = counts(random, 256, (t % 2 == 0) ? 1000 : Integer.MAX_VALUE);
+			double[] p = mopsE.normalizeCounts(a);
+			double[] q = mopsE.normalizeCounts(b);
+			assertClose(mopsE.histogram_measure_euclidean(p, q), mopsE.histogram_measure_euclidean(a, b));
+			assertClose(mopsE.histogram_measure_city_block(p, q), mopsE.histogram_measure_city_block(a, b));
+			assertClose(mopsE.histogram_measure_chebyshev(p, q), mopsE.histogram_measure_chebyshev(a, b));
+			assertClose(mopsE.histogram_measure_intersection_IS(p, q), mopsE.histogram_measure_intersection_IS(a, b));
+			assertClose(mopsE.histogram_measure_cosine(p, q), mopsE.histogram_measure_cosine(a, b));
+		}
+	}
+
+	@Test
+	public void testEqualTotals() throws Exception {
+		int[] a = new int[] { 3, 0, 1 };
+		int[] b = new int[] { 1, 2, 1 };
+		Assert.assertEquals(1d, mopsE.histogram_measure_city_block(a, b), 0d);
+		Assert.assertEquals(0.5d, mopsE.histogram_measure_chebyshev(a, b), 0d);
+		Assert.assertEquals(0.5d, mopsE.histogram_measure_intersection_IS(a, b), 0d);
+	}
+
+	@Test
+	public void testZeroTotal() throws Exception {
+		// normalized as by normalizeHistogram: 0/0 bins are 0
+		int[] a = new int[] { 0, 0, 0 };
+		int[] b = new int[] { 1, 2, 1 };
+		Assert.assertEquals(1d, mopsE.histogram_measure_city_block(a, b), 0d);
+		Assert.assertEquals(0d, mopsE.histogram_measure_cosine(a, b), 0d);
+	}
+
+	@Test
+	public void testRgbCounts() throws Exception {
+		RGBHistogramDescriptor d = new RGBHistogramDescriptor(new int[][] { { 1, 2, 3 }, { 4, 5, 6 } });
+		Assert.assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6 }, mopsE.histogramCounts(d));
+	}
+
+	public static void main( String[] args )
+	{
+		org.junit.runner.JUnitCore.runClasses( HistogramCountsTest.class );
+	}
+}
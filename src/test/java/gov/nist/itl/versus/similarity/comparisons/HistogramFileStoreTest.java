@@ -0,0 +1,128 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramFileStore
+ * description   Histograms stored, closed and opened again read back and
+ *               compare exactly as in memory.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import gov.nist.itl.versus.similarity.comparisons.HistogramFileStore.Kind;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * HistogramFileStore Test
+ */
+public class HistogramFileStoreTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new EuclideanL2Measure(), new CityBlockL1Measure(),
+			new IntersectionMeasure(), new KullbackLeiblerMeasure(),
+			new JensenShannonMeasure() };
+
+	private static File temporary() throws Exception {
+		File file = File.createTempFile("histograms", ".vhst");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testReopen() throws Exception {
+		// more rows than one block, so that compare() and search() span blocks
+		int bins = 96;
+		int rows = HistogramFileStore.BLOCK_BINS / bins + 100;
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(61), rows + 1, bins);
+		HistogramMatrix matrix = HistogramMatrix.of(list.subList(1, list.size()));
+		PreparedHistogram query = list.get(0);
+
+		File file = temporary();
+		HistogramFileStore store = HistogramFileStore.create(file, bins);
+		for (int r = 0; r < rows; r++)
+			Assert.assertEquals(r, store.add(1000L + 7 * r, list.get(r + 1)));
+		store.close();
+
+		store = HistogramFileStore.open(file, false);
+		Assert.assertEquals(rows, store.getNumRows());
+		Assert.assertEquals(bins, store.getNumBins());
+		Assert.assertEquals(-1, store.indexOf(1001L));
+		for (int r = 0; r < rows; r += 97) {
+			Assert.assertEquals(r, store.indexOf(1000L + 7 * r));
+			Assert.assertEquals(Kind.PREPARED, store.getKind(r));
+			Assert.assertArrayEquals(matrix.getRow(r).getBins(), store.get(1000L + 7 * r).getBins(), 0d);
+		}
+		for (HistogramMeasure m : measures) {
+			Assert.assertArrayEquals(m.compare(query, matrix), store.compare(m, query), 0d);
+			HistogramKnnSearcher.Result expected = new HistogramKnnSearcher(m, matrix).search(query, 10);
+			HistogramKnnSearcher.Result found = store.search(m, query, 10);
+			Assert.assertArrayEquals(expected.getIndices(), found.getIndices());
+			Assert.assertArrayEquals(expected.getValues(), found.getValues(), 0d);
+		}
+		HistogramMatrix copy = store.getMatrix(5, 25);
+		Assert.assertArrayEquals(matrix.copyRows(5, 25).getData(), copy.getData(), 0d);
+		store.close();
+	}
+
+	@Test
+	public void testNotClosed() throws Exception {
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(62), 30, 8);
+		File file = temporary();
+		HistogramFileStore store = HistogramFileStore.create(file, 8);
+		for (int r = 0; r < 20; r++)
+			store.add(r, list.get(r));
+		store.add(20, new GrayscaleHistogramDescriptor(new int[] { 1, 2, 3, 4, 0, 0, 5, 5 }));
+		store.close();
+
+		// appended to and left open: the ids are read from the records
+		HistogramFileStore writer = HistogramFileStore.open(file, true);
+		for (int r = 21; r < 30; r++)
+			writer.add(r, list.get(r));
+		HistogramFileStore reader = HistogramFileStore.open(file, false);
+		Assert.assertEquals(30, reader.getNumRows());
+		for (int r = 0; r < 30; r++) {
+			Assert.assertEquals(r, reader.indexOf(r));
+			if (r != 20)
+				Assert.assertArrayEquals(list.get(r).getBins(), reader.getRow(r).getBins(), 0d);
+		}
+		Assert.assertEquals(Kind.GRAYSCALE, reader.getKind(20));
+		Assert.assertEquals(20d, reader.getRow(20).getTotal(), 0d);
+		Assert.assertEquals(0.25d, reader.getRow(20).getBins()[6], 0d);
+		reader.close();
+		writer.close();
+	}
+
+	@Test
+	public void testDuplicateId() throws Exception {
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(63), 2, 4);
+		HistogramFileStore store = HistogramFileStore.create(temporary(), 4);
+		try {
+			store.add(1, list.get(0));
+			store.add(1, list.get(1));
+			Assert.assertTrue("duplicate id accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		} finally {
+			store.close();
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(HistogramFileStoreTest.class);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramKnnSearcher
+ * description   Nearest neighbours with early abandoning are those of a full
+ *               scan.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * HistogramKnnSearcher Test
+ */
+public class HistogramKnnSearcherTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new EuclideanL2Measure(), new CityBlockL1Measure(),
+			new ChebyshevLInfMeasure(), new SquaredEuclideanMeasure(),
+			new PearsonChiSquaredMeasure(), new NeymanChiSquaredMeasure(),
+			new SquaredChiSquaredMeasure(),
+			new ProbabilisticSymmetricChiSquaredMeasure(),
+			new DivergenceMeasure(), new ClarkMeasure(),
+			new AdditiveSymmetricChiSquaredMeasure(), new CosineMeasure(),
+			new IntersectionMeasure(), new HellingerMeasure() };
+
+	// the k best rows by sorting every measurement
+	static Integer[] bruteForce(HistogramMeasure m, PreparedHistogram query,
+			HistogramMatrix candidates, int k) throws Exception {
+		final double[] values = m.compare(query, candidates);
+		final double sign = HistogramKnnSearcher.isSimilarity(m) ? -1d : 1d;
+		Integer[] rows = new Integer[values.length];
+		for (int r = 0; r < rows.length; r++)
+			rows[r] = r;
+		Arrays.sort(rows, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = Double.compare(sign * values[a], sign * values[b]);
+				return (c != 0) ? c : a.compareTo(b);
+			}
+		});
+		return Arrays.copyOf(rows, Math.min(k, rows.length));
+	}
+
+	@Test
+	public void testSameAsFullScan() throws Exception {
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(12), 401, 48);
+		PreparedHistogram query = list.get(0);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(1, list.size()));
+		for (HistogramMeasure m : measures) {
+			HistogramKnnSearcher searcher = new HistogramKnnSearcher(m, candidates);
+			double[] all = m.compare(query, candidates);
+			for (int k : new int[] { 1, 5, 20 }) {
+				HistogramKnnSearcher.Result result = searcher.search(query, k);
+				Integer[] expected = bruteForce(m, query, candidates, k);
+				Assert.assertEquals(k, result.getIndices().length);
+				for (int i = 0; i < k; i++) {
+					Assert.assertEquals(expected[i].intValue(), result.getIndices()[i]);
+					Assert.assertEquals(all[expected[i]], result.getValues()[i], 0d);
+				}
+				Assert.assertEquals(400, result.getMeasured() + result.getAbandoned());
+			}
+		}
+	}
+
+	@Test
+	public void testAbandons() throws Exception {
+		// near duplicates of the query among random histograms
+		Random random = new Random(13);
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(random, 500, 64);
+		double[] q = list.get(0).getBins();
+		for (int r = 1; r < 10; r++) {
+			double[] c = new double[q.length];
+			for (int i = 0; i < c.length; i++)
+				c[i] = q[i] * (1 + 0.01 * random.nextDouble());
+			list.set(r * 37, new PreparedHistogram(c));
+		}
+		HistogramMatrix candidates = HistogramMatrix.of(list);
+		HistogramKnnSearcher searcher = new HistogramKnnSearcher(new CityBlockL1Measure(), candidates);
+		HistogramKnnSearcher.Result result = searcher.search(list.get(0), 5);
+		Assert.assertEquals(0, result.getIndices()[0]);
+		Assert.assertTrue(result.getAbandoned() > 400);
+
+		searcher.setEarlyAbandoning(false);
+		HistogramKnnSearcher.Result full = searcher.search(list.get(0), 5);
+		Assert.assertEquals(0, full.getAbandoned());
+		Assert.assertArrayEquals(full.getIndices(), result.getIndices());
+		Assert.assertArrayEquals(full.getValues(), result.getValues(), 0d);
+	}
+
+	@Test
+	public void testFewerRowsThanK() throws Exception {
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(14), 4, 16);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(1, list.size()));
+		HistogramKnnSearcher.Result result = new HistogramKnnSearcher(
+				new EuclideanL2Measure(), candidates).search(list.get(0), 10);
+		Assert.assertEquals(3, result.getIndices().length);
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(HistogramKnnSearcherTest.class);
+	}
+}
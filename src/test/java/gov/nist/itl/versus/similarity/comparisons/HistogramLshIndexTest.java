@@ -0,0 +1,101 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramLshIndex
+ * description   Hashed candidates are re-ranked with the measure, and near
+ *               duplicates are found.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * HistogramLshIndex Test
+ */
+public class HistogramLshIndexTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new CityBlockL1Measure(), new EuclideanL2Measure(), new CosineMeasure() };
+
+	@Test
+	public void testReRanked() throws Exception {
+		List<PreparedHistogram> list = HistogramVpTreeTest.clustered(new Random(41), 600, 32);
+		HistogramMatrix candidates = HistogramMatrix.of(list);
+		for (HistogramMeasure m : measures) {
+			HistogramLshIndex index = new HistogramLshIndex(m, candidates);
+			double[] all = m.compare(list.get(0), candidates);
+			int[] rows = index.candidates(list.get(0));
+			// the query itself is stored, and shares all its buckets
+			Assert.assertTrue(Arrays.binarySearch(rows, 0) >= 0);
+			HistogramKnnSearcher.Result result = index.search(list.get(0), 5);
+			Assert.assertEquals(rows.length, result.getMeasured());
+			double[] values = result.getValues();
+			for (int i = 0; i < values.length; i++) {
+				Assert.assertEquals(all[result.getIndices()[i]], values[i], 0d);
+				if (i > 0 && HistogramKnnSearcher.isSimilarity(m))
+					Assert.assertTrue(values[i] <= values[i - 1]);
+				else if (i > 0)
+					Assert.assertTrue(values[i] >= values[i - 1]);
+			}
+		}
+	}
+
+	@Test
+	public void testRecall() throws Exception {
+		Random random = new Random(42);
+		List<PreparedHistogram> list = HistogramVpTreeTest.clustered(random, 2000, 32);
+		HistogramMatrix candidates = HistogramMatrix.of(list);
+		for (HistogramMeasure m : measures) {
+			HistogramLshIndex index = new HistogramLshIndex(m, candidates, 16, 6, 0d, new Random(43));
+			HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+			int found = 0;
+			int measured = 0;
+			for (int q = 0; q < 20; q++) {
+				double[] h = list.get(random.nextInt(list.size())).getBins().clone();
+				for (int i = 0; i < h.length; i++)
+					h[i] *= 1 + 0.01 * random.nextDouble();
+				PreparedHistogram query = new PreparedHistogram(h);
+				int[] truth = scan.search(query, 5).getIndices();
+				Arrays.sort(truth);
+				HistogramKnnSearcher.Result result = index.search(query, 5);
+				for (int r : result.getIndices())
+					if (Arrays.binarySearch(truth, r) >= 0)
+						found++;
+				measured += result.getMeasured();
+			}
+			Assert.assertTrue(found >= 0.5 * 100);
+			Assert.assertTrue(measured < 20 * candidates.getNumRows() / 2);
+		}
+	}
+
+	@Test
+	public void testUnsupported() throws Exception {
+		try {
+			List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(44), 10, 8);
+			new HistogramLshIndex(new KullbackLeiblerMeasure(), HistogramMatrix.of(list));
+			Assert.assertTrue("unsupported measure accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(HistogramLshIndexTest.class);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramMatrix
+ * description   Batch comparisons give the same results as pairwise ones.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import gov.nist.itl.versus.similarity.comparisons.exception.ImageCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * HistogramMatrix Test
+ */
+public class HistogramMatrixTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new EuclideanL2Measure(), new CityBlockL1Measure(),
+			new ChebyshevLInfMeasure(), new CosineMeasure(),
+			new IntersectionMeasure(), new InnerProductMeasure(),
+			new SquaredEuclideanMeasure(), new HellingerMeasure(),
+			new KullbackLeiblerMeasure(), new MinkowskiMeasure(1.5),
+			new JeffreysMeasure(), new GowerMeasure() };
+
+	static List<PreparedHistogram> histograms(Random random, int count, int bins) throws Exception {
+		List<PreparedHistogram> list = new ArrayList<PreparedHistogram>();
+		for (int k = 0; k < count; k++) {
+			double[] c = new double[bins];
+			for (int i = 0; i < bins; i++)
+				c[i] = (random.nextInt(4) == 0) ? 0 : random.nextInt(1000);
+			list.add(new PreparedHistogram(c));
+		}
+		return list;
+	}
+
+	@Test
+	public void testSameResultsAsPairwise() throws Exception {
+		List<PreparedHistogram> list = histograms(new Random(3), 41, 64);
+		PreparedHistogram query = list.get(0);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(1, list.size()));
+		for (HistogramMeasure m : measures) {
+			double[] result = m.compare(query, candidates);
+			Assert.assertEquals(40, result.length);
+			for (int r = 0; r < result.length; r++)
+				Assert.assertEquals(m.compare(query, list.get(r + 1)).getValue(), result[r], 0d);
+		}
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		// enough rows of few bins for several blocks
+		List<PreparedHistogram> list = histograms(new Random(4), 3 * HistogramBatch.blockRows(8) + 1, 8);
+		PreparedHistogram query = list.get(0);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(1, list.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (HistogramMeasure m : measures)
+				Assert.assertArrayEquals(m.compare(query, candidates),
+						HistogramBatch.compare(m, query, candidates, executor), 0d);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRowRange() throws Exception {
+		List<PreparedHistogram> list = histograms(new Random(5), 11, 16);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(1, list.size()));
+		Assert.assertEquals(10, candidates.getNumRows());
+		Assert.assertEquals(32, candidates.getOffset(2));
+		Assert.assertArrayEquals(list.get(3).getBins(), candidates.getRow(2).getBins(), 0d);
+		double[] result = new double[10];
+		new EuclideanL2Measure().compare(list.get(0), candidates, 4, 6, result);
+		Assert.assertEquals(0d, result[3], 0d);
+		Assert.assertTrue(result[4] > 0d && result[5] > 0d);
+		Assert.assertEquals(0d, result[6], 0d);
+
+		// the shared row loop of the measures without a kernel of their own
+		new GowerMeasure().compare(list.get(0), candidates, 7, 9, result);
+		Assert.assertEquals(0d, result[6], 0d);
+		Assert.assertTrue(result[7] > 0d && result[8] > 0d);
+		Assert.assertEquals(0d, result[9], 0d);
+		try {
+			new GowerMeasure().compare(list.get(0), candidates, 8, 11, result);
+			Assert.assertTrue("rows past the matrix accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDifferentLengths() throws Exception {
+		try {
+			HistogramMatrix candidates = HistogramMatrix.of(histograms(new Random(6), 4, 16));
+			new CosineMeasure().compare(histograms(new Random(7), 1, 8).get(0), candidates);
+			Assert.assertTrue("different lengths accepted", false);
+		} catch (ImageCompatibilityException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDifferentLengthsRowLoop() throws Exception {
+		try {
+			HistogramMatrix candidates = HistogramMatrix.of(histograms(new Random(6), 4, 16));
+			new JeffreysMeasure().compare(histograms(new Random(7), 1, 8).get(0), candidates);
+			Assert.assertTrue("different lengths accepted", false);
+		} catch (ImageCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main( String[] args )
+	{
+		org.junit.runner.JUnitCore.runClasses( HistogramMatrixTest.class );
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramPivotFilter
+ * description   Exact pivot-filtered searches give the results of a full scan;
+ *               a recall target trades neighbours for measurements.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.List;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * HistogramPivotFilter Test
+ */
+public class HistogramPivotFilterTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new KullbackLeiblerMeasure(), new JeffreysMeasure(),
+			new TopsoeMeasure(), new JensenDifferenceMeasure() };
+
+	@Test
+	public void testSameAsFullScan() throws Exception {
+		List<PreparedHistogram> list = HistogramVpTreeTest.clustered(new Random(31), 420, 24);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(20, list.size()));
+		for (HistogramMeasure m : measures) {
+			Assert.assertTrue(HistogramPivotFilter.isBounded(m));
+			HistogramPivotFilter filter = new HistogramPivotFilter(m, candidates);
+			HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+			long measured = 0;
+			for (int q = 0; q < 20; q++) {
+				PreparedHistogram query = list.get(q);
+				for (int k : new int[] { 1, 10 }) {
+					HistogramKnnSearcher.Result expected = scan.search(query, k);
+					HistogramKnnSearcher.Result result = filter.search(query, k);
+					Assert.assertArrayEquals(expected.getIndices(), result.getIndices());
+					Assert.assertArrayEquals(expected.getValues(), result.getValues(), 0d);
+					measured += result.getMeasured();
+				}
+			}
+			Assert.assertTrue(measured < 40L * candidates.getNumRows());
+		}
+	}
+
+	@Test
+	public void testRecallTarget() throws Exception {
+		List<PreparedHistogram> list = HistogramVpTreeTest.clustered(new Random(32), 1050, 24);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(50, list.size()));
+		HistogramMeasure m = new KullbackLeiblerMeasure();
+		HistogramPivotFilter filter = new HistogramPivotFilter(m, candidates);
+		HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+		filter.setRecallTarget(0.8);
+		int found = 0;
+		int measured = 0;
+		double pruning = 0;
+		for (int q = 0; q < 50; q++) {
+			int[] truth = scan.search(list.get(q), 10).getIndices();
+			HistogramKnnSearcher.Result result = filter.search(list.get(q), 10);
+			java.util.Arrays.sort(truth);
+			for (int r : result.getIndices())
+				if (java.util.Arrays.binarySearch(truth, r) >= 0)
+					found++;
+			measured += result.getMeasured();
+			pruning += result.getPruningRatio();
+		}
+		// calibrated on other queries: allow some shortfall
+		Assert.assertTrue(found >= 0.6 * 500);
+		Assert.assertTrue(pruning / 50 > 0.5);
+
+		filter.setRecallTarget(1.0);
+		int exact = 0;
+		for (int q = 0; q < 50; q++)
+			exact += filter.search(list.get(q), 10).getMeasured();
+		Assert.assertTrue(measured <= exact);
+	}
+
+	@Test
+	public void testSimilarity() throws Exception {
+		List<PreparedHistogram> list = HistogramVpTreeTest.clustered(new Random(34), 420, 24);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(20, list.size()));
+		HistogramMeasure m = new CosineMeasure();
+		HistogramPivotFilter filter = new HistogramPivotFilter(m, candidates);
+		HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+		// without a bound, the exact search is the full scan
+		for (int q = 0; q < 20; q++) {
+			HistogramKnnSearcher.Result expected = scan.search(list.get(q), 3);
+			HistogramKnnSearcher.Result result = filter.search(list.get(q), 3);
+			Assert.assertArrayEquals(expected.getIndices(), result.getIndices());
+			Assert.assertArrayEquals(expected.getValues(), result.getValues(), 0d);
+		}
+		// the most similar rows first, with a recall target too
+		filter.setRecallTarget(0.9);
+		int found = 0;
+		for (int q = 0; q < 20; q++) {
+			int[] truth = scan.search(list.get(q), 3).getIndices();
+			HistogramKnnSearcher.Result result = filter.search(list.get(q), 3);
+			double[] values = result.getValues();
+			for (int i = 1; i < values.length; i++)
+				Assert.assertTrue(values[i - 1] >= values[i]);
+			java.util.Arrays.sort(truth);
+			for (int r : result.getIndices())
+				if (java.util.Arrays.binarySearch(truth, r) >= 0)
+					found++;
+		}
+		Assert.assertTrue(found >= 0.7 * 60);
+	}
+
+	@Test
+	public void testBadRecallTarget() throws Exception {
+		try {
+			List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(33), 10, 8);
+			new HistogramPivotFilter(new TopsoeMeasure(), HistogramMatrix.of(list)).setRecallTarget(0);
+			Assert.assertTrue("recall target 0 accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(HistogramPivotFilterTest.class);
+	}
+}
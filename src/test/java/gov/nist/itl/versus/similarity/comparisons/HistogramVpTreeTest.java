@@ -0,0 +1,123 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramVpTree
+ * description   Nearest neighbour and range searches in the tree give the
+ *               results of a full scan.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.List;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * HistogramVpTree Test
+ */
+public class HistogramVpTreeTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new EuclideanL2Measure(), new CityBlockL1Measure(),
+			new ChebyshevLInfMeasure(), new HellingerMeasure(),
+			new JensenShannonMeasure() };
+
+	// clusters of near duplicates, and exact duplicates
+	static List<PreparedHistogram> clustered(Random random, int count, int bins) throws Exception {
+		List<PreparedHistogram> centers = HistogramMatrixTest.histograms(random, 10, bins);
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(random, count, bins);
+		for (int k = 0; k < count; k++) {
+			double[] c = centers.get(random.nextInt(centers.size())).getBins();
+			double[] h = new double[bins];
+			for (int i = 0; i < bins; i++)
+				h[i] = c[i] * (1 + 0.05 * random.nextDouble());
+			if (k % 3 == 0)
+				list.set(k, new PreparedHistogram(h));
+			else if (k % 3 == 1)
+				list.set(k, list.get(k - 1));
+		}
+		return list;
+	}
+
+	@Test
+	public void testSameAsFullScan() throws Exception {
+		Random random = new Random(21);
+		List<PreparedHistogram> list = clustered(random, 600, 32);
+		HistogramMatrix candidates = HistogramMatrix.of(list.subList(20, list.size()));
+		for (HistogramMeasure m : measures) {
+			HistogramVpTree tree = new HistogramVpTree(m, candidates);
+			HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+			scan.setEarlyAbandoning(false);
+			for (int q = 0; q < 20; q++) {
+				PreparedHistogram query = list.get(q);
+				for (int k : new int[] { 1, 7, 40 }) {
+					HistogramKnnSearcher.Result expected = scan.search(query, k);
+					HistogramKnnSearcher.Result result = tree.search(query, k);
+					Assert.assertArrayEquals(expected.getIndices(), result.getIndices());
+					Assert.assertArrayEquals(expected.getValues(), result.getValues(), 0d);
+					Assert.assertEquals(candidates.getNumRows(), result.getMeasured() + result.getAbandoned());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRange() throws Exception {
+		Random random = new Random(22);
+		List<PreparedHistogram> list = clustered(random, 500, 32);
+		HistogramMatrix candidates = HistogramMatrix.of(list);
+		for (HistogramMeasure m : measures) {
+			HistogramVpTree tree = new HistogramVpTree(m, candidates);
+			double[] all = m.compare(list.get(0), candidates);
+			double[] sorted = all.clone();
+			java.util.Arrays.sort(sorted);
+			double radius = sorted[50];
+			HistogramKnnSearcher.Result result = tree.range(list.get(0), radius);
+			int expected = 0;
+			for (double v : all)
+				if (v <= radius)
+					expected++;
+			Assert.assertEquals(expected, result.getIndices().length);
+			for (int i = 0; i < expected; i++) {
+				Assert.assertEquals(all[result.getIndices()[i]], result.getValues()[i], 0d);
+				Assert.assertTrue(result.getValues()[i] <= radius);
+			}
+		}
+	}
+
+	@Test
+	public void testPrunes() throws Exception {
+		List<PreparedHistogram> list = clustered(new Random(23), 5000, 32);
+		HistogramMatrix candidates = HistogramMatrix.of(list);
+		HistogramVpTree tree = new HistogramVpTree(new EuclideanL2Measure(), candidates);
+		HistogramKnnSearcher.Result result = tree.search(list.get(0), 5);
+		Assert.assertTrue(result.getAbandoned() > candidates.getNumRows() / 2);
+	}
+
+	@Test
+	public void testNotMetric() throws Exception {
+		try {
+			List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(24), 10, 8);
+			new HistogramVpTree(new KullbackLeiblerMeasure(), HistogramMatrix.of(list));
+			Assert.assertTrue("non-metric measure accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(HistogramVpTreeTest.class);
+	}
+}
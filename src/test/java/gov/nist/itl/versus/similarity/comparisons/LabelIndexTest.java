@@ -0,0 +1,72 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          LabelIndex
+ * description   The label index of a segmented image gives the planes of
+ *               ImageData.match for the labels present and absent.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * LabelIndex Test
+ */
+public class LabelIndexTest extends junit.framework.TestCase
+{
+	private static double[][][] copy(double[][][] v) {
+		double[][][] c = new double[v.length][v[0].length][];
+		for (int i = 0; i < v.length; i++)
+			for (int j = 0; j < v[i].length; j++)
+				c[i][j] = v[i][j].clone();
+		return c;
+	}
+
+	@Test
+	public void testPlanes() throws Exception {
+		// 8-bit labels, a large one and a negative one
+		Random random = new Random(91);
+		int[] present = { -3, 0, 2, 7, 255, 1000 };
+		double[][][] v = new double[13][9][2];
+		for (int i = 0; i < 13; i++)
+			for (int j = 0; j < 9; j++)
+				for (int k = 0; k < 2; k++) {
+					// truncated towards 0, as by ImageData.getInt
+					int l = present[random.nextInt(present.length)];
+					v[i][j][k] = l + ((l < 0) ? -0.25d : 0.25d);
+				}
+		ImageData img = new ImageData(v);
+		LabelIndex index = LabelIndex.of(img);
+		Assert.assertArrayEquals(present, index.getLabels());
+
+		long total = 0;
+		for (int l : new int[] { -3, 0, 1, 2, 7, 255, 256, 1000 }) {
+			ImageData expected = new ImageData(copy(v));
+			expected = expected.match(expected, l);
+			ImageData plane = index.getPlane(l);
+			Assert.assertTrue(expected.equals(plane));
+			Assert.assertEquals(expected.sum(expected), (double) index.getCount(l), 0d);
+			Assert.assertEquals(index.getCount(l), index.getMask(l).cardinality());
+			total += index.getCount(l);
+		}
+		Assert.assertEquals(13 * 9 * 2, total);
+		// the mask of a label is the foreground of its plane
+		Assert.assertTrue(Arrays.equals(BinaryMask.of(index.getPlane(7)).getWords(), index.getMask(7).getWords()));
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(LabelIndexTest.class);
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          LabelMap
+ * description   Label maps keep the labels in the narrowest type and score
+ *               as the label images they come from.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.ThreeDimensionalDoubleArrayFeature;
+import edu.illinois.ncsa.versus.measure.SimilarityNumber;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabelMapFeature;
+import gov.nist.itl.versus.similarity.comparisons.descriptor.impl.LabeledThreeDimensionalDoubleArrayFeature;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.LabelMapComparison;
+import gov.nist.itl.versus.similarity.comparisons.measure.LabeledMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * LabelMap Test
+ */
+public class LabelMapTest extends junit.framework.TestCase
+{
+	private static ImageData image(Random random, int h, int w, int bands, int labels, int scale) {
+		double[][][] v = new double[h][w][bands];
+		for (int i = 0; i < h; i++)
+			for (int j = 0; j < w; j++)
+				for (int k = 0; k < bands; k++)
+					v[i][j][k] = scale * random.nextInt(labels);
+		return new ImageData(v);
+	}
+
+	@Test
+	public void testTypes() throws Exception {
+		Random random = new Random(101);
+		int[] scales = { 1, 200, 100000 };
+		int[] bytes = { 1, 2, 4 };
+		for (int s = 0; s < scales.length; s++) {
+			ImageData img = image(random, 11, 7, 3, 5, scales[s]);
+			LabelMap map = LabelMap.of(img);
+			Assert.assertEquals(bytes[s], map.getBytesPerLabel());
+			Assert.assertTrue(img.equals(map.toImageData()));
+			Assert.assertEquals((int) img.getValue(10, 6, 2), map.get(10, 6, 2));
+			long total = 0;
+			for (int l : map.getLabels())
+				total += map.getCount(l);
+			Assert.assertEquals(11 * 7 * 3, total);
+			Assert.assertEquals(4 * scales[s], map.getMaxLabel());
+		}
+		LabelMap negative = LabelMap.of(new ImageData(new double[][][] { { { -7.5 }, { 3 } } }));
+		Assert.assertEquals(4, negative.getBytesPerLabel());
+		Assert.assertArrayEquals(new int[] { -7, 3 }, negative.getLabels());
+	}
+
+	@Test
+	public void testMeasures() throws Exception {
+		Random random = new Random(102);
+		ImageData a = image(random, 40, 30, 1, 6, 1);
+		ImageData b = image(random, 40, 30, 1, 8, 1);
+		LabelMap x = LabelMap.of(a);
+		LabelMap y = LabelMap.of(b);
+		ContingencyTable t = ContingencyTable.of(a, b);
+		ContingencyTable u = ContingencyTable.of(x, y);
+		Assert.assertEquals(t.adjustedRandIndex(), u.adjustedRandIndex(), 0d);
+		Assert.assertEquals(t.dice(), u.dice(), 0d);
+		Assert.assertEquals(t.variationOfInformation(), u.variationOfInformation(), 0d);
+
+		// the label map against the label image, label by label
+		LabeledThreeDimensionalDoubleArrayFeature f1 = new LabeledThreeDimensionalDoubleArrayFeature(a, LabelIndex.of(a));
+		LabeledThreeDimensionalDoubleArrayFeature f2 = new LabeledThreeDimensionalDoubleArrayFeature(b, LabelIndex.of(b));
+		LabelMapFeature g1 = new LabelMapFeature(x);
+		LabelMapFeature g2 = new LabelMapFeature(y);
+		LabeledMeasure[] measures = { new DicePixelMeasure(), new JaccardPixelMeasure(),
+				new TotalErrorRateEvaluationMeasure(), new TotalErrorRateTestMeasure(), new RandIndexMeasure() };
+		for (LabeledMeasure m : measures) {
+			SimilarityNumber[] expected = m.compare(f1, f2);
+			SimilarityNumber[] found = m.compare(g1, g2);
+			Assert.assertEquals(8, found.length);
+			for (int l = 0; l < found.length; l++)
+				Assert.assertEquals(expected[l].getValue(), found[l].getValue(), 0d);
+		}
+	}
+
+	// 1 where the label is, 0 elsewhere
+	private static double[][][] plane(ImageData img, int label) {
+		double[][][] v = new double[img.getNumRows()][img.getNumCols()][img.getNumBands()];
+		for (int i = 0; i < v.length; i++)
+			for (int j = 0; j < v[i].length; j++)
+				for (int k = 0; k < v[i][j].length; k++)
+					v[i][j][k] = (img.getInt(i, j, k) == label) ? 1d : 0d;
+		return v;
+	}
+
+	@Test
+	public void testLabelMapFeatures() throws Exception {
+		// sparse 16-bit and larger labels: one result per label present
+		Random random = new Random(104);
+		int[] present1 = { 0, 3, 70000 };
+		int[] present2 = { 0, 5, 70000 };
+		double[][][] v1 = new double[20][15][1];
+		double[][][] v2 = new double[20][15][1];
+		for (int i = 0; i < 20; i++)
+			for (int j = 0; j < 15; j++) {
+				v1[i][j][0] = present1[random.nextInt(3)];
+				v2[i][j][0] = present2[random.nextInt(3)];
+			}
+		ImageData a = new ImageData(v1);
+		ImageData b = new ImageData(v2);
+		LabelMapFeature g1 = new LabelMapFeature(LabelMap.of(a));
+		LabelMapFeature g2 = new LabelMapFeature(LabelMap.of(b));
+		int[] labels = LabelMapComparison.labels(g1, g2);
+		Assert.assertArrayEquals(new int[] { 0, 3, 5, 70000 }, labels);
+		LabeledMeasure[] measures = { new DicePixelMeasure(), new JaccardPixelMeasure(),
+				new TotalErrorRateEvaluationMeasure(), new TotalErrorRateTestMeasure(),
+				new RandIndexMeasure(), new AdjustedRandIndexMeasure() };
+		for (LabeledMeasure m : measures) {
+			// the whole maps as the label images
+			Assert.assertEquals(m.compare(new ThreeDimensionalDoubleArrayFeature(v1),
+					new ThreeDimensionalDoubleArrayFeature(v2)).getValue(),
+					((SimilarityNumber) m.compare((Descriptor) g1, (Descriptor) g2)).getValue(), 0d);
+			if (m instanceof AdjustedRandIndexMeasure)
+				continue;	// a label absent from one image leaves a 1-row table
+			SimilarityNumber[] found = m.compare(g1, g2);
+			Assert.assertEquals(labels.length, found.length);
+			for (int l = 0; l < labels.length; l++)
+				Assert.assertEquals(m.compare(new ThreeDimensionalDoubleArrayFeature(plane(a, labels[l])),
+						new ThreeDimensionalDoubleArrayFeature(plane(b, labels[l]))).getValue(),
+						found[l].getValue(), 0d);
+		}
+
+		// a negative label is rejected
+		v1[0][0][0] = -2d;
+		LabelMapFeature g3 = new LabelMapFeature(LabelMap.of(new ImageData(v1)));
+		try {
+			new DicePixelMeasure().compare(g3, g2);
+			Assert.assertTrue("negative label accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSerialize() throws Exception {
+		LabelMap map = LabelMap.of(image(new Random(103), 100, 100, 1, 4, 1));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(map);
+		out.close();
+		// a byte per pixel and little more
+		Assert.assertTrue(bytes.size() < 100 * 100 + 1000);
+		LabelMap copy = (LabelMap) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		Assert.assertTrue(map.toImageData().equals(copy.toImageData()));
+		Assert.assertArrayEquals(map.getLabels(), copy.getLabels());
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(LabelMapTest.class);
+	}
+}
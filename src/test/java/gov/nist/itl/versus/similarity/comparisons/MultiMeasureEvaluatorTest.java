@@ -0,0 +1,141 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          MultiMeasureEvaluator
+ * description   One pass over a pair gives the result of every kernel.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import edu.illinois.ncsa.versus.measure.Measure;
+import gov.nist.itl.versus.similarity.comparisons.exception.SWIndependenceException;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.DicePixelMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.MinkowskiMeasure;
+
+/**
+ * MultiMeasureEvaluator Test
+ */
+public class MultiMeasureEvaluatorTest extends junit.framework.TestCase
+{
+	private static MathOpsE mopsE = new MathOpsE();
+
+	// the MathOpsE kernel a kind is named after, e.g. INTERSECTION_IS
+	private static Method kernel(MultiMeasureEvaluator.Kind kind) {
+		String name = "histogram_measure_" + kind.name();
+		for (Method m : MathOpsE.class.getMethods())
+			if (m.getName().equalsIgnoreCase(name)
+					&& m.getParameterTypes().length == 2
+					&& m.getParameterTypes()[0] == double[].class)
+				return m;
+		throw new AssertionError("no kernel for " + kind);
+	}
+
+	static double[] histogram(Random random, int bins, boolean zeros) {
+		double[] h = new double[bins];
+		double total = 0;
+		for (int i = 0; i < bins; i++)
+			if (!zeros || random.nextInt(4) != 0)
+				total += (h[i] = random.nextInt(1000) + 1);
+		for (int i = 0; i < bins; i++)
+			h[i] /= total;
+		return h;
+	}
+
+	// the kernel's result, or null when it throws
+	private static Double single(MultiMeasureEvaluator.Kind kind, double[] P, double[] Q)
+			throws Exception {
+		try {
+			return (Double) kernel(kind).invoke(mopsE, P, Q);
+		} catch (InvocationTargetException e) {
+			return null;
+		}
+	}
+
+	@Test
+	public void testSameResultsAsKernels() throws Exception {
+		Random random = new Random(31);
+		MultiMeasureEvaluator.Kind[] kinds = MultiMeasureEvaluator.Kind.values();
+		MultiMeasureEvaluator all = new MultiMeasureEvaluator(kinds);
+		for (int n = 0; n < 20; n++) {
+			int bins = 1 + random.nextInt(300);
+			double[] P = histogram(random, bins, false);
+			double[] Q = histogram(random, bins, false);
+			double[] result = all.evaluate(P, Q);
+			for (int k = 0; k < kinds.length; k++) {
+				Double expected = single(kinds[k], P, Q);
+				Assert.assertTrue(kinds[k].name(), expected != null);
+				Assert.assertEquals(expected.doubleValue(), result[k], 0d);
+				// and on its own
+				Assert.assertEquals(expected.doubleValue(),
+						new MultiMeasureEvaluator(kinds[k]).evaluate(P, Q)[0], 0d);
+			}
+		}
+	}
+
+	@Test
+	public void testThrowsAsKernels() throws Exception {
+		// empty bins: each kind throws exactly when its kernel does
+		Random random = new Random(32);
+		for (int n = 0; n < 10; n++) {
+			double[] P = histogram(random, 64, true);
+			double[] Q = histogram(random, 64, true);
+			for (MultiMeasureEvaluator.Kind kind : MultiMeasureEvaluator.Kind.values()) {
+				Double expected = single(kind, P, Q);
+				Double result;
+				try {
+					result = new MultiMeasureEvaluator(kind).evaluate(P, Q)[0];
+				} catch (Exception e) {
+					result = null;
+				}
+				Assert.assertEquals(kind.name(), expected, result);
+			}
+		}
+	}
+
+	@Test
+	public void testMeasures() throws Exception {
+		List<Measure> measures = new ArrayList<Measure>();
+		for (MultiMeasureEvaluator.Kind kind : MultiMeasureEvaluator.Kind.values())
+			if (kind.getMeasureClass() != null)
+				measures.add(kind.getMeasureClass().newInstance());
+		MultiMeasureEvaluator.Kind[] kinds = new MultiMeasureEvaluator(measures).getKinds();
+		Assert.assertEquals(MultiMeasureEvaluator.allMeasures().getKinds().length, kinds.length);
+		for (int k = 0; k < kinds.length; k++)
+			Assert.assertEquals(measures.get(k).getClass(), kinds[k].getMeasureClass());
+
+		// MINKOWSKI is the order p = 3 only
+		new MultiMeasureEvaluator(Collections.singletonList(new MinkowskiMeasure(3.0d)));
+		try {
+			new MultiMeasureEvaluator(Collections.singletonList(new MinkowskiMeasure(2.0d)));
+			Assert.assertTrue("p = 2 accepted", false);
+		} catch (SWIndependenceException e) {
+			// expected
+		}
+		try {
+			new MultiMeasureEvaluator(Collections.singletonList(new DicePixelMeasure()));
+			Assert.assertTrue("pixel measure accepted", false);
+		} catch (SWIndependenceException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(MultiMeasureEvaluatorTest.class);
+	}
+}
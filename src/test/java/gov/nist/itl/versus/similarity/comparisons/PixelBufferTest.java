@@ -0,0 +1,213 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          PixelBuffer
+ * description   Pixels of one primitive type in a single flat array.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+
+/**
+ * PixelBuffer Test
+ */
+public class PixelBufferTest extends junit.framework.TestCase
+{
+	@Test
+	public void testTypes() throws Exception {
+		double[] in = { 0, 1, 2.75, -1, 300, 70000 };
+		double[][] out = {
+				{ 0, 1, 1, 1, 1, 1 },				// BIT
+				{ 0, 1, 2, 255, 44, 112 },			// BYTE
+				{ 0, 1, 2, 65535, 300, 4464 },		// SHORT
+				{ 0, 1, 2, -1, 300, 70000 },		// INT
+				{ 0, 1, 2.75, -1, 300, 70000 },		// FLOAT
+				{ 0, 1, 2.75, -1, 300, 70000 } };	// DOUBLE
+		PixelBuffer.Type[] types = PixelBuffer.Type.values();
+		for (int t = 0; t < types.length; t++) {
+			PixelBuffer b = PixelBuffer.allocate(types[t], 2, 3, 1);
+			for (int x = 0; x < in.length; x++)
+				b.set(x / 3, x % 3, 0, in[x]);
+			for (int x = 0; x < in.length; x++)
+				Assert.assertEquals(out[t][x], b.get(x / 3, x % 3, 0), 0d);
+		}
+		Assert.assertEquals(PixelBuffer.Type.BYTE, PixelBuffer.narrowest(0, 255, true));
+		Assert.assertEquals(PixelBuffer.Type.SHORT, PixelBuffer.narrowest(0, 256, true));
+		Assert.assertEquals(PixelBuffer.Type.INT, PixelBuffer.narrowest(-1, 5, true));
+		Assert.assertEquals(PixelBuffer.Type.DOUBLE, PixelBuffer.narrowest(0, 5, false));
+
+		// a mask in 1/64, an 8-bit label image in 1/8 of the doubles
+		long doubles = PixelBuffer.allocate(PixelBuffer.Type.DOUBLE, 640, 480, 1).sizeInBytes();
+		Assert.assertEquals(doubles / 64, PixelBuffer.allocate(PixelBuffer.Type.BIT, 640, 480, 1).sizeInBytes());
+		Assert.assertEquals(doubles / 8, PixelBuffer.allocate(PixelBuffer.Type.BYTE, 640, 480, 1).sizeInBytes());
+	}
+
+	@Test
+	public void testImageData() throws Exception {
+		// the same labels over arrays and over a BYTE buffer
+		Random random = new Random(74);
+		double[][][] x = new double[23][17][2];
+		double[][][] y = new double[23][17][2];
+		for (int i = 0; i < 23; i++)
+			for (int j = 0; j < 17; j++)
+				for (int k = 0; k < 2; k++) {
+					x[i][j][k] = random.nextInt(5);
+					y[i][j][k] = (random.nextInt(3) == 0) ? random.nextInt(5) : x[i][j][k];
+				}
+		ImageData a = new ImageData(x);
+		ImageData b = new ImageData(y);
+		ImageData pa = new ImageData(PixelBuffer.of(x, PixelBuffer.Type.BYTE));
+		ImageData pb = new ImageData(PixelBuffer.of(y, PixelBuffer.Type.BYTE));
+		Assert.assertEquals(23, pa.getNumRows());
+		Assert.assertEquals(17, pa.getNumCols());
+		Assert.assertEquals(2, pa.getNumBands());
+		Assert.assertEquals(x[4][9][1], pa.getValue(4, 9, 1), 0d);
+		Assert.assertTrue(pa.equals(a));
+		Assert.assertTrue(a.equals(pa));
+
+		ContingencyTable t = ContingencyTable.of(a, b);
+		ContingencyTable u = ContingencyTable.of(pa, pb);
+		Assert.assertEquals(t.getCount(3, 2), u.getCount(3, 2));
+		Assert.assertEquals(t.adjustedRandIndex(), u.adjustedRandIndex(), 0d);
+		Assert.assertEquals(t.variationOfInformation(), u.variationOfInformation(), 0d);
+		Assert.assertEquals(BinaryMask.of(a).jaccard(BinaryMask.of(b)),
+				BinaryMask.of(pa).jaccard(BinaryMask.of(pb)), 0d);
+		Assert.assertTrue(pa.getBuffer() != null);
+
+		// a write is seen through the buffer; the arrays are a copy of it,
+		// and the buffer is kept
+		pa.set(0, 0, 0, 4d);
+		Assert.assertEquals(4d, pa.getValue(0, 0, 0), 0d);
+		double[][][] v = pa.getValues();
+		Assert.assertTrue(pa.getBuffer() != null);
+		Assert.assertEquals(PixelBuffer.Type.BYTE, pa.getType());
+		Assert.assertEquals(4d, v[0][0][0], 0d);
+		Assert.assertEquals(x[22][16][1], v[22][16][1], 0d);
+		v[0][0][1] = 3d;
+		Assert.assertEquals(x[0][0][1], pa.getValue(0, 0, 1), 0d);
+		Assert.assertTrue(pa.getValues() != v);
+	}
+
+	// a copy of the pixels of a region of one band
+	private static ImageData copy(double[][][] v, int row, int col, int rows, int cols, int band) {
+		double[][][] c = new double[rows][cols][1];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				c[i][j][0] = v[row + i][col + j][band];
+		return new ImageData(c);
+	}
+
+	@Test
+	public void testViews() throws Exception {
+		Random random = new Random(75);
+		double[][][] x = new double[19][14][3];
+		double[][][] y = new double[19][14][3];
+		for (int i = 0; i < 19; i++)
+			for (int j = 0; j < 14; j++)
+				for (int k = 0; k < 3; k++) {
+					x[i][j][k] = random.nextInt(4);
+					y[i][j][k] = (random.nextInt(4) == 0) ? random.nextInt(4) : x[i][j][k];
+				}
+		MathOpsE ops = new MathOpsE();
+		ImageData[] as = { new ImageData(x), new ImageData(PixelBuffer.of(x, PixelBuffer.Type.BYTE)) };
+		ImageData[] bs = { new ImageData(y), new ImageData(PixelBuffer.of(y, PixelBuffer.Type.SHORT)) };
+		for (int n = 0; n < as.length; n++) {
+			ImageData a = as[n].region(3, 2, 12, 9).band(1);
+			ImageData b = bs[n].region(3, 2, 12, 9).band(1);
+			ImageData ca = copy(x, 3, 2, 12, 9, 1);
+			ImageData cb = copy(y, 3, 2, 12, 9, 1);
+			Assert.assertEquals(12, a.getNumRows());
+			Assert.assertEquals(9, a.getNumCols());
+			Assert.assertEquals(1, a.getNumBands());
+			Assert.assertTrue(a.equals(ca));
+			Assert.assertEquals(ops.pixel_measure_ari(ca, cb), ops.pixel_measure_ari(a, b), 0d);
+			Assert.assertEquals(ops.pixel_measure_dice(ca, cb), ops.pixel_measure_dice(a, b), 0d);
+			Assert.assertEquals(ops.pixel_measure_vi(ca, cb), ops.pixel_measure_vi(a, b), 0d);
+			Assert.assertTrue(Arrays.equals(ops.img2Array(ca), ops.img2Array(a)));
+			Assert.assertTrue(Arrays.equals(ops.img2ArrayColumnMajor(ca), ops.img2ArrayColumnMajor(a)));
+			Assert.assertTrue(Arrays.equals(ops.img2ArrayColumnMajor(ca), ops.img2Array(a.transpose())));
+			Assert.assertTrue(Arrays.equals(ops.img2Array(as[n]), ops.img2Array(as[n].flatten())));
+		}
+
+		// a view and its image share their pixels (the arrays of x for as[0])
+		for (int n = 0; n < as.length; n++) {
+			ImageData a = as[n].region(3, 2, 12, 9).band(1);
+			a.set(0, 0, 0, 3d);
+			Assert.assertEquals(3d, as[n].getValue(3, 2, 1), 0d);
+			as[n].set(14, 10, 1, 2d);
+			Assert.assertEquals(2d, a.getValue(11, 8, 0), 0d);
+			Assert.assertEquals(2d, a.getValues()[11][8][0], 0d);
+			Assert.assertEquals(2d, as[n].getValue(14, 10, 1), 0d);
+		}
+		Assert.assertEquals(3d, x[3][2][1], 0d);
+
+		// a copy, of a view too, keeps the type and not the pixels
+		PixelBuffer r = as[1].getBuffer().region(3, 2, 12, 9);
+		PixelBuffer c = r.copy();
+		Assert.assertEquals(PixelBuffer.Type.BYTE, c.getType());
+		Assert.assertTrue(new ImageData(c).equals(new ImageData(r)));
+		c.set(0, 0, 1, 1d);
+		Assert.assertEquals(3d, r.get(0, 0, 1), 0d);
+		Assert.assertEquals(1d, c.get(0, 0, 1), 0d);
+		try {
+			as[1].region(0, 0, 5, 5).flatten();
+			Assert.assertTrue(false);
+		} catch (MathCompatibilityException e) {
+			// a region is not contiguous in the array
+		}
+	}
+
+	@Test
+	public void testGetValuesAfterViews() throws Exception {
+		double[][][] x = new double[6][5][2];
+		for (int i = 0; i < 6; i++)
+			for (int j = 0; j < 5; j++)
+				for (int k = 0; k < 2; k++)
+					x[i][j][k] = (i + j + k) % 3;
+		ImageData[] images = { new ImageData(x), new ImageData(PixelBuffer.of(x, PixelBuffer.Type.BYTE)) };
+		for (int n = 0; n < images.length; n++) {
+			ImageData img = images[n];
+			ImageData view = img.region(1, 1, 4, 3).band(1);
+			ImageData clone = img.clone();
+			ImageData flat = img.flatten();
+			double before = img.getValue(2, 2, 1);
+
+			// the same semantics before and after taking views: the arrays
+			// of an image over arrays, a copy for an image over a buffer
+			img.getValues()[2][2][1] = 7d;
+			double expected = (n == 0) ? 7d : before;
+			Assert.assertEquals(expected, img.getValue(2, 2, 1), 0d);
+			Assert.assertEquals(expected, view.getValue(1, 1, 0), 0d);
+			Assert.assertEquals(expected, clone.getValue(2, 2, 1), 0d);
+			Assert.assertEquals(expected, flat.getValue(0, 2 * 5 + 2, 1), 0d);
+			Assert.assertEquals(n == 0, img.getValues() == x);
+
+			// a view is over a buffer: its arrays are a copy
+			view.getValues()[0][0][0] = 9d;
+			Assert.assertTrue(img.getValue(1, 1, 1) != 9d);
+
+			// set() writes through every image sharing the pixels
+			view.set(0, 0, 0, 2d);
+			Assert.assertEquals(2d, img.getValue(1, 1, 1), 0d);
+			Assert.assertEquals(2d, clone.getValue(1, 1, 1), 0d);
+			Assert.assertEquals(2d, img.getValues()[1][1][1], 0d);
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(PixelBufferTest.class);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          PreparedHistogram
+ * description   Prepared histograms give the same results as descriptors.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.RGBHistogramDescriptor;
+import edu.illinois.ncsa.versus.measure.SimilarityNumber;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * PreparedHistogram Test
+ */
+public class PreparedHistogramTest extends junit.framework.TestCase
+{
+	private static MathOpsE mopsE = new MathOpsE();
+
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new EuclideanL2Measure(), new CosineMeasure(),
+			new CityBlockL1Measure(), new ChebyshevLInfMeasure(),
+			new IntersectionMeasure(),
+			new SquaredChordMeasure(), new SquaredChordDMeasure(),
+			new MatusitaDMeasure(), new JensenDifferenceMeasure(),
+			new KullbackLeiblerMeasure(), new IntersectionDMeasure() };
+
+	// compare the descriptors with the int[] count kernels of MathOpsE
+	private static boolean countKernel(HistogramMeasure m) {
+		return m instanceof EuclideanL2Measure || m instanceof CosineMeasure
+				|| m instanceof CityBlockL1Measure || m instanceof ChebyshevLInfMeasure
+				|| m instanceof IntersectionMeasure;
+	}
+
+	static int[][] rgb(Random random, int bins) {
+		int[][] h = new int[bins][3];
+		for (int i = 0; i < bins; i++)
+			for (int j = 0; j < 3; j++)
+				h[i][j] = (random.nextInt(4) == 0) ? 0 : random.nextInt(1000);
+		return h;
+	}
+
+	@Test
+	public void testNormalizedBins() throws Exception {
+		Random random = new Random(7);
+		RGBHistogramDescriptor d = new RGBHistogramDescriptor(rgb(random, 32));
+		PreparedHistogram p = PreparedHistogram.of(d);
+		Double[] expected = mopsE.normalizeRgbHistogram(d);
+		Assert.assertEquals(expected.length, p.getNumBins());
+		for (int i = 0; i < expected.length; i++)
+			Assert.assertEquals(expected[i].doubleValue(), p.getBins()[i], 0d);
+	}
+
+	@Test
+	public void testInvariants() throws Exception {
+		PreparedHistogram p = new PreparedHistogram(new double[] { 0, 1, 3 });
+		Assert.assertEquals(4d, p.getTotal(), 0d);
+		Assert.assertEquals(Math.sqrt(0.75d), p.getSqrt()[2], 0d);
+		Assert.assertEquals(-Double.MAX_VALUE, p.getLn()[0], 0d);
+		Assert.assertEquals(0d, p.getPLnP()[0], 0d);
+		Assert.assertEquals(0.25d * Math.log(0.25d), p.getPLnP()[1], 0d);
+		Assert.assertEquals(Math.sqrt(0.0625d + 0.5625d), p.getL2Norm(), 0d);
+	}
+
+	@Test
+	public void testSameResultsAsDescriptors() throws Exception {
+		Random random = new Random(11);
+		for (int t = 0; t < 20; t++) {
+			RGBHistogramDescriptor d1 = new RGBHistogramDescriptor(rgb(random, 64));
+			RGBHistogramDescriptor d2 = new RGBHistogramDescriptor(rgb(random, 64));
+			PreparedHistogram p1 = PreparedHistogram.of(d1);
+			PreparedHistogram p2 = PreparedHistogram.of(d2);
+			for (HistogramMeasure m : measures) {
+				double expected = ((SimilarityNumber) m.compare(d1, d2)).getValue();
+				// the count kernels sum exact terms, the others normalized bins
+				double delta = countKernel(m) ? HistogramCountsTest.TOLERANCE
+						* Math.max(1d, Math.abs(expected)) : 0d;
+				Assert.assertEquals(expected, m.compare(p1, p2).getValue(), delta);
+				// through compare(Descriptor, Descriptor)
+				Descriptor f1 = p1;
+				Descriptor f2 = p2;
+				Assert.assertEquals(expected,
+						((SimilarityNumber) m.compare(f1, f2)).getValue(), delta);
+			}
+		}
+	}
+
+	@Test
+	public void testGrayscale() throws Exception {
+		GrayscaleHistogramDescriptor d = new GrayscaleHistogramDescriptor(
+				new int[] { 0, 5, 5, 10 });
+		PreparedHistogram p = PreparedHistogram.of(d);
+		Assert.assertEquals(0.5d, p.getBins()[3], 0d);
+		Assert.assertEquals(20d, p.getTotal(), 0d);
+	}
+
+	public static void main( String[] args )
+	{
+		org.junit.runner.JUnitCore.runClasses( PreparedHistogramTest.class );
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          QuantizedHistogramStore
+ * description   Measurements against quantized rows stay within the
+ *               documented error bounds of the exact ones.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.List;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.QuantizedHistogramStore.Precision;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.*;
+
+/**
+ * QuantizedHistogramStore Test
+ */
+public class QuantizedHistogramStoreTest extends junit.framework.TestCase
+{
+	private static HistogramMeasure[] measures = new HistogramMeasure[] {
+			new EuclideanL2Measure(), new CityBlockL1Measure(),
+			new ChebyshevLInfMeasure(), new SquaredEuclideanMeasure(),
+			new IntersectionMeasure(), new InnerProductMeasure(),
+			new CosineMeasure() };
+
+	@Test
+	public void testErrorBounds() throws Exception {
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(51), 101, 96);
+		HistogramMatrix exact = HistogramMatrix.of(list.subList(1, list.size()));
+		PreparedHistogram query = list.get(0);
+		for (Precision precision : Precision.values()) {
+			QuantizedHistogramStore store = QuantizedHistogramStore.of(exact, precision);
+			Assert.assertEquals(100, store.getNumRows());
+			for (HistogramMeasure m : measures) {
+				Assert.assertTrue(QuantizedHistogramStore.isSupported(m));
+				double[] expected = m.compare(query, exact);
+				double[] result = store.compare(m, query);
+				for (int r = 0; r < result.length; r++) {
+					double bound = store.errorBound(m, query, r, result[r]);
+					Assert.assertTrue(Math.abs(result[r] - expected[r]) <= bound + 1e-12);
+					// the kernels measure the rows as read back
+					Assert.assertEquals(m.compare(query, store.getRow(r)).getValue(), result[r], 1e-12);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReadBack() throws Exception {
+		List<PreparedHistogram> list = HistogramMatrixTest.histograms(new Random(52), 40, 32);
+		QuantizedHistogramStore store = new QuantizedHistogramStore(32, Precision.FIXED16);
+		for (PreparedHistogram h : list)
+			store.add(h);
+		Assert.assertEquals(40, store.getNumRows());
+		Assert.assertEquals(40L * (32 * 2 + 8), store.getMemorySize());
+		for (int r = 0; r < list.size(); r++) {
+			double[] bins = list.get(r).getBins();
+			double[] row = store.decode(r, null);
+			for (int i = 0; i < bins.length; i++) {
+				Assert.assertTrue(Math.abs(bins[i] - row[i]) <= store.getDelta(r) + 1e-15);
+				if (bins[i] == 0d)
+					Assert.assertEquals(0d, row[i], 0d);
+			}
+		}
+	}
+
+	@Test
+	public void testNegativeBins() throws Exception {
+		try {
+			QuantizedHistogramStore store = new QuantizedHistogramStore(2, Precision.FIXED8);
+			store.add(new PreparedHistogram(new double[] { 2, -1 }));
+			Assert.assertTrue("negative bin accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(QuantizedHistogramStoreTest.class);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          SparseHistogram
+ * description   Sparse kernels give the same results as dense kernels.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+import gov.nist.itl.versus.similarity.comparisons.exception.MathCompatibilityException;
+
+/**
+ * SparseHistogram Test
+ */
+public class SparseHistogramTest extends junit.framework.TestCase
+{
+	private static MathOpsE mopsE = new MathOpsE();
+
+	static double[] sparse(Random random, int bins, double density) {
+		double[] h = new double[bins];
+		double total = 0;
+		for (int i = 0; i < bins; i++)
+			if (random.nextDouble() < density)
+				total += (h[i] = random.nextInt(1000) + 1);
+		for (int i = 0; i < bins; i++)
+			h[i] /= total;
+		return h;
+	}
+
+	@Test
+	public void testUnion() throws Exception {
+		SparseHistogram p = new SparseHistogram(new double[] { 0, 1, 0, 2, 0 });
+		SparseHistogram q = new SparseHistogram(new double[] { 3, 0, 0, 4, 0 });
+		Assert.assertEquals(2, p.getNumNonZero());
+		double[][] u = SparseHistogram.union(p, q);
+		Assert.assertArrayEquals(new double[] { 0, 1, 2 }, u[0], 0d);
+		Assert.assertArrayEquals(new double[] { 3, 0, 4 }, u[1], 0d);
+		Assert.assertArrayEquals(new double[] { 0, 1, 0, 2, 0 }, p.toDense(), 0d);
+	}
+
+	@Test
+	public void testSameResultsAsDense() throws Exception {
+		Random random = new Random(5);
+		for (int t = 0; t < 20; t++) {
+			double[] a = sparse(random, 4096, 0.05);
+			double[] b = sparse(random, 4096, 0.05);
+			PreparedHistogram p = new PreparedHistogram(a);
+			PreparedHistogram q = new PreparedHistogram(b);
+			Assert.assertTrue(p.isSparse() && q.isSparse());
+			Assert.assertEquals(mopsE.histogram_measure_kullback_leibler(p.getBins(), q.getBins()),
+					mopsE.histogram_measure_kullback_leibler(p, q), 0d);
+			Assert.assertEquals(mopsE.histogram_measure_jensen_shannon(p.getBins(), q.getBins()),
+					mopsE.histogram_measure_jensen_shannon(p, q), 0d);
+			Assert.assertEquals(mopsE.histogram_measure_intersection_IS(p.getBins(), q.getBins()),
+					mopsE.histogram_measure_intersection_IS(p, q), 0d);
+			Assert.assertEquals(mopsE.histogram_measure_motyka(p.getBins(), q.getBins()),
+					mopsE.histogram_measure_motyka(p, q), 0d);
+		}
+	}
+
+	@Test
+	public void testIndicesNotIncreasing() throws Exception {
+		try {
+			new SparseHistogram(8, new int[] { 3, 1 }, new double[] { 1, 1 });
+			Assert.assertTrue("decreasing indices accepted", false);
+		} catch (MathCompatibilityException e) {
+			// expected
+		}
+	}
+
+	public static void main( String[] args )
+	{
+		org.junit.runner.JUnitCore.runClasses( SparseHistogramTest.class );
+	}
+}
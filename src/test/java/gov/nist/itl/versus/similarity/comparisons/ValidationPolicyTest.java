@@ -0,0 +1,137 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          ValidationPolicy
+ * description   How the arguments of a measure are checked, and that its
+ *               results are checked under every policy.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import gov.nist.itl.versus.similarity.comparisons.exception.HWIndependenceException;
+
+/**
+ * ValidationPolicy Test
+ */
+public class ValidationPolicyTest extends junit.framework.TestCase
+{
+	private static final String CHEBYSHEV = "histogram_measure_chebyshev";
+
+	// uniform bins, with bin bad set to NaN
+	private static double[] bins(int n, int bad) {
+		double[] h = new double[n];
+		for (int i = 0; i < n; i++)
+			h[i] = 1d / n;
+		if (bad >= 0)
+			h[bad] = Double.NaN;
+		return h;
+	}
+
+	private static boolean passes(MathOpsE ops, double[] P, double[] Q) throws Exception {
+		try {
+			ops.validate(CHEBYSHEV, P, Q);
+			return true;
+		} catch (HWIndependenceException e) {
+			return false;
+		}
+	}
+
+	@Test
+	public void testPolicies() throws Exception {
+		MathOpsE ops = new MathOpsE();
+		Assert.assertEquals(ValidationPolicy.STRICT, ops.getValidationPolicy());
+		double[] Q = bins(101, -1);
+		// with 101 bins SAMPLED checks every 3rd bin and the last one
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+		Assert.assertFalse(passes(ops, bins(101, 1), Q));
+		Assert.assertFalse(passes(ops, bins(101, 100), Q));
+		ops.setValidationPolicy(ValidationPolicy.SAMPLED);
+		Assert.assertTrue(passes(ops, bins(101, 1), Q));
+		Assert.assertFalse(passes(ops, bins(101, 3), Q));
+		Assert.assertFalse(passes(ops, bins(101, 100), Q));
+		Assert.assertFalse(passes(ops, Q, bins(101, 100)));
+		ops.setValidationPolicy(ValidationPolicy.TRUSTED);
+		Assert.assertTrue(passes(ops, bins(101, 1), Q));
+		Assert.assertTrue(passes(ops, bins(101, 100), Q));
+
+		// a NaN bin that does not reach the result: the Chebyshev maximum
+		// skips it, so only the entry check can reject it
+		Assert.assertEquals(0d, ops.histogram_measure_chebyshev(bins(101, 50), Q), 0d);
+		ops.setValidationPolicy(ValidationPolicy.STRICT);
+		try {
+			ops.histogram_measure_chebyshev(bins(101, 50), Q);
+			Assert.assertTrue("NaN bin accepted", false);
+		} catch (HWIndependenceException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testMeasureOverride() throws Exception {
+		MathOpsE ops = new MathOpsE();
+		double[] Q = bins(64, -1);
+		MathOpsE.setMeasureValidationPolicy(CHEBYSHEV, ValidationPolicy.TRUSTED);
+		try {
+			Assert.assertEquals(ValidationPolicy.TRUSTED, MathOpsE.getMeasureValidationPolicy(CHEBYSHEV));
+			Assert.assertEquals(ValidationPolicy.TRUSTED, ops.getValidationPolicy(CHEBYSHEV));
+			Assert.assertEquals(ValidationPolicy.STRICT, ops.getValidationPolicy("histogram_measure_euclidean"));
+			Assert.assertEquals(0d, ops.histogram_measure_chebyshev(bins(64, 10), Q), 0d);
+			// the other measures keep the policy of the instance
+			try {
+				ops.validate("histogram_measure_euclidean", bins(64, 10), Q);
+				Assert.assertTrue("NaN bin accepted", false);
+			} catch (HWIndependenceException e) {
+				// expected
+			}
+		} finally {
+			MathOpsE.setMeasureValidationPolicy(CHEBYSHEV, null);
+		}
+		Assert.assertTrue(MathOpsE.getMeasureValidationPolicy(CHEBYSHEV) == null);
+		Assert.assertFalse(passes(ops, bins(64, 10), Q));
+	}
+
+	@Test
+	public void testResultsAlwaysChecked() throws Exception {
+		MathOpsE ops = new MathOpsE();
+		ops.setValidationPolicy(ValidationPolicy.TRUSTED);
+		// the bins pass, the NaN result does not
+		double[] Q = bins(64, -1);
+		try {
+			ops.histogram_measure_euclidean(bins(64, 10), Q);
+			Assert.assertTrue("NaN result accepted", false);
+		} catch (HWIndependenceException e) {
+			// expected
+		}
+		double[] results = { 0.5d, Double.NaN, 0.25d };
+		Double[] boxed = { 0.5d, Double.NaN, 0.25d };
+		for (ValidationPolicy policy : ValidationPolicy.values()) {
+			ops.setValidationPolicy(policy);
+			try {
+				ops.chkresult("pixel_measure_dice", results);
+				Assert.assertTrue("NaN result accepted", false);
+			} catch (HWIndependenceException e) {
+				// expected
+			}
+			try {
+				ops.chkresult("pixel_measure_dice", boxed);
+				Assert.assertTrue("NaN result accepted", false);
+			} catch (HWIndependenceException e) {
+				// expected
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(ValidationPolicyTest.class);
+	}
+}
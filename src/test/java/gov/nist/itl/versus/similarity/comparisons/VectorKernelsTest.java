@@ -0,0 +1,142 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          VectorKernels
+ * description   Lane-parallel reductions agree with the scalar kernels.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+
+/**
+ * VectorKernels Test
+ */
+public class VectorKernelsTest extends junit.framework.TestCase
+{
+	// relative difference allowed between lane and scalar sums: the terms
+	// are not negative, so reordering n of them errs by at most n ulps
+	private static final double TOLERANCE = 1e-12;
+
+	static double[] histogram(Random random, int bins) {
+		double[] h = new double[bins];
+		double total = 0;
+		for (int i = 0; i < bins; i++)
+			total += (h[i] = random.nextInt(1000) + 1);
+		for (int i = 0; i < bins; i++)
+			h[i] /= total;
+		return h;
+	}
+
+	private static void assertClose(double expected, double actual) {
+		Assert.assertEquals(expected, actual, TOLERANCE * Math.abs(expected));
+	}
+
+	// every length up to past MIN_LENGTH, so each remainder mod LANES, and a long one
+	private static int[] lengths() {
+		int[] n = new int[VectorKernels.MIN_LENGTH + 3 * VectorKernels.LANES + 1];
+		for (int i = 0; i < n.length - 1; i++)
+			n[i] = i;
+		n[n.length - 1] = 4099;
+		return n;
+	}
+
+	@Test
+	public void testLanesMatchScalar() throws Exception {
+		Random random = new Random(41);
+		for (int n : lengths()) {
+			double[] P = histogram(random, n);
+			double[] Q = histogram(random, n);
+			double sq = 0d, abs = 0d, min = 0d, prod = 0d;
+			for (int i = 0; i < n; i++) {
+				double a = Math.abs(P[i] - Q[i]);
+				sq += a * a;
+				abs += a;
+				min += Math.min(P[i], Q[i]);
+				prod += P[i] * Q[i];
+			}
+			assertClose(sq, VectorKernels.sumSquaredDifference(P, Q));
+			assertClose(abs, VectorKernels.sumAbsDifference(P, Q));
+			assertClose(min, VectorKernels.sumMin(P, Q));
+			assertClose(prod, VectorKernels.sumProduct(P, Q));
+		}
+	}
+
+	@Test
+	public void testMeasures() throws Exception {
+		Random random = new Random(42);
+		MathOpsE scalar = new MathOpsE();
+		scalar.setVectorKernels(false);
+		MathOpsE lanes = new MathOpsE();
+		lanes.setVectorKernels(true);
+		for (int n : lengths()) {
+			if (n == 0)
+				continue;
+			double[] P = histogram(random, n);
+			double[] Q = histogram(random, n);
+			double[] s = {
+					scalar.histogram_measure_euclidean(P, Q),
+					scalar.histogram_measure_city_block(P, Q),
+					scalar.histogram_measure_squared_euclidean(P, Q),
+					scalar.histogram_measure_intersection_IS(P, Q),
+					scalar.histogram_measure_inner_product(P, Q) };
+			double[] v = {
+					lanes.histogram_measure_euclidean(P, Q),
+					lanes.histogram_measure_city_block(P, Q),
+					lanes.histogram_measure_squared_euclidean(P, Q),
+					lanes.histogram_measure_intersection_IS(P, Q),
+					lanes.histogram_measure_inner_product(P, Q) };
+			for (int k = 0; k < s.length; k++) {
+				if (n < VectorKernels.MIN_LENGTH)
+					Assert.assertEquals(s[k], v[k], 0d);	// scalar kernel
+				else
+					assertClose(s[k], v[k]);
+			}
+		}
+	}
+
+	// the outcome of a measure: its value, or the class of its exception
+	private static Object euclidean(MathOpsE ops, double[] P, double[] Q) {
+		try {
+			return ops.histogram_measure_euclidean(P, Q);
+		} catch (Exception e) {
+			return e.getClass();
+		}
+	}
+
+	@Test
+	public void testSaturation() throws Exception {
+		Assert.assertTrue(VectorKernels.usable(0d));
+		Assert.assertTrue(VectorKernels.usable(1e300));
+		Assert.assertFalse(VectorKernels.usable(Double.MAX_VALUE));
+		Assert.assertFalse(VectorKernels.usable(-Double.MAX_VALUE));
+		Assert.assertFalse(VectorKernels.usable(Double.POSITIVE_INFINITY));
+		Assert.assertFalse(VectorKernels.usable(Double.NaN));
+
+		// squares overflow in the lanes: the scalar kernel decides the result
+		double[] P = new double[4 * VectorKernels.MIN_LENGTH];
+		double[] Q = new double[P.length];
+		for (int i = 0; i < P.length; i++)
+			P[i] = (i % 2 == 0) ? 1e300 : 0d;
+		Assert.assertFalse(VectorKernels.usable(VectorKernels.sumSquaredDifference(P, Q)));
+		MathOpsE scalar = new MathOpsE();
+		scalar.setVectorKernels(false);
+		MathOpsE lanes = new MathOpsE();
+		lanes.setVectorKernels(true);
+		Assert.assertEquals(euclidean(scalar, P, Q), euclidean(lanes, P, Q));
+	}
+
+	public static void main(String[] args) {
+		org.junit.runner.JUnitCore.runClasses(VectorKernelsTest.class);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          BatchBenchmark
+ * description   Compares pairwise comparisons of a query against stored
+ *               histograms with the one-vs-many HistogramMatrix kernels.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramBatch;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CosineMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.IntersectionMeasure;
+
+/**
+ * One-vs-many benchmark.
+ *
+ * Ranks a query against rows stored histograms: once through
+ * compare(PreparedHistogram, PreparedHistogram) for every stored histogram,
+ * once through compare(PreparedHistogram, HistogramMatrix), and once through
+ * HistogramBatch on all available processors. Reports the time per pass and
+ * the rate at which the candidate bins are read.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.BatchBenchmark
+ * [rows [bins]]
+ */
+public class BatchBenchmark {
+
+	private static final int WARMUP = 3;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		Random random = new Random(2013);
+		PreparedHistogram query = new PreparedHistogram(
+				HistogramKernelBenchmark.histogram(random, bins));
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		for (int r = 0; r < rows; r++)
+			stored[r] = new PreparedHistogram(HistogramKernelBenchmark
+					.histogram(random, bins));
+		HistogramMatrix candidates = HistogramMatrix.of(stored);
+
+		HistogramMeasure[] measures = { new EuclideanL2Measure(),
+				new CityBlockL1Measure(), new CosineMeasure(),
+				new IntersectionMeasure() };
+		System.out.println(rows + " x " + bins + " bins, " + threads
+				+ " threads");
+		System.out.println(String.format("%-22s %12s %12s %12s %10s",
+				"measure", "pairwise ms", "batch ms", "parallel ms",
+				"par GB/s"));
+		for (HistogramMeasure m : measures) {
+			double pairwise = time(m, query, stored, candidates, 0);
+			double batch = time(m, query, null, candidates, 0);
+			double parallel = time(m, query, null, candidates, threads);
+			double bytes = 8d * rows * bins;
+			System.out.println(String.format(
+					"%-22s %12.2f %12.2f %12.2f %10.2f", m.getName(),
+					pairwise / 1e6, batch / 1e6, parallel / 1e6, bytes
+							/ parallel));
+		}
+	}
+
+	static double run(HistogramMeasure m, PreparedHistogram query,
+			PreparedHistogram[] stored, HistogramMatrix candidates,
+			int threads) throws Exception {
+		if (stored != null) {
+			double s = 0;
+			for (int r = 0; r < stored.length; r++)
+				s += m.compare(query, stored[r]).getValue();
+			return s;
+		}
+		double[] result = (threads > 1) ? HistogramBatch.compare(m, query,
+				candidates, threads) : m.compare(query, candidates);
+		return result[result.length - 1];
+	}
+
+	// nanoseconds per pass over the candidates
+	static double time(HistogramMeasure m, PreparedHistogram query,
+			PreparedHistogram[] stored, HistogramMatrix candidates,
+			int threads) throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += run(m, query, stored, candidates, threads);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+			sink += run(m, query, stored, candidates, threads);
+		long elapsed = System.nanoTime() - start;
+		HistogramKernelBenchmark.consume(sink);
+		return (double) elapsed / ITERATIONS;
+	}
+}
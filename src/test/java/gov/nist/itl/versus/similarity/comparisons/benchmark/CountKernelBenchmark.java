@@ -0,0 +1,139 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          CountKernelBenchmark
+ * description   Compares normalizing the raw counts before each comparison
+ *               with the int[] count kernels.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+
+/**
+ * Count kernel benchmark.
+ *
+ * For L1, L2, Chebyshev, cosine and intersection, times the descriptor path
+ * the measures used to take (box the counts into Double[], normalize them,
+ * run the kernel) against the int[] count kernel, which works on the raw
+ * counts and applies the normalization once to the result, and reports the
+ * relative difference of the results.
+ *
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.CountKernelBenchmark
+ * [bins...]
+ */
+public class CountKernelBenchmark {
+
+	private static final int WARMUP = 2000;
+	private static final long TARGET_NANOS = 200000000L;
+
+	static final String[] MEASURES = { "city_block", "euclidean", "chebyshev",
+			"cosine", "intersection_IS" };
+
+	static final MathOpsE ops = new MathOpsE();
+
+	static double normalized(int measure, int[] P, int[] Q) throws Exception {
+		Double[] p = ops.normalizeHistogram(box(P));
+		Double[] q = ops.normalizeHistogram(box(Q));
+		switch (measure) {
+		case 0:
+			return ops.histogram_measure_city_block(p, q);
+		case 1:
+			return ops.histogram_measure_euclidean(p, q);
+		case 2:
+			return ops.histogram_measure_chebyshev(p, q);
+		case 3:
+			return ops.histogram_measure_cosine(p, q);
+		default:
+			return ops.histogram_measure_intersection_IS(p, q);
+		}
+	}
+
+	static double counts(int measure, int[] P, int[] Q) throws Exception {
+		switch (measure) {
+		case 0:
+			return ops.histogram_measure_city_block(P, Q);
+		case 1:
+			return ops.histogram_measure_euclidean(P, Q);
+		case 2:
+			return ops.histogram_measure_chebyshev(P, Q);
+		case 3:
+			return ops.histogram_measure_cosine(P, Q);
+		default:
+			return ops.histogram_measure_intersection_IS(P, Q);
+		}
+	}
+
+	// as grayScaleHistogram2Double() does
+	static Double[] box(int[] h) {
+		Double[] r = new Double[h.length];
+		for (int i = 0; i < h.length; i++)
+			r[i] = new Double(h[i]);
+		return r;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 256, 768, 4096 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		Random random = new Random(2013);
+		System.out.println(String.format("%-18s %6s %12s %12s %8s %10s",
+				"measure", "bins", "normalize ns", "counts ns", "speedup",
+				"rel diff"));
+		for (int n : sizes) {
+			int[] P = counts(random, n);
+			int[] Q = counts(random, n);
+			for (int m = 0; m < MEASURES.length; m++) {
+				double a = normalized(m, P, Q);
+				double b = counts(m, P, Q);
+				double staged = time(m, false, P, Q);
+				double direct = time(m, true, P, Q);
+				System.out.println(String.format(
+						"%-18s %6d %12.1f %12.1f %7.2fx %10.2e", MEASURES[m], n,
+						staged, direct, staged / direct, Math.abs(a - b)
+								/ Math.abs(a)));
+			}
+		}
+	}
+
+	// raw counts of a 100x100 image spread over n bins
+	static int[] counts(Random random, int n) {
+		int[] h = new int[n];
+		for (int i = 0; i < 10000; i++)
+			h[random.nextInt(n)]++;
+		return h;
+	}
+
+	static double time(int m, boolean direct, int[] P, int[] Q)
+			throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += direct ? counts(m, P, Q) : normalized(m, P, Q);
+		long iterations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			for (int i = 0; i < 100; i++)
+				sink += direct ? counts(m, P, Q) : normalized(m, P, Q);
+			iterations += 100;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < TARGET_NANOS);
+		HistogramKernelBenchmark.consume(sink);
+		return (double) elapsed / iterations;
+	}
+}
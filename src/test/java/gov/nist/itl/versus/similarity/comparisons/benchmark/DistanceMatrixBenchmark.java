@@ -0,0 +1,96 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          DistanceMatrixBenchmark
+ * description   Compares N x N compare() calls with DistanceMatrixEngine.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.illinois.ncsa.versus.descriptor.Descriptor;
+import edu.illinois.ncsa.versus.descriptor.impl.GrayscaleHistogramDescriptor;
+import edu.illinois.ncsa.versus.measure.SimilarityNumber;
+import gov.nist.itl.versus.similarity.comparisons.DistanceMatrixEngine;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CosineMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.HellingerMeasure;
+
+/**
+ * All-pairs benchmark.
+ *
+ * Computes the N x N matrix of a measure over N gray-scale histogram
+ * descriptors the way it is done today, with N * N calls of
+ * compare(Descriptor, Descriptor), and with DistanceMatrixEngine, on the
+ * calling thread and on all available processors.
+ *
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.DistanceMatrixBenchmark
+ * [N [bins]]
+ */
+public class DistanceMatrixBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		Random random = new Random(2013);
+		List<Descriptor> descriptors = new ArrayList<Descriptor>();
+		for (int k = 0; k < n; k++) {
+			int[] h = new int[bins];
+			for (int i = 0; i < 10000; i++)
+				h[random.nextInt(bins)]++;
+			descriptors.add(new GrayscaleHistogramDescriptor(h));
+		}
+
+		HistogramMeasure[] measures = { new EuclideanL2Measure(),
+				new CosineMeasure(), new HellingerMeasure() };
+		System.out.println(n + " descriptors of " + bins + " bins, "
+				+ threads + " threads");
+		System.out.println(String.format("%-22s %12s %12s %12s", "measure",
+				"N*N ms", "engine ms", "parallel ms"));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (HistogramMeasure m : measures) {
+				double sink = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < n; i++)
+					for (int j = 0; j < n; j++)
+						sink += ((SimilarityNumber) m.compare(descriptors.get(i),
+								descriptors.get(j))).getValue();
+				long naive = System.nanoTime() - start;
+
+				DistanceMatrixEngine engine = new DistanceMatrixEngine(m);
+				start = System.nanoTime();
+				sink += engine.compute(descriptors).get(n - 1, 0);
+				long single = System.nanoTime() - start;
+
+				engine.setExecutor(executor);
+				start = System.nanoTime();
+				sink += engine.compute(descriptors).get(n - 1, 0);
+				long parallel = System.nanoTime() - start;
+
+				HistogramKernelBenchmark.consume(sink);
+				System.out.println(String.format("%-22s %12.1f %12.1f %12.1f",
+						m.getName(), naive / 1e6, single / 1e6, parallel / 1e6));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          FileStoreBenchmark
+ * description   Opening a memory-mapped histogram store and comparing
+ *               against it, against the same rows in a HistogramMatrix.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.io.File;
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramFileStore;
+import gov.nist.itl.versus.similarity.comparisons.HistogramKnnSearcher;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JensenShannonMeasure;
+
+/**
+ * File store benchmark.
+ *
+ * Writes rows RGB-sized histograms to a store, then times opening it again,
+ * comparing a query against every row and a 10 nearest neighbour search,
+ * next to the same operations on a HistogramMatrix.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.FileStoreBenchmark
+ * [rows [bins]]
+ */
+public class FileStoreBenchmark {
+
+	private static final int ITERATIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 768;
+
+		Random random = new Random(2013);
+		PreparedHistogram query = new PreparedHistogram(
+				HistogramKernelBenchmark.histogram(random, bins));
+		File file = File.createTempFile("histograms", ".vhst");
+		file.deleteOnExit();
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		HistogramFileStore store = HistogramFileStore.create(file, bins);
+		long start = System.nanoTime();
+		for (int r = 0; r < rows; r++) {
+			stored[r] = new PreparedHistogram(HistogramKernelBenchmark
+					.histogram(random, bins));
+			store.add(r, stored[r]);
+		}
+		store.close();
+		double write = (System.nanoTime() - start) / 1e6;
+		HistogramMatrix matrix = HistogramMatrix.of(stored);
+
+		start = System.nanoTime();
+		store = HistogramFileStore.open(file, false);
+		double open = (System.nanoTime() - start) / 1e6;
+		System.out.println(String.format(
+				"%d x %d bins, %d MB: write %.1f ms, open %.2f ms", rows,
+				bins, file.length() >> 20, write, open));
+
+		System.out.println(String.format("%-22s %12s %12s %12s %12s",
+				"measure", "matrix ms", "store ms", "matrix knn", "store knn"));
+		HistogramMeasure[] measures = { new CityBlockL1Measure(),
+				new JensenShannonMeasure() };
+		for (HistogramMeasure m : measures) {
+			HistogramKnnSearcher searcher = new HistogramKnnSearcher(m, matrix);
+			double sink = 0;
+			double[] times = new double[4];
+			for (int pass = 0; pass < 2; pass++) {
+				// the first pass warms up
+				long t0 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++)
+					sink += m.compare(query, matrix)[0];
+				long t1 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++)
+					sink += store.compare(m, query)[0];
+				long t2 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++)
+					sink += searcher.search(query, 10).getValues()[0];
+				long t3 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++)
+					sink += store.search(m, query, 10).getValues()[0];
+				long t4 = System.nanoTime();
+				times[0] = (t1 - t0) / 1e6 / ITERATIONS;
+				times[1] = (t2 - t1) / 1e6 / ITERATIONS;
+				times[2] = (t3 - t2) / 1e6 / ITERATIONS;
+				times[3] = (t4 - t3) / 1e6 / ITERATIONS;
+			}
+			HistogramKernelBenchmark.consume(sink);
+			System.out.println(String.format(
+					"%-22s %12.2f %12.2f %12.2f %12.2f", m.getName(),
+					times[0], times[1], times[2], times[3]));
+		}
+		store.close();
+	}
+}
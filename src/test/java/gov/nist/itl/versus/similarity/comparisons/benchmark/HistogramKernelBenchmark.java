@@ -0,0 +1,248 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          HistogramKernelBenchmark
+ * description   Compares the staged (one array per step) histogram
+ *               computations with the fused single-pass double[] kernels.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+
+/**
+ * Histogram kernel benchmark.
+ *
+ * For one measure of each family, runs the staged computation (built from the
+ * boxed MathOpsE primitives, one temporary array per step, as the measures
+ * were originally written) against the fused double[] kernel, and reports the
+ * time per comparison together with the number of passes over the bins and
+ * the array traffic each version needs (bytes read + written, counting 8
+ * bytes per bin for every array a pass touches).
+ *
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.HistogramKernelBenchmark
+ * [bins...]
+ */
+public class HistogramKernelBenchmark {
+
+	private static final int WARMUP = 2000;
+	private static final int ITERATIONS = 5000;
+
+	static final MathOpsE ops = new MathOpsE();
+
+	/*
+	 * A measure computed both ways. stagedArrays counts the arrays touched by
+	 * the staged version (inputs read plus outputs written, summed over its
+	 * passes); the fused version always reads P and Q once.
+	 */
+	static abstract class Kernel {
+		final String name;
+		final int stagedPasses;
+		final int stagedArrays;
+
+		Kernel(String name, int stagedPasses, int stagedArrays) {
+			this.name = name;
+			this.stagedPasses = stagedPasses;
+			this.stagedArrays = stagedArrays;
+		}
+
+		abstract double staged(Double[] P, Double[] Q) throws Exception;
+
+		abstract double fused(double[] P, double[] Q) throws Exception;
+	}
+
+	static final Kernel[] KERNELS = new Kernel[] {
+			// sub, abs, square, sum
+			new Kernel("euclidean (Minkowski)", 4, 8) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					return ops.sqrt(ops.sum(ops.square(ops.abs(ops.sub(P, Q)))));
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_euclidean(P, Q);
+				}
+			},
+			// sub, abs, sum, add, sum
+			new Kernel("sorensen (L1)", 5, 10) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					Double d3 = ops.sum(ops.abs(ops.sub(P, Q)));
+					Double d5 = ops.sum(ops.add(P, Q));
+					return ops.div(d3, d5);
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_sorensen(P, Q);
+				}
+			},
+			// min, sum
+			new Kernel("intersection (Intersection)", 2, 4) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					return Math.min(1.0, ops.sum(ops.min(P, Q)));
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_intersection_IS(P, Q);
+				}
+			},
+			// mult, sum
+			new Kernel("inner product (Inner Product)", 2, 4) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					return ops.sum(ops.mult(P, Q));
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_inner_product(P, Q);
+				}
+			},
+			// mult, sqrt, sum
+			new Kernel("fidelity (Fidelity)", 3, 6) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					return Math.min(1.0, ops.sum(ops.sqrt(ops.mult(P, Q))));
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_fidelity(P, Q);
+				}
+			},
+			// add, sub, square, div, sum
+			new Kernel("squared chi-squared (Squared L2)", 5, 12) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					Double[] D1 = ops.add(P, Q);
+					Double[] D3 = ops.square(ops.sub(P, Q));
+					return ops.sum(ops.div(D3, D1));
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_squared_chiSquared(P, Q);
+				}
+			},
+			// mkConstArray, 2 x (mult, add, div, a_Ln_b, sum)
+			new Kernel("jensen-shannon (Shannon)", 11, 27) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					Double[] D2 = ops.mkConstArray(Q.length, 2.0d);
+					Double d7 = ops.sum(ops.a_Ln_b(Q,
+							ops.div(ops.mult(D2, Q), ops.add(P, Q))));
+					Double d12 = ops.sum(ops.a_Ln_b(P,
+							ops.div(ops.mult(D2, P), ops.add(P, Q))));
+					return 0.5d * (d12 + d7);
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_jensen_shannon(P, Q);
+				}
+			},
+			// mult, sqrt, mkConstArray, mult, add, div, add, mkConstArray,
+			// div, a_Ln_b, sum
+			new Kernel("taneja (Combinations)", 11, 26) {
+				double staged(Double[] P, Double[] Q) throws Exception {
+					Double[] D4 = ops.mult(ops.mkConstArray(P.length, 2.0d),
+							ops.sqrt(ops.mult(P, Q)));
+					Double[] D6 = ops.div(ops.add(P, Q), D4);
+					Double[] D10 = ops.div(ops.add(P, Q),
+							ops.mkConstArray(Q.length, 2.0d));
+					return ops.sum(ops.a_Ln_b(D10, D6));
+				}
+
+				double fused(double[] P, double[] Q) throws Exception {
+					return ops.histogram_measure_taneja_difference(P, Q);
+				}
+			} };
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 256, 768, 4096 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		Random random = new Random(2013);
+		System.out.println(String.format("%-34s %6s %12s %12s %7s %7s %12s %12s",
+				"measure", "bins", "staged ns", "fused ns", "passes",
+				"fused", "staged B", "fused B"));
+		for (int n : sizes) {
+			double[] p = histogram(random, n);
+			double[] q = histogram(random, n);
+			Double[] P = box(p);
+			Double[] Q = box(q);
+			for (Kernel k : KERNELS) {
+				check(k, P, Q, p, q);
+				long staged = timeStaged(k, P, Q);
+				long fused = timeFused(k, p, q);
+				System.out.println(String.format(
+						"%-34s %6d %12d %12d %7d %7d %12d %12d", k.name, n,
+						staged, fused, k.stagedPasses, 1,
+						8L * n * k.stagedArrays, 8L * n * 2));
+			}
+		}
+	}
+
+	static long timeStaged(Kernel k, Double[] P, Double[] Q) throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += k.staged(P, Q);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+			sink += k.staged(P, Q);
+		long elapsed = System.nanoTime() - start;
+		consume(sink);
+		return elapsed / ITERATIONS;
+	}
+
+	static long timeFused(Kernel k, double[] P, double[] Q) throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += k.fused(P, Q);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+			sink += k.fused(P, Q);
+		long elapsed = System.nanoTime() - start;
+		consume(sink);
+		return elapsed / ITERATIONS;
+	}
+
+	static void check(Kernel k, Double[] P, Double[] Q, double[] p, double[] q)
+			throws Exception {
+		double a = k.staged(P, Q);
+		double b = k.fused(p, q);
+		if (Double.compare(a, b) != 0)
+			System.err.println(k.name + ": staged " + a + " != fused " + b);
+	}
+
+	static double[] histogram(Random random, int n) {
+		double[] h = new double[n];
+		double total = 0;
+		for (int i = 0; i < n; i++) {
+			// leave some empty bins, as in real image histograms
+			h[i] = (random.nextInt(5) == 0) ? 0 : random.nextDouble();
+			total += h[i];
+		}
+		for (int i = 0; i < n; i++)
+			h[i] /= total;
+		return h;
+	}
+
+	static Double[] box(double[] h) {
+		Double[] b = new Double[h.length];
+		for (int i = 0; i < h.length; i++)
+			b[i] = h[i];
+		return b;
+	}
+
+	static volatile double blackhole;
+
+	static void consume(double d) {
+		blackhole = d;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          KnnBenchmark
+ * description   Compares k nearest neighbour searches with and without early
+ *               abandoning.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramKnnSearcher;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.ChebyshevLInfMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.PearsonChiSquaredMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.SquaredChiSquaredMeasure;
+
+/**
+ * k nearest neighbour benchmark.
+ *
+ * Searches the k nearest of rows stored histograms to a few queries, once
+ * measuring every candidate and once abandoning candidates on their partial
+ * sums. The stored histograms are perturbed copies of CLUSTERS random ones,
+ * as in a collection of images of a few scenes, and every query is a
+ * perturbed copy of a stored histogram. Reports the time per query and the
+ * share of candidates abandoned.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.KnnBenchmark
+ * [rows [bins [k]]]
+ */
+public class KnnBenchmark {
+
+	private static final int WARMUP = 3;
+	private static final int QUERIES = 20;
+	private static final int CLUSTERS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+		int k = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+		Random random = new Random(2013);
+		double[][] centers = new double[CLUSTERS][];
+		for (int c = 0; c < CLUSTERS; c++)
+			centers[c] = HistogramKernelBenchmark.histogram(random, bins);
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		for (int r = 0; r < rows; r++)
+			stored[r] = perturbed(random, centers[random.nextInt(CLUSTERS)]);
+		HistogramMatrix candidates = HistogramMatrix.of(stored);
+		PreparedHistogram[] queries = new PreparedHistogram[QUERIES];
+		for (int i = 0; i < QUERIES; i++)
+			queries[i] = perturbed(random, stored[random.nextInt(rows)]
+					.getBins());
+
+		HistogramMeasure[] measures = { new EuclideanL2Measure(),
+				new CityBlockL1Measure(), new ChebyshevLInfMeasure(),
+				new PearsonChiSquaredMeasure(), new SquaredChiSquaredMeasure() };
+		System.out.println(rows + " x " + bins + " bins, k = " + k);
+		System.out.println(String.format("%-32s %12s %12s %10s", "measure",
+				"full ms", "abandon ms", "abandoned"));
+		for (HistogramMeasure m : measures) {
+			HistogramKnnSearcher searcher = new HistogramKnnSearcher(m,
+					candidates);
+			searcher.setEarlyAbandoning(false);
+			double full = time(searcher, queries, k);
+			searcher.setEarlyAbandoning(true);
+			double abandon = time(searcher, queries, k);
+			long abandoned = 0;
+			for (PreparedHistogram q : queries)
+				abandoned += searcher.search(q, k).getAbandoned();
+			System.out.println(String.format("%-32s %12.3f %12.3f %9.1f%%",
+					m.getName(), full / 1e6, abandon / 1e6, 100d * abandoned
+							/ ((double) rows * QUERIES)));
+		}
+	}
+
+	static PreparedHistogram perturbed(Random random, double[] h)
+			throws Exception {
+		double[] p = new double[h.length];
+		for (int b = 0; b < p.length; b++)
+			p[b] = h[b] * (1 + 0.2 * random.nextDouble());
+		return new PreparedHistogram(p);
+	}
+
+	// nanoseconds per query
+	static double time(HistogramKnnSearcher searcher,
+			PreparedHistogram[] queries, int k) throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			for (PreparedHistogram q : queries)
+				sink += searcher.search(q, k).getValues()[0];
+		long start = System.nanoTime();
+		for (PreparedHistogram q : queries)
+			sink += searcher.search(q, k).getValues()[0];
+		long elapsed = System.nanoTime() - start;
+		HistogramKernelBenchmark.consume(sink);
+		return (double) elapsed / queries.length;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          LshBenchmark
+ * description   Recall and latency of locality-sensitive hashing searches
+ *               against full scans.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramKnnSearcher;
+import gov.nist.itl.versus.similarity.comparisons.HistogramLshIndex;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CosineMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+
+/**
+ * Locality-sensitive hashing benchmark.
+ *
+ * Indexes rows stored histograms, clustered as in KnnBenchmark, in
+ * HistogramLshIndex instances of several table counts and hash lengths, and
+ * searches the k nearest to a few queries. Reports the build time, the time
+ * per query next to that of a full scan, the rows re-ranked and the recall of
+ * the true k nearest neighbours.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.LshBenchmark
+ * [rows [bins [k]]]
+ */
+public class LshBenchmark {
+
+	private static final int QUERIES = 50;
+	private static final int CLUSTERS = 1000;
+	private static final int[][] SETTINGS = { { 4, 4 }, { 8, 8 }, { 16, 8 },
+			{ 16, 12 }, { 32, 12 } };
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+		int k = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+		Random random = new Random(2013);
+		double[][] centers = new double[CLUSTERS][];
+		for (int c = 0; c < CLUSTERS; c++)
+			centers[c] = HistogramKernelBenchmark.histogram(random, bins);
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		for (int r = 0; r < rows; r++)
+			stored[r] = KnnBenchmark.perturbed(random, centers[random
+					.nextInt(CLUSTERS)]);
+		HistogramMatrix candidates = HistogramMatrix.of(stored);
+		PreparedHistogram[] queries = new PreparedHistogram[QUERIES];
+		for (int i = 0; i < QUERIES; i++)
+			queries[i] = KnnBenchmark.perturbed(random, stored[random
+					.nextInt(rows)].getBins());
+
+		HistogramMeasure[] measures = { new CityBlockL1Measure(),
+				new EuclideanL2Measure(), new CosineMeasure() };
+		System.out.println(rows + " x " + bins + " bins, k = " + k);
+		System.out.println(String.format("%-16s %6s %6s %9s %9s %9s %9s %7s",
+				"measure", "tables", "hash", "build ms", "scan ms", "lsh ms",
+				"re-ranked", "recall"));
+		for (HistogramMeasure m : measures) {
+			HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+			scan.setEarlyAbandoning(false);
+			int[][] truth = new int[QUERIES][];
+			long start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++) {
+				truth[i] = scan.search(queries[i], k).getIndices();
+				Arrays.sort(truth[i]);
+			}
+			double scanTime = (double) (System.nanoTime() - start) / QUERIES;
+
+			for (int[] setting : SETTINGS) {
+				start = System.nanoTime();
+				HistogramLshIndex index = new HistogramLshIndex(m, candidates,
+						setting[0], setting[1], 0d, new Random(1));
+				double build = System.nanoTime() - start;
+				long reRanked = 0;
+				int found = 0;
+				start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++) {
+					HistogramKnnSearcher.Result result = index.search(
+							queries[i], k);
+					reRanked += result.getMeasured();
+					for (int r : result.getIndices())
+						if (Arrays.binarySearch(truth[i], r) >= 0)
+							found++;
+				}
+				double lshTime = (double) (System.nanoTime() - start) / QUERIES;
+				System.out.println(String.format(
+						"%-16s %6d %6d %9.1f %9.3f %9.3f %9d %7.3f", m
+								.getName(), setting[0], setting[1],
+						build / 1e6, scanTime / 1e6, lshTime / 1e6, reRanked
+								/ QUERIES, (double) found / (QUERIES * k)));
+			}
+		}
+	}
+}
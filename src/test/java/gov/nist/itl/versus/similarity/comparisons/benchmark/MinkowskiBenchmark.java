@@ -0,0 +1,100 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          MinkowskiBenchmark
+ * description   Compares the specialized Minkowski-p paths with the
+ *               general pow() path.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+
+/**
+ * Minkowski-p benchmark.
+ *
+ * For each order p, times histogram_measure_minkowski(P, Q, p), which takes
+ * the dedicated path for p = 1, 2, 3, integer p and p = infinity, against
+ * histogram_measure_minkowski_pow(P, Q, p), which calls Math.pow() for every
+ * bin, and reports the relative difference of the results.
+ *
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.MinkowskiBenchmark
+ * [bins...]
+ */
+public class MinkowskiBenchmark {
+
+	private static final int WARMUP = 2000;
+	private static final long TARGET_NANOS = 200000000L;
+
+	static final double[] ORDERS = { 1, 2, 3, 4, 8, 0.5, 1.5, 2.5,
+			Double.POSITIVE_INFINITY };
+
+	static final MathOpsE ops = new MathOpsE();
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 256, 768, 4096 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		Random random = new Random(2013);
+		System.out.println(String.format("%-8s %6s %12s %12s %8s %10s", "p",
+				"bins", "path ns", "pow ns", "speedup", "rel diff"));
+		for (int n : sizes) {
+			double[] P = HistogramKernelBenchmark.histogram(random, n);
+			double[] Q = HistogramKernelBenchmark.histogram(random, n);
+			for (double p : ORDERS) {
+				double fast = time(p, false, P, Q);
+				if (p == Double.POSITIVE_INFINITY) {
+					// no pow() form for p = infinity
+					System.out.println(String.format("%-8s %6d %12.1f %12s",
+							"inf", n, fast, "-"));
+					continue;
+				}
+				double general = time(p, true, P, Q);
+				double a = ops.histogram_measure_minkowski(P, Q, p);
+				double b = ops.histogram_measure_minkowski_pow(P, Q, p);
+				System.out.println(String.format(
+						"%-8s %6d %12.1f %12.1f %7.2fx %10.2e", p, n, fast,
+						general, general / fast, Math.abs(a - b) / Math.abs(b)));
+			}
+		}
+	}
+
+	static double run(double p, boolean general, double[] P, double[] Q)
+			throws Exception {
+		return general ? ops.histogram_measure_minkowski_pow(P, Q, p) : ops
+				.histogram_measure_minkowski(P, Q, p);
+	}
+
+	static double time(double p, boolean general, double[] P, double[] Q)
+			throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += run(p, general, P, Q);
+		long iterations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			for (int i = 0; i < 100; i++)
+				sink += run(p, general, P, Q);
+			iterations += 100;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < TARGET_NANOS);
+		HistogramKernelBenchmark.consume(sink);
+		return (double) elapsed / iterations;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          PivotFilterBenchmark
+ * description   Compares pivot-filtered k nearest neighbour searches under the
+ *               Shannon-family measures with full scans.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramKnnSearcher;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.HistogramPivotFilter;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JeffreysMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JensenDifferenceMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.KullbackLeiblerMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.TopsoeMeasure;
+
+/**
+ * Pivot filter benchmark.
+ *
+ * Searches the k nearest of rows stored histograms, clustered as in
+ * KnnBenchmark, to a few queries by a full scan and through a
+ * HistogramPivotFilter, exact and with a recall target of 0.9. Reports the
+ * time per query, the pruning ratio and the recall reached.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.PivotFilterBenchmark
+ * [rows [bins [k]]]
+ */
+public class PivotFilterBenchmark {
+
+	private static final int QUERIES = 10;
+	private static final int CLUSTERS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+		int k = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+		Random random = new Random(2013);
+		double[][] centers = new double[CLUSTERS][];
+		for (int c = 0; c < CLUSTERS; c++)
+			centers[c] = HistogramKernelBenchmark.histogram(random, bins);
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		for (int r = 0; r < rows; r++)
+			stored[r] = KnnBenchmark.perturbed(random, centers[random
+					.nextInt(CLUSTERS)]);
+		HistogramMatrix candidates = HistogramMatrix.of(stored);
+		PreparedHistogram[] queries = new PreparedHistogram[QUERIES];
+		for (int i = 0; i < QUERIES; i++)
+			queries[i] = KnnBenchmark.perturbed(random, stored[random
+					.nextInt(rows)].getBins());
+
+		HistogramMeasure[] measures = { new KullbackLeiblerMeasure(),
+				new JeffreysMeasure(), new TopsoeMeasure(),
+				new JensenDifferenceMeasure() };
+		System.out.println(rows + " x " + bins + " bins, k = " + k);
+		System.out.println(String.format("%-24s %9s %9s %8s %9s %8s %7s",
+				"measure", "scan ms", "exact ms", "pruned", "0.9 ms",
+				"pruned", "recall"));
+		for (HistogramMeasure m : measures) {
+			HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+			HistogramPivotFilter filter = new HistogramPivotFilter(m,
+					candidates);
+			int[][] truth = new int[QUERIES][];
+			long start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++) {
+				truth[i] = scan.search(queries[i], k).getIndices();
+				Arrays.sort(truth[i]);
+			}
+			double scanTime = (double) (System.nanoTime() - start) / QUERIES;
+
+			double[] exact = time(filter, queries, k, truth);
+			filter.setRecallTarget(0.9);
+			filter.search(queries[0], k); // calibrates
+			double[] approximate = time(filter, queries, k, truth);
+			System.out.println(String.format(
+					"%-24s %9.2f %9.2f %7.1f%% %9.2f %7.1f%% %7.3f", m
+							.getName(), scanTime / 1e6, exact[0] / 1e6,
+					100 * exact[1], approximate[0] / 1e6, 100 * approximate[1],
+					approximate[2]));
+		}
+	}
+
+	// nanoseconds per query, mean pruning ratio and recall
+	static double[] time(HistogramPivotFilter filter,
+			PreparedHistogram[] queries, int k, int[][] truth) throws Exception {
+		double pruning = 0;
+		int found = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < queries.length; i++) {
+			HistogramKnnSearcher.Result result = filter.search(queries[i], k);
+			pruning += result.getPruningRatio();
+			for (int r : result.getIndices())
+				if (Arrays.binarySearch(truth[i], r) >= 0)
+					found++;
+		}
+		double elapsed = System.nanoTime() - start;
+		return new double[] { elapsed / queries.length,
+				pruning / queries.length,
+				(double) found / (queries.length * k) };
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          QuantizedStoreBenchmark
+ * description   Memory, speed and error of quantized histogram stores against
+ *               a HistogramMatrix of doubles.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.QuantizedHistogramStore;
+import gov.nist.itl.versus.similarity.comparisons.QuantizedHistogramStore.Precision;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CosineMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.IntersectionMeasure;
+
+/**
+ * Quantized store benchmark.
+ *
+ * Stores rows RGB-sized histograms as doubles and quantized to 16 and 8 bits,
+ * and compares a query against all of them. Reports the memory of each store,
+ * the time per pass, the largest error against the exact measurements and the
+ * mean error bound.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.QuantizedStoreBenchmark
+ * [rows [bins]]
+ */
+public class QuantizedStoreBenchmark {
+
+	private static final int WARMUP = 3;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 768;
+
+		Random random = new Random(2013);
+		PreparedHistogram query = new PreparedHistogram(
+				HistogramKernelBenchmark.histogram(random, bins));
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		for (int r = 0; r < rows; r++)
+			stored[r] = new PreparedHistogram(HistogramKernelBenchmark
+					.histogram(random, bins));
+		HistogramMatrix exact = HistogramMatrix.of(stored);
+		QuantizedHistogramStore[] stores = {
+				QuantizedHistogramStore.of(exact, Precision.FIXED16),
+				QuantizedHistogramStore.of(exact, Precision.FIXED8) };
+
+		System.out.println(rows + " x " + bins + " bins; double[] "
+				+ (8L * rows * bins >> 20) + " MB, 16-bit "
+				+ (stores[0].getMemorySize() >> 20) + " MB, 8-bit "
+				+ (stores[1].getMemorySize() >> 20) + " MB");
+		System.out.println(String.format("%-16s %10s %10s %10s %11s %11s",
+				"measure", "double ms", "16-bit ms", "8-bit ms",
+				"8-bit error", "8-bit bound"));
+		HistogramMeasure[] measures = { new CityBlockL1Measure(),
+				new EuclideanL2Measure(), new IntersectionMeasure(),
+				new CosineMeasure() };
+		for (HistogramMeasure m : measures) {
+			double[] expected = m.compare(query, exact);
+			double sink = 0;
+			for (int i = 0; i < WARMUP; i++)
+				sink += m.compare(query, exact)[0];
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+				sink += m.compare(query, exact)[0];
+			double full = (double) (System.nanoTime() - start) / ITERATIONS;
+			double[] times = new double[stores.length];
+			double error = 0;
+			double bound = 0;
+			for (int s = 0; s < stores.length; s++) {
+				for (int i = 0; i < WARMUP; i++)
+					sink += stores[s].compare(m, query)[0];
+				start = System.nanoTime();
+				double[] result = null;
+				for (int i = 0; i < ITERATIONS; i++)
+					result = stores[s].compare(m, query);
+				times[s] = (double) (System.nanoTime() - start) / ITERATIONS;
+				sink += result[0];
+				if (s == 1) {
+					for (int r = 0; r < rows; r++) {
+						error = Math.max(error, Math.abs(result[r]
+								- expected[r]));
+						bound += stores[s].errorBound(m, query, r, result[r]);
+					}
+				}
+			}
+			HistogramKernelBenchmark.consume(sink);
+			System.out.println(String.format(
+					"%-16s %10.2f %10.2f %10.2f %11.2e %11.2e", m.getName(),
+					full / 1e6, times[0] / 1e6, times[1] / 1e6, error, bound
+							/ rows));
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          SparseHistogramBenchmark
+ * description   Compares the dense and sparse kernels at several densities.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+import gov.nist.itl.versus.similarity.comparisons.SparseHistogram;
+
+/**
+ * Sparse histogram benchmark.
+ *
+ * Times Kullback-Leibler, Jensen-Shannon and Intersection on dense double[]
+ * bins and on SparseHistogram, for 16-bit sized histograms (65536 bins) with
+ * a decreasing fraction of non-zero bins, and checks that both forms give
+ * the same result. The crossover density is the one SparseHistogram uses to
+ * pick the sparse form automatically.
+ *
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.SparseHistogramBenchmark
+ * [bins]
+ */
+public class SparseHistogramBenchmark {
+
+	private static final int WARMUP = 200;
+	private static final long TARGET_NANOS = 200000000L;
+
+	static final String[] MEASURES = { "kullback_leibler", "jensen_shannon",
+			"intersection_IS" };
+
+	static final double[] DENSITIES = { 0.5, 0.25, 0.1, 0.01, 0.001 };
+
+	static final MathOpsE ops = new MathOpsE();
+
+	static double dense(int measure, double[] P, double[] Q) throws Exception {
+		switch (measure) {
+		case 0:
+			return ops.histogram_measure_kullback_leibler(P, Q);
+		case 1:
+			return ops.histogram_measure_jensen_shannon(P, Q);
+		default:
+			return ops.histogram_measure_intersection_IS(P, Q);
+		}
+	}
+
+	static double sparse(int measure, SparseHistogram P, SparseHistogram Q)
+			throws Exception {
+		switch (measure) {
+		case 0:
+			return ops.histogram_measure_kullback_leibler(P, Q);
+		case 1:
+			return ops.histogram_measure_jensen_shannon(P, Q);
+		default:
+			return ops.histogram_measure_intersection_IS(P, Q);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int n = (args.length > 0) ? Integer.parseInt(args[0]) : 65536;
+
+		Random random = new Random(2013);
+		System.out.println(String.format("%-18s %8s %12s %12s %8s", "measure",
+				"density", "dense ns", "sparse ns", "speedup"));
+		for (double density : DENSITIES) {
+			// Q covers P, as a reference histogram would
+			double[] q = histogram(random, n, density, null);
+			double[] p = histogram(random, n, density, q);
+			SparseHistogram sp = new SparseHistogram(p);
+			SparseHistogram sq = new SparseHistogram(q);
+			for (int m = 0; m < MEASURES.length; m++) {
+				if (Double.compare(dense(m, p, q), sparse(m, sp, sq)) != 0)
+					System.err.println(MEASURES[m] + ": dense != sparse");
+				double d = time(m, p, q, null, null);
+				double s = time(m, null, null, sp, sq);
+				System.out.println(String.format("%-18s %8.3f %12.1f %12.1f %7.2fx",
+						MEASURES[m], density, d, s, d / s));
+			}
+		}
+	}
+
+	// a normalized histogram with about density * n non-zero bins, within
+	// the non-zero bins of support when given
+	static double[] histogram(Random random, int n, double density,
+			double[] support) {
+		double[] h = new double[n];
+		double total = 0;
+		for (int i = 0; i < n; i++) {
+			if ((support == null || support[i] != 0)
+					&& random.nextDouble() < ((support == null) ? density : 0.9)) {
+				h[i] = random.nextDouble();
+				total += h[i];
+			}
+		}
+		for (int i = 0; i < n; i++)
+			h[i] /= total;
+		return h;
+	}
+
+	static double time(int m, double[] p, double[] q, SparseHistogram sp,
+			SparseHistogram sq) throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += (p != null) ? dense(m, p, q) : sparse(m, sp, sq);
+		long iterations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			for (int i = 0; i < 10; i++)
+				sink += (p != null) ? dense(m, p, q) : sparse(m, sp, sq);
+			iterations += 10;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < TARGET_NANOS);
+		HistogramKernelBenchmark.consume(sink);
+		return (double) elapsed / iterations;
+	}
+}
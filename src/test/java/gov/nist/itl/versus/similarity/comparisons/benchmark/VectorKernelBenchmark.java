@@ -0,0 +1,112 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          VectorKernelBenchmark
+ * description   Compares the scalar double[] kernels with the lane-parallel
+ *               kernels for the elementwise-reduce histogram measures.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.MathOpsE;
+
+/**
+ * Vector kernel benchmark.
+ *
+ * Runs Euclidean, City Block, Chebyshev, Squared Euclidean, Intersection and
+ * Inner Product through the same MathOpsE entry points, once with the scalar
+ * kernels and once with vector kernels enabled, and reports the time per
+ * comparison, the speedup and the relative difference of the results.
+ * Chebyshev has no vector kernel and is listed as a baseline.
+ *
+ * Run with: java -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.VectorKernelBenchmark
+ * [bins...]
+ */
+public class VectorKernelBenchmark {
+
+	private static final int WARMUP = 5000;
+	private static final long TARGET_NANOS = 200000000L;
+
+	static final String[] MEASURES = { "euclidean", "city_block", "chebyshev",
+			"squared_euclidean", "intersection_IS", "inner_product" };
+
+	static double run(MathOpsE ops, int measure, double[] P, double[] Q)
+			throws Exception {
+		switch (measure) {
+		case 0:
+			return ops.histogram_measure_euclidean(P, Q);
+		case 1:
+			return ops.histogram_measure_city_block(P, Q);
+		case 2:
+			return ops.histogram_measure_chebyshev(P, Q);
+		case 3:
+			return ops.histogram_measure_squared_euclidean(P, Q);
+		case 4:
+			return ops.histogram_measure_intersection_IS(P, Q);
+		default:
+			return ops.histogram_measure_inner_product(P, Q);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 256, 768, 65536 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		MathOpsE scalar = new MathOpsE();
+		scalar.setVectorKernels(false);
+		MathOpsE vector = new MathOpsE();
+		vector.setVectorKernels(true);
+
+		Random random = new Random(2013);
+		System.out.println(String.format("%-20s %6s %12s %12s %8s %10s",
+				"measure", "bins", "scalar ns", "vector ns", "speedup",
+				"rel diff"));
+		for (int n : sizes) {
+			double[] p = HistogramKernelBenchmark.histogram(random, n);
+			double[] q = HistogramKernelBenchmark.histogram(random, n);
+			for (int m = 0; m < MEASURES.length; m++) {
+				double a = run(scalar, m, p, q);
+				double b = run(vector, m, p, q);
+				double s = time(scalar, m, p, q);
+				double v = time(vector, m, p, q);
+				System.out.println(String.format(
+						"%-20s %6d %12.1f %12.1f %7.2fx %10.2e", MEASURES[m], n,
+						s, v, s / v, (a == 0) ? Math.abs(b) : Math.abs(b - a)
+								/ Math.abs(a)));
+			}
+		}
+	}
+
+	static double time(MathOpsE ops, int measure, double[] P, double[] Q)
+			throws Exception {
+		double sink = 0;
+		for (int i = 0; i < WARMUP; i++)
+			sink += run(ops, measure, P, Q);
+		long iterations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			for (int i = 0; i < 100; i++)
+				sink += run(ops, measure, P, Q);
+			iterations += 100;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < TARGET_NANOS);
+		HistogramKernelBenchmark.consume(sink);
+		return (double) elapsed / iterations;
+	}
+}
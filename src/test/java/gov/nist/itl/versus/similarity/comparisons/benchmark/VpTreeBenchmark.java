@@ -0,0 +1,100 @@
+/*
+ * This software was developed at the National Institute of Standards and
+ * Technology by employees of the Federal Government in the course of
+ * their official duties. Pursuant to title 17 Section 105 of the United
+ * States Code this software is not subject to copyright protection and is
+ * in the public domain. This software is an experimental system. NIST assumes
+ * no responsibility whatsoever for its use by other parties, and makes no
+ * guarantees, expressed or implied, about its quality, reliability, or
+ * any other characteristic. We would appreciate acknowledgment if the
+ * software is used.
+ *
+ * name          VpTreeBenchmark
+ * description   Compares k nearest neighbour searches in a vantage-point tree
+ *               with full scans.
+ * @version      1.0
+ */
+package gov.nist.itl.versus.similarity.comparisons.benchmark;
+
+import java.util.Random;
+
+import gov.nist.itl.versus.similarity.comparisons.HistogramKnnSearcher;
+import gov.nist.itl.versus.similarity.comparisons.HistogramMatrix;
+import gov.nist.itl.versus.similarity.comparisons.HistogramVpTree;
+import gov.nist.itl.versus.similarity.comparisons.PreparedHistogram;
+import gov.nist.itl.versus.similarity.comparisons.measure.HistogramMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.CityBlockL1Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.EuclideanL2Measure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.HellingerMeasure;
+import gov.nist.itl.versus.similarity.comparisons.measure.impl.JensenShannonMeasure;
+
+/**
+ * Vantage-point tree benchmark.
+ *
+ * Builds a HistogramVpTree over rows stored histograms, clustered as in
+ * KnnBenchmark, and searches the k nearest to a few queries in the tree and by
+ * a full scan. Reports the build time, the time per query and the share of
+ * rows the tree did not measure.
+ *
+ * Run with: java -Xmx2g -cp target/classes:target/test-classes:&lt;deps&gt;
+ * gov.nist.itl.versus.similarity.comparisons.benchmark.VpTreeBenchmark
+ * [rows [bins [k]]]
+ */
+public class VpTreeBenchmark {
+
+	private static final int QUERIES = 20;
+	private static final int CLUSTERS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int bins = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+		int k = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+		Random random = new Random(2013);
+		double[][] centers = new double[CLUSTERS][];
+		for (int c = 0; c < CLUSTERS; c++)
+			centers[c] = HistogramKernelBenchmark.histogram(random, bins);
+		PreparedHistogram[] stored = new PreparedHistogram[rows];
+		for (int r = 0; r < rows; r++)
+			stored[r] = KnnBenchmark.perturbed(random, centers[random
+					.nextInt(CLUSTERS)]);
+		HistogramMatrix candidates = HistogramMatrix.of(stored);
+		PreparedHistogram[] queries = new PreparedHistogram[QUERIES];
+		for (int i = 0; i < QUERIES; i++)
+			queries[i] = KnnBenchmark.perturbed(random, stored[random
+					.nextInt(rows)].getBins());
+
+		HistogramMeasure[] measures = { new EuclideanL2Measure(),
+				new CityBlockL1Measure(), new HellingerMeasure(),
+				new JensenShannonMeasure() };
+		System.out.println(rows + " x " + bins + " bins, k = " + k);
+		System.out.println(String.format("%-24s %10s %10s %10s %8s",
+				"measure", "build ms", "scan ms", "tree ms", "pruned"));
+		for (HistogramMeasure m : measures) {
+			long start = System.nanoTime();
+			HistogramVpTree tree = new HistogramVpTree(m, candidates);
+			double build = System.nanoTime() - start;
+			HistogramKnnSearcher scan = new HistogramKnnSearcher(m, candidates);
+			scan.setEarlyAbandoning(false);
+
+			double sink = 0;
+			start = System.nanoTime();
+			for (PreparedHistogram q : queries)
+				sink += scan.search(q, k).getValues()[0];
+			double scanTime = (double) (System.nanoTime() - start) / QUERIES;
+			long pruned = 0;
+			start = System.nanoTime();
+			for (PreparedHistogram q : queries) {
+				HistogramKnnSearcher.Result result = tree.search(q, k);
+				sink += result.getValues()[0];
+				pruned += result.getAbandoned();
+			}
+			double treeTime = (double) (System.nanoTime() - start) / QUERIES;
+			HistogramKernelBenchmark.consume(sink);
+			System.out.println(String.format(
+					"%-24s %10.1f %10.3f %10.3f %7.1f%%", m.getName(),
+					build / 1e6, scanTime / 1e6, treeTime / 1e6, 100d * pruned
+							/ ((double) rows * QUERIES)));
+		}
+	}
+}
@@ -221,7 +221,34 @@ public class MinkowskiMeasureTest extends junit.framework.TestCase
 			System.out.println("Error:" + e.getMessage() );
 		}		
 	}
-	
+
+	@Test
+	public void testOrders() throws Exception {
+		double[] P = { 0.1, 0.2, 0.3, 0.4 };
+		double[] Q = { 0.4, 0.1, 0.2, 0.3 };
+		// the fast paths agree with the general pow() path
+		double[] orders = { 0.5, 1, 1.5, 2, 3, 4, 7, 10 };
+		for ( double p : orders ) {
+			double expected = mopsE.histogram_measure_minkowski_pow( P, Q, p );
+			Assert.assertEquals( expected, mopsE.histogram_measure_minkowski( P, Q, p ), 1e-12 );
+		}
+		Assert.assertEquals( 0.6, mopsE.histogram_measure_minkowski( P, Q, 1 ), 1e-12 );
+		Assert.assertEquals( Math.sqrt(0.12), mopsE.histogram_measure_minkowski( P, Q, 2 ), 1e-12 );
+		Assert.assertEquals( mopsE.histogram_measure_minkowski( P, Q ),
+				mopsE.histogram_measure_minkowski( P, Q, 3 ), 0 );
+		Assert.assertEquals( 0.3, mopsE.histogram_measure_minkowski( P, Q, Double.POSITIVE_INFINITY ), 1e-12 );
+		Assert.assertEquals( 3.0, new MinkowskiMeasure().getP(), 0 );
+	}
+
+	@Test
+	public void testInvalidOrder() throws Exception {
+		try {
+			mopsE.histogram_measure_minkowski( new double[] { 1 }, new double[] { 0 }, 0 );
+			Assert.assertTrue( "order 0 accepted", false );
+		} catch ( MathCompatibilityException e ) {
+			// expected
+		}
+	}
 
 	public static void main( String[] args )
 	{